@@ -0,0 +1,48 @@
+/*
+Copyright (C) 2019 Bengt Martensson.
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation; either version 3 of the License, or (at
+your option) any later version.
+
+This program is distributed in the hope that it will be useful, but
+WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+General Public License for more details.
+
+You should have received a copy of the GNU General Public License along with
+this program. If not, see http://www.gnu.org/licenses/.
+*/
+
+package org.harctoolbox.analyze;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.harctoolbox.ircore.InvalidArgumentException;
+import org.harctoolbox.ircore.IrSignal;
+import org.harctoolbox.irp.Protocol;
+import org.harctoolbox.irp.ProtocolFamilyState;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+
+/**
+ * Throughput of the Analyzer and the RepeatFinder, per protocol family.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class AnalyzeBenchmark {
+
+    @Benchmark
+    public List<Protocol> searchBestProtocol(ProtocolFamilyState state) throws InvalidArgumentException, NoDecoderMatchException {
+        Analyzer analyzer = new Analyzer(state.getIrSignal(state.next()));
+        return analyzer.searchBestProtocol(new Analyzer.AnalyzerParams());
+    }
+
+    @Benchmark
+    public IrSignal findRepeat(ProtocolFamilyState state) {
+        return RepeatFinder.findRepeat(state.getIrSequence(state.next()));
+    }
+}
@@ -0,0 +1,55 @@
+/*
+Copyright (C) 2019 Bengt Martensson.
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation; either version 3 of the License, or (at
+your option) any later version.
+
+This program is distributed in the hope that it will be useful, but
+WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+General Public License for more details.
+
+You should have received a copy of the GNU General Public License along with
+this program. If not, see http://www.gnu.org/licenses/.
+*/
+
+package org.harctoolbox.ircore;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.harctoolbox.irp.ProtocolFamilyState;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Throughput of the parsing of Pronto Hex, per protocol family.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class ProntoBenchmark {
+
+    @State(Scope.Thread)
+    public static class ProntoState {
+
+        private final List<String> prontos = new ArrayList<>(256);
+
+        @Setup
+        public void setup(ProtocolFamilyState state) {
+            for (int i = 0; i < state.size(); i++)
+                prontos.add(Pronto.toString(state.getIrSignal(i)));
+        }
+    }
+
+    @Benchmark
+    public IrSignal parse(ProtocolFamilyState state, ProntoState prontoState) throws Pronto.NonProntoFormatException, InvalidArgumentException {
+        return Pronto.parse(prontoState.prontos.get(state.next()));
+    }
+}
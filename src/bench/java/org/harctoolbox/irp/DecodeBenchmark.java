@@ -0,0 +1,57 @@
+/*
+Copyright (C) 2019 Bengt Martensson.
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation; either version 3 of the License, or (at
+your option) any later version.
+
+This program is distributed in the hope that it will be useful, but
+WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+General Public License for more details.
+
+You should have received a copy of the GNU General Public License along with
+this program. If not, see http://www.gnu.org/licenses/.
+*/
+
+package org.harctoolbox.irp;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Throughput of the Decoder, per protocol family, on signals rendered from the protocol data base.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class DecodeBenchmark {
+
+    @State(Scope.Thread)
+    public static class RecursiveParameters {
+
+        private Decoder.DecoderParameters params;
+
+        @Setup
+        public void setup() {
+            params = new Decoder.DecoderParameters();
+            params.setRecursive(true);
+        }
+    }
+
+    @Benchmark
+    public Decoder.SimpleDecodesSet decodeIrSignal(ProtocolFamilyState state) {
+        return state.getDecoder().decodeIrSignal(state.getIrSignal(state.next()));
+    }
+
+    @Benchmark
+    public Decoder.DecodeTree decodeRecursive(ProtocolFamilyState state, RecursiveParameters parameters) {
+        return state.getDecoder().decode(state.getIrSequence(state.next()), parameters.params);
+    }
+}
@@ -0,0 +1,134 @@
+/*
+Copyright (C) 2019 Bengt Martensson.
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation; either version 3 of the License, or (at
+your option) any later version.
+
+This program is distributed in the hope that it will be useful, but
+WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+General Public License for more details.
+
+You should have received a copy of the GNU General Public License along with
+this program. If not, see http://www.gnu.org/licenses/.
+*/
+
+package org.harctoolbox.irp;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import org.harctoolbox.ircore.IrSignal;
+import org.harctoolbox.ircore.ModulatedIrSequence;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Benchmark state consisting of the protocols in IrpProtocols.xml belonging to a protocol family,
+ * as given by {@link Protocol#classificationString()}, together with signals rendered
+ * from random parameters. Benchmarks process one signal per invocation, cycling through all of them,
+ * so the ops/s figures are per signal.
+ */
+@State(Scope.Thread)
+public class ProtocolFamilyState {
+
+    /**
+     * Family of the protocols not belonging to any of the named families.
+     */
+    public static final String OTHER = "other";
+
+    // Sequence matters, "invTrivial" contains "Trivial".
+    private static final String[] FAMILIES = { "PWM16", "PWM4", "PWM2", "Biphase", "invTrivial", "Trivial" };
+
+    private static final long SEED = 4711L;
+    private static final int SIGNALS_PER_PROTOCOL = 4;
+
+    public static String family(Protocol protocol) {
+        String classification = protocol.classificationString();
+        for (String family : FAMILIES)
+            if (classification.contains(family))
+                return family;
+        return OTHER;
+    }
+
+    @Param({"PWM2", "PWM4", "PWM16", "Biphase", "Trivial", "invTrivial", "other"})
+    private String family;
+
+    private IrpDatabase irpDatabase;
+    private Decoder decoder;
+    private final List<NamedProtocol> protocols = new ArrayList<>(64);
+    private final List<Map<String, Long>> parameters = new ArrayList<>(256);
+    private final List<IrSignal> irSignals = new ArrayList<>(256);
+    private final List<ModulatedIrSequence> irSequences = new ArrayList<>(256);
+    private int index = -1;
+
+    @Setup
+    public void setup() throws Exception {
+        irpDatabase = new IrpDatabase((String) null);
+        decoder = new Decoder(irpDatabase);
+        Random random = new Random(SEED);
+        for (NamedProtocol namedProtocol : decoder.getParsedProtocols()) {
+            if (!family(namedProtocol).equals(family))
+                continue;
+
+            for (int i = 0; i < SIGNALS_PER_PROTOCOL; i++) {
+                Map<String, Long> params = namedProtocol.randomParameters(random);
+                IrSignal irSignal;
+                try {
+                    irSignal = namedProtocol.render(new NameEngine(params));
+                } catch (IrpException | RuntimeException ex) {
+                    // e.g. decode-only protocols
+                    break;
+                }
+                protocols.add(namedProtocol);
+                parameters.add(params);
+                irSignals.add(irSignal);
+                irSequences.add(irSignal.toModulatedIrSequence(true, 2, true));
+            }
+        }
+        if (irSignals.isEmpty())
+            throw new IllegalArgumentException("No renderable protocols in family " + family);
+    }
+
+    /**
+     * Advances to the next signal.
+     * @return index of the current signal
+     */
+    public int next() {
+        index = (index + 1) % irSignals.size();
+        return index;
+    }
+
+    public int size() {
+        return irSignals.size();
+    }
+
+    public IrpDatabase getIrpDatabase() {
+        return irpDatabase;
+    }
+
+    public Decoder getDecoder() {
+        return decoder;
+    }
+
+    public NamedProtocol getProtocol(int i) {
+        return protocols.get(i);
+    }
+
+    public Map<String, Long> getParameters(int i) {
+        return parameters.get(i);
+    }
+
+    public IrSignal getIrSignal(int i) {
+        return irSignals.get(i);
+    }
+
+    public ModulatedIrSequence getIrSequence(int i) {
+        return irSequences.get(i);
+    }
+}
@@ -0,0 +1,131 @@
+/*
+Copyright (C) 2019 Bengt Martensson.
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation; either version 3 of the License, or (at
+your option) any later version.
+
+This program is distributed in the hope that it will be useful, but
+WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+General Public License for more details.
+
+You should have received a copy of the GNU General Public License along with
+this program. If not, see http://www.gnu.org/licenses/.
+*/
+
+package org.harctoolbox.irp;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.harctoolbox.ircore.IrSignal;
+import org.harctoolbox.ircore.ModulatedIrSequence;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Compares the cost of a failing recognition, as reported by the stackless SignalRecognitionException
+ * with lazily computed message, with the previous way of throwing an exception with a full stack trace
+ * and an eagerly formatted message. Also measures the complete decoding of a signal,
+ * where the vast majority of the protocols tried fail.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class RecognitionBenchmark {
+
+    /**
+     * Emulates SignalRecognitionException as it was before: message formatted eagerly, stack trace filled in.
+     */
+    private static final class StackfulException extends Exception {
+
+        StackfulException(String message) {
+            super(message);
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class FailureState {
+
+        /**
+         * Depth of the call stack where the failure is thrown; the recognizer is recursive.
+         */
+        @Param({"10", "40"})
+        private int depth;
+    }
+
+    @State(Scope.Benchmark)
+    public static class DecodeState {
+
+        /**
+         * Fixed seed, so that all forks and runs decode the same signals.
+         */
+        private static final long SEED = 4711L;
+
+        @Param({"NEC1", "RC5", "Sony12"})
+        private String protocolName;
+
+        private Decoder decoder;
+        private IrSignal irSignal;
+        private ModulatedIrSequence irSequence;
+
+        @Setup
+        public void setup() throws Exception {
+            IrpDatabase irpDatabase = new IrpDatabase((String) null);
+            decoder = new Decoder(irpDatabase);
+            NamedProtocol namedProtocol = irpDatabase.getNamedProtocol(protocolName);
+            irSignal = namedProtocol.render(new NameEngine(namedProtocol.randomParameters(new Random(SEED))));
+            irSequence = irSignal.toModulatedIrSequence(true, 2, true);
+        }
+    }
+
+    private void failStackless(int level, double wanted, double actual) throws SignalRecognitionException {
+        if (level > 0)
+            failStackless(level - 1, wanted, actual);
+        else
+            throw new SignalRecognitionException(() -> "Duration does not parse, wanted " + wanted + ", was " + actual + ", position = " + level);
+    }
+
+    private void failStackful(int level, double wanted, double actual) throws StackfulException {
+        if (level > 0)
+            failStackful(level - 1, wanted, actual);
+        else
+            throw new StackfulException("Duration does not parse, wanted " + wanted + ", was " + actual + ", position = " + level);
+    }
+
+    @Benchmark
+    public boolean failureStackless(FailureState state) {
+        try {
+            failStackless(state.depth, 564.0, 1692.0);
+            return true;
+        } catch (SignalRecognitionException ex) {
+            return false;
+        }
+    }
+
+    @Benchmark
+    public boolean failureStackful(FailureState state) {
+        try {
+            failStackful(state.depth, 564.0, 1692.0);
+            return true;
+        } catch (StackfulException ex) {
+            return false;
+        }
+    }
+
+    @Benchmark
+    public Decoder.SimpleDecodesSet decodeIrSignal(DecodeState state) {
+        return state.decoder.decodeIrSignal(state.irSignal);
+    }
+
+    @Benchmark
+    public Decoder.DecodeTree decodeIrSequence(DecodeState state) {
+        return state.decoder.decode(state.irSequence, new Decoder.DecoderParameters());
+    }
+}
@@ -72,6 +72,14 @@ public abstract class AbstractBiphaseDecoder extends AbstractDecoder {
         this(analyzer, params, analyzer.getTiming(0), analyzer.getTiming(1), invert);
     }
 
+    @Override
+    boolean isEquivalent(AbstractDecoder decoder) {
+        return super.isEquivalent(decoder)
+                && half == ((AbstractBiphaseDecoder) decoder).half
+                && full == ((AbstractBiphaseDecoder) decoder).full
+                && invert == ((AbstractBiphaseDecoder) decoder).invert;
+    }
+
     @Override
     protected List<IrStreamItem> parse(int beg, int length) throws DecodeException {
         List<IrStreamItem> items = new ArrayList<>(2*length);
@@ -197,6 +197,21 @@ public abstract class AbstractDecoder {
         return getClass().getSimpleName();
     }
 
+    /**
+     * Returns true if the argument is guaranteed to produce the same result as this decoder on every sequence
+     * with the same cleaned durations. This is the case when the classes are the same,
+     * and the parameters derived from the Analyzer, like the time base and the bursts, are the same.
+     * @param decoder
+     * @return
+     */
+    boolean isEquivalent(AbstractDecoder decoder) {
+        return decoder != null
+                && getClass() == decoder.getClass()
+                && params == decoder.params
+                && Double.doubleToLongBits(timebase) == Double.doubleToLongBits(decoder.timebase)
+                && bitSpec.equals(decoder.bitSpec);
+    }
+
     protected void dumpParameters(ParameterData data, List<IrStreamItem> items, int noBitsLimit) {
         ParameterData lowerParam = data.reduce(noBitsLimit);
         saveParameter(lowerParam, items, params.getBitDirection(), params.isInvert());
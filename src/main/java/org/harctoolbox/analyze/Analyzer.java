@@ -22,6 +22,7 @@ import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
@@ -30,6 +31,8 @@ import java.util.Objects;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 import org.harctoolbox.ircore.InvalidArgumentException;
 import org.harctoolbox.ircore.IrCoreUtils;
 import org.harctoolbox.ircore.IrSequence;
@@ -69,7 +72,8 @@ public final class Analyzer extends Cleaner {
     }
 
     private List<Burst> pairs;
-    private final RepeatFinder.RepeatFinderData[] repeatFinderData;
+    private RepeatFinder.RepeatFinderData[] repeatFinderData;
+    private final boolean invokeRepeatFinder;
     private Double frequency;
     private List<Burst> sortedBursts;
 
@@ -90,6 +94,7 @@ public final class Analyzer extends Cleaner {
         if (frequency == null)
             logger.log(Level.FINE, String.format(Locale.US, "No frequency given, assuming default frequency = %d Hz", (int) ModulatedIrSequence.DEFAULT_FREQUENCY));
         this.frequency = frequency;
+        this.invokeRepeatFinder = invokeRepeatFinder;
         repeatFinderData = new RepeatFinder.RepeatFinderData[irSequenceList.size()];
         for (int i = 0; i < irSequenceList.size(); i++)
             repeatFinderData[i] = getRepeatFinderData(invokeRepeatFinder, i);
@@ -124,6 +129,30 @@ public final class Analyzer extends Cleaner {
        this(irSignal, null, null);
     }
 
+    /**
+     * Adds a sequence to the Analyzer, updating the timings, the repeat finder data, and the bursts.
+     * The result is the same as if the sequence had been given to the constructor.
+     * Not possible in signal mode.
+     * @param irSequence
+     * @return the previously present sequences whose cleaned durations were changed by the addition.
+     * @throws InvalidArgumentException
+     */
+    public BitSet add(IrSequence irSequence) throws InvalidArgumentException {
+        if (isSignalMode())
+            throw new UnsupportedOperationException("Cannot add a sequence in signal mode");
+
+        BitSet changed = add(irSequence.toInts());
+        synchronized (this) {
+            // recomputed when needed, by getRepeatFinderData
+            repeatFinderData = Arrays.copyOf(repeatFinderData, getNoSequences());
+            changed.stream().forEach((i) -> {
+                repeatFinderData[i] = null;
+            });
+        }
+        createPairs();
+        return changed;
+    }
+
     /**
      * Return bursts order after their frequency.
      * @param i
@@ -153,7 +182,9 @@ public final class Analyzer extends Cleaner {
         }
     }
 
-    RepeatFinder.RepeatFinderData getRepeatFinderData(int number) {
+    synchronized RepeatFinder.RepeatFinderData getRepeatFinderData(int number) {
+        if (repeatFinderData[number] == null)
+            repeatFinderData[number] = getRepeatFinderData(invokeRepeatFinder, number);
         return repeatFinderData[number];
     }
 
@@ -163,9 +194,11 @@ public final class Analyzer extends Cleaner {
         IrSequence ending;
         try {
             if (isSignalMode()) {
-                intro = new IrSequence(toDurations(getSequenceBegin(0), getSequenceLength(0)));
-                repeat = new IrSequence(toDurations(getSequenceBegin(1), getSequenceLength(1)));
-                ending = new IrSequence(toDurations(getSequenceBegin(2), getSequenceLength(2)));
+                // The three sequences are consecutive, so they can be views of one IrSequence.
+                IrSequence all = new IrSequence(toDurations(getSequenceBegin(0), getSequenceLength(0) + getSequenceLength(1) + getSequenceLength(2)));
+                intro = all.truncate(getSequenceLength(0));
+                repeat = all.subSequence(getSequenceLength(0), getSequenceLength(1));
+                ending = all.subSequence(getSequenceLength(0) + getSequenceLength(1), getSequenceLength(2));
             } else {
                 int begin = getSequenceBegin(number);
                 RepeatFinder.RepeatFinderData repeatfinderData = getRepeatFinderData(number);
@@ -174,7 +207,7 @@ public final class Analyzer extends Cleaner {
                 ending = new IrSequence(toDurations(begin + repeatfinderData.getEndingStart(), repeatfinderData.getEndingLength()));
             }
             return new IrSignal(intro, repeat, ending, frequency);
-        } catch (OddSequenceLengthException ex) {
+        } catch (InvalidArgumentException ex) {
             throw new ThisCannotHappenException(ex);
         }
     }
@@ -192,14 +225,14 @@ public final class Analyzer extends Cleaner {
     }
 
 
-    private List<Class<?>> selectDecoderClasses(String decoderPattern, boolean regexp) throws NoDecoderMatchException {
+    static List<Class<?>> selectDecoderClasses(String decoderPattern, boolean regexp) throws NoDecoderMatchException {
         List<Class<?>> decoders = regexp ? selectDecoderClassesRegexp(decoderPattern) : selectDecoderClassesSubstring(decoderPattern);
         if (decoders.isEmpty())
             throw new NoDecoderMatchException(decoderPattern, regexp);
         return decoders;
     }
 
-    private List<Class<?>> selectDecoderClassesRegexp(String decoderPattern) {
+    private static List<Class<?>> selectDecoderClassesRegexp(String decoderPattern) {
         Pattern pattern = decoderPattern != null ? Pattern.compile(decoderPattern, Pattern.CASE_INSENSITIVE) : null;
         List<Class<?>> decoders = new ArrayList<>(AbstractDecoder.NUMBERDECODERS);
         for (Class<?> decoderClass : AbstractDecoder.decoders)
@@ -208,7 +241,7 @@ public final class Analyzer extends Cleaner {
         return decoders;
     }
 
-    private List<Class<?>> selectDecoderClassesSubstring(String decoderPattern) {
+    private static List<Class<?>> selectDecoderClassesSubstring(String decoderPattern) {
         List<Class<?>> decoders = new ArrayList<>(AbstractDecoder.NUMBERDECODERS);
         for (Class<?> decoderClass : AbstractDecoder.decoders)
             if (decoderPattern == null
@@ -218,24 +251,33 @@ public final class Analyzer extends Cleaner {
     }
 
     private List<AbstractDecoder> setupDecoders(Analyzer.AnalyzerParams params, String decoderPattern, boolean regexp) throws NoDecoderMatchException {
-        List<Class<?>> decoderClasses = selectDecoderClasses(decoderPattern, regexp);
+        return setupDecoders(params, selectDecoderClasses(decoderPattern, regexp));
+    }
+
+    List<AbstractDecoder> setupDecoders(Analyzer.AnalyzerParams params, List<Class<?>> decoderClasses) {
         List<AbstractDecoder> decoders = new ArrayList<>(AbstractDecoder.NUMBERDECODERS);
         decoderClasses.forEach((decoderClass) -> {
-            try {
-                Constructor<?> constructor = decoderClass.getConstructor(Analyzer.class, AnalyzerParams.class);
-                AbstractDecoder decoder = (AbstractDecoder) constructor.newInstance(this, params);
+            AbstractDecoder decoder = newDecoder(decoderClass, params);
+            if (decoder != null)
                 decoders.add(decoder);
-            } catch (NoSuchMethodException | SecurityException | IllegalAccessException | IllegalArgumentException | InstantiationException ex) {
-                // consider this as programming error
-                throw new ThisCannotHappenException(ex);
-            } catch (InvocationTargetException ex) {
-                // Likely not a fatal problem, the decoder just did not accept the data.
-                logger.log(Level.FINE, String.format("Decoder %1$s failed: %2$s(%3$s)", decoderClass.getSimpleName(), ex.getTargetException().getClass().getSimpleName(), ex.getTargetException().getMessage()));
-            }
         });
         return decoders;
     }
 
+    AbstractDecoder newDecoder(Class<?> decoderClass, Analyzer.AnalyzerParams params) {
+        try {
+            Constructor<?> constructor = decoderClass.getConstructor(Analyzer.class, AnalyzerParams.class);
+            return (AbstractDecoder) constructor.newInstance(this, params);
+        } catch (NoSuchMethodException | SecurityException | IllegalAccessException | IllegalArgumentException | InstantiationException ex) {
+            // consider this as programming error
+            throw new ThisCannotHappenException(ex);
+        } catch (InvocationTargetException ex) {
+            // Likely not a fatal problem, the decoder just did not accept the data.
+            logger.log(Level.FINE, String.format("Decoder %1$s failed: %2$s(%3$s)", decoderClass.getSimpleName(), ex.getTargetException().getClass().getSimpleName(), ex.getTargetException().getMessage()));
+            return null;
+        }
+    }
+
 //    /**
 //     * @return the timebase
 //     */
@@ -250,6 +292,10 @@ public final class Analyzer extends Cleaner {
         return Collections.unmodifiableList(pairs);
     }
 
+    List<Burst> getSortedBursts() {
+        return Collections.unmodifiableList(sortedBursts);
+    }
+
     public String getName(Burst pair) {
         return getName(pair.getFlashDuration()) + getName(pair.getGapDuration());
     }
@@ -263,6 +309,9 @@ public final class Analyzer extends Cleaner {
     }
 
     public List<List<Protocol>> searchAllProtocols(AnalyzerParams params, String decoderPattern, boolean regexp) throws NoDecoderMatchException {
+        if (params.isParallel())
+            return searchAllProtocolsParallel(params, decoderPattern, regexp);
+
         List<AbstractDecoder> decoders = setupDecoders(params, decoderPattern, regexp);
         List<List<Protocol>> result = new ArrayList<>(getNoSequences());
         for (int i = 0; i < getNoSequences(); i++)
@@ -271,7 +320,33 @@ public final class Analyzer extends Cleaner {
         return result;
     }
 
+    /**
+     * Tries all combinations of sequences and decoders in parallel, using the common ForkJoinPool.
+     * Since the decoders are stateful, every combination gets a decoder of its own.
+     * The result, including its order, is the same as for searchAllProtocols without parallel.
+     */
+    private List<List<Protocol>> searchAllProtocolsParallel(AnalyzerParams params, String decoderPattern, boolean regexp) throws NoDecoderMatchException {
+        List<Class<?>> decoderClasses = selectDecoderClasses(decoderPattern, regexp);
+        int noDecoders = decoderClasses.size();
+        List<Protocol> protocols = IntStream.range(0, getNoSequences() * noDecoders).parallel().mapToObj((n) -> {
+            AbstractDecoder decoder = newDecoder(decoderClasses.get(n % noDecoders), params);
+            return decoder != null ? searchProtocol(decoder, n / noDecoders) : null;
+        }).collect(Collectors.toList());
+
+        List<List<Protocol>> result = new ArrayList<>(getNoSequences());
+        for (int i = 0; i < getNoSequences(); i++) {
+            List<Protocol> list = new ArrayList<>(noDecoders);
+            protocols.subList(i * noDecoders, (i + 1) * noDecoders).stream().filter(Objects::nonNull).forEachOrdered(list::add);
+            result.add(list);
+        }
+        return result;
+    }
+
     public List<Protocol> searchBestProtocol(AnalyzerParams params, String decoderPattern, boolean regexp) throws NoDecoderMatchException {
+        if (params.isParallel())
+            return searchAllProtocolsParallel(params, decoderPattern, regexp).stream()
+                    .map(Analyzer::selectBestProtocol).filter(Objects::nonNull).collect(Collectors.toList());
+
         List<AbstractDecoder> decoders = setupDecoders(params, decoderPattern, regexp);
         List<Protocol> result = new ArrayList<>(getNoSequences());
         for (int i = 0; i < getNoSequences(); i++) {
@@ -290,19 +365,26 @@ public final class Analyzer extends Cleaner {
     public List<Protocol> searchProtocols(List<AbstractDecoder> decoders, int number) {
         List<Protocol> protocols = new ArrayList<>(decoders.size());
         decoders.forEach((decoder) -> {
-            try {
-                Protocol protocol = decoder.parse(number, isSignalMode());
+            Protocol protocol = searchProtocol(decoder, number);
+            if (protocol != null)
                 protocols.add(protocol);
-                logger.log(Level.FINE, "{0}: {1} w = {2}", new Object[]{decoder.name(), protocol.toIrpString(10), protocol.weight()});
-            } catch (DecodeException ex) {
-                logger.log(Level.FINE, "{0}: {1}", new Object[]{decoder.name(), ex.getMessage()});
-            } catch (AnalyzerParams.TooFewParameterNamesException ex) {
-                logger.log(Level.FINE, "{0}: Too few parameter names", new Object[]{decoder.name()});
-            }
         });
         return protocols;
     }
 
+    Protocol searchProtocol(AbstractDecoder decoder, int number) {
+        try {
+            Protocol protocol = decoder.parse(number, isSignalMode());
+            logger.log(Level.FINE, "{0}: {1} w = {2}", new Object[]{decoder.name(), protocol.toIrpString(10), protocol.weight()});
+            return protocol;
+        } catch (DecodeException ex) {
+            logger.log(Level.FINE, "{0}: {1}", new Object[]{decoder.name(), ex.getMessage()});
+        } catch (AnalyzerParams.TooFewParameterNamesException ex) {
+            logger.log(Level.FINE, "{0}: Too few parameter names", new Object[]{decoder.name()});
+        }
+        return null;
+    }
+
     public Protocol searchBestProtocol(List<AbstractDecoder> decoders, int number) {
         List<Protocol> protocols = searchProtocols(decoders, number);
         return selectBestProtocol(protocols);
@@ -341,7 +423,7 @@ public final class Analyzer extends Cleaner {
     }
 
     public RepeatFinder.RepeatFinderData repeatFinderData(int i) {
-        return repeatFinderData[i];
+        return getRepeatFinderData(i);
     }
 
     @SuppressWarnings("null")
@@ -363,6 +445,7 @@ public final class Analyzer extends Cleaner {
         private final int maxParameterWidth;
         private final Burst.Preferences burstPrefs;
         private List<String> parameterNames;
+        private boolean parallel;
 
         public AnalyzerParams(Double frequency, String timeBaseString, BitDirection bitDirection, boolean useExtents, List<Integer> parameterWidths, boolean invert) {
             this(frequency, timeBaseString, bitDirection, useExtents, parameterWidths, 32, invert, new Burst.Preferences(), new ArrayList<>(0));
@@ -394,6 +477,7 @@ public final class Analyzer extends Cleaner {
             this.parameterWidths = parameterWidths == null ? new ArrayList<>(0) : parameterWidths;
             this.maxParameterWidth = maxParameterWidth;
             this.parameterNames = parameterNames;
+            this.parallel = false;
 
             if (timeBaseString == null || timeBaseString.isEmpty()) {
                 timebase = null;
@@ -480,6 +564,22 @@ public final class Analyzer extends Cleaner {
             return invert;
         }
 
+        /**
+         * @return the parallel
+         */
+        public boolean isParallel() {
+            return parallel;
+        }
+
+        /**
+         * If true, the decoders are tried on the sequences in parallel, using the common ForkJoinPool.
+         * The result is the same as for sequential analysis.
+         * @param parallel the parallel to set
+         */
+        public void setParallel(boolean parallel) {
+            this.parallel = parallel;
+        }
+
         String mkName(int n) {
             if (n < parameterNames.size())
                 return parameterNames.get(n);
@@ -38,6 +38,13 @@ public final class BiphaseWithDoubleToggleDecoder extends AbstractBiphaseDecoder
         this(analyzer, params, analyzer.getTiming(0), analyzer.getTiming(1), analyzer.getTiming(2));
     }
 
+    @Override
+    boolean isEquivalent(AbstractDecoder decoder) {
+        return super.isEquivalent(decoder)
+                && oneAndAHalf == ((BiphaseWithDoubleToggleDecoder) decoder).oneAndAHalf
+                && doubleLengthBitSpec.equals(((BiphaseWithDoubleToggleDecoder) decoder).doubleLengthBitSpec);
+    }
+
     @Override
     protected List<IrStreamItem> parse(int beg, int length) throws DecodeException {
         List<IrStreamItem> items = new ArrayList<>(2*length);
@@ -19,7 +19,7 @@ package org.harctoolbox.analyze;
 
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Collections;
+import java.util.BitSet;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
@@ -75,16 +75,22 @@ public class Cleaner {
     }
 
     private int rawData[];
-    protected List<Integer> timings;
-    private HashMap<Integer, HistoPair> rawHistogram;
-    private HashMap<Integer, HistoPair> cleanedHistogram;
+    protected int[] timings;
+    private int[] distinctDurations; // sorted
+    private int[] rawFlashes; // indexed as distinctDurations
+    private int[] rawGaps;
+    private int[] lookDownTable; // indexed as distinctDurations, contains indices in timings
+    private int[] cleanedFlashes; // indexed as timings
+    private int[] cleanedGaps;
+    private long[] distinctPairs; // sorted, index in timings of the flash in the upper half
+    private int[] pairCounts; // indexed as distinctPairs
     protected int indexData[];
-    private int[] sorted;
-    private HashMap<Integer, Integer> lookDownTable;
-    private List<Integer> gapsSortedAfterFrequency;
-    private List<Integer> flashesSortedAfterFrequency;
+    private int[] gapsSortedAfterFrequency;
+    private int[] flashesSortedAfterFrequency;
     private int[] indices; // ending indicies
     private boolean signalMode;
+    private final double absoluteTolerance;
+    private final double relativeTolerance;
 
     public Cleaner(IrSequence irSequence) throws InvalidArgumentException {
         this(irSequence, IrCoreUtils.DEFAULT_ABSOLUTE_TOLERANCE, IrCoreUtils.DEFAULT_RELATIVE_TOLERANCE);
@@ -95,23 +101,66 @@ public class Cleaner {
     }
 
     protected Cleaner(int[] data, int[] indices, boolean signalMode, Double absoluteTolerance, Double relativeTolerance) throws InvalidArgumentException {
-        for (int x : data)
-            if (x == 0)
-                throw new InvalidArgumentException("Data contains duration of length 0");
-
+        checkData(data);
         rawData = data;
         this.indices = indices;
         this.signalMode = signalMode;
+        this.relativeTolerance = IrCoreUtils.getRelativeTolerance(relativeTolerance);
+        this.absoluteTolerance = IrCoreUtils.getAbsoluteTolerance(absoluteTolerance);
         createRawHistogram();
-        double relTol = IrCoreUtils.getRelativeTolerance(relativeTolerance);
-        double absTol = IrCoreUtils.getAbsoluteTolerance(absoluteTolerance);
-        List<Integer> dumbTimings = createDumbTimings(absTol, relTol);
-        improveTimingsTable(dumbTimings, absTol, relTol);
+        createTimings();
+    }
+
+    private static void checkData(int[] data) throws InvalidArgumentException {
+        for (int x : data)
+            if (x == 0)
+                throw new InvalidArgumentException("Data contains duration of length 0");
+    }
+
+    private void createTimings() {
+        int[] dumbTimings = createDumbTimings(absoluteTolerance, relativeTolerance);
+        improveTimingsTable(dumbTimings, absoluteTolerance, relativeTolerance);
         createCookedData();
         createCleanHistogram();
+        createPairHistogram();
         createSortedGapsAndFlashes();
     }
 
+    /**
+     * Adds a sequence to the data. Only the new durations are sorted and merged into the histogram,
+     * from which the timings are then recomputed.
+     * The result is the same as if the sequence had been given to the constructor.
+     * @param data durations of the new sequence, starting with a flash.
+     * @return the previously present sequences whose cleaned durations were changed by the addition.
+     * @throws InvalidArgumentException
+     */
+    protected BitSet add(int[] data) throws InvalidArgumentException {
+        checkData(data);
+        int oldLength = rawData.length;
+        int noOldSequences = indices.length;
+        int[] oldTimings = timings;
+        int[] oldIndexData = indexData;
+
+        rawData = Arrays.copyOf(rawData, oldLength + data.length);
+        System.arraycopy(data, 0, rawData, oldLength, data.length);
+        indices = Arrays.copyOf(indices, noOldSequences + 1);
+        indices[noOldSequences] = rawData.length;
+        mergeRawHistogram(data);
+        createTimings();
+
+        BitSet changed = new BitSet(noOldSequences);
+        for (int n = 0; n < noOldSequences; n++) {
+            int end = indices[n];
+            for (int i = getSequenceBegin(n); i < end; i++) {
+                if (oldTimings[oldIndexData[i]] != timings[indexData[i]]) {
+                    changed.set(n);
+                    break;
+                }
+            }
+        }
+        return changed;
+    }
+
     /**
      * @return the signalMode
      */
@@ -120,74 +169,127 @@ public class Cleaner {
     }
 
     private void createRawHistogram() {
-        rawHistogram = new HashMap<>(NUMBEROFINITIALTIMINGSCAPACITY);
-        for (int i = 0; i < rawData.length; i++) {
-            boolean isFlash = i % 2 == 0;
-            int duration = rawData[i];
-            if (!rawHistogram.containsKey(duration))
-                rawHistogram.put(duration, new HistoPair());
-            rawHistogram.get(duration).increment(isFlash);
-        }
+        distinctDurations = new int[0];
+        rawFlashes = new int[0];
+        rawGaps = new int[0];
+        mergeRawHistogram(rawData);
     }
 
-    private ArrayList<Integer> createDumbTimings(double absoluteTolerance, double relativeTolerance) {
-        ArrayList<Integer> dumbTimings = new ArrayList<>(rawData.length);
-        sorted = rawData.clone();
+    // Merges data, starting with a flash, into the raw histogram.
+    private void mergeRawHistogram(int[] data) {
+        int[] sorted = data.clone();
         Arrays.sort(sorted);
+        int[] distinct = new int[distinctDurations.length + sorted.length];
+        int size = 0;
+        int i = 0;
+        int j = 0;
+        while (i < distinctDurations.length || j < sorted.length) {
+            int d = j == sorted.length || (i < distinctDurations.length && distinctDurations[i] <= sorted[j])
+                    ? distinctDurations[i++] : sorted[j++];
+            if (size == 0 || distinct[size - 1] != d)
+                distinct[size++] = d;
+        }
+        distinct = Arrays.copyOf(distinct, size);
+
+        int[] flashes = new int[size];
+        int[] gaps = new int[size];
+        int index = 0;
+        for (int k = 0; k < distinctDurations.length; k++) {
+            while (distinct[index] != distinctDurations[k])
+                index++;
+            flashes[index] = rawFlashes[k];
+            gaps[index] = rawGaps[k];
+        }
+        for (int k = 0; k < data.length; k++) {
+            index = Arrays.binarySearch(distinct, data[k]);
+            if (k % 2 == 0)
+                flashes[index]++;
+            else
+                gaps[index]++;
+        }
+        distinctDurations = distinct;
+        rawFlashes = flashes;
+        rawGaps = gaps;
+    }
+
+    private int[] createDumbTimings(double absoluteTolerance, double relativeTolerance) {
+        int[] dumbTimings = new int[distinctDurations.length];
+        int size = 0;
         int last = -99999;
-        for (int d : sorted) {
+        for (int d : distinctDurations) {
             if (!IrCoreUtils.approximatelyEquals(d, last, (int) absoluteTolerance, relativeTolerance)) {
                 int representative = d /*+ (int) absoluteTolerance*/;
-                dumbTimings.add(representative);
+                dumbTimings[size++] = representative;
                 last = representative;
             }
         }
-        return dumbTimings;
+        return Arrays.copyOf(dumbTimings, size);
     }
 
-    private void improveTimingsTable(List<Integer> dumbTimings, double absoluteTolerance, double relativeTolerance) {
-        lookDownTable = new HashMap<>(NUMBEROFINITIALTIMINGSCAPACITY);
-        timings = new ArrayList<>(NUMBEROFINITIALTIMINGSCAPACITY);
-        int indexInSortedTimings = 0;
-        for (int timingsIndex = 0; timingsIndex < dumbTimings.size(); timingsIndex++) {
-            int dumbTiming = dumbTimings.get(timingsIndex);
+    private void improveTimingsTable(int[] dumbTimings, double absoluteTolerance, double relativeTolerance) {
+        lookDownTable = new int[distinctDurations.length];
+        timings = new int[dumbTimings.length];
+        int indexInDistinctDurations = 0;
+        for (int timingsIndex = 0; timingsIndex < dumbTimings.length; timingsIndex++) {
+            int dumbTiming = dumbTimings[timingsIndex];
             int sum = 0;
             int terms = 0;
-            int lastDuration = -1;
-            while (indexInSortedTimings < sorted.length
-                    && IrCoreUtils.approximatelyEquals(dumbTiming, sorted[indexInSortedTimings], (int) absoluteTolerance, relativeTolerance)) {
-                int duration = sorted[indexInSortedTimings];
-                indexInSortedTimings++;
-                if (duration == lastDuration)
-                    continue;
-                lastDuration = duration;
-                int noHits = rawHistogram.get(duration).total();
+            while (indexInDistinctDurations < distinctDurations.length
+                    && IrCoreUtils.approximatelyEquals(dumbTiming, distinctDurations[indexInDistinctDurations], (int) absoluteTolerance, relativeTolerance)) {
+                int duration = distinctDurations[indexInDistinctDurations];
+                int noHits = rawFlashes[indexInDistinctDurations] + rawGaps[indexInDistinctDurations];
                 sum += noHits * duration;
                 terms += noHits;
-                lookDownTable.put(duration, timingsIndex);
+                lookDownTable[indexInDistinctDurations] = timingsIndex;
+                indexInDistinctDurations++;
             }
             int average = (int) Math.round(sum/(double)terms);
-            timings.add(average);
-            lookDownTable.put(average, timingsIndex);
+            timings[timingsIndex] = average;
         }
     }
 
     private void createCookedData() {
         indexData = new int[rawData.length];
         for (int i = 0; i < rawData.length; i++)
-            indexData[i] = lookDownTable.get(rawData[i]);
+            indexData[i] = lookDownTable[Arrays.binarySearch(distinctDurations, rawData[i])];
     }
 
     private void createCleanHistogram() {
-        cleanedHistogram = new LinkedHashMap<>(NUMBEROFINITIALTIMINGSCAPACITY);
-        timings.stream().forEach((duration) -> {
-            cleanedHistogram.put(duration, new HistoPair());
-        });
-        rawHistogram.entrySet().stream().forEach((kvp) -> {
-            int index = lookDownTable.get(kvp.getKey());
-            Integer cleanedDuration = timings.get(index);
-            cleanedHistogram.get(cleanedDuration).add(kvp.getValue());
-        });
+        cleanedFlashes = new int[timings.length];
+        cleanedGaps = new int[timings.length];
+        for (int i = 0; i < distinctDurations.length; i++) {
+            cleanedFlashes[lookDownTable[i]] += rawFlashes[i];
+            cleanedGaps[lookDownTable[i]] += rawGaps[i];
+        }
+    }
+
+    private static long pairKey(int flashIndex, int gapIndex) {
+        return ((long) flashIndex << 32) | gapIndex;
+    }
+
+    private void createPairHistogram() {
+        long[] keys = new long[indexData.length / 2];
+        for (int i = 0; i < keys.length; i++)
+            keys[i] = pairKey(indexData[2 * i], indexData[2 * i + 1]);
+        Arrays.sort(keys);
+        long[] distinct = new long[keys.length];
+        int[] counts = new int[keys.length];
+        int size = 0;
+        for (long key : keys) {
+            if (size == 0 || distinct[size - 1] != key)
+                distinct[size++] = key;
+            counts[size - 1]++;
+        }
+        distinctPairs = Arrays.copyOf(distinct, size);
+        pairCounts = Arrays.copyOf(counts, size);
+    }
+
+    // Index in timings of a duration, which must be one of the timings.
+    private int timingIndex(int duration) {
+        int index = Arrays.binarySearch(timings, duration);
+        if (index < 0)
+            throw new IllegalArgumentException("Not a timing: " + duration);
+        return index;
     }
 
     public String getName(int duration) {
@@ -209,7 +311,7 @@ public class Cleaner {
     protected int[] toDurations(int beg, int length) {
         int[] data = new int[length];
         for (int i = 0; i < length; i++)
-            data[i] = timings.get(indexData[beg + i]);
+            data[i] = timings[indexData[beg + i]];
         return data;
     }
 
@@ -231,51 +333,72 @@ public class Cleaner {
     protected int getTotalDuration(int beg, int length) {
         int sum = 0;
         for (int i = beg; i < beg + length; i++)
-            sum += timings.get(indexData[i]);
+            sum += timings[indexData[i]];
         return sum;
     }
 
     public int getTiming(int index) {
-        return  timings.get(index);
+        return  timings[index];
     }
 
-    public Integer getIndex(int duration) {
-        return lookDownTable.get(duration);
+    int[] getTimings() {
+        return timings.clone();
     }
 
-    private List<Integer> getFalshesOrGaps(boolean isFlash) {
-        List<Integer> list = new ArrayList<>(timings.size());
-        timings.stream().filter((d) -> (cleanedHistogram.get(d).get(isFlash) > 0)).forEach((d) -> {
-            list.add(d);
-        });
+    /**
+     * Returns the index in the timings of the duration, which can be either a raw or a cleaned duration.
+     * @param duration
+     * @return index, or null if the duration is not known.
+     */
+    public Integer getIndex(int duration) {
+        int index = Arrays.binarySearch(distinctDurations, duration);
+        if (index >= 0)
+            return lookDownTable[index];
+        index = Arrays.binarySearch(timings, duration);
+        return index >= 0 ? index : null;
+    }
+
+    private int[] getFalshesOrGaps(boolean isFlash) {
+        int[] counts = isFlash ? cleanedFlashes : cleanedGaps;
+        int[] result = new int[timings.length];
+        int size = 0;
+        for (int i = 0; i < timings.length; i++)
+            if (counts[i] > 0)
+                result[size++] = timings[i];
+        return Arrays.copyOf(result, size);
+    }
+
+    private static List<Integer> toList(int[] array) {
+        List<Integer> list = new ArrayList<>(array.length);
+        for (int x : array)
+            list.add(x);
         return list;
     }
 
     public List<Integer> getGaps() {
-        return getFalshesOrGaps(false);
+        return toList(getFalshesOrGaps(false));
     }
 
     public List<Integer> getFlashes() {
-        return getFalshesOrGaps(true);
+        return toList(getFalshesOrGaps(true));
     }
 
     /**
      * @return the cleanedHistogram
      */
     public HashMap<Integer, Integer> getCleanedHistogram() {
-        HashMap<Integer, Integer> result = new LinkedHashMap<>(cleanedHistogram.size());
-        cleanedHistogram.entrySet().stream().forEach((kvp) -> {
-            result.put(kvp.getKey(), kvp.getValue().total());
-        });
+        HashMap<Integer, Integer> result = new LinkedHashMap<>(timings.length);
+        for (int i = 0; i < timings.length; i++)
+            result.put(timings[i], cleanedFlashes[i] + cleanedGaps[i]);
         return result;
     }
 
     public int getNumberGaps(int duration) {
-        return cleanedHistogram.get(duration).numberGaps;
+        return cleanedGaps[timingIndex(duration)];
     }
 
     public int getNumberFlashes(int duration) {
-        return cleanedHistogram.get(duration).numberFlashes;
+        return cleanedFlashes[timingIndex(duration)];
     }
 
     public int getNumberPairs(int flash, int gap) {
@@ -284,35 +407,45 @@ public class Cleaner {
         if (igap == null || iflash == null)
             throw new ThisCannotHappenException();
 
-        int result = 0;
-        for (int i = 0; i < indexData.length - 1; i += 2)
-            if (indexData[i] == iflash && indexData[i + 1] == igap)
-                result++;
-
-        return result;
+        int index = Arrays.binarySearch(distinctPairs, pairKey(iflash, igap));
+        return index >= 0 ? pairCounts[index] : 0;
     }
 
     private void createSortedGapsAndFlashes() {
         gapsSortedAfterFrequency = getFalshesOrGaps(false);
-        Collections.sort(gapsSortedAfterFrequency,    (a, b) -> cleanedHistogram.get(b).numberGaps    - cleanedHistogram.get(a).numberGaps);
+        sortAfterFrequency(gapsSortedAfterFrequency, cleanedGaps);
         flashesSortedAfterFrequency = getFalshesOrGaps(true);
-        Collections.sort(flashesSortedAfterFrequency, (a, b) -> cleanedHistogram.get(b).numberFlashes - cleanedHistogram.get(a).numberFlashes);
+        sortAfterFrequency(flashesSortedAfterFrequency, cleanedFlashes);
+    }
+
+    // Stable insertion sort, most frequent first; the arrays are short.
+    private void sortAfterFrequency(int[] durations, int[] counts) {
+        for (int i = 1; i < durations.length; i++) {
+            int duration = durations[i];
+            int count = counts[timingIndex(duration)];
+            int j = i - 1;
+            while (j >= 0 && counts[timingIndex(durations[j])] < count) {
+                durations[j + 1] = durations[j];
+                j--;
+            }
+            durations[j + 1] = duration;
+        }
     }
 
     public int getGapsSortedAfterFrequency(int i) {
-        return gapsSortedAfterFrequency.get(i);
+        return gapsSortedAfterFrequency[i];
     }
 
     public int getFlashesSortedAfterFrequency(int i) {
-        return flashesSortedAfterFrequency.get(i);
+        return flashesSortedAfterFrequency[i];
     }
 
     public int getNumberOfGaps() {
-        return gapsSortedAfterFrequency.size();
+        return gapsSortedAfterFrequency.length;
     }
 
     public int getNumberOfFlashes() {
-        return flashesSortedAfterFrequency.size();
+        return flashesSortedAfterFrequency.length;
     }
 
     protected int getSequenceBegin(int n) {
@@ -347,7 +480,7 @@ public class Cleaner {
     }
 
     public int getCleanedTime(int i) {
-        return timings.get(indexData[i]);
+        return timings[indexData[i]];
     }
 
     public int getNoSequences() {
@@ -355,19 +488,20 @@ public class Cleaner {
     }
 
     protected int getTimeBaseFromData(double relativeTolerance) {
-        Integer min = timings.get(0);
+        int min = timings[0];
         if (min == 0)
             throw new ThisCannotHappenException("min == 0");
-        List<Integer> list = new ArrayList<>(timings.size());
-        StringBuilder str = new StringBuilder(5*timings.size());
-        timings.forEach((time) -> {
-            int numberOccurances = cleanedHistogram.get(time).total();
+        List<Integer> list = new ArrayList<>(timings.length);
+        StringBuilder str = new StringBuilder(5*timings.length);
+        for (int i = 0; i < timings.length; i++) {
+            int time = timings[i];
+            int numberOccurances = cleanedFlashes[i] + cleanedGaps[i];
             int span = time/min;
             if (numberOccurances > 1 && span <= MAXSPAN) {
                 list.add(time);
                 str.append(" ").append(time);
             }
-        });
+        }
         if (list.isEmpty()) {
             logger.log(Level.FINE, "Cannot find a sensible time base");
             return 1;
@@ -376,40 +510,4 @@ public class Cleaner {
         logger.log(Level.FINER, "Computing GCD of {0} to {1}", new Object[]{str.toString(), gcd});
         return gcd;
     }
-
-    private static class HistoPair {
-
-        int numberGaps;
-        int numberFlashes;
-
-        HistoPair() {
-            numberGaps = 0;
-            numberFlashes = 0;
-        }
-
-        int get(boolean isFlash) {
-            return isFlash ? numberFlashes : numberGaps;
-        }
-
-        void increment(boolean isFlash) {
-            if (isFlash)
-                numberFlashes++;
-            else
-                numberGaps++;
-        }
-
-        int total() {
-            return numberFlashes + numberGaps;
-        }
-
-        @Override
-        public String toString() {
-            return total() + "=" + numberGaps + "+" + numberFlashes;
-        }
-
-        private void add(HistoPair op) {
-            numberGaps += op.numberGaps;
-            numberFlashes += op.numberFlashes;
-        }
-    }
 }
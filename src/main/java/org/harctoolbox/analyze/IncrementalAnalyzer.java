@@ -0,0 +1,211 @@
+/*
+Copyright (C) 2019 Bengt Martensson.
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation; either version 3 of the License, or (at
+your option) any later version.
+
+This program is distributed in the hope that it will be useful, but
+WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+General Public License for more details.
+
+You should have received a copy of the GNU General Public License along with
+this program. If not, see http://www.gnu.org/licenses/.
+*/
+
+package org.harctoolbox.analyze;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.harctoolbox.ircore.InvalidArgumentException;
+import org.harctoolbox.ircore.IrSequence;
+import org.harctoolbox.irp.Protocol;
+
+/**
+ * Analyzer that accepts its sequences one at a time, for example as the buttons of a remote are learned.
+ * For every new sequence, the timings and bursts of the underlying {@link Analyzer} are updated in place,
+ * and the decoders are run on the new sequence only.
+ * Since the timings are computed from all the sequences, the analysis of the previously added sequences may thereby
+ * become outdated; this is brought up to date by {@link #update()}. A previously added sequence is then run through a decoder again
+ * only if its cleaned durations have changed, or if the decoder has changed, i.e., if its parameters derived from the timings
+ * and bursts, like the time base and the bit spec, are not the same as before.
+ * The result is always the same as from an Analyzer constructed from all the sequences.
+ *
+ * Not thread safe.
+ */
+public final class IncrementalAnalyzer {
+
+    private static final Logger logger = Logger.getLogger(IncrementalAnalyzer.class.getName());
+
+    private final Double frequency;
+    private final boolean invokeRepeatFinder;
+    private final Double absoluteTolerance;
+    private final Double relativeTolerance;
+    private final Analyzer.AnalyzerParams params;
+    private final List<Class<?>> decoderClasses;
+    private Analyzer analyzer;
+    private final AbstractDecoder[] decoders;
+    private final List<Protocol[]> results; // indexed as decoderClasses, null if the decoder failed
+    private final List<BitSet> outdated; // decoders to run again
+    private final List<List<Protocol>> protocols;
+    private final List<Protocol> bestProtocols;
+    private int noDecodings;
+
+    /**
+     * @param frequency
+     * @param invokeRepeatFinder
+     * @param absoluteTolerance
+     * @param relativeTolerance
+     * @param params
+     * @param decoderPattern Selects the decoders to use, as in {@link Analyzer#searchBestProtocol(Analyzer.AnalyzerParams, String, boolean)}; null for all.
+     * @param regexp
+     * @throws NoDecoderMatchException
+     */
+    public IncrementalAnalyzer(Double frequency, boolean invokeRepeatFinder, Double absoluteTolerance, Double relativeTolerance,
+            Analyzer.AnalyzerParams params, String decoderPattern, boolean regexp) throws NoDecoderMatchException {
+        this(frequency, invokeRepeatFinder, absoluteTolerance, relativeTolerance, params, Analyzer.selectDecoderClasses(decoderPattern, regexp));
+    }
+
+    public IncrementalAnalyzer(Double frequency, boolean invokeRepeatFinder, Analyzer.AnalyzerParams params) {
+        this(frequency, invokeRepeatFinder, null, null, params, Arrays.asList(AbstractDecoder.decoders));
+    }
+
+    private IncrementalAnalyzer(Double frequency, boolean invokeRepeatFinder, Double absoluteTolerance, Double relativeTolerance,
+            Analyzer.AnalyzerParams params, List<Class<?>> decoderClasses) {
+        this.frequency = frequency;
+        this.invokeRepeatFinder = invokeRepeatFinder;
+        this.absoluteTolerance = absoluteTolerance;
+        this.relativeTolerance = relativeTolerance;
+        this.params = params;
+        this.decoderClasses = decoderClasses;
+        this.analyzer = null;
+        this.decoders = new AbstractDecoder[decoderClasses.size()];
+        this.results = new ArrayList<>(16);
+        this.outdated = new ArrayList<>(16);
+        this.protocols = new ArrayList<>(16);
+        this.bestProtocols = new ArrayList<>(16);
+        this.noDecodings = 0;
+    }
+
+    /**
+     * Adds a sequence, and analyzes it.
+     * The analysis of the previously added sequences is not brought up to date; use {@link #update()} for this.
+     * @param irSequence
+     * @return the best protocol for the new sequence, or null if no decoder succeeded.
+     * @throws InvalidArgumentException
+     */
+    public Protocol add(IrSequence irSequence) throws InvalidArgumentException {
+        BitSet changed;
+        if (analyzer == null) {
+            analyzer = new Analyzer(irSequence, frequency, invokeRepeatFinder, absoluteTolerance, relativeTolerance);
+            changed = new BitSet(0);
+        } else
+            changed = analyzer.add(irSequence);
+
+        BitSet changedDecoders = new BitSet(decoders.length);
+        for (int j = 0; j < decoders.length; j++) {
+            AbstractDecoder decoder = analyzer.newDecoder(decoderClasses.get(j), params);
+            if (decoder == null ? decoders[j] != null : !decoder.isEquivalent(decoders[j]))
+                changedDecoders.set(j);
+            decoders[j] = decoder;
+        }
+        logger.log(Level.FINE, "Sequence {0} added; {1} previous sequences and {2} decoders changed",
+                new Object[]{results.size(), changed.cardinality(), changedDecoders.cardinality()});
+
+        for (int i = 0; i < results.size(); i++) {
+            if (changed.get(i))
+                outdated.get(i).set(0, decoders.length);
+            else
+                outdated.get(i).or(changedDecoders);
+        }
+
+        int number = results.size();
+        results.add(new Protocol[decoders.length]);
+        protocols.add(null);
+        bestProtocols.add(null);
+        BitSet all = new BitSet(decoders.length);
+        all.set(0, decoders.length);
+        outdated.add(all);
+        analyze(number);
+        return bestProtocols.get(number);
+    }
+
+    /**
+     * Brings the analysis of the previously added sequences up to date,
+     * by running the outdated decoders on them.
+     * @return the sequences whose best protocol has changed.
+     */
+    public BitSet update() {
+        BitSet changed = new BitSet(results.size());
+        for (int i = 0; i < results.size(); i++) {
+            if (outdated.get(i).isEmpty())
+                continue;
+            Protocol old = bestProtocols.get(i);
+            analyze(i);
+            if (!Objects.equals(old, bestProtocols.get(i)))
+                changed.set(i);
+        }
+        return changed;
+    }
+
+    private void analyze(int number) {
+        Protocol[] array = results.get(number);
+        BitSet selected = outdated.get(number);
+        for (int j = selected.nextSetBit(0); j >= 0; j = selected.nextSetBit(j + 1)) {
+            array[j] = decoders[j] != null ? analyzer.searchProtocol(decoders[j], number) : null;
+            noDecodings++;
+        }
+        selected.clear();
+
+        List<Protocol> list = new ArrayList<>(decoders.length);
+        for (Protocol protocol : array)
+            if (protocol != null)
+                list.add(protocol);
+        protocols.set(number, list);
+        bestProtocols.set(number, Analyzer.selectBestProtocol(list));
+    }
+
+    /**
+     * Brings the analysis up to date, and returns the best protocols.
+     * @return the best protocol for each of the sequences added, with null for the sequences where no decoder succeeded.
+     */
+    public List<Protocol> getBestProtocols() {
+        update();
+        return Collections.unmodifiableList(bestProtocols);
+    }
+
+    /**
+     * Brings the analysis up to date, and returns all the protocols found.
+     * @return For each of the sequences added, the protocols found by the decoders.
+     */
+    public List<List<Protocol>> getAllProtocols() {
+        update();
+        return Collections.unmodifiableList(protocols);
+    }
+
+    /**
+     * @return the underlying Analyzer, or null if no sequence has been added.
+     */
+    public Analyzer getAnalyzer() {
+        return analyzer;
+    }
+
+    public int getNoSequences() {
+        return protocols.size();
+    }
+
+    /**
+     * @return the number of times a sequence has been run through a decoder.
+     */
+    public int getNoDecodings() {
+        return noDecodings;
+    }
+}
@@ -18,6 +18,7 @@ this program. If not, see http://www.gnu.org/licenses/.
 package org.harctoolbox.analyze;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import org.harctoolbox.ircore.IrCoreUtils;
 import org.harctoolbox.irp.BareIrStream;
@@ -51,6 +52,12 @@ public abstract class PwmDecoder extends AbstractDecoder {
         bitSpec = mkBitSpec(bursts, timebase, params.getBurstPrefs());
     }
 
+    @Override
+    boolean isEquivalent(AbstractDecoder decoder) {
+        return super.isEquivalent(decoder)
+                && Arrays.equals(bursts, ((PwmDecoder) decoder).bursts);
+    }
+
     public boolean hasDistinctFlashesInBursts() {
         return distinctFlashesInBursts;
     }
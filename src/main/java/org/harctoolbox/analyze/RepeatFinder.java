@@ -17,6 +17,7 @@ this program. If not, see http://www.gnu.org/licenses/.
 
 package org.harctoolbox.analyze;
 
+import java.util.Arrays;
 import org.harctoolbox.ircore.InvalidArgumentException;
 import org.harctoolbox.ircore.IrCoreUtils;
 import org.harctoolbox.ircore.IrSequence;
@@ -26,6 +27,8 @@ import org.harctoolbox.ircore.OddSequenceLengthException;
 import org.harctoolbox.ircore.ThisCannotHappenException;
 
 public final class RepeatFinder {
+    private static final double ROUNDING_MARGIN = 0.001;
+
     private static double defaultMinRepeatLastGap  = IrCoreUtils.DEFAULT_MIN_REPEAT_LAST_GAP;
     private static double defaultRelativeTolerance = IrCoreUtils.DEFAULT_RELATIVE_TOLERANCE;
     private static double defaultAbsoluteTolerance = IrCoreUtils.DEFAULT_ABSOLUTE_TOLERANCE;
@@ -91,6 +94,7 @@ public final class RepeatFinder {
     private double absoluteTolerance;
     private double minRepeatLastGap;
     private IrSequence irSequence;
+    private double[] data;
     private RepeatFinderData repeatFinderData;
 
     public RepeatFinder(IrSequence irSequence, Double absoluteTolerance, Double relativeTolerance, Double minRepeatLastGap) {
@@ -118,46 +122,154 @@ public final class RepeatFinder {
         this(new IrSequence(data), defaultAbsoluteTolerance, defaultRelativeTolerance);
     }
 
+    /**
+     * Finds the repeat with the longest total duration, preferring, among equally long, the longest repeat length,
+     * and then the earliest beginning.
+     * For every repeat length, only beginnings where the repeat ends with a sufficiently long gap are considered.
+     * For these, the number of repeats is determined for all beginnings simultaneously, one offset at the time.
+     * When many beginnings are still in the game, the lengths of the runs of matching durations at the current offset
+     * are computed for the whole sequence in one linear pass,
+     * making the comparison of a repeat a simple table lookup, instead of a loop.
+     * The result is the same as comparing every candidate with every later subsequence, just much faster.
+     */
     private void analyze() {
+        data = irSequence.toDoubles();
+        int[] bigGaps = bigGaps();
+        int[] beginnings = new int[bigGaps.length];
+        int[] hits = new int[bigGaps.length];
+        int[] runs = new int[data.length + 1];
+        double[] cumulated = cumulatedDurations();
         RepeatFinderData candidate = new RepeatFinderData(irSequence.getLength());
         for (int length = irSequence.getLength() / 4; length >= 2; length--) {
-            for (int beginning = 0; beginning < irSequence.getLength() / 2 - length; beginning++) {
-                RepeatFinderData newCandidate;
-                try {
-                    newCandidate = countRepeats(2*beginning, 2*length);
-                } catch (OddSequenceLengthException ex) {
-                    throw new ThisCannotHappenException();
+            int size = 0;
+            for (int gap : bigGaps) {
+                int beginning = gap + 1 - 2 * length;
+                if (beginning >= 0 && beginning / 2 < irSequence.getLength() / 2 - length) {
+                    beginnings[size] = beginning;
+                    hits[size] = 1;
+                    size++;
+                }
+            }
+            countRepeats(beginnings, hits, size, 2 * length, runs);
+            for (int i = 0; i < size; i++) {
+                if (hits[i] > 1) {
+                    RepeatFinderData newCandidate = newRepeatFinderData(beginnings[i], 2 * length, hits[i], cumulated, candidate.repeatsDuration - 0.1);
+                    if (newCandidate != null)
+                        candidate = newCandidate;
                 }
-                if (newCandidate.numberRepeats > 1
-                        && newCandidate.lastGap > minRepeatLastGap
-                        && newCandidate.repeatsDuration > candidate.repeatsDuration - 0.1)
-                    candidate = newCandidate;
             }
         }
         repeatFinderData = candidate;
     }
 
-    private RepeatFinderData countRepeats(int beginning, int length) throws OddSequenceLengthException {
-        RepeatFinderData result = new RepeatFinderData(beginning, length, 0, 0);
-        result.lastGap = Math.abs(irSequence.get(beginning + length - 1));
-        if (result.lastGap < minRepeatLastGap)
-            return result; // will be rejected anyhow, save some computations
-        for (int hits = 1;; hits++) {
-            boolean hit = compareSubSequences(beginning, beginning + hits*length, length);
-            if (!hit) {
-                result.numberRepeats = hits;
-                result.endingLength = irSequence.getLength() - beginning - hits*length;
-                result.repeatsDuration = irSequence.getTotalDuration(beginning, hits*length);
-                return result;
+    private int[] bigGaps() {
+        int[] result = new int[data.length / 2];
+        int size = 0;
+        for (int i = 1; i < data.length; i += 2)
+            if (Math.abs(data[i]) > minRepeatLastGap) // otherwise it would be rejected as last gap of a repeat anyhow
+                result[size++] = i;
+        return Arrays.copyOf(result, size);
+    }
+
+    private double[] cumulatedDurations() {
+        double[] result = new double[data.length + 1];
+        for (int i = 0; i < data.length; i++)
+            result[i + 1] = result[i] + Math.abs(data[i]);
+        return result;
+    }
+
+    /**
+     * Counts the number of consecutive occurrences of the subsequences of the length given, starting at the beginnings given.
+     * On entry, all hits are 1; on exit, they contain the number of repeats.
+     * For every offset, the subsequences are first compared directly; when the work spent exceeds a linear pass,
+     * the runs for the offset are computed, and used for the remaining comparisons.
+     */
+    private void countRepeats(int[] beginnings, int[] hits, int size, int length, int[] runs) {
+        int active = size;
+        for (int repeat = 1; active > 0; repeat++) {
+            int offset = repeat * length;
+            boolean useRuns = false;
+            long work = 0L;
+            active = 0;
+            for (int i = 0; i < size; i++) {
+                if (hits[i] != repeat)
+                    continue;
+                int beginning = beginnings[i];
+                int compareStart = beginning + offset;
+                if (compareStart + length > data.length)
+                    continue;
+
+                if (!useRuns && work > data.length - offset) {
+                    computeRuns(offset, runs);
+                    useRuns = true;
+                }
+                boolean specialTreatment = compareStart + length == data.length && minRepeatLastGap > 0;
+                int wanted = specialTreatment ? length - 1 : length;
+                int run = useRuns ? runs[beginning] : run(beginning, compareStart, wanted);
+                work += run + 1;
+                if (run >= wanted && (!specialTreatment || lastApproximatelyEquals(beginning + length - 1))) {
+                    hits[i]++;
+                    active++;
+                }
             }
         }
     }
 
-    private boolean compareSubSequences(int beginning, int compareStart, int length) {
-        if (compareStart + length > irSequence.getLength())
-            return false;
+    /**
+     * Computes, for every position, the number of consecutive durations from that position that equals the durations
+     * offset positions later.
+     */
+    private void computeRuns(int offset, int[] runs) {
+        runs[data.length - offset] = 0;
+        for (int i = data.length - offset - 1; i >= 0; i--)
+            runs[i] = approximatelyEquals(data[i], data[i + offset]) ? runs[i + 1] + 1 : 0;
+    }
+
+    // Number of consecutive equal durations starting at beginning and compareStart respectively, at most max.
+    private int run(int beginning, int compareStart, int max) {
+        for (int i = 0; i < max; i++)
+            if (!approximatelyEquals(data[beginning + i], data[compareStart + i]))
+                return i;
+        return max;
+    }
+
+    private boolean lastApproximatelyEquals(int index) {
+        double last = data[data.length - 1];
+        return approximatelyEquals(data[index], last) || (data[index] >= minRepeatLastGap && last >= minRepeatLastGap);
+    }
+
+    // Same as IrCoreUtils.approximatelyEquals, without the boxing.
+    private boolean approximatelyEquals(double x, double y) {
+        double absDiff = Math.abs(x - y);
+        if (absDiff <= absoluteTolerance)
+            return true;
+
+        double max = Math.max(Math.abs(x), Math.abs(y));
+        return max >= 1 && absDiff / max <= relativeTolerance;
+    }
+
+    /**
+     * Returns a RepeatFinderData for the repeat given, if its total duration exceeds the limit, otherwise null.
+     * The cumulated durations are used for the comparison, unless it is too close to call;
+     * the duration is then computed exactly like IrSequence.getTotalDuration does.
+     */
+    private RepeatFinderData newRepeatFinderData(int beginning, int length, int numberRepeats, double[] cumulated, double limit) {
+        double approximateDuration = cumulated[beginning + numberRepeats * length] - cumulated[beginning];
+        if (approximateDuration < limit - ROUNDING_MARGIN)
+            return null;
 
-        return irSequence.approximatelyEquals(beginning, compareStart, length, absoluteTolerance, relativeTolerance, minRepeatLastGap);
+        double repeatsDuration = irSequence.getTotalDuration(beginning, numberRepeats * length);
+        if (!(repeatsDuration > limit))
+            return null;
+
+        try {
+            RepeatFinderData result = new RepeatFinderData(beginning, length, numberRepeats, irSequence.getLength() - beginning - numberRepeats * length);
+            result.lastGap = Math.abs(data[beginning + length - 1]);
+            result.repeatsDuration = repeatsDuration;
+            return result;
+        } catch (OddSequenceLengthException ex) {
+            throw new ThisCannotHappenException();
+        }
     }
 
     /**
@@ -19,6 +19,7 @@ package org.harctoolbox.cmdline;
 
 import com.beust.jcommander.Parameter;
 import com.beust.jcommander.Parameters;
+import java.io.File;
 import java.io.IOException;
 import java.io.PrintStream;
 import java.util.ArrayList;
@@ -36,6 +37,7 @@ import org.harctoolbox.ircore.IrSequence;
 import org.harctoolbox.ircore.IrSignal;
 import org.harctoolbox.ircore.ModulatedIrSequence;
 import org.harctoolbox.ircore.MultiParser;
+import org.harctoolbox.ircore.SignalStore;
 import org.harctoolbox.ircore.ThingsLineParser;
 import org.harctoolbox.ircore.ThisCannotHappenException;
 import org.harctoolbox.ircore.XmlUtils;
@@ -110,6 +112,9 @@ public class CommandAnalyze extends AbstractCommand {
     @Parameter(names = {"-p", "--parametertable"}, description = "Create parameter table.")
     private boolean parameterTable = false;
 
+    @Parameter(names = {"--parallel"}, description = "Try the decoders on the sequences in parallel, using all processors.")
+    private boolean parallel = false;
+
     @Parameter(names = {"-u", "--maxmicroseconds"}, description = "Maximal duration to be expressed as micro seconds.")
     private double maxMicroSeconds = Burst.Preferences.DEFAULT_MAX_MICROSECONDS;
 
@@ -134,6 +139,9 @@ public class CommandAnalyze extends AbstractCommand {
     @Parameter(names = {"-s", "--statistics"}, description = "Print some statistics.")
     private boolean statistics = false;
 
+    @Parameter(names = {"--store"}, description = "Signal store file from which to take the inputs.")
+    private String store = null;
+
     @Parameter(names = {"-t", "--timebase"}, description = "Force time unit , in microseconds (no suffix), or in periods (with suffix \"p\").")
     private String timeBase = null;
 
@@ -162,6 +170,8 @@ public class CommandAnalyze extends AbstractCommand {
                 + "Using the option --input, instead the content of a file can be taken as input, containing sequences to be analyzed, "
                 + "one per line, blank lines ignored. "
                 + "Using the option --namedinput, the sequences may have names, immediately preceeding the signal. "
+                + "Using the option --store, the sequences are read from a binary signal store; "
+                + "intro, repeat, and ending of every signal are concatenated into one sequence. "
                 + "\n\n"
                 + "Input sequences can be pre-processed using the options --chop, --clean, and --repeatfinder. "
                 + "\n\n"
@@ -222,8 +232,8 @@ public class CommandAnalyze extends AbstractCommand {
             if (parameterTable && eliminateVars)
                 throw new UsageException("Parameter table is meaninless together with --eliminate-vars");
 
-            if (IrCoreUtils.numberTrue(input != null, namedInput != null, args != null) != 1)
-                throw new UsageException("Must use exactly one of --input, --namedinput, and non-empty arguments");
+            if (IrCoreUtils.numberTrue(input != null, namedInput != null, store != null, args != null) != 1)
+                throw new UsageException("Must use exactly one of --input, --namedinput, --store, and non-empty arguments");
 
             if (input != null) {
                 ThingsLineParser<ModulatedIrSequence> irSignalParser = new ThingsLineParser<>(
@@ -243,6 +253,25 @@ public class CommandAnalyze extends AbstractCommand {
                 if (signals.isEmpty())
                     throw new InvalidArgumentException("No parseable sequences found.");
                 analyze(signals);
+            } else if (store != null) {
+                List<ModulatedIrSequence> modSeqs = new ArrayList<>(16);
+                Map<String, ModulatedIrSequence> signals = new LinkedHashMap<>(16);
+                try (SignalStore signalStore = new SignalStore(new File(store))) {
+                    for (SignalStore.Record record : signalStore) {
+                        ModulatedIrSequence modulatedIrSequence = record.toModulatedIrSequence();
+                        modSeqs.add(modulatedIrSequence);
+                        String name = record.getName();
+                        if (name != null)
+                            signals.put(name, modulatedIrSequence);
+                    }
+                }
+                if (modSeqs.isEmpty())
+                    throw new InvalidArgumentException("No sequences found in store.");
+                // Use the names only if all signals have one
+                if (signals.size() == modSeqs.size())
+                    analyze(signals);
+                else
+                    analyze(modSeqs, ModulatedIrSequence.frequencyAverage(modSeqs));
             } else {
                 MultiParser parser = MultiParser.newIrCoreParser(args);
                 if (introRepeatEnding) {
@@ -331,6 +360,7 @@ public class CommandAnalyze extends AbstractCommand {
                     lsb ? BitDirection.lsb : BitDirection.msb,
                     extent, parameterWidths, maxParameterWidth, invert,
                     burstPrefs, parameterNames);
+            params.setParallel(parallel);
 
             if (statistics) {
                 analyzer.printStatistics(out, params);
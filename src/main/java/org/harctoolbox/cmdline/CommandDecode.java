@@ -18,14 +18,20 @@ package org.harctoolbox.cmdline;
 
 import com.beust.jcommander.Parameter;
 import com.beust.jcommander.Parameters;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
 import java.io.IOException;
 import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.io.UnsupportedEncodingException;
+import java.util.AbstractMap;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import java.util.stream.Stream;
 import org.harctoolbox.analyze.Cleaner;
 import org.harctoolbox.analyze.RepeatFinder;
 import org.harctoolbox.ircore.InvalidArgumentException;
@@ -33,7 +39,10 @@ import org.harctoolbox.ircore.IrCoreUtils;
 import org.harctoolbox.ircore.IrSignal;
 import org.harctoolbox.ircore.ModulatedIrSequence;
 import org.harctoolbox.ircore.MultiParser;
+import org.harctoolbox.ircore.SignalStore;
 import org.harctoolbox.ircore.ThingsLineParser;
+import org.harctoolbox.irp.DecodeCache;
+import org.harctoolbox.irp.DecodeTrace;
 import org.harctoolbox.irp.Decoder;
 import org.harctoolbox.irp.ElementaryDecode;
 import org.harctoolbox.irp.IrpDatabase;
@@ -49,6 +58,12 @@ public class CommandDecode extends AbstractCommand {
     @Parameter(names = {"-a", "--all", "--no-prefer-over"}, description = "Output all decodes; ignore prefer-over.")
     private boolean noPreferOver = false;
 
+    @Parameter(names = {"--beam-width"}, description = "With --recursive: follow only this many of the best decodes at every position; 0 for no limit.")
+    private int beamWidth = 0;
+
+    @Parameter(names = {"--cache"}, description = "Cache the decodes of up to this many different signals; 0 for no cache.")
+    private int cache = 0;
+
 //        @Parameter(names = { "-c", "--chop"}, description = "Chop input sequence into several using threshold (in milliseconds) given as argument.")
 //        private Integer chop = null;
     @Parameter(names = {"-c", "--clean"}, description = "Invoke cleaner on signal") // ignored with --repeat-finder
@@ -92,6 +107,18 @@ public class CommandDecode extends AbstractCommand {
     @Parameter(names = {"-s", "--strict"}, description = "Require intro- and repeat sequences to match exactly.")
     private boolean strict = false;
 
+    @Parameter(names = {"--store"}, description = "Signal store file from which to take the inputs.")
+    private String store = null;
+
+    @Parameter(names = {"--stream"}, description = "With --input or --namedinput: read, decode, and print the inputs one at a time, instead of reading the complete input first.")
+    private boolean stream = false;
+
+    @Parameter(names = {"--threads"}, description = "With --stream: number of inputs to decode in parallel.")
+    private int threads = 1;
+
+    @Parameter(names = {"--trace"}, description = "Print a trace of the recognition attempts of every signal (for debugging/development).")
+    private boolean trace = false;
+
     @Parameter(names = {"-T", "--trailinggap"}, description = "Trailing gap (in micro seconds) added to sequences of odd length.")
     private Double trailingGap = null;
 
@@ -112,9 +139,18 @@ public class CommandDecode extends AbstractCommand {
                 + "Using the option --input, instead the content of a file can be taken as input, containing sequences to be analyzed, "
                 + "one per line, blank lines ignored. "
                 + "Using the option --namedinput, the sequences may have names, immediately preceeding the signal. "
+                + "Using the option --store, the signals are read from a binary signal store, as written by \"render --store\". "
                 + "\n\n"
                 + "Input sequences can be pre-processed using the options --clean, and --repeatfinder. "
                 + "\n\n"
+                + "For large input files, the option --stream reads, decodes, and prints the inputs one by one, "
+                + "using bounded memory. With --threads, several inputs are decoded in parallel; "
+                + "the output is still in the order of the input. "
+                + "(With --namedinput, the names are then not aligned.) "
+                + "\n\n"
+                + "For inputs containing many repetitions of the same signals, the option --cache reuses the decodes of signals "
+                + "equal to a previous one within (half) the tolerances. The statistics of the cache are logged on level INFO. "
+                + "\n\n"
                 + "The common options --absolutetolerance --relativetolerance, --minrepeatgap determine how the repeat finder breaks the input data. ";
     }
 
@@ -141,10 +177,12 @@ public class CommandDecode extends AbstractCommand {
         private void decode() throws UsageException, IrpParseException, IOException, InvalidArgumentException {
             CmdUtils.checkForOption("decode", args);
 
-            if (IrCoreUtils.numberTrue(input != null, namedInput != null, args != null) != 1)
-                throw new UsageException("Must use exactly one of --input, --namedinput, and non-empty arguments");
+            if (IrCoreUtils.numberTrue(input != null, namedInput != null, store != null, args != null) != 1)
+                throw new UsageException("Must use exactly one of --input, --namedinput, --store, and non-empty arguments");
             if (ignoreLeadingGarbage && strict)
                 throw new UsageException("--strict and --ignoreleadinggarbage may not be used together.");
+            if (stream && (args != null || store != null))
+                throw new UsageException("--stream requires --input or --namedinput.");
 
             Decoder.setDebugProtocolRegExp(debugPattern);
             List<String> protocolNamePatterns = protocol == null ? null : Arrays.asList(protocol.split(","));
@@ -153,34 +191,96 @@ public class CommandDecode extends AbstractCommand {
                 throw new UsageException("No protocol given or matched.");
 
             decoder = new Decoder(irpDatabase, protocolsNames);
-            if (input != null) {
-                ThingsLineParser<IrSignal> irSignalParser = new ThingsLineParser<>((List<String> line) -> {
-                    return (MultiParser.newIrCoreParser(line)).toIrSignal(frequency, trailingGap);
-                }, commandLineArgs.commentStart);
+            if (cache > 0)
+                decoder.setDecodeCache(new DecodeCache(cache));
+            decodeInputs();
+            if (cache > 0)
+                logger.log(Level.INFO, "{0}", decoder.getDecodeCache());
+        }
+
+        private void decodeInputs() throws UsageException, IOException, InvalidArgumentException {
+            if (stream)
+                decodeStream();
+            else if (input != null) {
+                ThingsLineParser<IrSignal> irSignalParser = newIrSignalParser();
                 List<IrSignal> signals = irSignalParser.readThings(input, commandLineArgs.encoding, false);
                 for (IrSignal irSignal : signals)
-                    decode(irSignal, null, 0);
+                    decode(out, irSignal, null, 0);
             } else if (namedInput != null) {
-                ThingsLineParser<IrSignal> irSignalParser = new ThingsLineParser<>((List<String> line) -> {
-                    return (MultiParser.newIrCoreParser(line)).toIrSignal(frequency, trailingGap);
-                }, commandLineArgs.commentStart);
+                ThingsLineParser<IrSignal> irSignalParser = newIrSignalParser();
                 Map<String, IrSignal> signals = irSignalParser.readNamedThings(namedInput, commandLineArgs.encoding);
                 int maxNameLength = IrCoreUtils.maxLength(signals.keySet());
                 for (Map.Entry<String, IrSignal> kvp : signals.entrySet())
-                    decode(kvp.getValue(), kvp.getKey(), maxNameLength);
+                    decode(out, kvp.getValue(), kvp.getKey(), maxNameLength);
+            } else if (store != null) {
+                try (SignalStore signalStore = new SignalStore(new File(store))) {
+                    for (SignalStore.Record record : signalStore) {
+                        String name = record.getName();
+                        decode(out, record.toIrSignal(), name, name != null ? name.length() : 0);
+                    }
+                }
             } else {
                 MultiParser prontoRawParser = MultiParser.newIrCoreParser(args);
                 IrSignal irSignal = prontoRawParser.toIrSignal(frequency, trailingGap);
                 if (irSignal == null)
                     throw new UsageException("Could not parse as IrSignal: " + String.join(" ", args));
-                decode(irSignal, null, 0);
+                decode(out, irSignal, null, 0);
             }
         }
 
-        private void decode(IrSignal irSig, String name, int maxNameLength) throws InvalidArgumentException {
+        private ThingsLineParser<IrSignal> newIrSignalParser() {
+            return new ThingsLineParser<>((List<String> line) -> {
+                return (MultiParser.newIrCoreParser(line)).toIrSignal(frequency, trailingGap);
+            }, commandLineArgs.commentStart);
+        }
+
+        /**
+         * Reads, decodes, and prints the signals one by one. Every signal is decoded into its own buffer,
+         * possibly in a separate thread; the buffers are printed in the order of the input.
+         */
+        private void decodeStream() throws IOException, InvalidArgumentException {
+            ThingsLineParser<IrSignal> irSignalParser = newIrSignalParser();
+            Stream<Map.Entry<String, IrSignal>> signals = input != null
+                    ? irSignalParser.streamThings(input, commandLineArgs.encoding, false).map((IrSignal irSignal) -> new AbstractMap.SimpleImmutableEntry<>((String) null, irSignal))
+                    : irSignalParser.streamNamedThings(namedInput, commandLineArgs.encoding);
+            try (Stream<String> outputs = IrCoreUtils.mapOrdered(signals, this::decodeToString, threads)) {
+                outputs.forEachOrdered((String output) -> {
+                    out.print(output);
+                });
+            } catch (UncheckedIOException ex) {
+                throw ex.getCause();
+            } catch (UncheckedInvalidArgumentException ex) {
+                throw ex.getCause();
+            }
+        }
+
+        private String decodeToString(Map.Entry<String, IrSignal> kvp) {
+            try {
+                ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+                try (PrintStream printStream = new PrintStream(byteArrayOutputStream, false, commandLineArgs.encoding)) {
+                    String name = kvp.getKey();
+                    decode(printStream, kvp.getValue(), name, name != null ? name.length() : 0);
+                }
+                return byteArrayOutputStream.toString(commandLineArgs.encoding);
+            } catch (UnsupportedEncodingException ex) {
+                throw new UncheckedIOException(ex);
+            } catch (InvalidArgumentException ex) {
+                throw new UncheckedInvalidArgumentException(ex);
+            }
+        }
+
+        private void decode(PrintStream out, IrSignal irSig, String name, int maxNameLength) throws InvalidArgumentException {
             Objects.requireNonNull(irSig, "irSignal must be non-null");
             IrSignal irSignal = frequency != null ? new IrSignal(irSig, frequency) : irSig;
             Decoder.AbstractDecodesCollection<? extends ElementaryDecode> decodes;
+            Decoder.DecoderParameters params = decoderParams;
+            DecodeTrace decodeTrace = null;
+            if (trace) {
+                // decoderParams is shared between threads; use a copy with a trace of its own
+                params = decoderParams.adjust(false, null, null, null, null);
+                decodeTrace = new DecodeTrace();
+                params.setTrace(decodeTrace);
+            }
 
             if (cleaner) {
                 irSignal = Cleaner.clean(irSignal, commandLineArgs.absoluteTolerance, commandLineArgs.relativeTolerance);
@@ -196,23 +296,40 @@ public class CommandDecode extends AbstractCommand {
                     out.println("RepeatReduced: " + fixedIrSignal);
                     out.println("RepeatData: " + repeatFinder.getRepeatFinderData());
                 }
-                decodes = decoder.decodeIrSignal(fixedIrSignal, decoderParams);
+                decodes = decoder.decodeIrSignal(fixedIrSignal, params);
             } else
-                decodes = decoder.decodeLoose(irSignal, decoderParams);
+                decodes = decoder.decodeLoose(irSignal, params);
 
-            printDecodes(decodes, name, maxNameLength);
+            printDecodes(out, decodes, name, maxNameLength);
+            if (decodeTrace != null)
+                decodeTrace.dump(out);
         }
 
         private Decoder.DecoderParameters newDecoderParameters() {
-            return new Decoder.DecoderParameters(strict, noPreferOver,
+            Decoder.DecoderParameters params = new Decoder.DecoderParameters(strict, noPreferOver,
                     !keepDefaultedParameters, recursive, commandLineArgs.frequencyTolerance,
                     commandLineArgs.absoluteTolerance, commandLineArgs.relativeTolerance, commandLineArgs.minLeadout, commandLineArgs.override, ignoreLeadingGarbage);
+            params.setBeamWidth(beamWidth);
+            return params;
         }
 
-        private void printDecodes(Decoder.AbstractDecodesCollection<? extends ElementaryDecode> decodes, String name, int maxNameLength) {
+        private void printDecodes(PrintStream out, Decoder.AbstractDecodesCollection<? extends ElementaryDecode> decodes, String name, int maxNameLength) {
             if (name != null)
                 out.print(name + ":" + (commandLineArgs.tsvOptimize ? "\t" : IrCoreUtils.spaces(maxNameLength - name.length() + 1)));
             decodes.println(out, radix, commandLineArgs.tsvOptimize ? "\t" : " ", commandLineArgs.quiet);
         }
     }
+
+    // Carries an InvalidArgumentException out of the stream of decodes, like UncheckedIOException for IOException.
+    private static final class UncheckedInvalidArgumentException extends RuntimeException {
+
+        UncheckedInvalidArgumentException(InvalidArgumentException cause) {
+            super(cause);
+        }
+
+        @Override
+        public synchronized InvalidArgumentException getCause() {
+            return (InvalidArgumentException) super.getCause();
+        }
+    }
 }
@@ -18,6 +18,7 @@ package org.harctoolbox.cmdline;
 
 import com.beust.jcommander.Parameter;
 import com.beust.jcommander.Parameters;
+import java.io.File;
 import java.io.IOException;
 import java.io.PrintStream;
 import java.util.ArrayList;
@@ -29,6 +30,7 @@ import org.harctoolbox.ircore.IrSignal;
 import org.harctoolbox.ircore.ModulatedIrSequence;
 import org.harctoolbox.ircore.OddSequenceLengthException;
 import org.harctoolbox.ircore.Pronto;
+import org.harctoolbox.ircore.SignalStore;
 import org.harctoolbox.irp.Decoder;
 import org.harctoolbox.irp.DomainViolationException;
 import org.harctoolbox.irp.InvalidNameException;
@@ -79,6 +81,9 @@ public class CommandRender extends AbstractCommand {
     @Parameter(names = {"--number-repeats"}, description = "Generate an IR sequence containing the given number of repeats")
     private Integer numberRepeats = null;
 
+    @Parameter(names = {"--store"}, description = "Also write the rendered signals to a signal store file with the given name.")
+    private String store = null;
+
     @Parameter(description = "protocol(s) or pattern (default all)"/*, required = true*/)
     private List<String> protocols = new ArrayList<>(0);
 
@@ -92,6 +97,9 @@ public class CommandRender extends AbstractCommand {
                 + "or the --random option can be used to generate random, but valid parameters"
                 + "With the --count or --number-repeats option, instead an IR sequence is computed,"
                 + "containing the desired number of repeats.\n\n"
+                + "With the --store option, the rendered signals are in addition written to a binary signal store, "
+                + "with the protocol name as name, and the parameters as decode. "
+                + "Such a file can be read by the decode and analyze commands.\n\n"
                 + "The syntax of the name engine is as in the IRP specification, for example: --nameengine {D=12,F=34}. "
                 + "For convenience, the braces may be left out. Space around the equal sign \"=\" and "
                 + "around the comma \",\" is allowed, as long as the name engine is still only one argument in the sense of the shell -- "
@@ -108,6 +116,7 @@ public class CommandRender extends AbstractCommand {
         private final PrintStream out;
         private final CommandCommonOptions commandLineArgs;
         private final IrpDatabase irpDatabase;
+        private SignalStore.Writer storeWriter;
 
         private Renderer(PrintStream printStream, IrpDatabase irpDatabase, CommandCommonOptions commonOptions) {
             this.irpDatabase = irpDatabase;
@@ -126,14 +135,20 @@ public class CommandRender extends AbstractCommand {
             List<String> list = irpDatabase.evaluateProtocols(protocols, commandLineArgs.sort, commandLineArgs.regexp, commandLineArgs.urlDecode);
             if (list.isEmpty())
                 throw new UsageException("No protocol matched.");
-            for (String proto : list) {
-                //logger.info(proto);
-                NamedProtocol protocol = irpDatabase.getNamedProtocolExpandAlias(proto);
-                render(protocol);
+            storeWriter = store != null ? new SignalStore.Writer(new File(store)) : null;
+            try {
+                for (String proto : list) {
+                    //logger.info(proto);
+                    NamedProtocol protocol = irpDatabase.getNamedProtocolExpandAlias(proto);
+                    render(protocol);
+                }
+            } finally {
+                if (storeWriter != null)
+                    storeWriter.close();
             }
         }
 
-        private void render(NamedProtocol protocol) throws OddSequenceLengthException, DomainViolationException, IrpInvalidArgumentException, NameUnassignedException, UsageException, InvalidNameException, NamedProtocol.ProtocolNotRenderableException, IrpParseException {
+        private void render(NamedProtocol protocol) throws IOException, OddSequenceLengthException, DomainViolationException, IrpInvalidArgumentException, NameUnassignedException, UsageException, InvalidNameException, NamedProtocol.ProtocolNotRenderableException, IrpParseException {
             if (nameEngine.isEmpty() && random) {
                 nameEngine = new NameEngine(protocol.randomParameters());
                 logger.log(Level.INFO, nameEngine.toString());
@@ -150,18 +165,26 @@ public class CommandRender extends AbstractCommand {
             if (count != null) {
                 if (numberRepeats != null)
                     throw new UsageException("Can only specify one of --number-repeats and --count.");
-                renderPrint(irSignal.toModulatedIrSequence(count));
+                renderStore(irSignal.toModulatedIrSequence(count), protocol.getName());
             } else if (numberRepeats != null)
-                renderPrint(irSignal.toModulatedIrSequence(true, numberRepeats, true));
+                renderStore(irSignal.toModulatedIrSequence(true, numberRepeats, true), protocol.getName());
             else {
                 if (modulate)
                     throw new UsageException("--modulate is only supported together with --number-repeats or --count.");
                 renderPrint(irSignal);
+                if (storeWriter != null)
+                    storeWriter.add(irSignal, protocol.getName(), nameEngine.toString());
             }
             if (decode)
                 decode(irSignal, protocol.getName());
         }
 
+        private void renderStore(ModulatedIrSequence irSequence, String name) throws IOException {
+            renderPrint(irSequence);
+            if (storeWriter != null)
+                storeWriter.add(irSequence, name, nameEngine.toString());
+        }
+
         private void renderPrint(IrSignal irSignal) {
             if (raw)
                 out.println(irSignal.toString(true));
@@ -0,0 +1,116 @@
+/*
+Copyright (C) 2019 Bengt Martensson.
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation; either version 3 of the License, or (at
+your option) any later version.
+
+This program is distributed in the hope that it will be useful, but
+WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+General Public License for more details.
+
+You should have received a copy of the GNU General Public License along with
+this program. If not, see http://www.gnu.org/licenses/.
+*/
+
+package org.harctoolbox.ircore;
+
+/**
+ * Compact, immutable storage of an IrSequence, intended for keeping large numbers of captures in memory.
+ * The durations are stored either as integer micro seconds (rounded), or as floats, in both cases using half
+ * the memory of an IrSequence. Floats preserve fractional durations, and are exact for integer durations up to 2^24 micro seconds.
+ * For a ModulatedIrSequence, the frequency and the duty cycle are preserved.
+ *
+ * For processing, the sequence is expanded to an IrSequence or ModulatedIrSequence again.
+ */
+public final class CompactIrSequence {
+
+    /**
+     * Creates a CompactIrSequence from its argument.
+     * @param irSequence Sequence to store; if it is a ModulatedIrSequence, frequency and duty cycle are also stored.
+     * @param useFloats If true, store the durations as floats, otherwise as rounded ints.
+     * @return new CompactIrSequence
+     */
+    public static CompactIrSequence newCompactIrSequence(IrSequence irSequence, boolean useFloats) {
+        int length = irSequence.getLength();
+        int[] ints = useFloats ? null : new int[length];
+        float[] floats = useFloats ? new float[length] : null;
+        for (int i = 0; i < length; i++) {
+            if (useFloats)
+                floats[i] = (float) irSequence.get(i);
+            else
+                ints[i] = (int) Math.round(irSequence.get(i));
+        }
+        ModulatedIrSequence modulated = irSequence instanceof ModulatedIrSequence ? (ModulatedIrSequence) irSequence : null;
+        return new CompactIrSequence(ints, floats,
+                modulated != null ? modulated.getFrequency() : null,
+                modulated != null ? modulated.getDutyCycle() : null);
+    }
+
+    private final int[] ints;
+    private final float[] floats;
+    private final Double frequency;
+    private final Double dutyCycle;
+
+    private CompactIrSequence(int[] ints, float[] floats, Double frequency, Double dutyCycle) {
+        this.ints = ints;
+        this.floats = floats;
+        this.frequency = frequency;
+        this.dutyCycle = dutyCycle;
+    }
+
+    public int getLength() {
+        return ints != null ? ints.length : floats.length;
+    }
+
+    /**
+     * Returns the i'th duration.
+     * @param i index
+     * @return duration in microseconds
+     */
+    public double get(int i) {
+        return ints != null ? ints[i] : floats[i];
+    }
+
+    public boolean isFloats() {
+        return floats != null;
+    }
+
+    public Double getFrequency() {
+        return frequency;
+    }
+
+    public Double getDutyCycle() {
+        return dutyCycle;
+    }
+
+    /**
+     * @return the durations as a new array of doubles.
+     */
+    public double[] toDoubles() {
+        double[] result = new double[getLength()];
+        for (int i = 0; i < result.length; i++)
+            result[i] = get(i);
+        return result;
+    }
+
+    public IrSequence toIrSequence() {
+        try {
+            return new IrSequence(toDoubles());
+        } catch (OddSequenceLengthException ex) {
+            // was checked when the original IrSequence was constructed
+            throw new ThisCannotHappenException(ex);
+        }
+    }
+
+    public ModulatedIrSequence toModulatedIrSequence() {
+        return new ModulatedIrSequence(toIrSequence(), frequency, dutyCycle);
+    }
+
+    @Override
+    public String toString() {
+        return toModulatedIrSequence().toString();
+    }
+}
@@ -0,0 +1,151 @@
+/*
+Copyright (C) 2019 Bengt Martensson.
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation; either version 3 of the License, or (at
+your option) any later version.
+
+This program is distributed in the hope that it will be useful, but
+WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+General Public License for more details.
+
+You should have received a copy of the GNU General Public License along with
+this program. If not, see http://www.gnu.org/licenses/.
+*/
+
+package org.harctoolbox.ircore;
+
+import java.nio.DoubleBuffer;
+
+/**
+ * Push-based demodulator, emulating a demodulating IR receiver on a stream of on- and off-periods.
+ * The durations are fed in chunks of arbitrary size, and the demodulated flash/gap pairs are
+ * delivered to a {@link PairListener} as soon as the gap is known; frequency and duty cycle are estimated on the fly.
+ * This is the streaming version of {@link ModulatedIrSequence#demodulate(IrSequence, double)},
+ * giving the same result, using constant memory.
+ *
+ * Not thread safe.
+ */
+public final class Demodulator {
+
+    /**
+     * Receiver of demodulated flash/gap pairs.
+     */
+    @FunctionalInterface
+    public interface PairListener {
+        void pair(double flash, double gap);
+    }
+
+    private final double threshold;
+    private final PairListener listener;
+
+    private double on; // duration of the on-period waiting for its off-period, or NaN
+    private double pending;
+    private boolean first;
+    private double sumPulses;
+    private double sumOn;
+    private int numberPulses;
+
+    /**
+     * @param threshold Gaps less or equal to this quantity are squashed into a modulated flash.
+     * @param listener Receiver of the flash/gap pairs.
+     */
+    public Demodulator(double threshold, PairListener listener) {
+        this.threshold = threshold;
+        this.listener = listener;
+        reset();
+    }
+
+    public Demodulator(PairListener listener) {
+        this(ModulatedIrSequence.DEFAULT_DEMODULATE_THRESHOLD, listener);
+    }
+
+    /**
+     * Resets the state, including the frequency and duty cycle estimates, for a new capture.
+     */
+    public void reset() {
+        on = Double.NaN;
+        pending = 0.0;
+        first = true;
+        sumPulses = 0.0;
+        sumOn = 0.0;
+        numberPulses = 0;
+    }
+
+    /**
+     * Feeds one duration, alternately on- and off-periods, starting with an on-period.
+     * @param duration duration in micro seconds
+     */
+    public void accept(double duration) {
+        if (Double.isNaN(on)) {
+            on = duration;
+            return;
+        }
+
+        double off = duration;
+        pending += on;
+        if (off > threshold) {
+            listener.pair(pending, off);
+            pending = 0.0;
+        } else {
+            pending += off;
+            if (!first) {
+                sumPulses += on + off;
+                sumOn += on;
+                numberPulses++;
+            }
+        }
+        first = false;
+        on = Double.NaN;
+    }
+
+    /**
+     * Feeds a chunk of durations, which may end with an on-period.
+     * @param durations
+     * @param offset
+     * @param length
+     */
+    public void accept(double[] durations, int offset, int length) {
+        for (int i = offset; i < offset + length; i++)
+            accept(durations[i]);
+    }
+
+    public void accept(double[] durations) {
+        accept(durations, 0, durations.length);
+    }
+
+    /**
+     * Feeds the remaining durations of the buffer, for example obtained from a ByteBuffer
+     * filled from a {@link java.nio.channels.ReadableByteChannel}.
+     * @param buffer
+     */
+    public void accept(DoubleBuffer buffer) {
+        while (buffer.hasRemaining())
+            accept(buffer.get());
+    }
+
+    public void accept(IrSequence irSequence) {
+        for (int i = 0; i < irSequence.getLength(); i++)
+            accept(irSequence.get(i));
+    }
+
+    /**
+     * @return Estimate of the modulation frequency, based on the data so far; NaN if no modulation has been seen.
+     */
+    public double getFrequency() {
+        return numberPulses / IrCoreUtils.microseconds2seconds(sumPulses);
+    }
+
+    /**
+     * @return Estimate of the duty cycle, based on the data so far; NaN if no modulation has been seen.
+     */
+    public double getDutyCycle() {
+        return sumOn / sumPulses;
+    }
+
+    public int getNumberPulses() {
+        return numberPulses;
+    }
+}
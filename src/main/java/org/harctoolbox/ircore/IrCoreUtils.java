@@ -27,11 +27,25 @@ import java.io.UnsupportedEncodingException;
 import java.math.BigInteger;
 import java.nio.charset.Charset;
 import java.util.ArrayList;
+import java.util.ArrayDeque;
 import java.util.Arrays;
+import java.util.Deque;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Locale;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
 import java.util.TreeSet;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Function;
 import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * Some useful static functions and constants.
@@ -647,6 +661,75 @@ public final class IrCoreUtils {
         return 0;
     }
 
+    /**
+     * Applies the function to the elements of the input Stream, using the given number of threads.
+     * In contrast to a parallel Stream, the input is consumed lazily, and at most
+     * {@code 2*parallelism} elements are being processed or waiting to be consumed at any given time,
+     * so that arbitrarily long inputs can be processed with bounded memory.
+     * The result is delivered in the order of the input.
+     * Closing the returned Stream closes the input Stream, and stops the worker threads.
+     *
+     * @param <T> type of input elements
+     * @param <R> type of result elements
+     * @param input Stream of input elements.
+     * @param function Function to apply; must be thread safe.
+     * @param parallelism Number of threads; if &le; 1, the function is applied sequentially in the calling thread.
+     * @return Stream of results, in the order of the input.
+     */
+    public static <T, R> Stream<R> mapOrdered(Stream<T> input, Function<? super T, ? extends R> function, int parallelism) {
+        if (parallelism <= 1)
+            return input.map(function);
+
+        ExecutorService executor = Executors.newFixedThreadPool(parallelism, (Runnable runnable) -> {
+            Thread thread = new Thread(runnable);
+            thread.setDaemon(true);
+            return thread;
+        });
+        Iterator<T> source = input.iterator();
+        Iterator<R> iterator = new Iterator<R>() {
+            private final Deque<Future<R>> pending = new ArrayDeque<>(2 * parallelism);
+
+            private void fill() {
+                while (pending.size() < 2 * parallelism && source.hasNext()) {
+                    T thing = source.next();
+                    pending.add(executor.submit(() -> function.apply(thing)));
+                }
+                if (pending.isEmpty())
+                    executor.shutdown();
+            }
+
+            @Override
+            public boolean hasNext() {
+                fill();
+                return !pending.isEmpty();
+            }
+
+            @Override
+            public R next() {
+                fill();
+                if (pending.isEmpty())
+                    throw new NoSuchElementException();
+                try {
+                    return pending.remove().get();
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    throw new CancellationException(ex.getMessage());
+                } catch (ExecutionException ex) {
+                    Throwable cause = ex.getCause();
+                    if (cause instanceof RuntimeException)
+                        throw (RuntimeException) cause;
+                    if (cause instanceof Error)
+                        throw (Error) cause;
+                    throw new ThisCannotHappenException(cause);
+                }
+            }
+        };
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator, Spliterator.ORDERED), false).onClose(() -> {
+            executor.shutdownNow();
+            input.close();
+        });
+    }
+
     private IrCoreUtils() {
     }
 }
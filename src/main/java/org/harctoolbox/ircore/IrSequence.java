@@ -71,12 +71,12 @@ public class IrSequence implements Cloneable {
      */
     public static IrSequence concatenate(Collection<IrSequence> sequences) {
         int totalLength = 0;
-        totalLength = sequences.stream().map((seq) -> seq.data.length).reduce(totalLength, Integer::sum);
+        totalLength = sequences.stream().map((seq) -> seq.size).reduce(totalLength, Integer::sum);
         double[] data = new double[totalLength];
         int pos = 0;
         for (IrSequence seq : sequences) {
-            System.arraycopy(seq.data, 0, data, pos, seq.data.length);
-            pos += seq.data.length;
+            System.arraycopy(seq.data, seq.offset, data, pos, seq.size);
+            pos += seq.size;
         }
         try {
             return new IrSequence(data);
@@ -218,14 +218,21 @@ public class IrSequence implements Cloneable {
     /**
      * Duration data, all positive. Even indices are considered flashes, even ones gaps.
      * By definition they are interleaving.
+     * The sequence consists of the size durations starting at offset.
+     * Since the array is never modified after construction, it may be shared between several IrSequences;
+     * see {@link #subSequence(int, int)}.
      */
     private double[] data;
+    private int offset;
+    private int size;
 
     /**
      * Constructs an empty IrSequence,
      */
     public IrSequence() {
         data = new double[0];
+        offset = 0;
+        size = 0;
     }
 
     /**
@@ -304,6 +311,7 @@ public class IrSequence implements Cloneable {
         data = new double[length];
         for (int i = 0; i < length; i++)
             data[i] = Math.abs(idata[i+offset]);
+        size = length;
     }
 
     /**
@@ -311,11 +319,22 @@ public class IrSequence implements Cloneable {
      * @param src Original
      */
     public IrSequence(IrSequence src) {
-        data = src.data.clone();
+        this(src, false);
     }
 
     /**
-     *
+     * Constructs an IrSequence from the parameter data, either by cloning, or by sharing its data.
+     * @param src Original
+     * @param share If true, share the data with the original, otherwise copy.
+     */
+    IrSequence(IrSequence src, boolean share) {
+        data = share ? src.data : Arrays.copyOfRange(src.data, src.offset, src.offset + src.size);
+        offset = share ? src.offset : 0;
+        size = src.size;
+    }
+
+    /**
+     * Constructs a view of a part of the argument, sharing its data; nothing is copied.
      * @param src
      * @param start
      * @param length
@@ -324,10 +343,11 @@ public class IrSequence implements Cloneable {
     public IrSequence(IrSequence src, int start, int length) throws InvalidArgumentException {
         if (start % 2 != 0 || length % 2 != 0)
             throw new OddSequenceLengthException("Start and length must be even");
-        if (start + length > src.data.length)
+        if (start < 0 || length < 0 || start + length > src.size)
             throw new InvalidArgumentException("Selection extends beyond end.");
-        data = new double[length];
-        System.arraycopy(src.data, start, data, 0, length);
+        data = src.data;
+        offset = src.offset + start;
+        size = length;
     }
 
     private void setup(double[] inData) {
@@ -337,6 +357,7 @@ public class IrSequence implements Cloneable {
             data[i] = Math.abs(d);
             i++;
         }
+        size = inData.length;
     }
 
     private void setup(int[] inData) {
@@ -346,6 +367,7 @@ public class IrSequence implements Cloneable {
             data[i] = Math.abs(d);
             i++;
         }
+        size = inData.length;
     }
 
     /**
@@ -355,7 +377,9 @@ public class IrSequence implements Cloneable {
      * @return duration in microseconds,
      */
     public final double get(int i) {
-        return data[i];
+        if (i < 0 || i >= size)
+            throw new IndexOutOfBoundsException("Index " + i + " outside of IrSequence of length " + size);
+        return data[offset + i];
     }
 
     /**
@@ -364,9 +388,9 @@ public class IrSequence implements Cloneable {
      * @return integer array of durations in micro seconds.
      */
     public final int[] toInts() {
-        int[] array = new int[data.length];
-        for (int i = 0; i < data.length; i++)
-            array[i] = (int) Math.round(data[i]);
+        int[] array = new int[size];
+        for (int i = 0; i < size; i++)
+            array[i] = (int) Math.round(data[offset + i]);
 
         return array;
     }
@@ -377,7 +401,7 @@ public class IrSequence implements Cloneable {
      * @return double array of durations in micro seconds.
      */
     public final double[] toDoubles() {
-        return data.clone();
+        return Arrays.copyOfRange(data, offset, offset + size);
     }
 
     /**
@@ -386,9 +410,9 @@ public class IrSequence implements Cloneable {
      * @return integer array of durations in periods of frequency.
      */
     public final int[] toPulses(double frequency) {
-        int[] array = new int[data.length];
-        for (int i = 0; i < data.length; i++)
-            array[i] = (int) Math.round(Math.abs(frequency*data[i]/1000000.0));
+        int[] array = new int[size];
+        for (int i = 0; i < size; i++)
+            array[i] = (int) Math.round(Math.abs(frequency*data[offset + i]/1000000.0));
 
         return array;
     }
@@ -401,10 +425,10 @@ public class IrSequence implements Cloneable {
      * @return new IrSequence
      */
     public IrSequence append(IrSequence tail, int repetitions) {
-        double[] newData = new double[data.length + repetitions*tail.data.length];
-        System.arraycopy(data, 0, newData, 0, data.length);
+        double[] newData = new double[size + repetitions*tail.size];
+        System.arraycopy(data, offset, newData, 0, size);
         for (int r = 0; r < repetitions; r++)
-            System.arraycopy(tail.data, 0, newData, data.length + r*tail.data.length, tail.data.length);
+            System.arraycopy(tail.data, tail.offset, newData, size + r*tail.size, tail.size);
         try {
             return new IrSequence(newData);
         } catch (OddSequenceLengthException ex) {
@@ -429,10 +453,10 @@ public class IrSequence implements Cloneable {
      * @throws InvalidArgumentException
      */
     public IrSequence append(double delay) throws InvalidArgumentException {
-        if (data.length == 0)
+        if (size == 0)
             throw new InvalidArgumentException("IrSequence is empty");
         IrSequence irSequence = new IrSequence(this);
-        irSequence.data[data.length-1] += delay;
+        irSequence.data[size-1] += delay;
         return irSequence;
     }
 
@@ -446,7 +470,8 @@ public class IrSequence implements Cloneable {
         IrSequence result;
         try {
             result = (IrSequence) super.clone();
-            result.data = this.data.clone();
+            result.data = Arrays.copyOfRange(data, offset, offset + size);
+            result.offset = 0;
         } catch (CloneNotSupportedException ex) {
             throw new ThisCannotHappenException(ex);
         }
@@ -455,6 +480,9 @@ public class IrSequence implements Cloneable {
 
     /**
      * Returns a new IrSequence consisting of the length durations.
+     * It is a view, sharing the data with this sequence, so no durations are copied.
+     * (Therefore, a short subsequence of a very long sequence keeps all of the latter's data alive;
+     * use {@link #IrSequence(IrSequence)} to obtain a compact copy.)
      * @param start Index of first duration
      * @param length Length of new sequence
      * @return IrSequence, a subsequence of the current
@@ -487,13 +515,11 @@ public class IrSequence implements Cloneable {
     public List<IrSequence> chop(double threshold) {
         List<IrSequence> arrayList = new ArrayList<>(16);
         int beg = 0;
-        for (int i = 1; i < data.length; i += 2) {
-            if (data[i] >= threshold || i == data.length - 1) {
-                double[] arr = new double[i - beg + 1];
-                System.arraycopy(data, beg, arr, 0, i - beg + 1);
+        for (int i = 1; i < size; i += 2) {
+            if (data[offset + i] >= threshold || i == size - 1) {
                 try {
-                    arrayList.add(new IrSequence(arr));
-                } catch (OddSequenceLengthException ex) {
+                    arrayList.add(new IrSequence(this, beg, i - beg + 1));
+                } catch (InvalidArgumentException ex) {
                     throw new ThisCannotHappenException();
                 }
                 beg = i + 1;
@@ -511,7 +537,7 @@ public class IrSequence implements Cloneable {
     public IrSequence addToFlashes(double amount) {
         IrSequence clone = clone();
 
-        for (int i = 0; i < data.length; i += 2)
+        for (int i = 0; i < size; i += 2)
             clone.data[i] += amount;
 
         return clone;
@@ -527,7 +553,7 @@ public class IrSequence implements Cloneable {
     public IrSequence addToGaps(double amount) {
         IrSequence clone = clone();
 
-        for (int i = 1; i < data.length; i += 2)
+        for (int i = 1; i < size; i += 2)
             clone.data[i] += amount;
 
         return clone;
@@ -555,7 +581,7 @@ public class IrSequence implements Cloneable {
     public IrSequence addNoise(double max) {
         IrSequence clone = clone();
 
-        for (int i = 0; i < data.length; i += 2) {
+        for (int i = 0; i < size; i += 2) {
             double t = max * (2 * random.nextDouble() - 1);
             clone.data[i] += t;
             clone.data[i + 1] -= t;
@@ -582,11 +608,11 @@ public class IrSequence implements Cloneable {
      * @return equality within tolerance.
      */
     public boolean approximatelyEquals(IrSequence irSequence, double absoluteTolerance, double relativeTolerance) {
-        if (irSequence == null || (data.length != irSequence.data.length))
+        if (irSequence == null || (size != irSequence.size))
             return false;
 
-        for (int i = 0; i < data.length; i++)
-            if (!IrCoreUtils.approximatelyEquals(data[i], irSequence.data[i], absoluteTolerance, relativeTolerance))
+        for (int i = 0; i < size; i++)
+            if (!IrCoreUtils.approximatelyEquals(data[offset + i], irSequence.data[irSequence.offset + i], absoluteTolerance, relativeTolerance))
                 return false;
 
         return true;
@@ -604,16 +630,18 @@ public class IrSequence implements Cloneable {
      * @return if the subsequences are approximately equal.
      */
     public boolean approximatelyEquals(int beginning, int compareStart, int length, double absoluteTolerance, double relativeTolerance, double lastLimit) {
-        boolean specialTreatment = compareStart + length == data.length && lastLimit > 0;
+        boolean specialTreatment = compareStart + length == size && lastLimit > 0;
+        int first = offset + beginning;
+        int second = offset + compareStart;
         for (int i = 0; i < (specialTreatment ? length - 1 : length); i++) {
-            if (!IrCoreUtils.approximatelyEquals(data[beginning+i], data[compareStart+i], absoluteTolerance, relativeTolerance))
+            if (!IrCoreUtils.approximatelyEquals(data[first+i], data[second+i], absoluteTolerance, relativeTolerance))
                 return false;
         }
 
         if (specialTreatment) {
             if (!(
-                    IrCoreUtils.approximatelyEquals(data[beginning+length-1], data[compareStart+length-1], absoluteTolerance, relativeTolerance)
-                    || (data[beginning+length-1] >= lastLimit && data[compareStart+length-1] >= lastLimit)))
+                    IrCoreUtils.approximatelyEquals(data[first+length-1], data[second+length-1], absoluteTolerance, relativeTolerance)
+                    || (data[first+length-1] >= lastLimit && data[second+length-1] >= lastLimit)))
                 return false;
         }
         return true;
@@ -639,7 +667,7 @@ public class IrSequence implements Cloneable {
      * @return number of gaps/flashes.
      */
     public final int getLength() {
-        return data.length;
+        return size;
     }
 
     /**
@@ -647,7 +675,7 @@ public class IrSequence implements Cloneable {
      * @return last entry, or <code>null</code> if the data is empty.
      */
     public final Double getLastGap() {
-        return data.length > 0 ? data[data.length - 1] : null;
+        return size > 0 ? data[offset + size - 1] : null;
     }
 
     /**
@@ -655,7 +683,7 @@ public class IrSequence implements Cloneable {
      * @return emptyness of the sequence.
      */
     public final boolean isEmpty() {
-        return data.length == 0;
+        return size == 0;
     }
 
     /**
@@ -663,25 +691,29 @@ public class IrSequence implements Cloneable {
      * @return existence of zero durations.
      */
     public final boolean containsZeros() {
-        for (double t : data)
-            if (t < EPSILON)
+        for (int i = offset; i < offset + size; i++)
+            if (data[i] < EPSILON)
                 return true;
         return false;
     }
 
     /**
      * Replace all zero durations. Changes the signal in-place.
+     * Since the data may be shared with other IrSequences, it is copied first, if it has to be changed.
      * @param replacement Duration in micro seconds to replace zero durations with.
      * @return if the signal was changed.
      */
     public final boolean replaceZeros(double replacement) {
-        boolean wasChanged = false;
-        for (int i = 0; i < data.length; i++)
-            if (data[i] < EPSILON) {
-                data[i] = replacement;
-                wasChanged = true;
-            }
-        return wasChanged;
+        if (!containsZeros())
+            return false;
+
+        double[] newData = Arrays.copyOfRange(data, offset, offset + size);
+        for (int i = 0; i < size; i++)
+            if (newData[i] < EPSILON)
+                newData[i] = replacement;
+        data = newData;
+        offset = 0;
+        return true;
     }
 
     /**
@@ -690,7 +722,7 @@ public class IrSequence implements Cloneable {
      * @return Length of the IR sequence in microseconds.
      */
     public final double getTotalDuration() {
-        return getTotalDuration(0, data.length);
+        return getTotalDuration(0, size);
     }
 
     /**
@@ -701,12 +733,12 @@ public class IrSequence implements Cloneable {
      * @return Length of the IR sequence in microseconds.
      */
     public double getTotalDuration(int begin, int length) {
-        return IrCoreUtils.l1Norm(data, begin, length);
+        return IrCoreUtils.l1Norm(data, offset + begin, length);
     }
 
     public int firstBigGap(int start, double limit) {
-        for (int i = start + start%2; i < this.data.length - 2; i += 2)
-            if (data[i+1] >= limit)
+        for (int i = start + start%2; i < size - 2; i += 2)
+            if (data[offset + i + 1] >= limit)
                 return i+1;
         return -1;
     }
@@ -738,9 +770,9 @@ public class IrSequence implements Cloneable {
      */
     public String toString(boolean alternatingSigns, String separator, String prefix, String suffix) {
         StringJoiner stringJoiner = new StringJoiner(separator, prefix, suffix);
-        for (int i = 0; i < data.length; i++) {
+        for (int i = 0; i < size; i++) {
             String sign = alternatingSigns ? (isFlash(i) ? "+" : "-") : "";
-            stringJoiner.add(sign + Long.toString(Math.round(data[i])));
+            stringJoiner.add(sign + Long.toString(Math.round(data[offset + i])));
         }
         return stringJoiner.toString();
     }
@@ -82,37 +82,19 @@ public final class ModulatedIrSequence extends IrSequence {
      * @param irSequence input signal
      * @param threshold Gaps less or equal to this quantity are squashed into a modulated flash.
      * @return ModulatedIrSequence
+     * @see Demodulator
      */
     public static ModulatedIrSequence demodulate(IrSequence irSequence, double threshold) {
         List<Double> list = new ArrayList<>(128);
-        double pending = 0.0;
-        double sumPulses = 0.0;
-        double sumOn = 0.0;
-        int numberPulses = 0;
-        int begFlash = 0;
-        for (int i = 0; i < irSequence.getLength(); i += 2) {
-            pending += irSequence.get(i);
-            if (irSequence.get(i+1) > threshold) {
-                list.add(pending);
-                list.add(irSequence.get(i+1));
-                pending = 0;
-                begFlash = i;
-            } else {
-                pending += irSequence.get(i+1);
-                if (i > begFlash) {
-                    sumPulses += irSequence.get(i) + irSequence.get(i + 1);
-                    sumOn += irSequence.get(i);
-                    numberPulses++;
-                }
-            }
-        }
-
-        double freq = numberPulses/IrCoreUtils.microseconds2seconds(sumPulses);
-        double dutyCycle = sumOn/sumPulses;
+        Demodulator demodulator = new Demodulator(threshold, (flash, gap) -> {
+            list.add(flash);
+            list.add(gap);
+        });
+        demodulator.accept(irSequence);
 
         try {
             IrSequence seq = new IrSequence(list);
-            return new ModulatedIrSequence(seq, freq, dutyCycle);
+            return new ModulatedIrSequence(seq, demodulator.getFrequency(), demodulator.getDutyCycle());
         } catch (OddSequenceLengthException ex) {
             throw new ThisCannotHappenException(ex);
         }
@@ -159,13 +141,14 @@ public final class ModulatedIrSequence extends IrSequence {
 
     /**
      * Constructs a ModulatedIrSequence from its arguments.
+     * The durations are shared with the irSequence argument, not copied.
      *
-     * @param irSequence irSequence to be copied from
+     * @param irSequence irSequence containing the durations
      * @param frequency
      * @param dutyCycle
      */
     public ModulatedIrSequence(IrSequence irSequence, Double frequency, Double dutyCycle) {
-        super(irSequence);
+        super(irSequence, true);
         this.frequency = frequency;
         this.dutyCycle = dutyCycle;
     }
@@ -173,7 +156,7 @@ public final class ModulatedIrSequence extends IrSequence {
     /**
      * Constructs a ModulatedIrSequence from its arguments.
      *
-     * @param irSequence irSequence to be copied from
+     * @param irSequence irSequence containing the durations
      * @param frequency
      */
     public ModulatedIrSequence(IrSequence irSequence, Double frequency) {
@@ -0,0 +1,460 @@
+/*
+Copyright (C) 2019 Bengt Martensson.
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation; either version 3 of the License, or (at
+your option) any later version.
+
+This program is distributed in the hope that it will be useful, but
+WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+General Public License for more details.
+
+You should have received a copy of the GNU General Public License along with
+this program. If not, see http://www.gnu.org/licenses/.
+*/
+
+package org.harctoolbox.ircore;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+
+/**
+ * Memory mapped, read-only, binary container for large collections of IR signals.
+ *
+ * <p>Every record contains frequency, duty cycle, the intro-, repeat-, and ending durations,
+ * and optionally a name and a decode result (as string). The records are located through an offset index,
+ * so that random access by number is possible without reading the preceding records.
+ * The Records returned are light-weight views into the mapped file; the durations are not copied
+ * until an IrSequence or IrSignal is requested.
+ *
+ * <p>Files are written by {@link Writer}. The file format (all numbers big endian):
+ * <pre>
+ * header:  int magic ("IRSS"), int version, long count, long indexOffset, long reserved
+ * record:  double frequency, double dutyCycle (NaN for null), int introLength, int repeatLength, int endingLength,
+ *          int nameLength, int decodeLength (number of UTF-8 bytes, -1 for null), int reserved,
+ *          name bytes, decode bytes, padding to a multiple of 8, durations as doubles
+ * index:   long offset of every record
+ * </pre>
+ * Records never straddle a boundary of {@link #SEGMENT_SIZE}, so that files larger than what can be mapped
+ * in one buffer are supported.
+ */
+public final class SignalStore implements Closeable, Iterable<SignalStore.Record> {
+
+    /**
+     * Size of the segments in which the file is mapped.
+     */
+    public static final long SEGMENT_SIZE = 1L << 30;
+
+    private static final int MAGIC = 0x49525353; // "IRSS"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 32;
+    private static final int RECORD_HEADER_SIZE = 40;
+    private static final int SEGMENT_SHIFT = 30;
+
+    private static int align(int n) {
+        return (n + 7) & ~7;
+    }
+
+    private static double fromNullable(Double x) {
+        return x != null ? x : Double.NaN;
+    }
+
+    private static Double toNullable(double x) {
+        return Double.isNaN(x) ? null : x;
+    }
+
+    private final FileChannel channel;
+    private final MappedByteBuffer[] segments;
+    private final long count;
+    private final long indexOffset;
+
+    /**
+     * Opens an existing file for reading.
+     * @param file File written by a {@link Writer}.
+     * @throws IOException if the file cannot be read, or is not a (completely written) signal store.
+     */
+    public SignalStore(File file) throws IOException {
+        channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        try {
+            long fileSize = channel.size();
+            int noSegments = (int) ((fileSize + SEGMENT_SIZE - 1) >>> SEGMENT_SHIFT);
+            segments = new MappedByteBuffer[noSegments];
+            for (int i = 0; i < noSegments; i++) {
+                long start = (long) i << SEGMENT_SHIFT;
+                segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(SEGMENT_SIZE, fileSize - start));
+            }
+            if (fileSize < HEADER_SIZE || segments[0].getInt(0) != MAGIC)
+                throw new IOException(file + " is not a signal store, or was not completely written.");
+            int version = segments[0].getInt(4);
+            if (version != VERSION)
+                throw new IOException("Unsupported signal store version " + version + " in " + file);
+            count = segments[0].getLong(8);
+            indexOffset = segments[0].getLong(16);
+            if (count < 0 || indexOffset < HEADER_SIZE || indexOffset + 8 * count > fileSize)
+                throw new IOException(file + " is corrupt.");
+        } catch (IOException ex) {
+            channel.close();
+            throw ex;
+        }
+    }
+
+    /**
+     * @return the number of records.
+     */
+    public long size() {
+        return count;
+    }
+
+    /**
+     * Returns the record with the given number, without reading the other records.
+     * @param i number of the record, 0 &le; i &lt; size().
+     * @return Record
+     */
+    public Record get(long i) {
+        if (i < 0 || i >= count)
+            throw new IndexOutOfBoundsException("Record " + i + " not in [0, " + count + ")");
+        long position = indexOffset + 8 * i;
+        long offset = segments[(int) (position >>> SEGMENT_SHIFT)].getLong((int) (position & (SEGMENT_SIZE - 1)));
+        return new Record(segments[(int) (offset >>> SEGMENT_SHIFT)], (int) (offset & (SEGMENT_SIZE - 1)));
+    }
+
+    @Override
+    public Iterator<Record> iterator() {
+        return new Iterator<Record>() {
+            private long next = 0;
+
+            @Override
+            public boolean hasNext() {
+                return next < count;
+            }
+
+            @Override
+            public Record next() {
+                if (!hasNext())
+                    throw new NoSuchElementException();
+                return get(next++);
+            }
+        };
+    }
+
+    /**
+     * @return the records as an ordered Stream, suitable for parallel processing.
+     */
+    public Stream<Record> stream() {
+        return LongStream.range(0, count).mapToObj(this::get);
+    }
+
+    /**
+     * Closes the file. The mapping, and thereby Records already obtained, remain valid until garbage collected.
+     * @throws IOException
+     */
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * One signal in the store; a view into the mapped file.
+     */
+    public static final class Record {
+
+        private final ByteBuffer segment;
+        private final int offset;
+
+        private Record(ByteBuffer segment, int offset) {
+            this.segment = segment;
+            this.offset = offset;
+        }
+
+        public Double getFrequency() {
+            return toNullable(segment.getDouble(offset));
+        }
+
+        public Double getDutyCycle() {
+            return toNullable(segment.getDouble(offset + 8));
+        }
+
+        public int getLength(IrSignal.Pass pass) {
+            switch (pass) {
+                case intro:
+                    return segment.getInt(offset + 16);
+                case repeat:
+                    return segment.getInt(offset + 20);
+                case ending:
+                    return segment.getInt(offset + 24);
+                default:
+                    return 0;
+            }
+        }
+
+        /**
+         * @return total number of durations in intro, repeat, and ending.
+         */
+        public int getLength() {
+            return getLength(IrSignal.Pass.intro) + getLength(IrSignal.Pass.repeat) + getLength(IrSignal.Pass.ending);
+        }
+
+        private int nameLength() {
+            return segment.getInt(offset + 28);
+        }
+
+        private int decodeLength() {
+            return segment.getInt(offset + 32);
+        }
+
+        private String getString(int start, int length) {
+            if (length < 0)
+                return null;
+            byte[] bytes = new byte[length];
+            ByteBuffer buffer = segment.duplicate();
+            buffer.position(start);
+            buffer.get(bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        /**
+         * @return the name of the signal, or null if not present.
+         */
+        public String getName() {
+            return getString(offset + RECORD_HEADER_SIZE, nameLength());
+        }
+
+        /**
+         * @return the decode result, as stored by the writer, or null if not present.
+         */
+        public String getDecode() {
+            return getString(offset + RECORD_HEADER_SIZE + Math.max(nameLength(), 0), decodeLength());
+        }
+
+        private int durationsStart() {
+            return offset + align(RECORD_HEADER_SIZE + Math.max(nameLength(), 0) + Math.max(decodeLength(), 0));
+        }
+
+        private DoubleBuffer slice(int start, int length) {
+            ByteBuffer buffer = segment.duplicate();
+            buffer.position(durationsStart() + 8 * start);
+            buffer.limit(buffer.position() + 8 * length);
+            return buffer.slice().asDoubleBuffer();
+        }
+
+        /**
+         * Returns the durations of a pass, without copying.
+         * @param pass intro, repeat, or ending
+         * @return read-only view of the durations, in micro seconds.
+         */
+        public DoubleBuffer getDurations(IrSignal.Pass pass) {
+            int start = pass == IrSignal.Pass.intro ? 0
+                    : pass == IrSignal.Pass.repeat ? getLength(IrSignal.Pass.intro)
+                    : getLength(IrSignal.Pass.intro) + getLength(IrSignal.Pass.repeat);
+            return slice(start, getLength(pass));
+        }
+
+        /**
+         * @return read-only view of all durations, intro, repeat, and ending, in that order.
+         */
+        public DoubleBuffer getDurations() {
+            return slice(0, getLength());
+        }
+
+        private IrSequence toIrSequence() {
+            double[] data = new double[getLength()];
+            getDurations().get(data);
+            try {
+                return new IrSequence(data);
+            } catch (OddSequenceLengthException ex) {
+                // the writer only accepts IrSequences
+                throw new ThisCannotHappenException(ex);
+            }
+        }
+
+        /**
+         * @return IrSignal with the stored intro, repeat, and ending, sharing one copy of the durations.
+         */
+        public IrSignal toIrSignal() {
+            try {
+                return new IrSignal(toIrSequence(), getLength(IrSignal.Pass.intro), getLength(IrSignal.Pass.repeat), getFrequency(), getDutyCycle());
+            } catch (InvalidArgumentException ex) {
+                throw new ThisCannotHappenException(ex);
+            }
+        }
+
+        /**
+         * @return ModulatedIrSequence consisting of intro, repeat, and ending.
+         */
+        public ModulatedIrSequence toModulatedIrSequence() {
+            return new ModulatedIrSequence(toIrSequence(), getFrequency(), getDutyCycle());
+        }
+
+        @Override
+        public String toString() {
+            String name = getName();
+            return (name != null ? (name + ": ") : "") + toIrSignal().toString(true);
+        }
+    }
+
+    /**
+     * Writes a signal store sequentially. The file is not readable until the Writer has been closed.
+     */
+    public static final class Writer implements Closeable {
+
+        private static final int BUFFER_SIZE = 1 << 20;
+
+        private final FileChannel channel;
+        private ByteBuffer buffer;
+        private long position;
+        private long[] index;
+        private int count;
+
+        /**
+         * Creates a new file, overwriting a possibly existing one.
+         * @param file
+         * @throws IOException
+         */
+        public Writer(File file) throws IOException {
+            channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+            buffer = ByteBuffer.allocate(BUFFER_SIZE);
+            index = new long[1024];
+            count = 0;
+            buffer.put(new byte[HEADER_SIZE]); // replaced when closing
+            position = HEADER_SIZE;
+        }
+
+        /**
+         * @return number of records written so far.
+         */
+        public int size() {
+            return count;
+        }
+
+        public void add(IrSignal irSignal) throws IOException {
+            add(irSignal, null, null);
+        }
+
+        /**
+         * Appends an IrSignal.
+         * @param irSignal
+         * @param name name of the signal, or null.
+         * @param decode decode result, or null.
+         * @throws IOException
+         */
+        public void add(IrSignal irSignal, String name, String decode) throws IOException {
+            add(irSignal.getIntroSequence(), irSignal.getRepeatSequence(), irSignal.getEndingSequence(),
+                    irSignal.getFrequency(), irSignal.getDutyCycle(), name, decode);
+        }
+
+        /**
+         * Appends a ModulatedIrSequence, as a signal consisting of an intro sequence only.
+         * @param irSequence
+         * @param name name of the signal, or null.
+         * @param decode decode result, or null.
+         * @throws IOException
+         */
+        public void add(ModulatedIrSequence irSequence, String name, String decode) throws IOException {
+            add(irSequence, IrSequence.EMPTY, IrSequence.EMPTY, irSequence.getFrequency(), irSequence.getDutyCycle(), name, decode);
+        }
+
+        private void add(IrSequence intro, IrSequence repeat, IrSequence ending, Double frequency, Double dutyCycle, String name, String decode) throws IOException {
+            byte[] nameBytes = name != null ? name.getBytes(StandardCharsets.UTF_8) : null;
+            byte[] decodeBytes = decode != null ? decode.getBytes(StandardCharsets.UTF_8) : null;
+            int stringsLength = (nameBytes != null ? nameBytes.length : 0) + (decodeBytes != null ? decodeBytes.length : 0);
+            long size = align(RECORD_HEADER_SIZE + stringsLength) + 8L * (intro.getLength() + repeat.getLength() + ending.getLength());
+            if (size > SEGMENT_SIZE)
+                throw new IOException("Signal too large for signal store");
+
+            long room = SEGMENT_SIZE - (position & (SEGMENT_SIZE - 1));
+            if (size > room)
+                pad((int) room);
+
+            reserve((int) size);
+            if (count == index.length)
+                index = Arrays.copyOf(index, 2 * count);
+            index[count++] = position;
+
+            buffer.putDouble(fromNullable(frequency));
+            buffer.putDouble(fromNullable(dutyCycle));
+            buffer.putInt(intro.getLength());
+            buffer.putInt(repeat.getLength());
+            buffer.putInt(ending.getLength());
+            buffer.putInt(nameBytes != null ? nameBytes.length : -1);
+            buffer.putInt(decodeBytes != null ? decodeBytes.length : -1);
+            buffer.putInt(0);
+            if (nameBytes != null)
+                buffer.put(nameBytes);
+            if (decodeBytes != null)
+                buffer.put(decodeBytes);
+            buffer.put(new byte[align(stringsLength) - stringsLength]);
+            putDurations(intro);
+            putDurations(repeat);
+            putDurations(ending);
+            position += size;
+        }
+
+        private void putDurations(IrSequence irSequence) {
+            for (int i = 0; i < irSequence.getLength(); i++)
+                buffer.putDouble(irSequence.get(i));
+        }
+
+        private void pad(int length) throws IOException {
+            int remaining = length;
+            while (remaining > 0) {
+                int chunk = Math.min(remaining, BUFFER_SIZE);
+                reserve(chunk);
+                buffer.put(new byte[chunk]);
+                remaining -= chunk;
+            }
+            position += length;
+        }
+
+        private void reserve(int length) throws IOException {
+            if (buffer.remaining() >= length)
+                return;
+            flush();
+            if (buffer.capacity() < length)
+                buffer = ByteBuffer.allocate(length);
+        }
+
+        private void flush() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining())
+                channel.write(buffer);
+            buffer.clear();
+        }
+
+        /**
+         * Writes the index and the header, and closes the file.
+         * @throws IOException
+         */
+        @Override
+        public void close() throws IOException {
+            try {
+                long indexOffset = position;
+                for (int i = 0; i < count; i++) {
+                    reserve(8);
+                    buffer.putLong(index[i]);
+                }
+                flush();
+                ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+                header.putInt(MAGIC).putInt(VERSION).putLong(count).putLong(indexOffset).putLong(0L);
+                header.flip();
+                while (header.hasRemaining())
+                    channel.write(header, header.position());
+            } finally {
+                channel.close();
+            }
+        }
+    }
+}
@@ -25,15 +25,23 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.Reader;
+import java.io.UncheckedIOException;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.net.URLConnection;
+import java.util.AbstractMap;
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 public class ThingsLineParser<T> {
 
@@ -142,6 +150,113 @@ public class ThingsLineParser<T> {
         return map;
     }
 
+    /**
+     * Returns a Stream of Ts from the file/url in the first argument.
+     * In contrast to {@link #readThings(String, String, boolean)}, the input is read lazily,
+     * one T at a time, as the Stream is consumed.
+     * The Stream should be closed after use.
+     * @param urlOrFilename
+     * @param charSetName name of character set.
+     * @param multiLines if true, successive lines are considered to belong to the same object, unless separated by empty lines.
+     * @return Stream of Ts read from the first argument.
+     * @throws IOException
+     */
+    public Stream<T> streamThings(String urlOrFilename, String charSetName, boolean multiLines) throws IOException {
+        BufferedReader reader = openReader(urlOrFilename, charSetName);
+        return streamThings(reader, multiLines).onClose(() -> {
+            close(urlOrFilename, reader);
+        });
+    }
+
+    /**
+     * Returns a Stream of name-T pairs from the file/url in the first argument, read lazily.
+     * The format is the same as for {@link #readNamedThings(String, String)}.
+     * The Stream should be closed after use.
+     * @param urlOrFilename
+     * @param charSetName name of character set.
+     * @return Stream of name-T pairs read from the first argument.
+     * @throws IOException
+     */
+    public Stream<Map.Entry<String, T>> streamNamedThings(String urlOrFilename, String charSetName) throws IOException {
+        BufferedReader reader = openReader(urlOrFilename, charSetName);
+        return streamNamedThings(reader).onClose(() -> {
+            close(urlOrFilename, reader);
+        });
+    }
+
+    private BufferedReader openReader(String urlOrFilename, String charSetName) throws IOException {
+        if (urlOrFilename.equals("-"))
+            return new BufferedReader(new InputStreamReader(System.in, charSetName));
+        InputStream inputStream;
+        try {
+            URL url = new URL(urlOrFilename);
+            URLConnection urlConnection = url.openConnection();
+            inputStream = urlConnection.getInputStream();
+        } catch (MalformedURLException ex) {
+            inputStream = new FileInputStream(urlOrFilename);
+        }
+        return new BufferedReader(new InputStreamReader(inputStream, charSetName));
+    }
+
+    private void close(String urlOrFilename, BufferedReader reader) {
+        if (urlOrFilename.equals("-"))
+            return;
+        try {
+            reader.close();
+        } catch (IOException ex) {
+            logger.log(Level.WARNING, "{0}", ex.getMessage());
+        }
+    }
+
+    public Stream<T> streamThings(Reader reader, boolean multiLines) {
+        BufferedReader in = new BufferedReader(reader);
+        Iterator<T> iterator = new AbstractIterator<T>() {
+            @Override
+            T computeNext() {
+                while (true) {
+                    try {
+                        return parseThing(in, multiLines);
+                    } catch (InvalidArgumentException ex) {
+                        logger.log(Level.FINE, "{0}", ex.getMessage());
+                    } catch (IOException ex) {
+                        throw new UncheckedIOException(ex);
+                    }
+                }
+            }
+        };
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator, Spliterator.ORDERED | Spliterator.NONNULL), false);
+    }
+
+    public Stream<Map.Entry<String, T>> streamNamedThings(Reader reader) {
+        BufferedReader in = new BufferedReader(reader);
+        Iterator<Map.Entry<String, T>> iterator = new AbstractIterator<Map.Entry<String, T>>() {
+            @Override
+            Map.Entry<String, T> computeNext() {
+                try {
+                    while (true) {
+                        String line = in.readLine();
+                        if (line == null)
+                            return null;
+                        line = line.trim();
+                        if (line.isEmpty() || (commentPrefix != null && line.startsWith(commentPrefix)))
+                            continue;
+                        String name = line;
+                        try {
+                            T thing = parseThing(in, true);
+                            if (thing != null)
+                                return new AbstractMap.SimpleImmutableEntry<>(name, thing);
+                        } catch (NumberFormatException | InvalidArgumentException ex) {
+                            logger.log(Level.WARNING, "{0}", ex.getMessage());
+                        }
+                    }
+                } catch (IOException ex) {
+                    throw new UncheckedIOException(ex);
+                }
+            }
+        };
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator, Spliterator.ORDERED | Spliterator.NONNULL), false);
+    }
+
     @SuppressWarnings("unchecked")
     T parseThing(BufferedReader in, boolean multiLines) throws IOException, InvalidArgumentException {
         ArrayList<String> list = new ArrayList<>(multiLines ? 4 : 1);
@@ -161,6 +276,35 @@ public class ThingsLineParser<T> {
         return (T) parser.newThing(list);
     }
 
+    /**
+     * Iterator delivering the non-null values of computeNext(), until it returns null.
+     */
+    private static abstract class AbstractIterator<E> implements Iterator<E> {
+
+        private E next = null;
+        private boolean done = false;
+
+        abstract E computeNext();
+
+        @Override
+        public boolean hasNext() {
+            if (next == null && !done) {
+                next = computeNext();
+                done = next == null;
+            }
+            return next != null;
+        }
+
+        @Override
+        public E next() {
+            if (!hasNext())
+                throw new NoSuchElementException();
+            E result = next;
+            next = null;
+            return result;
+        }
+    }
+
     public interface ThingParser {
         public Object newThing(List<String> list) throws InvalidArgumentException;
     }
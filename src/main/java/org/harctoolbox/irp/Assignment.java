@@ -25,7 +25,6 @@ import java.util.Set;
 import java.util.TreeSet;
 import java.util.logging.Logger;
 import org.harctoolbox.ircore.IrSignal;
-import org.harctoolbox.ircore.ThisCannotHappenException;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
 
@@ -122,13 +121,12 @@ public final class Assignment extends IrpObject implements IrStreamItem, Numeric
 
     @Override
     public void render(RenderData renderData, List<BitSpec> bitSpecs) throws NameUnassignedException {
-        NameEngine nameEngine = renderData.getNameEngine();
+        execute(renderData.getNameEngine());
+    }
+
+    void execute(NameEngine nameEngine) throws NameUnassignedException {
         long val = value.toLong(nameEngine);
-        try {
-            nameEngine.define(name.toString(), val);
-        } catch (InvalidNameException ex) {
-            throw new ThisCannotHappenException(ex);
-        }
+        nameEngine.assign(name.toString(), val);
     }
 
     @Override
@@ -161,7 +159,7 @@ public final class Assignment extends IrpObject implements IrStreamItem, Numeric
 
     @Override
     public void decode(RecognizeData recognizeData, List<BitSpec> bitSpecStack, boolean isLast) throws SignalRecognitionException {
-        logger.log(recognizeData.logRecordEnter(this));
+        recognizeData.logEnter(logger, this);
         try {
             String nameString = name.toString();
             BitwiseParameter val = value.toBitwiseParameter(recognizeData);
@@ -169,7 +167,7 @@ public final class Assignment extends IrpObject implements IrStreamItem, Numeric
         } catch (InvalidNameException ex) {
             throw new SignalRecognitionException(ex);
         }
-        logger.log(recognizeData.logRecordExit(this));
+        recognizeData.logExit(logger, this);
     }
 
     @Override
@@ -244,7 +244,7 @@ public final class BareIrStream extends IrpObject implements IrStreamItem {
 
     @Override
     public void decode(RecognizeData recognizeData, List<BitSpec> bitSpecStack, boolean isLast) throws SignalRecognitionException {
-        logger.log(recognizeData.logRecordEnter(this));
+        recognizeData.logEnter(logger, this);
         int currentLevel = recognizeData.getLevel();
         recognizeData.setLevel(currentLevel + 1);
         IrSignal.Pass pass = null;
@@ -253,7 +253,7 @@ public final class BareIrStream extends IrpObject implements IrStreamItem {
             irStreamItem.decode(recognizeData, bitSpecStack, isLast && !it.hasNext());
         }
         recognizeData.setLevel(currentLevel);
-        logger.log(recognizeData.logRecordExit(this));
+        recognizeData.logExit(logger, this);
     }
 
     @Override
@@ -64,6 +64,9 @@ public final class BitSpec extends IrpObject implements AggregateLister {
 
     private List<BareIrStream> bitCodes;
 
+    // Compiled form for recognition, computed lazily; races just cause duplicate computation.
+    private volatile BitSpecMatcher matcher = null;
+
     public BitSpec(String str) {
         this(new ParserDriver(str).getParser().bitspec());
     }
@@ -150,6 +153,21 @@ public final class BitSpec extends IrpObject implements AggregateLister {
         return sum;
     }
 
+    /**
+     * Returns the BitSpec compiled for recognition with the GeneralSpec argument,
+     * or null if it cannot be compiled.
+     * @param generalSpec
+     * @return
+     */
+    BitSpecMatcher getMatcher(GeneralSpec generalSpec) {
+        BitSpecMatcher result = matcher;
+        if (result == null || !result.isFor(generalSpec)) {
+            result = BitSpecMatcher.newBitSpecMatcher(this, generalSpec);
+            matcher = result;
+        }
+        return result.isCompiled() ? result : null;
+    }
+
     public BareIrStream get(int index) {
         if (index >= bitCodes.size())
             throw new ThisCannotHappenException("Cannot encode " + index + " with current bitspec.");
@@ -0,0 +1,134 @@
+/*
+Copyright (C) 2019 Bengt Martensson.
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation; either version 3 of the License, or (at
+your option) any later version.
+
+This program is distributed in the hope that it will be useful, but
+WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+General Public License for more details.
+
+You should have received a copy of the GNU General Public License along with
+this program. If not, see http://www.gnu.org/licenses/.
+*/
+
+package org.harctoolbox.irp;
+
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.harctoolbox.ircore.IrCoreUtils;
+
+/**
+ * A BitSpec compiled for recognition, in the context of a particular GeneralSpec.
+ * This is possible when all the bitcodes consist of flashes and gaps of constant duration only,
+ * which is the case for the vast majority of the protocols.
+ * The expected durations are then computed once, and matching a chunk is a simple loop over them,
+ * with exactly the same semantic as the general recognizer, {@link BareIrStream#decode}.
+ * Instances are immutable, and therefore thread safe.
+ */
+final class BitSpecMatcher {
+
+    private static final Logger logger = Logger.getLogger(BitSpecMatcher.class.getName());
+
+    /**
+     * Compiles the BitSpec argument for the GeneralSpec given.
+     * @param bitSpec
+     * @param generalSpec
+     * @return BitSpecMatcher, never null. Use {@link #isCompiled()} to find out if it is usable.
+     */
+    static BitSpecMatcher newBitSpecMatcher(BitSpec bitSpec, GeneralSpec generalSpec) {
+        int size = bitSpec.size();
+        if (size == 0)
+            return new BitSpecMatcher(generalSpec, null, null);
+
+        double[][] durations = new double[size][];
+        boolean[][] flashes = new boolean[size][];
+        for (int i = 0; i < size; i++) {
+            List<IrStreamItem> items = bitSpec.get(i).getIrStreamItems();
+            if (items.isEmpty())
+                return new BitSpecMatcher(generalSpec, null, null);
+            durations[i] = new double[items.size()];
+            flashes[i] = new boolean[items.size()];
+            for (int j = 0; j < items.size(); j++) {
+                IrStreamItem item = items.get(j);
+                if (!((item instanceof Flash) || (item instanceof Gap)))
+                    return new BitSpecMatcher(generalSpec, null, null);
+                Duration duration = (Duration) item;
+                if (!duration.constant(NameEngine.EMPTY))
+                    return new BitSpecMatcher(generalSpec, null, null);
+                try {
+                    durations[i][j] = duration.toFloat(generalSpec, NameEngine.EMPTY);
+                } catch (NameUnassignedException | IrpInvalidArgumentException | RuntimeException ex) {
+                    logger.log(Level.FINE, "BitSpec {0} not compiled: {1}", new Object[]{bitSpec, ex});
+                    return new BitSpecMatcher(generalSpec, null, null);
+                }
+                flashes[i][j] = item instanceof Flash;
+            }
+        }
+        return new BitSpecMatcher(generalSpec, durations, flashes);
+    }
+
+    private final GeneralSpec generalSpec;
+    private final double[][] durations;
+    private final boolean[][] flashes;
+
+    private BitSpecMatcher(GeneralSpec generalSpec, double[][] durations, boolean[][] flashes) {
+        this.generalSpec = generalSpec;
+        this.durations = durations;
+        this.flashes = flashes;
+    }
+
+    boolean isFor(GeneralSpec generalSpec) {
+        return this.generalSpec == generalSpec;
+    }
+
+    boolean isCompiled() {
+        return durations != null;
+    }
+
+    /**
+     * Tries to match the bitcodes, in order, at the current position of the RecognizeData.
+     * On success, the position of the RecognizeData is advanced past the matching bitcode;
+     * on failure, it is left unchanged.
+     * @param recognizeData
+     * @return number of the matching bitcode, or -1 if none matches.
+     */
+    int match(RecognizeData recognizeData) {
+        int position = recognizeData.getPosition();
+        double hasConsumed = recognizeData.getHasConsumed();
+        double absoluteTolerance = recognizeData.getAbsoluteTolerance();
+        double relativeTolerance = recognizeData.getRelativeTolerance();
+        boolean allowChopping = recognizeData.allowChopping();
+
+        for (int i = 0; i < durations.length; i++) {
+            if (matchBitCode(recognizeData, durations[i], flashes[i], absoluteTolerance, relativeTolerance, allowChopping))
+                return i;
+
+            recognizeData.setPosition(position);
+            recognizeData.setHasConsumed(hasConsumed);
+        }
+        return -1;
+    }
+
+    // Same logic as Duration.decode, with isLast == false.
+    private boolean matchBitCode(RecognizeData recognizeData, double[] wanted, boolean[] on,
+            double absoluteTolerance, double relativeTolerance, boolean allowChopping) {
+        for (int j = 0; j < wanted.length; j++) {
+            if (!recognizeData.check(on[j]))
+                return false;
+
+            double actual = recognizeData.get();
+            if (IrCoreUtils.approximatelyEquals(actual, wanted[j], absoluteTolerance, relativeTolerance))
+                recognizeData.consume();
+            else if (actual > wanted[j] && allowChopping)
+                recognizeData.consume(wanted[j]);
+            else
+                return false;
+        }
+        return true;
+    }
+}
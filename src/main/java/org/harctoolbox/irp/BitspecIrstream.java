@@ -147,7 +147,7 @@ public final class BitspecIrstream extends IrpObject implements IrStreamItem {
 
     @Override
     public void decode(RecognizeData recognizeData, List<BitSpec> inheritedBitSpecs, boolean isLast) throws SignalRecognitionException {
-        logger.log(recognizeData.logRecordEnterWithIrStream(this));
+        recognizeData.logEnterWithIrStream(logger, this);
         List<BitSpec> stack = new ArrayList<>(inheritedBitSpecs);
         stack.add(bitSpec);
         IrSignal.Pass pass = null;
@@ -155,7 +155,7 @@ public final class BitspecIrstream extends IrpObject implements IrStreamItem {
         recognizeData.setLevel(currentLevel + 1);
         irStream.decode(recognizeData, stack, isLast);
         recognizeData.setLevel(currentLevel);
-        logger.log(recognizeData.logRecordExit(this));
+        recognizeData.logExit(logger, this);
     }
 
     @Override
@@ -164,9 +164,11 @@ public final class BitspecIrstream extends IrpObject implements IrStreamItem {
         stack.add(bitSpec);
         renderData.push();
         irStream.render(renderData, stack);
-        logger.log(Level.FINE, "renderdata (unreduced): {0}", renderData.getEvaluatedIrStream().toString());
+        if (logger.isLoggable(Level.FINE))
+            logger.log(Level.FINE, "renderdata (unreduced): {0}", renderData.getEvaluatedIrStream().toString());
         renderData.reduce(bitSpec);
-        logger.log(Level.FINE, "renderdata (reduced): {0}", renderData.getEvaluatedIrStream().toString());
+        if (logger.isLoggable(Level.FINE))
+            logger.log(Level.FINE, "renderdata (reduced): {0}", renderData.getEvaluatedIrStream().toString());
         renderData.pop();
     }
 
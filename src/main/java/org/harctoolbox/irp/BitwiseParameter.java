@@ -131,7 +131,8 @@ public final class BitwiseParameter {
 
     public void aggregate(BitwiseParameter parameter) {
         parameter.canonicalize();
-        logger.log(Level.FINEST, "Changing {0} to {1}", new Object[] { toString(), toString(value | parameter.value, bitmask | parameter.bitmask)});
+        if (logger.isLoggable(Level.FINEST))
+            logger.log(Level.FINEST, "Changing {0} to {1}", new Object[] { toString(), toString(value | parameter.value, bitmask | parameter.bitmask)});
         value &= ~parameter.bitmask;
         value |= parameter.getValue();
         bitmask |= parameter.bitmask;
@@ -183,6 +184,11 @@ public final class BitwiseParameter {
         return bitmask;
     }
 
+    void set(long value, long bitmask) {
+        this.value = value;
+        this.bitmask = bitmask;
+    }
+
     public void assign(long value) {
         this.value = value;
         bitmask = ALLBITS;
@@ -312,8 +318,11 @@ public final class BitwiseParameter {
      * @throws SignalRecognitionException
      */
     public boolean check(long payload, long bitmask) throws SignalRecognitionException {
-        if (!this.isConsistent(payload))
-            throw new SignalRecognitionException("BitwiseParameter " + toString() + " not consistent with previously read data");
+        if (!this.isConsistent(payload)) {
+            long val = value;
+            long mask = this.bitmask;
+            throw new SignalRecognitionException(() -> "BitwiseParameter " + toString(val, mask) + " not consistent with previously read data");
+        }
         return covers(bitmask);
     }
 
@@ -0,0 +1,225 @@
+/*
+Copyright (C) 2019 Bengt Martensson.
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation; either version 3 of the License, or (at
+your option) any later version.
+
+This program is distributed in the hope that it will be useful, but
+WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+General Public License for more details.
+
+You should have received a copy of the GNU General Public License along with
+this program. If not, see http://www.gnu.org/licenses/.
+*/
+
+package org.harctoolbox.irp;
+
+import java.nio.BufferOverflowException;
+import java.nio.IntBuffer;
+import java.util.Map;
+import org.harctoolbox.ircore.IrSignal.Pass;
+
+/**
+ * Renders a Protocol into buffers supplied by the caller, as integer durations in micro seconds,
+ * rounded like {@link org.harctoolbox.ircore.IrSequence#toInts()}.
+ * The result is the same as {@link Protocol#toIrSignal(Map)}, but the intro, repeat, and ending sequences
+ * are written after each other into an int[] or IntBuffer; their lengths are available after the rendering.
+ *
+ * An instance holds the parameters, and can be used for any number of renderings.
+ * Parameters keep their values between renderings, until changed or unset.
+ * For protocols that can be compiled (see {@link RenderProgram}),
+ * the rendering does not allocate any memory in steady state, as long as the parameter values are not changed,
+ * or are small (0 to 255), and the assignments of the protocol (e.g., toggles) produce small values.
+ * Other protocols are rendered through {@link Protocol#toIrSignal(NameEngine)}, with the same result.
+ *
+ * Instances are not thread safe; use one per thread.
+ */
+public final class BufferRenderer {
+
+    private final Protocol protocol;
+    private final NameEngine parameters;
+    private final NameEngine nameEngine;
+    private final int[] lengths;
+    private final ArrayEmitter arrayEmitter;
+    private final IntBufferEmitter intBufferEmitter;
+
+    public BufferRenderer(Protocol protocol) {
+        this.protocol = protocol;
+        parameters = new NameEngine(protocol.getParameterSpecs().size());
+        nameEngine = new NameEngine(protocol.getParameterSpecs().size() + protocol.getDefinitions().size() + 4);
+        lengths = new int[3];
+        arrayEmitter = new ArrayEmitter();
+        intBufferEmitter = new IntBufferEmitter();
+    }
+
+    public BufferRenderer(Protocol protocol, Map<String, Long> parameters) throws InvalidNameException {
+        this(protocol);
+        setParameters(parameters);
+    }
+
+    /**
+     * @return the protocol
+     */
+    public Protocol getProtocol() {
+        return protocol;
+    }
+
+    /**
+     * Sets a parameter for the following renderings.
+     * @param name
+     * @param value
+     * @throws InvalidNameException if name is not a valid name.
+     */
+    public void setParameter(String name, long value) throws InvalidNameException {
+        Expression old = parameters.getPossiblyNull(name);
+        if (old == null)
+            Name.checkName(name);
+        else if (old instanceof NumberExpression && ((NumberExpression) old).toLong() == value)
+            return;
+
+        parameters.assign(name, value);
+    }
+
+    public void setParameters(Map<String, Long> parameters) throws InvalidNameException {
+        for (Map.Entry<String, Long> kvp : parameters.entrySet())
+            setParameter(kvp.getKey(), kvp.getValue());
+    }
+
+    /**
+     * Removes a parameter, so that its default, or, for a memory variable, its current value, is used.
+     * @param name
+     */
+    public void unsetParameter(String name) {
+        parameters.restore(name, null);
+        nameEngine.restore(name, null);
+    }
+
+    /**
+     * Returns an upper bound on the number of durations of a rendering.
+     * @return Upper bound, or -1 if not known, since the protocol is not compiled.
+     */
+    public int getMaxLength() {
+        int sum = 0;
+        for (Pass pass : new Pass[]{ Pass.intro, Pass.repeat, Pass.ending }) {
+            RenderProgram renderProgram = protocol.getRenderProgram(pass);
+            if (!renderProgram.isCompiled())
+                return -1;
+            sum += renderProgram.getMaxLength();
+        }
+        return sum;
+    }
+
+    /**
+     * Renders the protocol with the current parameters into the array given.
+     * @param buffer
+     * @param offset Position of the first duration.
+     * @return Number of durations written, the sum of the lengths of intro, repeat, and ending.
+     * @throws BufferOverflowException if the buffer is too small; its content is then undefined.
+     * @throws DomainViolationException
+     * @throws NameUnassignedException
+     * @throws IrpInvalidArgumentException
+     * @throws InvalidNameException
+     */
+    public int render(int[] buffer, int offset) throws DomainViolationException, NameUnassignedException, IrpInvalidArgumentException, InvalidNameException {
+        arrayEmitter.setup(buffer, offset);
+        try {
+            protocol.render(parameters, nameEngine, arrayEmitter, lengths);
+        } finally {
+            arrayEmitter.setup(null, 0);
+        }
+        return getLength();
+    }
+
+    /**
+     * Renders the protocol with the current parameters into the IntBuffer given, starting at its position.
+     * On success, the position is advanced past the durations written; otherwise, it is left unchanged.
+     * @param buffer
+     * @return Number of durations written, the sum of the lengths of intro, repeat, and ending.
+     * @throws BufferOverflowException if the buffer is too small.
+     * @throws DomainViolationException
+     * @throws NameUnassignedException
+     * @throws IrpInvalidArgumentException
+     * @throws InvalidNameException
+     */
+    public int render(IntBuffer buffer) throws DomainViolationException, NameUnassignedException, IrpInvalidArgumentException, InvalidNameException {
+        int position = buffer.position();
+        boolean success = false;
+        intBufferEmitter.setup(buffer);
+        try {
+            protocol.render(parameters, nameEngine, intBufferEmitter, lengths);
+            success = true;
+        } finally {
+            intBufferEmitter.setup(null);
+            if (!success)
+                buffer.position(position);
+        }
+        return getLength();
+    }
+
+    /**
+     * @return Number of durations of the intro sequence of the last rendering.
+     */
+    public int getIntroLength() {
+        return lengths[0];
+    }
+
+    /**
+     * @return Number of durations of the repeat sequence of the last rendering, following the intro.
+     */
+    public int getRepeatLength() {
+        return lengths[1];
+    }
+
+    /**
+     * @return Number of durations of the ending sequence of the last rendering, following the repeat.
+     */
+    public int getEndingLength() {
+        return lengths[2];
+    }
+
+    /**
+     * @return Number of durations of the last rendering.
+     */
+    public int getLength() {
+        return lengths[0] + lengths[1] + lengths[2];
+    }
+
+    private static int toInt(double duration) {
+        return (int) Math.round(Math.abs(duration));
+    }
+
+    private static final class ArrayEmitter extends RenderProgram.Emitter {
+
+        private int[] buffer;
+        private int position;
+
+        void setup(int[] buffer, int offset) {
+            this.buffer = buffer;
+            this.position = offset;
+        }
+
+        @Override
+        void write(double duration) {
+            if (position >= buffer.length)
+                throw new BufferOverflowException();
+            buffer[position++] = toInt(duration);
+        }
+    }
+
+    private static final class IntBufferEmitter extends RenderProgram.Emitter {
+
+        private IntBuffer buffer;
+
+        void setup(IntBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        void write(double duration) {
+            buffer.put(toInt(duration));
+        }
+    }
+}
@@ -0,0 +1,245 @@
+/*
+Copyright (C) 2019 Bengt Martensson.
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation; either version 3 of the License, or (at
+your option) any later version.
+
+This program is distributed in the hope that it will be useful, but
+WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+General Public License for more details.
+
+You should have received a copy of the GNU General Public License along with
+this program. If not, see http://www.gnu.org/licenses/.
+*/
+
+package org.harctoolbox.irp;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import org.harctoolbox.analyze.Cleaner;
+import org.harctoolbox.ircore.InvalidArgumentException;
+import org.harctoolbox.ircore.IrSequence;
+import org.harctoolbox.ircore.IrSignal;
+import org.harctoolbox.ircore.ModulatedIrSequence;
+
+/**
+ * Bounded cache of decode results, evicting the least recently used entry when full.
+ * It is keyed on a fingerprint of the signal. For this, the durations are first cleaned by the {@link Cleaner},
+ * replacing every duration by the mean of the durations equal to it within the tolerances, which removes most of the jitter.
+ * The cleaned durations are then quantized into buckets whose width is a fraction (the resolution) of
+ * the tolerance in the DecoderParameters: the absolute tolerance for short durations, the relative tolerance for long ones.
+ * Likewise, the frequency is quantized using the frequency tolerance. The other DecoderParameters are part of the key.
+ *
+ * Signals in the same buckets are considered equal, and get the same decode. With a resolution of 1, the buckets
+ * are as wide as the tolerances, so a signal close to the tolerance limit of a protocol may get the decode of
+ * a slightly different signal; smaller resolutions make this less likely, at the price of a lower hit rate.
+ *
+ * The key also contains the Decoder, since the result depends on its protocols. A Decoder never changes its protocols,
+ * so its entries remain valid; when the protocols change, a new Decoder has to be created, whose entries never
+ * match those of the old one. The entries of the old decoder are eventually evicted, or can be removed using {@link #clear()}.
+ *
+ * The decodes returned are shared, and must not be modified by the caller.
+ *
+ * Thread safe.
+ */
+public final class DecodeCache {
+
+    public static final int DEFAULT_CAPACITY = 1000;
+    public static final double DEFAULT_RESOLUTION = 0.5;
+
+    private final int capacity;
+    private final double resolution;
+    private final LinkedHashMap<Key, Decoder.AbstractDecodesCollection<?>> map;
+    private final AtomicLong hits;
+    private final AtomicLong misses;
+    private final AtomicLong evictions;
+
+    /**
+     * @param capacity Maximal number of decodes stored; must be positive.
+     * @param resolution Width of the buckets, as fraction of the tolerances; must be positive.
+     */
+    @SuppressWarnings("serial")
+    public DecodeCache(int capacity, double resolution) {
+        if (capacity <= 0)
+            throw new IllegalArgumentException("Capacity must be positive");
+        if (!(resolution > 0))
+            throw new IllegalArgumentException("Resolution must be positive");
+        this.capacity = capacity;
+        this.resolution = resolution;
+        this.map = new LinkedHashMap<Key, Decoder.AbstractDecodesCollection<?>>(Math.min(capacity, 1000), 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Decoder.AbstractDecodesCollection<?>> eldest) {
+                boolean full = size() > DecodeCache.this.capacity;
+                if (full)
+                    evictions.incrementAndGet();
+                return full;
+            }
+        };
+        hits = new AtomicLong(0L);
+        misses = new AtomicLong(0L);
+        evictions = new AtomicLong(0L);
+    }
+
+    public DecodeCache(int capacity) {
+        this(capacity, DEFAULT_RESOLUTION);
+    }
+
+    public DecodeCache() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    Key newKey(Decoder decoder, IrSignal irSignal, Decoder.DecoderParameters params) {
+        return new Key(decoder, true, irSignal.getIntroSequence(), irSignal.getRepeatSequence(), irSignal.getEndingSequence(), irSignal.getFrequency(), params);
+    }
+
+    Key newKey(Decoder decoder, ModulatedIrSequence irSequence, Decoder.DecoderParameters params) {
+        return new Key(decoder, false, irSequence, IrSequence.EMPTY, IrSequence.EMPTY, irSequence.getFrequency(), params);
+    }
+
+    Decoder.AbstractDecodesCollection<?> get(Key key) {
+        Decoder.AbstractDecodesCollection<?> value;
+        synchronized (map) {
+            value = map.get(key);
+        }
+        (value != null ? hits : misses).incrementAndGet();
+        return value;
+    }
+
+    void put(Key key, Decoder.AbstractDecodesCollection<?> value) {
+        synchronized (map) {
+            map.put(key, value);
+        }
+    }
+
+    public void clear() {
+        synchronized (map) {
+            map.clear();
+        }
+    }
+
+    public int size() {
+        synchronized (map) {
+            return map.size();
+        }
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public double getResolution() {
+        return resolution;
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    /**
+     * @return hits divided by the number of lookups, or 0 if there has been none.
+     */
+    public double getHitRate() {
+        long h = hits.get();
+        long lookups = h + misses.get();
+        return lookups > 0 ? (double) h / lookups : 0.0;
+    }
+
+    @Override
+    public String toString() {
+        return "DecodeCache: size = " + size() + "/" + capacity + ", hits = " + hits.get() + ", misses = " + misses.get()
+                + ", evictions = " + evictions.get() + String.format(", hit rate = %.3f", getHitRate());
+    }
+
+    /**
+     * Key of the cache. Decoders are compared by identity.
+     */
+    final class Key {
+
+        private final Decoder decoder;
+        private final boolean irSignal;
+        private final int introLength;
+        private final int repeatLength;
+        private final long[] durations;
+        private final long frequency;
+        private final String params;
+        private final int hashCode;
+
+        private Key(Decoder decoder, boolean irSignal, IrSequence intro, IrSequence repeat, IrSequence ending, Double frequency, Decoder.DecoderParameters params) {
+            this.decoder = decoder;
+            this.irSignal = irSignal;
+            this.introLength = intro.getLength();
+            this.repeatLength = repeat.getLength();
+            double absolute = params.getAbsoluteTolerance() * resolution;
+            double relative = params.getRelativeTolerance() * resolution;
+            IrSequence all = clean(intro.append(repeat).append(ending), params);
+            durations = new long[all.getLength()];
+            for (int i = 0; i < durations.length; i++)
+                durations[i] = bucket(all.get(i), absolute, relative);
+            this.frequency = frequency == null ? Long.MIN_VALUE
+                    : params.getFrequencyTolerance() < 0 ? 0L
+                    : bucket(frequency, params.getFrequencyTolerance() * resolution, 0.0);
+            this.params = params.toString();
+            int hash = 7;
+            hash = 31 * hash + System.identityHashCode(decoder);
+            hash = 31 * hash + Boolean.hashCode(irSignal);
+            hash = 31 * hash + introLength;
+            hash = 31 * hash + repeatLength;
+            hash = 31 * hash + Arrays.hashCode(durations);
+            hash = 31 * hash + Long.hashCode(this.frequency);
+            hash = 31 * hash + this.params.hashCode();
+            hashCode = hash;
+        }
+
+        private IrSequence clean(IrSequence irSequence, Decoder.DecoderParameters params) {
+            try {
+                return irSequence.isEmpty() ? irSequence : Cleaner.clean(irSequence, params.getAbsoluteTolerance(), params.getRelativeTolerance());
+            } catch (InvalidArgumentException ex) {
+                // zero durations; use the raw durations
+                return irSequence;
+            }
+        }
+
+        /**
+         * Quantizes a duration: linearly with width absolute, as long as that is larger than the relative width,
+         * logarithmically with ratio 1 + relative above (using negative numbers).
+         */
+        private long bucket(double duration, double absolute, double relative) {
+            if (relative > 0 && duration * relative > absolute)
+                return -1L - (long) Math.floor(Math.log(duration) / Math.log1p(relative));
+            return absolute > 0 ? (long) Math.floor(duration / absolute) : Double.doubleToLongBits(duration);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Key))
+                return false;
+
+            Key other = (Key) obj;
+            return decoder == other.decoder
+                    && irSignal == other.irSignal
+                    && introLength == other.introLength
+                    && repeatLength == other.repeatLength
+                    && frequency == other.frequency
+                    && Arrays.equals(durations, other.durations)
+                    && params.equals(other.params);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+    }
+}
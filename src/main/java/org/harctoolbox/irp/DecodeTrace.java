@@ -0,0 +1,219 @@
+/*
+Copyright (C) 2019 Bengt Martensson.
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation; either version 3 of the License, or (at
+your option) any later version.
+
+This program is distributed in the hope that it will be useful, but
+WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+General Public License for more details.
+
+You should have received a copy of the GNU General Public License along with
+this program. If not, see http://www.gnu.org/licenses/.
+*/
+
+package org.harctoolbox.irp;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import org.harctoolbox.ircore.IrCoreUtils;
+
+/**
+ * Structured trace of the recognition attempts of the decoder, an alternative to the logging on level FINE and below.
+ * It is enabled by {@link Decoder.DecoderParameters#setTrace(DecodeTrace)}; when not enabled, it costs nothing.
+ *
+ * For every protocol tried, an attempt is recorded, containing the entering and leaving of the IrStreamItems
+ * during the recognition, and the outcome. Only references to the items and the values found are stored;
+ * the formatting takes place in {@link #dump(PrintStream)}. For a trace per signal, use a new DecodeTrace
+ * (or {@link #clear()}) for every signal.
+ *
+ * Thread safe; with parallel decoding, the attempts are recorded in the order they are started.
+ */
+public final class DecodeTrace {
+
+    public static final int DEFAULT_MAX_EVENTS = 100000;
+
+    private final int maxEvents;
+    private final List<Attempt> attempts;
+    private final AtomicInteger events;
+    private final AtomicLong dropped;
+
+    /**
+     * @param maxEvents Maximal number of events recorded; further events are counted, but otherwise ignored.
+     */
+    public DecodeTrace(int maxEvents) {
+        this.maxEvents = maxEvents;
+        attempts = new ArrayList<>(16);
+        events = new AtomicInteger(0);
+        dropped = new AtomicLong(0L);
+    }
+
+    public DecodeTrace() {
+        this(DEFAULT_MAX_EVENTS);
+    }
+
+    Attempt newAttempt(String protocolName, Object data, int position) {
+        Attempt attempt = new Attempt(protocolName, data, position);
+        synchronized (attempts) {
+            attempts.add(attempt);
+        }
+        return attempt;
+    }
+
+    public void clear() {
+        synchronized (attempts) {
+            attempts.clear();
+        }
+        events.set(0);
+        dropped.set(0L);
+    }
+
+    /**
+     * @return number of protocols tried.
+     */
+    public int getNumberAttempts() {
+        synchronized (attempts) {
+            return attempts.size();
+        }
+    }
+
+    /**
+     * @return number of events recorded.
+     */
+    public int getNumberEvents() {
+        return Math.min(events.get(), maxEvents);
+    }
+
+    /**
+     * @return number of events not recorded, since maxEvents was reached.
+     */
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    /**
+     * @return names of the protocols that were successfully recognized, in the order tried.
+     */
+    public List<String> getSuccessfulProtocols() {
+        List<String> result = new ArrayList<>(4);
+        synchronized (attempts) {
+            attempts.stream().filter((attempt) -> attempt.success).forEach((attempt) -> {
+                result.add(attempt.protocolName);
+            });
+        }
+        return result;
+    }
+
+    /**
+     * Prints the trace in human readable form.
+     * @param out
+     */
+    public void dump(PrintStream out) {
+        List<Attempt> copy;
+        synchronized (attempts) {
+            copy = new ArrayList<>(attempts);
+        }
+        Object previousData = null;
+        for (Attempt attempt : copy) {
+            if (attempt.data != previousData) {
+                out.println("Data: " + attempt.data);
+                previousData = attempt.data;
+            }
+            attempt.dump(out);
+        }
+        if (dropped.get() > 0)
+            out.println(dropped.get() + " events dropped");
+    }
+
+    @Override
+    public String toString() {
+        return "DecodeTrace: attempts = " + getNumberAttempts() + ", events = " + getNumberEvents() + ", dropped = " + getDropped();
+    }
+
+    /**
+     * The recognition of one protocol.
+     */
+    final class Attempt {
+
+        private final String protocolName;
+        private final Object data;
+        private final int position;
+        private final List<Event> events;
+        private boolean success;
+        private Supplier<String> failure;
+
+        private Attempt(String protocolName, Object data, int position) {
+            this.protocolName = protocolName;
+            this.data = data;
+            this.position = position;
+            this.events = new ArrayList<>(32);
+            this.success = false;
+            this.failure = null;
+        }
+
+        void enter(int level, IrStreamItem item, int position) {
+            add(new Event(true, level, item, position, null));
+        }
+
+        void exit(int level, IrStreamItem item, int position, BitwiseParameter result) {
+            add(new Event(false, level, item, position, result));
+        }
+
+        private void add(Event event) {
+            if (DecodeTrace.this.events.incrementAndGet() > maxEvents)
+                dropped.incrementAndGet();
+            else
+                synchronized (events) {
+                    events.add(event);
+                }
+        }
+
+        void success() {
+            success = true;
+        }
+
+        void failure(Exception ex) {
+            failure = ex::getMessage;
+        }
+
+        private void dump(PrintStream out) {
+            out.print(protocolName + (position > 0 ? (" at " + position) : "") + ": ");
+            out.println(success ? "recognized" : failure != null ? ("failed: " + failure.get()) : "not finished");
+            synchronized (events) {
+                events.forEach((event) -> {
+                    out.println(event);
+                });
+            }
+        }
+    }
+
+    private static final class Event {
+
+        private final boolean enter;
+        private final int level;
+        private final IrStreamItem item;
+        private final int position;
+        private final BitwiseParameter result;
+
+        Event(boolean enter, int level, IrStreamItem item, int position, BitwiseParameter result) {
+            this.enter = enter;
+            this.level = level;
+            this.item = item;
+            this.position = position;
+            this.result = result;
+        }
+
+        @Override
+        public String toString() {
+            return IrCoreUtils.spaces(2 * level + 2) + (enter ? ">" : "<") + "Level " + level + ": \"" + item + "\" @" + position
+                    + (result != null ? (", result: " + result) : "");
+        }
+    }
+}
@@ -24,6 +24,7 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
@@ -34,9 +35,12 @@ import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
 import java.util.StringJoiner;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 import org.harctoolbox.ircore.InvalidArgumentException;
 import org.harctoolbox.ircore.IrCoreUtils;
 import org.harctoolbox.ircore.IrSignal;
@@ -51,6 +55,10 @@ import org.harctoolbox.ircore.ThisCannotHappenException;
  * on {@link org.harctoolbox.ircore.IrSignal} or {@link org.harctoolbox.ircore.ModulatedIrSequence}
  * respectively.
  * These have slightly different semantics.
+ *
+ * <p>A Decoder is thread safe: after construction, its decode functions can be called from several threads simultaneously;
+ * all state of a decoding is kept in local objects. If {@link DecoderParameters#isParallel()} is true,
+ * the different protocols are tried in parallel, using the common {@link java.util.concurrent.ForkJoinPool}.
  */
 public final class Decoder {
     private static final Logger logger = Logger.getLogger(Decoder.class.getName());
@@ -88,6 +96,8 @@ public final class Decoder {
     }
 
     private final Map<String, NamedProtocol> parsedProtocols;
+    private final ProtocolPrefilter prefilter;
+    private volatile DecodeCache decodeCache = null;
 
     private Decoder(File irpDatabasePath) throws IOException, IrpParseException {
         this(new IrpDatabase(irpDatabasePath), null);
@@ -113,6 +123,8 @@ public final class Decoder {
 
     /**
      * This is the main constructor.
+     * Besides parsing the protocols, it sets up a pre-filter, so that only protocols with plausible
+     * features (frequency, leading flash) are tried by the decode functions.
      * @param irpDatabase will be expanded.
      * @param names If non-null and non-empty, include only the protocols with these names.
      * @throws org.harctoolbox.irp.IrpParseException
@@ -129,73 +141,154 @@ public final class Decoder {
                 throw new ThisCannotHappenException(ex);
             }
         });
+        prefilter = new ProtocolPrefilter(parsedProtocols.values());
+    }
+
+    ProtocolPrefilter getPrefilter() {
+        return prefilter;
+    }
+
+    /**
+     * @return the DecodeCache in use, or null.
+     */
+    public DecodeCache getDecodeCache() {
+        return decodeCache;
+    }
+
+    /**
+     * Sets a DecodeCache to be used by {@link #decode(ModulatedIrSequence, DecoderParameters)} and
+     * {@link #decodeIrSignal(IrSignal, DecoderParameters)} (and thereby decodeLoose and decodeAll).
+     * The cache may be shared with other Decoders.
+     * @param decodeCache DecodeCache, or null for no caching.
+     */
+    public void setDecodeCache(DecodeCache decodeCache) {
+        this.decodeCache = decodeCache;
+    }
+
+    /**
+     * Removes decodes according to the prefer-overs, unless allDecodes, and sorts, just as decodeIrSignal does.
+     * @param decodes
+     * @param params
+     */
+    void reduce(SimpleDecodesSet decodes, DecoderParameters params) {
+        if (!params.isAllDecodes())
+            decodes.reduce(parsedProtocols);
+        decodes.sort();
     }
 
     /**
      * Delivers a List of Map of Decodes from a ModulatedIrSequence.
      * @param irSequence
      * @param params
-     * @return List of decodes.
+     * @return List of decodes. If a DecodeCache is in use, it may be shared, and must not be modified.
      */
     public DecodeTree decode(ModulatedIrSequence irSequence, DecoderParameters params) {
-        Map<Integer, Map<String, TrunkDecodeTree>> map = new HashMap<>(16);
-        DecodeTree decodes = decode(irSequence, 0, params, 0, map);
+        DecodeCache cache = decodeCache;
+        if (cache == null)
+            return decodeNoCache(irSequence, params);
+
+        DecodeCache.Key key = cache.newKey(this, irSequence, params);
+        DecodeTree decodes = (DecodeTree) cache.get(key);
+        if (decodes == null) {
+            decodes = decodeNoCache(irSequence, params);
+            cache.put(key, decodes);
+        }
+        return decodes;
+    }
+
+    private DecodeTree decodeNoCache(ModulatedIrSequence irSequence, DecoderParameters params) {
+        AtomicReferenceArray<DecodeTree> memo = new AtomicReferenceArray<>(irSequence.getLength() + 1);
+        DecodeTree decodes = decode(irSequence, 0, params, 0, memo);
         if (decodes.isEmpty() && params.isIgnoreLeadingGarbage()) {
             int newStart = irSequence.firstBigGap(0, params.minimumLeadout) + 1;
-            return newStart > 0 ? decode(irSequence, newStart, params, 0, map) : decodes;
+            return newStart > 0 ? decode(irSequence, newStart, params, 0, memo) : decodes;
         } else
             return decodes;
     }
 
-    private DecodeTree decode(ModulatedIrSequence irSequence, int position, DecoderParameters params, int level, Map<Integer, Map<String, TrunkDecodeTree>>map) {
-        logger.log(Level.FINE, String.format("level = %1$d position = %2$d", level, position));
+    /**
+     * Decodes the sequence starting at position, using dynamic programming:
+     * the DecodeTree of every position is computed only once, and shared by all the decodes ending just before it.
+     * The prefer-overs only depend on the trunks, so they are applied before the rest is decoded.
+     * If a beam width is set, only that many of the best trunks are followed.
+     */
+    private DecodeTree decode(ModulatedIrSequence irSequence, int position, DecoderParameters params, int level, AtomicReferenceArray<DecodeTree> memo) {
+        DecodeTree memoized = memo.get(position);
+        if (memoized != null)
+            return memoized;
+
+        if (logger.isLoggable(Level.FINE))
+            logger.log(Level.FINE, "level = {0} position = {1}", new Object[]{level, position});
         DecodeTree decodeTree = new DecodeTree(irSequence.getLength() - position);
         if (decodeTree.length == 0)
             return decodeTree;
 
-        parsedProtocols.values().forEach((namedProtocol) -> {
+        List<Decode> trunks = stream(prefilter.candidates(irSequence, position, params), params).map((namedProtocol) -> {
             try {
                 if (debugProtocolNamePattern != null)
                     if (debugProtocolNamePattern.matcher(namedProtocol.getName().toLowerCase(Locale.US)).matches())
                         // This is intended to put a debugger breakpoint here
                         logger.log(Level.FINEST, "Trying protocol {0}", namedProtocol.getName());
-                TrunkDecodeTree decode;
-                Map<String, TrunkDecodeTree> p = map.get(position);
-                if (p != null && p.containsKey(namedProtocol.getName())) {
-                    decode = p.get(namedProtocol.getName());
-                } else {
-                    decode = tryNamedProtocol(namedProtocol, irSequence, position, params, level, map);
-                    if (!map.containsKey(position)) {
-                        map.put(position, new HashMap<>(4));
-                    }
-                    map.get(position).put(namedProtocol.getName(), decode);
-                }
-                decodeTree.add(decode);
+                return tryNamedProtocol(namedProtocol, irSequence, position, params);
             } catch (SignalRecognitionException ex) {
-                logger.log(Level.FINER, String.format("Protocol %1$s did not decode: %2$s", namedProtocol.getName(), ex.getMessage()));
+                if (logger.isLoggable(Level.FINER))
+                    logger.log(Level.FINER, "Protocol {0} did not decode: {1}", new Object[]{namedProtocol.getName(), ex.getMessage()});
             } catch (NamedProtocol.ProtocolNotDecodableException ex) {
             }
+            return null;
+        }).filter(Objects::nonNull).collect(Collectors.toList());
+
+        stream(prune(trunks, params), params).map((decode) -> {
+            if (!params.recursive || decode.endPos == irSequence.getLength() - 1)
+                return new TrunkDecodeTree(decode, irSequence.getLength());
+
+            DecodeTree rest = decode(irSequence, decode.getEndPos() + 1, params, level + 1, memo);
+            return new TrunkDecodeTree(decode, rest);
+        }).collect(Collectors.toList()).forEach((decode) -> {
+            decodeTree.add(decode);
         });
 
         if (!params.isAllDecodes()) {
-            decodeTree.reduce(parsedProtocols);
             if (decodeTree.isComplete())
                 decodeTree.removeIncompletes();
         }
         decodeTree.sort();
-        return decodeTree;
+        return memo.compareAndSet(position, null, decodeTree) ? decodeTree : memo.get(position);
     }
 
-    private TrunkDecodeTree tryNamedProtocol(NamedProtocol namedProtocol, ModulatedIrSequence irSequence, int position, DecoderParameters params, int level, Map<Integer, Map<String, TrunkDecodeTree>>map)
+    private Decode tryNamedProtocol(NamedProtocol namedProtocol, ModulatedIrSequence irSequence, int position, DecoderParameters params)
             throws SignalRecognitionException, NamedProtocol.ProtocolNotDecodableException {
         Decode decode = namedProtocol.recognize(irSequence, position, params);
         if (params.isRemoveDefaultedParameters())
             decode.removeDefaulteds();
-        if (!params.recursive || decode.endPos == irSequence.getLength() - 1)
-            return new TrunkDecodeTree(decode, irSequence.getLength());
+        return decode;
+    }
+
+    /**
+     * Ranking of the trunks for the beam: longer decodes first, then the more specific protocols, i.e., those of higher weight.
+     */
+    private static final Comparator<Decode> BEAM_ORDER
+            = Comparator.comparingInt((Decode decode) -> -decode.endPos).thenComparingInt((Decode decode) -> -decode.namedProtocol.weight());
 
-        DecodeTree rest = decode(irSequence, decode.getEndPos() + 1, params, level + 1, map);
-        return new TrunkDecodeTree(decode, rest);
+    /**
+     * Applies the prefer-overs (unless allDecodes) and the beam width to the trunks found at a position.
+     * @return the trunks to follow, in the original order, unless the beam width is exceeded.
+     */
+    private List<Decode> prune(List<Decode> trunks, DecoderParameters params) {
+        if (params.isAllDecodes() && (params.beamWidth <= 0 || trunks.size() <= params.beamWidth))
+            return trunks;
+
+        SimpleDecodesSet simpleDecodesSet = new SimpleDecodesSet(trunks);
+        if (!params.isAllDecodes())
+            simpleDecodesSet.reduce(parsedProtocols);
+        if (params.beamWidth <= 0 || simpleDecodesSet.size() <= params.beamWidth) {
+            List<Decode> result = new ArrayList<>(simpleDecodesSet.size());
+            simpleDecodesSet.forEach(result::add);
+            return result;
+        }
+        List<Decode> result = simpleDecodesSet.sortedValues();
+        result.sort(BEAM_ORDER);
+        return result.subList(0, params.beamWidth);
     }
 
     // Decoding an IrSignal is pretty different from decoding an IrSequence.
@@ -212,11 +305,24 @@ public final class Decoder {
      * NamedProtocol's {@code prefer-over} property.
      * @param irSignal Input data
      * @param parameters
-     * @return Map of decodes with protocol name as key.
+     * @return Map of decodes with protocol name as key. If a DecodeCache is in use, it may be shared, and must not be modified.
      */
     public SimpleDecodesSet decodeIrSignal(IrSignal irSignal, DecoderParameters parameters) {
-        List<Decode> decodes = new ArrayList<>(8);
-        parsedProtocols.values().forEach((NamedProtocol namedProtocol) -> {
+        DecodeCache cache = decodeCache;
+        if (cache == null)
+            return decodeIrSignalNoCache(irSignal, parameters);
+
+        DecodeCache.Key key = cache.newKey(this, irSignal, parameters);
+        SimpleDecodesSet decodes = (SimpleDecodesSet) cache.get(key);
+        if (decodes == null) {
+            decodes = decodeIrSignalNoCache(irSignal, parameters);
+            cache.put(key, decodes);
+        }
+        return decodes;
+    }
+
+    private SimpleDecodesSet decodeIrSignalNoCache(IrSignal irSignal, DecoderParameters parameters) {
+        List<Decode> decodes = stream(prefilter.candidates(irSignal, parameters), parameters).map((NamedProtocol namedProtocol) -> {
             try {
                 if (debugProtocolNamePattern != null)
                     if (debugProtocolNamePattern.matcher(namedProtocol.getName().toLowerCase(Locale.US)).matches())
@@ -225,14 +331,15 @@ public final class Decoder {
                 Map<String, Long> params = namedProtocol.recognize(irSignal, parameters);
                 if (parameters.isRemoveDefaultedParameters())
                     namedProtocol.removeDefaulteds(params);
-                Decode decode = new Decode(namedProtocol, params);
-                decodes.add(decode);
+                return new Decode(namedProtocol, params);
             } catch (/*DomainViolationException |*/ SignalRecognitionException ex) {
-                logger.log(Level.FINE, String.format("Protocol %1$s did not decode: %2$s", namedProtocol.getName(), ex.getMessage()));
+                if (logger.isLoggable(Level.FINE))
+                    logger.log(Level.FINE, "Protocol {0} did not decode: {1}", new Object[]{namedProtocol.getName(), ex.getMessage()});
+                return null;
             } catch (NamedProtocol.ProtocolNotDecodableException ex) {
                 throw new ThisCannotHappenException();
             }
-        });
+        }).filter(Objects::nonNull).collect(Collectors.toList());
         SimpleDecodesSet simpleDecodesSet = new SimpleDecodesSet(decodes);
 
 
@@ -246,6 +353,35 @@ public final class Decoder {
         return decodeIrSignal(irSignal, new DecoderParameters());
     }
 
+    /**
+     * Decodes a Stream of IrSignals, using {@link #decodeIrSignal(IrSignal, DecoderParameters)}.
+     * The input is consumed lazily, so arbitrarily long inputs can be processed with bounded memory.
+     * @param irSignals Input data
+     * @param parameters
+     * @param parallelism Number of signals decoded simultaneously in separate threads; if &le; 1, decode sequentially.
+     * @return Stream of decodes, in the order of the input. Should be closed after use.
+     */
+    public Stream<SimpleDecodesSet> decodeAll(Stream<IrSignal> irSignals, DecoderParameters parameters, int parallelism) {
+        return IrCoreUtils.mapOrdered(irSignals, (IrSignal irSignal) -> decodeIrSignal(irSignal, parameters), parallelism);
+    }
+
+    public Stream<SimpleDecodesSet> decodeAll(Stream<IrSignal> irSignals, DecoderParameters parameters) {
+        return decodeAll(irSignals, parameters, 1);
+    }
+
+    public Stream<SimpleDecodesSet> decodeAll(Stream<IrSignal> irSignals) {
+        return decodeAll(irSignals, new DecoderParameters());
+    }
+
+    /**
+     * Returns a Stream of the candidates (protocols or decodes), parallel if requested by the parameters.
+     * In both cases, collecting the stream preserves the order of the candidates,
+     * so the result of a decode does not depend on the parallelism.
+     */
+    private static <T> Stream<T> stream(List<T> candidates, DecoderParameters params) {
+        return params.isParallel() ? candidates.parallelStream() : candidates.stream();
+    }
+
     /**
      * Basically for testing; therefore package private.
      * @return the parsedProtocols
@@ -274,6 +410,10 @@ public final class Decoder {
         private Double minimumLeadout;
         private boolean override;
         private boolean ignoreLeadingGarbage;
+        private boolean parallel;
+        private int beamWidth;
+        private DecodeTrace trace;
+        private DecodeTrace.Attempt traceAttempt;
         /**
          *
          * @param strict If true, intro-, repeat-, and ending sequences are
@@ -324,6 +464,9 @@ public final class Decoder {
                     pick(relativeTolerance, this.relativeTolerance, override),
                     pick(minimumLeadout, this.minimumLeadout, override),
                     override, ignoreLeadingGarbage);
+            copy.parallel = parallel;
+            copy.beamWidth = beamWidth;
+            copy.trace = trace;
 
             return copy;
         }
@@ -345,6 +488,8 @@ public final class Decoder {
             sj.add(Double.toString(minimumLeadout));
             sj.add(Boolean.toString(override));
             sj.add(Boolean.toString(ignoreLeadingGarbage));
+            sj.add(Boolean.toString(parallel));
+            sj.add(Integer.toString(beamWidth));
             return sj.toString();
         }
 
@@ -478,6 +623,66 @@ public final class Decoder {
         private boolean isIgnoreLeadingGarbage() {
             return ignoreLeadingGarbage;
         }
+
+        /**
+         * @return the parallel
+         */
+        public boolean isParallel() {
+            return parallel;
+        }
+
+        /**
+         * If true, the protocols are tried in parallel, using the common ForkJoinPool.
+         * The result is the same as for sequential decoding.
+         * @param parallel the parallel to set
+         */
+        public void setParallel(boolean parallel) {
+            this.parallel = parallel;
+        }
+
+        /**
+         * @return the beamWidth
+         */
+        public int getBeamWidth() {
+            return beamWidth;
+        }
+
+        /**
+         * In recursive decoding, follow only the beamWidth best decodes at every position.
+         * This bounds the work on long sequences, at the price of possibly missing the best decode.
+         * @param beamWidth the beamWidth to set; &le; 0 for no limit (default).
+         */
+        public void setBeamWidth(int beamWidth) {
+            this.beamWidth = beamWidth;
+        }
+
+        /**
+         * @return the trace, or null if not tracing.
+         */
+        public DecodeTrace getTrace() {
+            return trace;
+        }
+
+        /**
+         * Records the recognition attempts of decodes using these parameters in the argument.
+         * @param trace DecodeTrace, or null for no tracing (default).
+         */
+        public void setTrace(DecodeTrace trace) {
+            this.trace = trace;
+        }
+
+        DecodeTrace.Attempt getTraceAttempt() {
+            return traceAttempt;
+        }
+
+        /**
+         * Starts a new attempt in the trace, if tracing, to which the recognition using these parameters is recorded.
+         * Only to be called on the parameters adjusted for one protocol.
+         */
+        DecodeTrace.Attempt startTraceAttempt(String protocolName, Object data, int position) {
+            traceAttempt = trace != null ? trace.newAttempt(protocolName, data, position) : null;
+            return traceAttempt;
+        }
     }
 
     public static abstract class AbstractDecodesCollection<T extends ElementaryDecode> implements Iterable<T> {
@@ -640,6 +845,7 @@ public final class Decoder {
 
     public static final class DecodeTree extends AbstractDecodesCollection<TrunkDecodeTree> implements Comparable<DecodeTree> {
         private int length;
+        private Boolean complete; // cache; subtrees are shared, so computing it every time is exponential
 
         private DecodeTree(int length) {
             super(new ArrayList<TrunkDecodeTree>(8));
@@ -702,11 +908,27 @@ public final class Decoder {
             if (length == 0)
                 return true;
 
-            return map.values().stream().anyMatch((d) -> (d.isComplete()));
+            if (complete == null)
+                complete = map.values().stream().anyMatch((d) -> (d.isComplete()));
+            return complete;
+        }
+
+        @Override
+        public void add(TrunkDecodeTree decode) {
+            complete = null;
+            super.add(decode);
+        }
+
+        @Override
+        public void remove(String protName) {
+            complete = null;
+            super.remove(protName);
         }
 
         @Override
         public int compareTo(DecodeTree o) {
+            if (this == o)
+                return 0;
             Iterator<TrunkDecodeTree> it = this.iterator();
             Iterator<TrunkDecodeTree> jt = o.iterator();
             for (;it.hasNext() && jt.hasNext();) {
@@ -938,7 +1160,7 @@ public final class Decoder {
             return map;
         }
 
-        private void removeDefaulteds() {
+        void removeDefaulteds() {
             namedProtocol.removeDefaulteds(map);
         }
 
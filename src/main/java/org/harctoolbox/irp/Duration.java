@@ -76,9 +76,6 @@ public abstract class Duration extends IrpObject implements IrStreamItem, Floata
         return index % 2 == 0;
     }
 
-    protected Double us = null;
-    protected Double time_periods = null;
-    protected Double time_units = null;
     protected NameOrNumber nameOrNumber = null;
     protected String unit = null;
     //protected ParserRuleContext parseTree = null;
@@ -113,9 +110,6 @@ public abstract class Duration extends IrpObject implements IrStreamItem, Floata
     @Override
     public int hashCode() {
         int hash = 5;
-        hash = 43 * hash + IrCoreUtils.hashForDouble(this.us);
-        hash = 43 * hash + IrCoreUtils.hashForDouble(this.time_periods);
-        hash = 43 * hash + IrCoreUtils.hashForDouble(this.time_units);
         hash = 43 * hash + Objects.hashCode(this.nameOrNumber);
         hash = 43 * hash + Objects.hashCode(this.unit);
         return hash;
@@ -128,61 +122,50 @@ public abstract class Duration extends IrpObject implements IrStreamItem, Floata
 
         Duration other = (Duration) obj;
         return unit.equals(other.unit)
-                && IrCoreUtils.approximatelyEquals(us, other.us)
-                && IrCoreUtils.approximatelyEquals(time_periods, other.time_periods)
-                && IrCoreUtils.approximatelyEquals(time_units, other.time_units)
                 && nameOrNumber.equals(other.nameOrNumber);
     }
 
-    private void compute(GeneralSpec generalSpec, NameEngine nameEngine) throws NameUnassignedException, IrpInvalidArgumentException {
-        double time = nameOrNumber.toFloat(generalSpec, nameEngine);
-
-        switch (unit) {
-            case "p":
-                time_periods = time;
-                break;
-            case "m":
-                us = IrCoreUtils.milliseconds2microseconds(time);
-                break;
-            case "u":
-                us = time;
-                break;
-            default:
-                time_units = time;
-                break;
-        }
-    }
-
-    @SuppressWarnings("null")
     private double multiplicator(GeneralSpec generalSpec) {
-        Objects.requireNonNull(time_units);
         return unit.equals("p") ? IrCoreUtils.seconds2microseconds(1/generalSpec.getFrequencyWitDefault())
                 : unit.equals("m") ? 1000
                 : unit.equals("u") ? 1
-                : time_units;
+                : generalSpec.getUnit();
     }
 
     public abstract double evaluateWithSign(GeneralSpec generalSpec, NameEngine nameEngine, double elapsed) throws NameUnassignedException, IrpInvalidArgumentException;
 
+    /**
+     * Evaluates the duration in micro seconds.
+     * Does not change the state of the object, and is therefore thread safe.
+     * @param generalSpec
+     * @param nameEngine
+     * @param elapsed
+     * @return
+     * @throws NameUnassignedException
+     * @throws IrpInvalidArgumentException
+     */
     public double evaluate(GeneralSpec generalSpec, NameEngine nameEngine, double elapsed) throws NameUnassignedException, IrpInvalidArgumentException {
-        compute(generalSpec, nameEngine);
-        if (time_periods != null) {
-            if (generalSpec == null)
-                return DUMMYTIMEUNIT;
-            else if (generalSpec.getFrequencyWitDefault()> 0)
-                return IrCoreUtils.seconds2microseconds(time_periods/generalSpec.getFrequencyWitDefault());
-            else
-                throw new ThisCannotHappenException("Units in p and frequency == 0 do not go together.");
-
-        } else if (time_units != null) {
-            if (generalSpec == null)
-                return time_units * DUMMYTIMEUNIT;
-            if (generalSpec.getUnit() > 0)
-                return time_units * generalSpec.getUnit();
-            else
-                throw new ThisCannotHappenException("Relative units and unit == 0 do not go together.");
-        } else {
-            return us;
+        double time = nameOrNumber.toFloat(generalSpec, nameEngine);
+
+        switch (unit) {
+            case "p":
+                if (generalSpec == null)
+                    return DUMMYTIMEUNIT;
+                else if (generalSpec.getFrequencyWitDefault() > 0)
+                    return IrCoreUtils.seconds2microseconds(time/generalSpec.getFrequencyWitDefault());
+                else
+                    throw new ThisCannotHappenException("Units in p and frequency == 0 do not go together.");
+            case "m":
+                return IrCoreUtils.milliseconds2microseconds(time);
+            case "u":
+                return time;
+            default:
+                if (generalSpec == null)
+                    return time * DUMMYTIMEUNIT;
+                if (generalSpec.getUnit() > 0)
+                    return time * generalSpec.getUnit();
+                else
+                    throw new ThisCannotHappenException("Relative units and unit == 0 do not go together.");
         }
     }
 
@@ -221,7 +204,7 @@ public abstract class Duration extends IrpObject implements IrStreamItem, Floata
 
     @Override
     public void decode(RecognizeData recognizeData, List<BitSpec> bitSpecStack, boolean isLast) throws SignalRecognitionException {
-        logger.log(recognizeData.logRecordEnter(this));
+        recognizeData.logEnter(logger, this);
         if (!recognizeData.check(isOn()))
             throw new SignalRecognitionException("Ether end of sequence, or found flash when gap expected, or vice versa");
 
@@ -233,7 +216,7 @@ public abstract class Duration extends IrpObject implements IrStreamItem, Floata
             throw new SignalRecognitionException(ex);
         }
         recognize(recognizeData, actual, wanted, isLast);
-        logger.log(recognizeData.logRecordExit(this));
+        recognizeData.logExit(logger, this);
     }
 
     @Override
@@ -282,8 +265,10 @@ public abstract class Duration extends IrpObject implements IrStreamItem, Floata
             recognizeData.consume(wanted);
         else if (recognizeData.leadoutOk(isLast))
             recognizeData.consume();
-        else
-            throw new SignalRecognitionException("Duration does not parse, wanted " + wanted + ", was " + actual + ", position = " + recognizeData.getPosition());
+        else {
+            int position = recognizeData.getPosition();
+            throw new SignalRecognitionException(() -> "Duration does not parse, wanted " + wanted + ", was " + actual + ", position = " + position);
+        }
     }
 
 
@@ -87,7 +87,7 @@ public final class Extent extends Duration {
 
     @Override
     public void decode(RecognizeData recognizeData, List<BitSpec> bitSpecStack, boolean isLast) throws SignalRecognitionException {
-        logger.log(recognizeData.logRecordEnter(this));
+        recognizeData.logEnter(logger, this);
         double elapsed = recognizeData.elapsed();
         double physical = recognizeData.get();
         double theoretical;
@@ -98,7 +98,7 @@ public final class Extent extends Duration {
         }
         recognizeData.markExtentStart();
         recognize(recognizeData, physical, theoretical, isLast);
-        logger.log(recognizeData.logRecordExit(this));
+        recognizeData.logExit(logger, this);
     }
 
     @Override
@@ -17,7 +17,6 @@ this program. If not, see http://www.gnu.org/licenses/.
 
 package org.harctoolbox.irp;
 
-import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
@@ -245,14 +244,14 @@ public final class FiniteBitField extends BitField implements IrStreamItem {
 
     @Override
     public void decode(RecognizeData recognizeData, List<BitSpec> bitSpecStack, boolean isLast) throws SignalRecognitionException {
-        logger.log(recognizeData.logRecordEnter(this));
+        recognizeData.logEnter(logger, this);
         try {
             long payload = collectData(recognizeData, bitSpecStack);
 
             // Can the data be computed with already present data?
             boolean success = isChecksum(recognizeData, payload);
             if (success) {
-                logger.log(recognizeData.logRecordExit(this));
+                recognizeData.logExit(logger, this);
                 return;
             }
 
@@ -261,17 +260,19 @@ public final class FiniteBitField extends BitField implements IrStreamItem {
             //PrimaryItem expression = data;
             //Long rhs = payload;
 
-            Equation equation = new Equation(this, payload, width.toLong(recognizeData.getNameEngine()), recognizeData);
-            String origEquation = equation.toString();
+            long bitFieldWidth = width.toLong(recognizeData.getNameEngine());
+            Equation equation = new Equation(this, payload, bitFieldWidth, recognizeData);
             boolean solved = equation.solve();
             if (!solved) {
-                throw new SignalRecognitionException("Could not solve equation: " + origEquation);
+                // The equation as it was before solve()
+                throw new SignalRecognitionException(() -> "Could not solve equation: " + this + "=" + new BitwiseParameter(payload, IrCoreUtils.ones(bitFieldWidth)));
             }
             recognizeData.add(equation.getName(), equation.getValue());
 
             solved = equation.expandLhsSolve();
             if (solved)
                 recognizeData.add(equation.getName(), equation.getValue());
+            recognizeData.logExit(logger, this);
         } catch (NameUnassignedException ex) {
             throw new SignalRecognitionException(ex);
         }
@@ -296,34 +297,15 @@ public final class FiniteBitField extends BitField implements IrStreamItem {
         int rest = numWidth % chunkSize;
         int noChunks = rest == 0 ? numWidth / chunkSize : numWidth / chunkSize + 1;
 
+        BitSpecMatcher matcher = bitSpec.getMatcher(recognizeData.getGeneralSpec());
         for (int chunk = 0; chunk < noChunks; chunk++) {
-            RecognizeData inData = null;
-            int bareIrStreamNo;
-            for (bareIrStreamNo = 0; bareIrStreamNo < bitSpec.size(); bareIrStreamNo++) {
-                inData = recognizeData.clone();
-                inData.setLevel(recognizeData.getLevel() + 1);
-                List<BitSpec> poppedStack = new ArrayList<>(bitSpecStack);
-                poppedStack.remove(poppedStack.size() - 1);
-
-                try {
-                    bitSpec.get(bareIrStreamNo).decode(inData, poppedStack, false);
-                    // match!
-                    break;
-                } catch (SignalRecognitionException ex) {
-                    // No match, just try the next one
-                }
-            }
-            assert (inData != null);
-
-            if (bareIrStreamNo == bitSpec.size())
+            int bareIrStreamNo = matcher != null ? matcher.match(recognizeData) : decodeChunk(recognizeData, bitSpecStack);
+            if (bareIrStreamNo < 0)
                 throw new SignalRecognitionException("FiniteBitField did not parse");
             if (recognizeData.getGeneralSpec().getBitDirection() == BitDirection.lsb) // <---
                 bareIrStreamNo = IrCoreUtils.reverse(bareIrStreamNo, chunkSize);
 
-            recognizeData.setPosition(inData.getPosition());
-            recognizeData.setHasConsumed(inData.getHasConsumed());
             payload = ((payload << (long) chunkSize)) | (long) bareIrStreamNo;
-            recognizeData.getNameEngine().add(inData.getNameEngine());
         }
 
         if (rest != 0) {
@@ -338,6 +320,31 @@ public final class FiniteBitField extends BitField implements IrStreamItem {
         return payload;
     }
 
+    // Decodes one chunk using the general recognizer, trying the bitcodes in order,
+    // backtracking using mark/rollback of the RecognizeData.
+    // Returns the number of the matching bitcode, or -1 if none matches.
+    private int decodeChunk(RecognizeData recognizeData, List<BitSpec> bitSpecStack) {
+        BitSpec bitSpec = bitSpecStack.get(bitSpecStack.size() - 1);
+        List<BitSpec> poppedStack = bitSpecStack.subList(0, bitSpecStack.size() - 1);
+        int level = recognizeData.getLevel();
+        for (int bareIrStreamNo = 0; bareIrStreamNo < bitSpec.size(); bareIrStreamNo++) {
+            int mark = recognizeData.mark();
+            recognizeData.setLevel(level + 1);
+            try {
+                bitSpec.get(bareIrStreamNo).decode(recognizeData, poppedStack, false);
+                // match!
+                recognizeData.commit(mark);
+                return bareIrStreamNo;
+            } catch (SignalRecognitionException ex) {
+                // No match, just try the next one
+                recognizeData.rollback(mark);
+            } finally {
+                recognizeData.setLevel(level);
+            }
+        }
+        return -1;
+    }
+
     @Override
     public BitwiseParameter invert(BitwiseParameter rhs, RecognizeData recognizeData/*, long oldBitmask*/) throws NameUnassignedException {
         long ch = getChop(recognizeData.getNameEngine());
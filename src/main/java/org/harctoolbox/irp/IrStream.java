@@ -213,6 +213,10 @@ public final class IrStream extends IrpObject implements IrStreamItem,AggregateL
         return list;
     }
 
+    BareIrStream getBareIrStream() {
+        return bareIrStream;
+    }
+
     @Override
     public void render(RenderData traverseData, List<BitSpec> bitSpecs) throws NameUnassignedException {
         bareIrStream.render(traverseData, bitSpecs);
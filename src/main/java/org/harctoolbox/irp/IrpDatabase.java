@@ -17,14 +17,26 @@ this program. If not, see http://www.gnu.org/licenses/.
 
 package org.harctoolbox.irp;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.File;
 import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.PrintStream;
 import java.io.Reader;
+import java.io.StringWriter;
 import java.io.UnsupportedEncodingException;
 import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
@@ -35,12 +47,22 @@ import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.regex.Pattern;
+import java.util.zip.CRC32;
 import static javax.xml.XMLConstants.W3C_XML_SCHEMA_INSTANCE_NS_URI;
 import static javax.xml.XMLConstants.XMLNS_ATTRIBUTE;
+import static javax.xml.XMLConstants.XMLNS_ATTRIBUTE_NS_URI;
 import static javax.xml.XMLConstants.XML_NS_URI;
+import javax.xml.transform.OutputKeys;
+import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerException;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.dom.DOMSource;
+import javax.xml.transform.stream.StreamResult;
 import javax.xml.validation.Schema;
 import org.harctoolbox.ircore.DumbHtmlRenderer;
 import org.harctoolbox.ircore.IrCoreUtils;
@@ -69,10 +91,13 @@ public final class IrpDatabase implements Iterable<NamedProtocol> {
     private static final Logger logger = Logger.getLogger(IrpDatabase.class.getName());
 
     public static final String DEFAULT_CONFIG_FILE = "/IrpProtocols.xml";
+    public static final String DEFAULT_SNAPSHOT_FILE = "/IrpProtocols.snapshot";
     public static final String IRP_PROTOCOL_NS = "http://www.harctoolbox.org/irp-protocols";
     public static final String IRP_PROTOCOL_SCHEMA_LOCATION = "http://www.harctoolbox.org/schemas/irp-protocols.xsd";
     public static final String IRP_NAMESPACE_PREFIX = "irp";
     private static final int MAX_RECURSION_DEPTH = 5;
+    private static final int SNAPSHOT_MAGIC = 0x49727044; // "IrpD"
+    private static final int SNAPSHOT_FORMAT_VERSION = 1;
 
     public static final String UNNAMED = "unnamed_protocol";
     public static final String PROTOCOL_NAME = "protocol";
@@ -199,8 +224,47 @@ public final class IrpDatabase implements Iterable<NamedProtocol> {
         return map;
     }
 
-    private static InputStream mkStream(String file) throws FileNotFoundException {
-        return (file == null || file.isEmpty()) ? IrpDatabase.class.getResourceAsStream(DEFAULT_CONFIG_FILE) : IrCoreUtils.getInputSteam(file);
+    private static byte[] readDefaultConfigFile() throws IOException {
+        try (InputStream inputStream = IrpDatabase.class.getResourceAsStream(DEFAULT_CONFIG_FILE)) {
+            if (inputStream == null)
+                throw new FileNotFoundException(DEFAULT_CONFIG_FILE);
+            ByteArrayOutputStream outputStream = new ByteArrayOutputStream(128 * 1024);
+            byte[] buffer = new byte[8192];
+            int n;
+            while ((n = inputStream.read(buffer)) != -1)
+                outputStream.write(buffer, 0, n);
+            return outputStream.toByteArray();
+        }
+    }
+
+    private static long checksum(byte[] data) {
+        CRC32 crc = new CRC32();
+        crc.update(data);
+        return crc.getValue();
+    }
+
+    /**
+     * Writes a snapshot of the data base read from the XML file given as first argument,
+     * to the file given as second argument. Invoked from the build.
+     * Since the snapshot is optional, failure only gives a warning, and leaves no snapshot file;
+     * in particular, it does not terminate the JVM, which is shared with Maven.
+     * @param args XML file, snapshot file.
+     */
+    public static void main(String[] args) {
+        if (args.length != 2) {
+            System.err.println("Usage: " + IrpDatabase.class.getName() + " <IrpProtocols.xml> <snapshot-file>");
+            return;
+        }
+        try {
+            byte[] xml = Files.readAllBytes(Paths.get(args[0]));
+            IrpDatabase irpDatabase = new IrpDatabase(new ByteArrayInputStream(xml));
+            try (OutputStream outputStream = new BufferedOutputStream(new FileOutputStream(args[1]))) {
+                irpDatabase.writeSnapshot(outputStream, checksum(xml));
+            }
+        } catch (IOException | IrpParseException | RuntimeException ex) {
+            logger.log(Level.WARNING, "Snapshot not generated: {0}", ex.toString());
+            new File(args[1]).delete();
+        }
     }
 
     public static IrpDatabase newDefaultIrpDatabase() {
@@ -222,6 +286,13 @@ public final class IrpDatabase implements Iterable<NamedProtocol> {
 
     private Map<String, String> aliases;
 
+    // Parsed protocols, keyed like protocols, parsed on demand, and invalidated when the protocol changes.
+    // Clients get copies, sharing the parse, but with their own memory variables.
+    private final Map<String, NamedProtocol> parsedProtocols = new ConcurrentHashMap<>(16);
+
+    // If non-null, used by render(String, Map).
+    private volatile RenderCache renderCache = null;
+
     public IrpDatabase(Reader reader) throws IOException, IrpParseException {
         this(openXmlReader(reader));
     }
@@ -234,8 +305,23 @@ public final class IrpDatabase implements Iterable<NamedProtocol> {
         this(openXmlFile(file));
     }
 
+    /**
+     * Reads the data base from the file or URL given.
+     * If it is null or empty, the data base is instead read from the default resource {@link #DEFAULT_CONFIG_FILE}.
+     * In that case, the precompiled snapshot {@link #DEFAULT_SNAPSHOT_FILE} is used if it exists and is up to date,
+     * which avoids parsing the XML.
+     * @param file
+     * @throws IOException
+     * @throws IrpParseException
+     */
     public IrpDatabase(String file) throws IOException, IrpParseException {
-        this(mkStream(file));
+        this();
+        if (file == null || file.isEmpty())
+            loadDefault();
+        else
+            patch(openXmlStream(IrCoreUtils.getInputSteam(file)));
+        expand();
+        rebuildAliases();
     }
 
     public IrpDatabase(String[] files) throws IrpParseException, IOException {
@@ -275,6 +361,123 @@ public final class IrpDatabase implements Iterable<NamedProtocol> {
         rebuildAliases();
     }
 
+    private void loadDefault() throws IOException {
+        byte[] xml = readDefaultConfigFile();
+        long checksum = checksum(xml);
+        try (InputStream inputStream = IrpDatabase.class.getResourceAsStream(DEFAULT_SNAPSHOT_FILE)) {
+            if (inputStream == null)
+                logger.log(Level.FINE, "No {0} found, reading {1}", new Object[]{DEFAULT_SNAPSHOT_FILE, DEFAULT_CONFIG_FILE});
+            else if (loadSnapshot(new BufferedInputStream(inputStream), checksum))
+                return;
+            else
+                logger.log(Level.WARNING, "{0} is stale, reading {1}", new Object[]{DEFAULT_SNAPSHOT_FILE, DEFAULT_CONFIG_FILE});
+        } catch (IOException ex) {
+            // e.g. truncated file; loadSnapshot leaves this unmodified.
+            logger.log(Level.WARNING, "{0} unreadable ({1}), reading {2}", new Object[]{DEFAULT_SNAPSHOT_FILE, ex.toString(), DEFAULT_CONFIG_FILE});
+        }
+        patch(openXmlStream(new ByteArrayInputStream(xml)));
+    }
+
+    /**
+     * Writes the (unparsed) protocols of the data base in a compact binary format,
+     * that can be read back considerably faster than the XML file.
+     * The XML valued properties, like the documentation, are stored as strings, and only turned into DOM on demand.
+     * @param outputStream
+     * @param checksum Checksum of the XML file the data base was read from; used to determine if the snapshot is stale.
+     * @throws IOException
+     */
+    public void writeSnapshot(OutputStream outputStream, long checksum) throws IOException {
+        DataOutputStream out = new DataOutputStream(outputStream);
+        out.writeInt(SNAPSHOT_MAGIC);
+        out.writeInt(SNAPSHOT_FORMAT_VERSION);
+        out.writeLong(checksum);
+        writeString(out, getVersion());
+        out.writeInt(protocols.size());
+        for (Map.Entry<String, UnparsedProtocol> kvp : protocols.entrySet()) {
+            writeString(out, kvp.getKey());
+            kvp.getValue().writeSnapshot(out);
+        }
+        out.flush();
+    }
+
+    /**
+     * Reads a snapshot written by {@link #writeSnapshot}.
+     * @param inputStream
+     * @param checksum Checksum of the XML file the snapshot is expected to have been generated from.
+     * @return IrpDatabase, or null if the snapshot is stale.
+     * @throws IOException
+     * @throws IrpParseException
+     */
+    static IrpDatabase readSnapshot(InputStream inputStream, long checksum) throws IOException, IrpParseException {
+        IrpDatabase irpDatabase = new IrpDatabase();
+        if (!irpDatabase.loadSnapshot(inputStream, checksum))
+            return null;
+
+        irpDatabase.expand();
+        irpDatabase.rebuildAliases();
+        return irpDatabase;
+    }
+
+    /**
+     * Reads a snapshot written by {@link #writeSnapshot}, unless it is stale.
+     * @return true if the snapshot was read, false if it is stale or of a different format, in which case this is not modified.
+     */
+    private boolean loadSnapshot(InputStream inputStream, long checksum) throws IOException {
+        DataInputStream in = new DataInputStream(inputStream);
+        if (in.readInt() != SNAPSHOT_MAGIC || in.readInt() != SNAPSHOT_FORMAT_VERSION || in.readLong() != checksum)
+            return false;
+
+        String snapshotVersion = readString(in);
+        int size = in.readInt();
+        Map<String, UnparsedProtocol> map = new LinkedHashMap<>(2 * size);
+        for (int i = 0; i < size; i++) {
+            String key = readString(in);
+            map.put(key, UnparsedProtocol.readSnapshot(in));
+        }
+        appendToVersion(snapshotVersion);
+        protocols = map;
+        return true;
+    }
+
+    private static void writeString(DataOutputStream out, String string) throws IOException {
+        byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static <T> void writeMap(DataOutputStream out, Map<String, List<T>> map, Function<T, String> toString) throws IOException {
+        out.writeInt(map.size());
+        for (Map.Entry<String, List<T>> kvp : map.entrySet()) {
+            writeString(out, kvp.getKey());
+            List<T> list = kvp.getValue();
+            out.writeInt(list == null ? -1 : list.size());
+            if (list != null)
+                for (T t : list)
+                    writeString(out, toString.apply(t));
+        }
+    }
+
+    private static void readMap(DataInputStream in, Map<String, List<String>> map) throws IOException {
+        int size = in.readInt();
+        for (int i = 0; i < size; i++) {
+            String key = readString(in);
+            int length = in.readInt();
+            List<String> list = null;
+            if (length >= 0) {
+                list = new ArrayList<>(length);
+                for (int j = 0; j < length; j++)
+                    list.add(readString(in));
+            }
+            map.put(key, list);
+        }
+    }
+
     public void patch(Reader reader) throws IOException {
         patch(openXmlReader(reader));
     }
@@ -305,6 +508,7 @@ public final class IrpDatabase implements Iterable<NamedProtocol> {
             return;
 
         String nameLower = name.toLowerCase(Locale.US);
+        parsedProtocols.remove(nameLower);
         UnparsedProtocol existing = protocols.get(nameLower);
         if (existing != null) {
             if (proto.isEmpty())
@@ -550,16 +754,19 @@ public final class IrpDatabase implements Iterable<NamedProtocol> {
 
     public void addProperty(String protocolName, String key, String value) throws UnknownProtocolException {
         UnparsedProtocol prot = getUnparsedProtocolNonNull(protocolName);
+        invalidate(protocolName);
         prot.addProperty(key, value);
     }
 
     public void setProperties(String protocolName, String key, List<String> properties) throws UnknownProtocolException {
         UnparsedProtocol prot = getUnparsedProtocolNonNull(protocolName);
+        invalidate(protocolName);
         prot.setProperties(key, properties);
     }
 
     public void removeProperties(String protocolName, String key) throws UnknownProtocolException {
         UnparsedProtocol prot = getUnparsedProtocolNonNull(protocolName);
+        invalidate(protocolName);
         prot.removeProperties(key);
     }
 
@@ -570,17 +777,39 @@ public final class IrpDatabase implements Iterable<NamedProtocol> {
 
     public void setXmlProperties(String protocolName, String key, List<DocumentFragment> properties) throws UnknownProtocolException {
         UnparsedProtocol prot = getUnparsedProtocolNonNull(protocolName);
+        invalidate(protocolName);
         prot.setXmlProperties(key, properties);
     }
 
     public void removeXmlProperties(String protocolName, String key) throws UnknownProtocolException {
         UnparsedProtocol prot = getUnparsedProtocolNonNull(protocolName);
+        invalidate(protocolName);
         prot.removeProperties(key);
     }
 
+    /**
+     * Returns the protocol with the given name.
+     * The protocol is parsed on the first request, subsequent requests return copies sharing this parse.
+     * Every call returns a new object, with its own memory variables (like the toggle) in their initial state.
+     * @param protocolName
+     * @return
+     * @throws UnknownProtocolException
+     * @throws InvalidNameException
+     * @throws UnsupportedRepeatException
+     * @throws IrpInvalidArgumentException
+     * @throws NameUnassignedException
+     */
     public NamedProtocol getNamedProtocol(String protocolName) throws UnknownProtocolException, InvalidNameException, UnsupportedRepeatException, IrpInvalidArgumentException, NameUnassignedException {
-        UnparsedProtocol prot = getUnparsedProtocolNonNull(protocolName);
-        return prot.toNamedProtocol();
+        String key = protocolName.toLowerCase(Locale.US);
+        NamedProtocol parsed = parsedProtocols.get(key);
+        if (parsed == null) {
+            UnparsedProtocol prot = getUnparsedProtocolNonNull(protocolName);
+            parsed = prot.toNamedProtocol();
+            NamedProtocol existing = parsedProtocols.putIfAbsent(key, parsed);
+            if (existing != null)
+                parsed = existing;
+        }
+        return new NamedProtocol(parsed);
     }
 
     public NamedProtocol getNamedProtocolExpandAlias(String protocolName) throws UnknownProtocolException, InvalidNameException, UnsupportedRepeatException, IrpInvalidArgumentException, NameUnassignedException {
@@ -622,6 +851,7 @@ public final class IrpDatabase implements Iterable<NamedProtocol> {
                 logger.log(Level.FINEST, "Protocol {0}: `{1}'' replaced by `{2}''.", new Object[]{name, p_name, replacement});
                 p.setUniqueProperty(IRP_NAME, p.getIrp().replaceAll(p_name, replacement));
                 protocols.put(name, p);
+                invalidate(name);
                 if (depth < MAX_RECURSION_DEPTH)
                     expand(depth + 1, name);
                 else
@@ -643,9 +873,14 @@ public final class IrpDatabase implements Iterable<NamedProtocol> {
             throw new UnknownProtocolException(protocolName);
 
         protocols.remove(protocolName.toLowerCase(Locale.US));
+        invalidate(protocolName);
         removeAliases(protocolName);
     }
 
+    private void invalidate(String protocolName) {
+        parsedProtocols.remove(protocolName.toLowerCase(Locale.US));
+    }
+
     private void removeAliases(String protocolName) {
         ArrayList<String> result = new ArrayList<>(4);
         aliases.entrySet().stream().filter((kvp) -> (kvp.getValue().equals(protocolName))).forEachOrdered((kvp) -> {
@@ -667,7 +902,7 @@ public final class IrpDatabase implements Iterable<NamedProtocol> {
     public Protocol getProtocol(String protocolName) throws UnknownProtocolException, UnsupportedRepeatException, NameUnassignedException, InvalidNameException, IrpInvalidArgumentException {
         if (!isKnown(protocolName))
             throw new UnknownProtocolException(protocolName);
-        return new Protocol(getIrp(protocolName));
+        return new Protocol(getNamedProtocol(protocolName));
     }
 
     public Protocol getProtocolExpandAlias(String protocolName) throws UnknownProtocolException, UnsupportedRepeatException, NameUnassignedException, InvalidNameException, IrpInvalidArgumentException {
@@ -695,8 +930,43 @@ public final class IrpDatabase implements Iterable<NamedProtocol> {
     }
 
     public IrSignal render(String protocolName, Map<String, Long> params) throws IrpException {
+        RenderCache cache = renderCache;
+        if (cache == null) {
+            Protocol protocol = getProtocolExpandAlias(protocolName);
+            return protocol.toIrSignal(params);
+        }
+
+        // The key consists of the IRP text and the parameters. getProtocolExpandAlias returns a fresh copy
+        // of the (cached) parsed protocol, with its memory variables in their initial state,
+        // so the key determines the result. Changed protocols have another IRP, and just cause cache misses.
+        String irp = getIrpExpandAlias(protocolName);
+        if (irp == null)
+            return getProtocolExpandAlias(protocolName).toIrSignal(params);
+
+        RenderCache.Key key = new RenderCache.Key(irp, params);
+        RenderCache.Value value = cache.get(key);
+        if (value != null)
+            return value.getIrSignal();
+
         Protocol protocol = getProtocolExpandAlias(protocolName);
-        return protocol.toIrSignal(params);
+        IrSignal irSignal = protocol.toIrSignal(params);
+        cache.put(key, new RenderCache.Value(irSignal, Collections.emptyMap()));
+        return irSignal;
+    }
+
+    /**
+     * @return the RenderCache used by {@link #render(String, Map)}, or null if none.
+     */
+    public RenderCache getRenderCache() {
+        return renderCache;
+    }
+
+    /**
+     * Sets a RenderCache to be used by {@link #render(String, Map)}.
+     * @param renderCache RenderCache, or null for no caching.
+     */
+    public void setRenderCache(RenderCache renderCache) {
+        this.renderCache = renderCache;
     }
 
     /**
@@ -706,7 +976,7 @@ public final class IrpDatabase implements Iterable<NamedProtocol> {
      */
     @Override
     public Iterator<NamedProtocol> iterator() {
-        return new NamedProtocolIterator(protocols);
+        return new NamedProtocolIterator(this);
     }
 
     private void appendToVersion(String version) {
@@ -745,22 +1015,23 @@ public final class IrpDatabase implements Iterable<NamedProtocol> {
     }
 
     private static class NamedProtocolIterator implements Iterator<NamedProtocol> {
-        private Iterator<UnparsedProtocol> unparsedIterator;
+        private final IrpDatabase irpDatabase;
+        private final Iterator<String> keyIterator;
 
-        private NamedProtocolIterator(Map<String, UnparsedProtocol> map) {
-            unparsedIterator = map.values().iterator();
+        private NamedProtocolIterator(IrpDatabase irpDatabase) {
+            this.irpDatabase = irpDatabase;
+            keyIterator = irpDatabase.protocols.keySet().iterator();
         }
 
         @Override
         public boolean hasNext() {
-            return unparsedIterator.hasNext();
+            return keyIterator.hasNext();
         }
 
         @Override
         public NamedProtocol next() {
             try {
-                UnparsedProtocol unparsed = unparsedIterator.next();
-                return unparsed.toNamedProtocol();
+                return irpDatabase.getNamedProtocol(keyIterator.next());
             } catch (IrpException ex) {
                 throw new ThisCannotHappenException(ex);
             }
@@ -803,9 +1074,67 @@ public final class IrpDatabase implements Iterable<NamedProtocol> {
             });
         }
 
+        static UnparsedProtocol readSnapshot(DataInputStream in) throws IOException {
+            UnparsedProtocol protocol = new UnparsedProtocol();
+            readMap(in, protocol.map);
+            Map<String, List<String>> source = new LinkedHashMap<>(APRIORI_SIZE);
+            readMap(in, source);
+            if (!source.isEmpty())
+                protocol.xmlSource = source;
+            return protocol;
+        }
+
+        private static String documentFragmentToString(DocumentFragment fragment) {
+            try {
+                Document doc = XmlUtils.newDocument(true);
+                Element root = doc.createElementNS(IRP_PROTOCOL_NS, IRP_NAMESPACE_PREFIX + ":" + PARAMETER_NAME);
+                doc.appendChild(root);
+                root.appendChild(doc.importNode(fragment, true));
+                declareNamespaces(root, root);
+                Transformer transformer = TransformerFactory.newInstance().newTransformer();
+                transformer.setOutputProperty(OutputKeys.OMIT_XML_DECLARATION, "yes");
+                StringWriter writer = new StringWriter(256);
+                transformer.transform(new DOMSource(doc), new StreamResult(writer));
+                return writer.toString();
+            } catch (TransformerException ex) {
+                throw new ThisCannotHappenException(ex);
+            }
+        }
+
+        // Declare the namespaces used in the fragment on the wrapper element, where they were inherited from in the original document.
+        // Otherwise, the serializer would declare them on the elements, and they would come back as attributes.
+        private static void declareNamespaces(Element root, Node node) {
+            NodeList children = node.getChildNodes();
+            for (int i = 0; i < children.getLength(); i++) {
+                Node child = children.item(i);
+                if (child.getNodeType() == Node.ELEMENT_NODE) {
+                    String namespaceURI = child.getNamespaceURI();
+                    if (namespaceURI != null) {
+                        String attributeName = child.getPrefix() == null ? XMLNS_ATTRIBUTE : XMLNS_ATTRIBUTE + ":" + child.getPrefix();
+                        if (!root.hasAttributeNS(XMLNS_ATTRIBUTE_NS_URI, child.getPrefix() == null ? XMLNS_ATTRIBUTE : child.getPrefix())
+                                && !namespaceURI.equals(root.lookupNamespaceURI(child.getPrefix())))
+                            root.setAttributeNS(XMLNS_ATTRIBUTE_NS_URI, attributeName, namespaceURI);
+                    }
+                    declareNamespaces(root, child);
+                }
+            }
+        }
+
+        private static DocumentFragment stringToDocumentFragment(String string) {
+            try {
+                Document doc = XmlUtils.parseStringToXmlDocument(string, true, false);
+                return nodeListToDocumentFragment(doc.getDocumentElement().getChildNodes());
+            } catch (SAXException ex) {
+                throw new ThisCannotHappenException(ex);
+            }
+        }
+
         private Map<String, List<String>> map;
         private Map<String, List<DocumentFragment>> xmlMap;
 
+        // XML valued properties read from a snapshot, not yet turned into DOM; null if none.
+        private Map<String, List<String>> xmlSource = null;
+
         UnparsedProtocol() {
             map = new LinkedHashMap<>(APRIORI_SIZE); // want to preserve order
             xmlMap = new HashMap<>(APRIORI_SIZE);
@@ -839,19 +1168,41 @@ public final class IrpDatabase implements Iterable<NamedProtocol> {
             this(key, irp, null);
         }
 
+        private synchronized Map<String, List<DocumentFragment>> xmlMap() {
+            if (xmlSource != null) {
+                for (Map.Entry<String, List<String>> kvp : xmlSource.entrySet()) {
+                    List<String> strings = kvp.getValue();
+                    List<DocumentFragment> list = null;
+                    if (strings != null) {
+                        list = new ArrayList<>(strings.size());
+                        for (String string : strings)
+                            list.add(stringToDocumentFragment(string));
+                    }
+                    xmlMap.put(kvp.getKey(), list);
+                }
+                xmlSource = null;
+            }
+            return xmlMap;
+        }
+
+        private void writeSnapshot(DataOutputStream out) throws IOException {
+            writeMap(out, map, (s) -> s);
+            writeMap(out, xmlMap(), UnparsedProtocol::documentFragmentToString);
+        }
+
         private void patch(UnparsedProtocol patchProtocol) {
             patchMap(map, patchProtocol.map);
-            patchMap(xmlMap, patchProtocol.xmlMap);
+            patchMap(xmlMap(), patchProtocol.xmlMap());
         }
 
         private void addXmlProperty(String key, DocumentFragment fragment) {
             if (!fragment.hasChildNodes())
-                xmlMap.put(key, null);
+                xmlMap().put(key, null);
             else {
-                List<DocumentFragment> list = xmlMap.get(key);
+                List<DocumentFragment> list = xmlMap().get(key);
                 if (list == null) {
                     list = new ArrayList<>(1);
-                    xmlMap.put(key,list);
+                    xmlMap().put(key,list);
                 }
                 list.add(fragment);
             }
@@ -919,15 +1270,15 @@ public final class IrpDatabase implements Iterable<NamedProtocol> {
         }
 
         List<DocumentFragment> getXmlProperties(String key) {
-            return xmlMap != null ? xmlMap.get(key) : null;
+            return xmlMap().get(key);
         }
 
         void setXmlProperties(String key, List<DocumentFragment> list) {
-            xmlMap.put(key, list);
+            xmlMap().put(key, list);
         }
 
         void removeXmlProperties(String key) {
-            xmlMap.remove(key);
+            xmlMap().remove(key);
         }
 
         List<String> getProperties(String key) {
@@ -1015,7 +1366,7 @@ public final class IrpDatabase implements Iterable<NamedProtocol> {
                 }
             }
 
-            xmlMap.entrySet().forEach((kvp) -> {
+            xmlMap().entrySet().forEach((kvp) -> {
                 List<DocumentFragment> list = kvp.getValue();
                 if (list != null)
                     list.forEach((documentFragment) -> {
@@ -1033,7 +1384,7 @@ public final class IrpDatabase implements Iterable<NamedProtocol> {
 
         private boolean isEmpty() {
             // There is always the name
-            return map.size() <= 1 && xmlMap.isEmpty();
+            return map.size() <= 1 && xmlMap().isEmpty();
         }
     }
 }
@@ -33,4 +33,8 @@ public abstract class IrpException extends Exception {
     public IrpException(Throwable ex) {
         super(ex);
     }
+
+    protected IrpException(String message, Throwable cause, boolean enableSuppression, boolean writableStackTrace) {
+        super(message, cause, enableSuppression, writableStackTrace);
+    }
 }
@@ -67,6 +67,9 @@ public final class Name extends PrimaryItem implements Floatable {
 
     private final String name;
 
+    // Slot in the SymbolTable last looked up, see slot(SymbolTable).
+    private Slot slot = null;
+
     public Name(IrpParser.NameContext ctx) {
         super(ctx);
         name = ctx.getText();
@@ -168,6 +171,33 @@ public final class Name extends PrimaryItem implements Floatable {
 
     @Override
     public BitwiseParameter toBitwiseParameter(RecognizeData recognizeData) {
-        return recognizeData.toBitwiseParameter(toString());
+        return recognizeData.toBitwiseParameter(this);
+    }
+
+    /**
+     * Returns the slot of the name in the SymbolTable.
+     * It is cached, so that the names of a protocol are looked up only once in the SymbolTable of the protocol.
+     * @param symbolTable
+     * @return slot, or -1 if not present.
+     */
+    int slot(SymbolTable symbolTable) {
+        Slot cached = slot;
+        if (cached == null || cached.symbolTable != symbolTable) {
+            cached = new Slot(symbolTable, symbolTable.slot(name));
+            slot = cached;
+        }
+        return cached.index;
+    }
+
+    // Immutable, so it can be replaced without synchronization by threads decoding simultaneously.
+    private static final class Slot {
+
+        private final SymbolTable symbolTable;
+        private final int index;
+
+        Slot(SymbolTable symbolTable, int index) {
+            this.symbolTable = symbolTable;
+            this.index = index;
+        }
     }
 }
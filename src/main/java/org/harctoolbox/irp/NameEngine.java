@@ -18,6 +18,7 @@ this program. If not, see http://www.gnu.org/licenses/.
 package org.harctoolbox.irp;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
@@ -82,6 +83,8 @@ public final class NameEngine extends IrpObject implements AggregateLister, Iter
     }
 
     private Map<String, Expression> map;
+    // If true, map is an unmodifiable view of the map of another NameEngine, to be copied before modification.
+    private boolean copyOnWrite = false;
 
     public NameEngine(Map<String, Long> numericalParameters) {
         this(null, mapConvert(numericalParameters));
@@ -121,6 +124,26 @@ public final class NameEngine extends IrpObject implements AggregateLister, Iter
         this(null, new HashMap<String, Expression>(orig.map));
     }
 
+    /**
+     * Returns a copy of the argument, that shares its map until it is modified.
+     * The argument must not be modified afterwards, like the initial definitions of a Protocol.
+     * @param orig
+     * @return
+     */
+    static NameEngine copyOnWrite(NameEngine orig) {
+        NameEngine nameEngine = new NameEngine(null, Collections.unmodifiableMap(orig.map));
+        nameEngine.copyOnWrite = true;
+        return nameEngine;
+    }
+
+    private Map<String, Expression> writableMap() {
+        if (copyOnWrite) {
+            map = new HashMap<>(map);
+            copyOnWrite = false;
+        }
+        return map;
+    }
+
     @Override
     public int hashCode() {
         int hash = 7;
@@ -218,7 +241,7 @@ public final class NameEngine extends IrpObject implements AggregateLister, Iter
 
     public void define(String name, Expression expression) throws InvalidNameException {
         Name.checkName(name);
-        map.put(name, expression);
+        writableMap().put(name, expression);
     }
 
     public void define(String name, java.lang.Number value) throws InvalidNameException {
@@ -288,8 +311,33 @@ public final class NameEngine extends IrpObject implements AggregateLister, Iter
         return map.containsKey(name);
     }
 
+    /**
+     * Defines the name, without checking it, for names known to be valid, like the ones of a parsed protocol.
+     * @param name
+     * @param expression
+     */
+    void assign(String name, Expression expression) {
+        writableMap().put(name, expression);
+    }
+
+    void assign(String name, long value) {
+        writableMap().put(name, NumberExpression.valueOf(value));
+    }
+
+    /**
+     * Undoes a define, for backtracking.
+     * @param name
+     * @param old previous definition, null if not defined.
+     */
+    void restore(String name, Expression old) {
+        if (old == null)
+            writableMap().remove(name);
+        else
+            writableMap().put(name, old);
+    }
+
     void add(NameEngine definitions) {
-        map.putAll(definitions.map);
+        writableMap().putAll(definitions.map);
     }
 
     @Override
@@ -348,7 +396,7 @@ public final class NameEngine extends IrpObject implements AggregateLister, Iter
                     throw new ThisCannotHappenException(ex);
                 }
             } else
-                map.put(name, val);
+                writableMap().put(name, val);
         }
     }
 
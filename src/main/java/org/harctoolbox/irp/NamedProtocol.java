@@ -108,6 +108,29 @@ public final class NamedProtocol extends Protocol implements HasPreferOvers,Comp
         });
     }
 
+    /**
+     * Copy constructor, sharing the parsed protocol with the original.
+     * The memory variables of the copy are in their initial state.
+     * @param namedProtocol
+     * @throws NameUnassignedException
+     */
+    NamedProtocol(NamedProtocol namedProtocol) throws NameUnassignedException {
+        super(namedProtocol);
+        name = namedProtocol.name;
+        cName = namedProtocol.cName;
+        htmlDocumentation = namedProtocol.htmlDocumentation;
+        absoluteTolerance = namedProtocol.absoluteTolerance;
+        relativeTolerance = namedProtocol.relativeTolerance;
+        frequencyTolerance = namedProtocol.frequencyTolerance;
+        frequencyLower = namedProtocol.frequencyLower;
+        frequencyUpper = namedProtocol.frequencyUpper;
+        minimumLeadout = namedProtocol.minimumLeadout;
+        decodable = namedProtocol.decodable;
+        preferOver = namedProtocol.preferOver;
+        auxParameters = namedProtocol.auxParameters;
+        rejectRepeatless = namedProtocol.rejectRepeatless;
+    }
+
     public NamedProtocol(String name, String irp, DocumentFragment documentation) throws InvalidNameException, UnsupportedRepeatException, NameUnassignedException, IrpInvalidArgumentException {
         this(name, IrpUtils.toCIdentifier(name), irp, documentation, null, null, null, null, null, null, null, null, null, new HashMap<>(0));
     }
@@ -211,11 +234,21 @@ public final class NamedProtocol extends Protocol implements HasPreferOvers,Comp
     {
         if (!isDecodeable())
             throw new ProtocolNotDecodableException(name);
-        logger.log(Level.FINE, "Protocol: {0}: \"{1}\", actual data: {2}", new Object[]{getName(), getIrp(), irSignal.toString(true)});
+        if (logger.isLoggable(Level.FINE))
+            logger.log(Level.FINE, "Protocol: {0}: \"{1}\", actual data: {2}", new Object[]{getName(), getIrp(), irSignal.toString(true)});
 
         Decoder.DecoderParameters fixedParams = params.adjust(isRejectRepeats(), frequencyTolerance, absoluteTolerance, relativeTolerance, minimumLeadout);
-        Map<String, Long> parameters = super.recognize(irSignal, fixedParams);
-        return parameters;
+        DecodeTrace.Attempt attempt = fixedParams.startTraceAttempt(getName(), irSignal, 0);
+        try {
+            Map<String, Long> parameters = super.recognize(irSignal, fixedParams);
+            if (attempt != null)
+                attempt.success();
+            return parameters;
+        } catch (SignalRecognitionException ex) {
+            if (attempt != null)
+                attempt.failure(ex);
+            throw ex;
+        }
     }
 
     /**
@@ -233,10 +266,20 @@ public final class NamedProtocol extends Protocol implements HasPreferOvers,Comp
         if (!isDecodeable())
             throw new ProtocolNotDecodableException(name);
 
-        logger.log(Level.FINE, "Protocol: {0}: \"{1}\", actual data: {2}", new Object[]{getName(), getIrp(), irSequence.toString(true)});
-        Decoder.DecoderParameters fixedParams = params.adjust(false/*isRejectRepeats()*/, frequencyTolerance, absoluteTolerance, relativeTolerance, minimumLeadout);
-        Decoder.Decode decode = super.recognize(irSequence, beginPos, isRejectRepeats(), fixedParams);
-        return new Decoder.Decode(this, decode);
+        if (logger.isLoggable(Level.FINE))
+            logger.log(Level.FINE, "Protocol: {0}: \"{1}\", actual data: {2}", new Object[]{getName(), getIrp(), irSequence.toString(true)});
+        Decoder.DecoderParameters fixedParams = adjustParameters(params);
+        DecodeTrace.Attempt attempt = fixedParams.startTraceAttempt(getName(), irSequence, beginPos);
+        try {
+            Decoder.Decode decode = super.recognize(irSequence, beginPos, isRejectRepeats(), fixedParams);
+            if (attempt != null)
+                attempt.success();
+            return new Decoder.Decode(this, decode);
+        } catch (SignalRecognitionException ex) {
+            if (attempt != null)
+                attempt.failure(ex);
+            throw ex;
+        }
     }
 
     @SuppressWarnings("null")
@@ -247,14 +290,44 @@ public final class NamedProtocol extends Protocol implements HasPreferOvers,Comp
             return;
         }
 
-        double lower = frequencyLower != null ? frequencyLower : getFrequencyWithDefault() - params.getFrequencyTolerance();
-        double upper = frequencyUpper != null ? frequencyUpper : getFrequencyWithDefault() + params.getFrequencyTolerance();
-        boolean success = inInterval(frequency, lower, upper);
+        boolean success = frequencyMatches(frequency, params);
         logger.log(Level.FINER, "Frequency was checked, {0}OK.", success ? "" : "NOT ");
         if (!success)
             throw new SignalRecognitionException("Frequency does not match");
     }
 
+    @Override
+    protected boolean frequencyMatches(double frequency, Decoder.DecoderParameters params) {
+        if (params.getFrequencyTolerance() < 0)
+            return true;
+
+        double lower = frequencyLower != null ? frequencyLower : getFrequencyWithDefault() - params.getFrequencyTolerance();
+        double upper = frequencyUpper != null ? frequencyUpper : getFrequencyWithDefault() + params.getFrequencyTolerance();
+        return inInterval(frequency, lower, upper);
+    }
+
+    /**
+     * Starts a recognition that is continued frame by frame, with the protocol specific tolerances.
+     * @param params
+     * @return
+     * @throws org.harctoolbox.irp.Protocol.ProtocolNotDecodableException
+     */
+    Recognition newRecognition(Decoder.DecoderParameters params) throws ProtocolNotDecodableException {
+        if (!isDecodeable())
+            throw new ProtocolNotDecodableException(name);
+
+        return newRecognition(adjustParameters(params), isRejectRepeats());
+    }
+
+    /**
+     * Returns the decoder parameters, adjusted for the protocol specific tolerances, as used by the recognize functions.
+     * @param params
+     * @return
+     */
+    Decoder.DecoderParameters adjustParameters(Decoder.DecoderParameters params) {
+        return params.adjust(false, frequencyTolerance, absoluteTolerance, relativeTolerance, minimumLeadout);
+    }
+
     @Override
     public String warningsString() {
         String str = super.warningsString();
@@ -299,11 +372,31 @@ public final class NamedProtocol extends Protocol implements HasPreferOvers,Comp
     }
 
     public IrSignal render(NameEngine nameEngine) throws DomainViolationException, NameUnassignedException, IrpInvalidArgumentException, InvalidNameException, ProtocolNotRenderableException {
+        checkRenderable();
+        return super.toIrSignal(nameEngine);
+    }
+
+    /**
+     * Renders the protocol with the parameters given, using the RenderCache argument.
+     * @param params
+     * @param renderCache
+     * @return IrSignal, possibly from the cache. Must not be modified.
+     * @throws DomainViolationException
+     * @throws NameUnassignedException
+     * @throws IrpInvalidArgumentException
+     * @throws InvalidNameException
+     * @throws org.harctoolbox.irp.Protocol.ProtocolNotRenderableException
+     */
+    public IrSignal render(Map<String, Long> params, RenderCache renderCache) throws DomainViolationException, NameUnassignedException, IrpInvalidArgumentException, InvalidNameException, ProtocolNotRenderableException {
+        checkRenderable();
+        return renderCache.render(this, params);
+    }
+
+    private void checkRenderable() throws ProtocolNotRenderableException {
         List<String> list = auxParameters.get(IrpDatabase.DECODE_ONLY_NAME);
         if (list != null)
             if (Boolean.parseBoolean(list.get(0)))
                 throw new ProtocolNotRenderableException(name);
-        return super.toIrSignal(nameEngine);
     }
 
     @Override
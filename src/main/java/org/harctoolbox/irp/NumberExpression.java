@@ -29,6 +29,24 @@ import org.w3c.dom.Element;
  */
 final class NumberExpression extends PrimaryItemExpression {
 
+    private static final int CACHE_SIZE = 256;
+    private static final NumberExpression[] cache = new NumberExpression[CACHE_SIZE];
+
+    static {
+        for (int i = 0; i < CACHE_SIZE; i++)
+            cache[i] = new NumberExpression((long) i);
+    }
+
+    /**
+     * Returns a NumberExpression for the value, shared for small non-negative values,
+     * like Long.valueOf. This saves allocations for the values assigned during rendering.
+     * @param value
+     * @return
+     */
+    static NumberExpression valueOf(long value) {
+        return value >= 0 && value < CACHE_SIZE ? cache[(int) value] : new NumberExpression(value);
+    }
+
     static NumberExpression newExpression(IrpParser.NumberContext numberContext) {
         return new NumberExpression(numberContext, numberContext);
     }
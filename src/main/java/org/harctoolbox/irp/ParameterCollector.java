@@ -17,8 +17,9 @@ this program. If not, see http://www.gnu.org/licenses/.
 
 package org.harctoolbox.irp;
 
+import java.util.Arrays;
 import java.util.HashMap;
-import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.Map;
 import java.util.Set;
 import java.util.StringJoiner;
@@ -26,25 +27,48 @@ import java.util.logging.Level;
 import java.util.logging.Logger;
 import org.harctoolbox.ircore.ThisCannotHappenException;
 
+/**
+ * Collection of the parameters found during recognition, possibly only partially known, as BitwiseParameters.
+ * The parameters are kept in an array, indexed by the slots of a {@link SymbolTable};
+ * names not in the symbol table are given slots after those of the symbol table.
+ * The insertion order of the names is retained.
+ */
 public final class ParameterCollector implements Cloneable {
 
     private final static Logger logger = Logger.getLogger(ParameterCollector.class.getName());
 
     public final static long INVALID = -1L;
 
-    public final static ParameterCollector EMPTY = new ParameterCollector(new HashMap<>(0), null);
-
-    private HashMap<String, BitwiseParameter> map;
-
-    private final Map<String, Long> parameterSpecBitmasks;
+    public final static ParameterCollector EMPTY = new ParameterCollector(SymbolTable.EMPTY, false);
+
+    private final SymbolTable symbolTable;
+    private final boolean useBitmasks;
+    private BitwiseParameter[] parameters;
+    private String[] extraNames;
+    private int numberExtraNames;
+    private int[] order;
+    private int size;
+
+    /**
+     * @param symbolTable
+     * @param useBitmasks if false, the bitmasks of the parameters in the symbol table are ignored, i.e., considered unknown.
+     */
+    ParameterCollector(SymbolTable symbolTable, boolean useBitmasks) {
+        this.symbolTable = symbolTable;
+        this.useBitmasks = useBitmasks;
+        parameters = new BitwiseParameter[symbolTable.size() + 2];
+        extraNames = new String[2];
+        numberExtraNames = 0;
+        order = new int[parameters.length];
+        size = 0;
+    }
 
     public ParameterCollector(int capacity, Map<String, Long>parameterSpecBitmasks) {
-        map = new LinkedHashMap<>(capacity);
-        this.parameterSpecBitmasks = parameterSpecBitmasks;
+        this(new SymbolTable(parameterSpecBitmasks), true);
     }
 
     public ParameterCollector() {
-        this(0, new HashMap<String, Long>(4));
+        this(SymbolTable.EMPTY, false);
     }
 
     ParameterCollector(Map<String, Long> nameMap, Map<String, Long>parameterSpecBitmasks) {
@@ -73,24 +97,95 @@ public final class ParameterCollector implements Cloneable {
         this(nameEngine, new HashMap<>(0));
     }
 
-    ParameterCollector(ParameterSpecs parameterSpecs) {
-        this(new HashMap<>(4), parameterSpecs.bitmasks());
+    SymbolTable getSymbolTable() {
+        return symbolTable;
+    }
+
+    private int slot(String name) {
+        int slot = symbolTable.slot(name);
+        if (slot >= 0)
+            return slot;
+        for (int i = 0; i < numberExtraNames; i++)
+            if (extraNames[i].equals(name))
+                return symbolTable.size() + i;
+        return -1;
+    }
+
+    /**
+     * Returns the slot of the name, allocating a new one if it is not present.
+     * @param name
+     * @return slot, valid for the lifetime of this and its clones.
+     */
+    int newSlot(String name) {
+        int slot = slot(name);
+        if (slot >= 0)
+            return slot;
+        if (numberExtraNames == extraNames.length)
+            extraNames = Arrays.copyOf(extraNames, 2 * extraNames.length);
+        extraNames[numberExtraNames] = name;
+        slot = symbolTable.size() + numberExtraNames++;
+        if (slot >= parameters.length) {
+            parameters = Arrays.copyOf(parameters, 2 * parameters.length);
+            order = Arrays.copyOf(order, parameters.length);
+        }
+        return slot;
+    }
+
+    /**
+     * @return number of slots allocated for names not in the symbol table.
+     */
+    int getExtraSlots() {
+        return numberExtraNames;
+    }
+
+    /**
+     * Releases the slots for names not in the symbol table, allocated after getExtraSlots() returned the argument.
+     * They must be empty. For backtracking.
+     * @param extraSlots
+     */
+    void releaseExtraSlots(int extraSlots) {
+        for (int i = extraSlots; i < numberExtraNames; i++)
+            extraNames[i] = null;
+        numberExtraNames = extraSlots;
+    }
+
+    String name(int slot) {
+        return slot < symbolTable.size() ? symbolTable.getName(slot) : extraNames[slot - symbolTable.size()];
+    }
+
+    Long bitmask(int slot) {
+        return useBitmasks && slot < symbolTable.size() && symbolTable.hasBitmask(slot) ? symbolTable.getBitmask(slot) : null;
+    }
+
+    BitwiseParameter get(int slot) {
+        return slot >= 0 ? parameters[slot] : null;
     }
 
     void add(String name, BitwiseParameter parameter) throws ParameterInconsistencyException {
-        logger.log(Level.FINER, "Assigning {0} = {1}", new Object[]{name, parameter});
-        BitwiseParameter oldParameter = map.get(name);
+        add(newSlot(name), parameter);
+    }
+
+    /**
+     * @param slot slot of the symbol table, or as returned by {@link #newSlot(String)}.
+     * @param parameter
+     * @throws ParameterInconsistencyException
+     */
+    void add(int slot, BitwiseParameter parameter) throws ParameterInconsistencyException {
+        if (logger.isLoggable(Level.FINER))
+            logger.log(Level.FINER, "Assigning {0} = {1}", new Object[]{name(slot), parameter.toString()});
+        BitwiseParameter oldParameter = parameters[slot];
         if (oldParameter == parameter)
             return;
         if (oldParameter != null) {
             if (oldParameter.isConsistent(parameter)) {
                 oldParameter.aggregate(parameter);
             } else {
-                logger.log(Level.FINE, "Name inconsistency: {0}, new value: {1}, old value: {2}", new Object[]{name, parameter.toString(), oldParameter.toString()});
-                throw new ParameterInconsistencyException(name, parameter, oldParameter);
+                if (logger.isLoggable(Level.FINE))
+                    logger.log(Level.FINE, "Name inconsistency: {0}, new value: {1}, old value: {2}", new Object[]{name(slot), parameter.toString(), oldParameter.toString()});
+                throw new ParameterInconsistencyException(name(slot), parameter, oldParameter);
             }
         } else {
-            overwrite(name, parameter);
+            overwrite(slot, parameter);
         }
     }
 
@@ -102,79 +197,131 @@ public final class ParameterCollector implements Cloneable {
         add(name, new BitwiseParameter(value, bitmask));
     }
 
-    private void overwrite(String name, BitwiseParameter parameter) {
-        logger.log(Level.FINER, "Overwriting {0} = {1}", new Object[]{name, parameter});
-        map.put(name, parameter);
+    /**
+     * Undoes an add, for backtracking.
+     * @param slot slot of the add
+     * @param old parameter before the add, null if it was not present.
+     * @param value value of old before the add
+     * @param bitmask bitmask of old before the add
+     */
+    void restore(int slot, BitwiseParameter old, long value, long bitmask) {
+        if (old == null)
+            remove(slot);
+        else {
+            old.set(value, bitmask);
+            overwrite(slot, old);
+        }
+    }
+
+    private void overwrite(int slot, BitwiseParameter parameter) {
+        if (logger.isLoggable(Level.FINER))
+            logger.log(Level.FINER, "Overwriting {0} = {1}", new Object[]{name(slot), parameter.toString()});
+        if (parameters[slot] == null)
+            order[size++] = slot;
+        parameters[slot] = parameter;
+    }
+
+    private void remove(int slot) {
+        if (parameters[slot] == null)
+            return;
+        parameters[slot] = null;
+        int i = 0;
+        while (order[i] != slot)
+            i++;
+        System.arraycopy(order, i + 1, order, i, size - i - 1);
+        size--;
     }
 
     public Set<String> getNames() {
-        return map.keySet();
+        Set<String> names = new LinkedHashSet<>(size);
+        for (int i = 0; i < size; i++)
+            names.add(name(order[i]));
+        return names;
     }
 
     BitwiseParameter get(String name) {
-        return map.get(name);
+        return get(slot(name));
     }
 
     public long getValue(String name) {
-        return map.containsKey(name) ? map.get(name).getValue() : INVALID;
+        BitwiseParameter parameter = get(name);
+        return parameter != null ? parameter.getValue() : INVALID;
     }
 
     public NameEngine toNameEngine() {
-        NameEngine nameEngine = new NameEngine(map.size());
-        map.entrySet().forEach((kvp) -> {
-            String name = kvp.getKey();
-            BitwiseParameter parameter = kvp.getValue();
-            Long bitmask = parameterSpecBitmasks.get(name);
-            if (/*!parameter.isEmpty() &&*/ parameter.isFinished(bitmask))
+        NameEngine nameEngine = new NameEngine(size);
+        for (int i = 0; i < size; i++) {
+            int slot = order[i];
+            BitwiseParameter parameter = parameters[slot];
+            if (/*!parameter.isEmpty() &&*/ parameter.isFinished(bitmask(slot)))
                 try {
-                    nameEngine.define(kvp.getKey(), parameter.getValue/*PreferExpected*/());
+                    nameEngine.define(name(slot), parameter.getValue/*PreferExpected*/());
                 } catch (InvalidNameException ex) {
                     throw new ThisCannotHappenException(ex);
                 }
-        });
+        }
         return nameEngine;
     }
 
     void fixParameterSpecs(ParameterSpecs parameterSpecs) {
-        map.entrySet().forEach((kvp) -> {
-            String name = kvp.getKey();
-            BitwiseParameter parameter = kvp.getValue();
-            Long bitmask = parameterSpecBitmasks.get(name);
+        for (int i = 0; i < size; i++) {
+            int slot = order[i];
+            BitwiseParameter parameter = parameters[slot];
+            Long bitmask = bitmask(slot);
             if (!parameter.isEmpty() && bitmask != null && parameter.isFinished(bitmask)) {
                 long val = parameter.getValue();
                 long modulus = 1L << parameter.length();
-                val = parameterSpecs.fixValue(name, val, modulus);
+                val = parameterSpecs.fixValue(name(slot), val, modulus);
                 parameter.assign(val);
             }
-        });
+        }
+    }
+
+    /**
+     * Checks that the parameters having a ParameterSpec are within its domain.
+     * @param parameterSpecs
+     * @throws DomainViolationException
+     */
+    void checkDomain(ParameterSpecs parameterSpecs) throws DomainViolationException {
+        for (int i = 0; i < size; i++) {
+            int slot = order[i];
+            ParameterSpec parameterSpec = slot < symbolTable.size() ? symbolTable.getParameterSpec(slot) : null;
+            if (parameterSpec == null)
+                parameterSpec = parameterSpecs.getParameterSpec(name(slot));
+            if (parameterSpec != null)
+                parameterSpec.checkDomain(parameters[slot].getValue());
+        }
     }
 
     public Map<String, Long> collectedNames() {
-        Map<String, Long> names = new HashMap<>(map.size());
+        Map<String, Long> names = new HashMap<>(size);
         collectedNames(names);
         return names;
     }
 
     public void collectedNames(Map<String, Long> names) {
-        map.entrySet().forEach((kvp) -> {
-            BitwiseParameter parameter = kvp.getValue();
+        for (int i = 0; i < size; i++) {
+            int slot = order[i];
+            BitwiseParameter parameter = parameters[slot];
             if (!parameter.isEmpty())
-                names.put(kvp.getKey(), parameter.getValue());
-        });
+                names.put(name(slot), parameter.getValue());
+        }
     }
 
     void transferToNamesMap(Map<String, Long> nameEngine) {
-        map.entrySet().stream().forEach((kvp) -> {
-            nameEngine.put(kvp.getKey(), kvp.getValue().getValue());
-        });
+        for (int i = 0; i < size; i++) {
+            int slot = order[i];
+            nameEngine.put(name(slot), parameters[slot].getValue());
+        }
     }
 
     @Override
     public String toString() {
         StringJoiner str = new StringJoiner(";", "{", "}");
-        map.entrySet().stream().forEach((kvp) -> {
-            str.add(kvp.getKey() + "=" + kvp.getValue().toString());
-        });
+        for (int i = 0; i < size; i++) {
+            int slot = order[i];
+            str.add(name(slot) + "=" + parameters[slot].toString());
+        }
         return str.toString();
     }
 
@@ -187,10 +334,13 @@ public final class ParameterCollector implements Cloneable {
         } catch (CloneNotSupportedException ex) {
             throw new InternalError(ex);
         }
-        result.map = new LinkedHashMap<>(10);
-        map.entrySet().stream().forEach((kvp) -> {
-            result.map.put(kvp.getKey(), new BitwiseParameter(kvp.getValue()));
-        });
+        result.parameters = new BitwiseParameter[parameters.length];
+        for (int i = 0; i < size; i++) {
+            int slot = order[i];
+            result.parameters[slot] = new BitwiseParameter(parameters[slot]);
+        }
+        result.extraNames = extraNames.clone();
+        result.order = order.clone();
         return result;
     }
 
@@ -200,9 +350,10 @@ public final class ParameterCollector implements Cloneable {
     }
 
     void checkConsistency(RecognizeData recognizeData) throws NameUnassignedException, ParameterInconsistencyException {
-        for (Map.Entry<String, BitwiseParameter> kvp : map.entrySet()) {
-            String name = kvp.getKey();
-            BitwiseParameter param = kvp.getValue();
+        for (int i = 0; i < size; i++) {
+            int slot = order[i];
+            String name = name(slot);
+            BitwiseParameter param = parameters[slot];
             Expression expression = recognizeData.nameEngine.get(name);
             BitwiseParameter expected = expression.toBitwiseParameter(recognizeData);
             if (!param.isConsistent(expected))
@@ -211,16 +362,17 @@ public final class ParameterCollector implements Cloneable {
     }
 
     public boolean contains(String name) {
-        return map.containsKey(name);
+        return get(name) != null;
     }
 
     public Long getBitmask(String name) {
-        return parameterSpecBitmasks.get(name);
+        int slot = slot(name);
+        return slot >= 0 ? bitmask(slot) : null;
     }
 
     public boolean isFinished(String name) {
-        BitwiseParameter param = get(name);
-        Long bitmask = parameterSpecBitmasks.get(name);
-        return param.isFinished(bitmask);
+        int slot = slot(name);
+        BitwiseParameter param = get(slot);
+        return param.isFinished(bitmask(slot));
     }
 }
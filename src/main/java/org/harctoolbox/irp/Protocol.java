@@ -18,6 +18,8 @@ this program. If not, see http://www.gnu.org/licenses/.
 package org.harctoolbox.irp;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -75,8 +77,9 @@ public class Protocol extends IrpObject implements AggregateLister {
     private final NameEngine initialDefinitions;
     private NameEngine definitions;
     private final NameEngine memoryVariables;
-    private Boolean interleavingFlash = null;
-    private Boolean interleavingGap = null;
+    private final Protocol prototype;
+    private volatile ProtocolDescriptor descriptor = null;
+    private volatile EnumMap<Pass, RenderProgram> renderPrograms = null;
     private ParserDriver parserDriver = null;
     private final Class<? extends AbstractDecoder> decoderClass;
     private String irp;
@@ -98,6 +101,7 @@ public class Protocol extends IrpObject implements AggregateLister {
         this.initialDefinitions = definitions;
         this.decoderClass = decoderClass;
         this.memoryVariables = new NameEngine();
+        this.prototype = this;
         initializeDefinitions();
         this.parameterSpecs = parameterSpecs != null ? parameterSpecs : new ParameterSpecs();
         computeNormalForm();
@@ -134,16 +138,83 @@ public class Protocol extends IrpObject implements AggregateLister {
             initialDefinitions.parseDefinitions(defs);
         });
         initializeDefinitions();
+        initializeMemoryVariables();
+        checkSanity();
+    }
+
+    /**
+     * Copy constructor, sharing the (immutable) parsed protocol with the original.
+     * The memory variables of the copy are in their initial state.
+     * @param protocol
+     * @throws NameUnassignedException
+     */
+    protected Protocol(Protocol protocol) throws NameUnassignedException {
+        super(protocol.getParseTree());
+        generalSpec = protocol.generalSpec;
+        parameterSpecs = protocol.parameterSpecs;
+        bitspecIrstream = protocol.bitspecIrstream;
+        normalFormVariation = protocol.normalFormVariation;
+        initialDefinitions = protocol.initialDefinitions;
+        definitions = protocol.definitions;
+        decoderClass = protocol.decoderClass;
+        parserDriver = protocol.parserDriver;
+        irp = protocol.irp;
+        prototype = protocol.prototype;
+        memoryVariables = new NameEngine();
+        initializeMemoryVariables();
+    }
 
+    /**
+     * Returns the descriptor of the derived properties, computing it on first use.
+     * Copies share the descriptor of the protocol they were copied from.
+     * Since the descriptor only depends on the immutable parsed protocol,
+     * it does not matter if concurrent threads compute it more than once.
+     */
+    ProtocolDescriptor getDescriptor() {
+        if (prototype != this)
+            return prototype.getDescriptor();
+        ProtocolDescriptor result = descriptor;
+        if (result == null) {
+            result = new ProtocolDescriptor(this, bitspecIrstream, generalSpec, initialDefinitions, definitions, parameterSpecs);
+            descriptor = result;
+        }
+        return result;
+    }
+
+    SymbolTable getSymbolTable() {
+        return getDescriptor().getSymbolTable();
+    }
+
+    /**
+     * Returns the compiled normal form of the pass, compiling the passes on first use.
+     * Like the descriptor, the RenderPrograms are shared between copies.
+     * They are kept separately, since they are only needed for rendering.
+     */
+    RenderProgram getRenderProgram(Pass pass) {
+        if (prototype != this)
+            return prototype.getRenderProgram(pass);
+        EnumMap<Pass, RenderProgram> result = renderPrograms;
+        if (result == null) {
+            result = new EnumMap<>(Pass.class);
+            for (Pass p : new Pass[]{ Pass.intro, Pass.repeat, Pass.ending })
+                result.put(p, RenderProgram.newRenderProgram(normalBareIrStream(p), bitspecIrstream.getBitSpec(), generalSpec));
+            renderPrograms = result;
+        }
+        return result.get(pass);
+    }
+
+    private void initializeMemoryVariables() throws NameUnassignedException {
         for (ParameterSpec parameter : parameterSpecs) {
             if (parameter.hasMemory()) {
                 String name = parameter.getName();
                 long initVal = parameter.getDefault().toLong();
-                memoryVariables.define(name, initVal);
+                try {
+                    memoryVariables.define(name, initVal);
+                } catch (InvalidNameException ex) {
+                    throw new ThisCannotHappenException(ex);
+                }
             }
         }
-
-        checkSanity();
     }
 
     private String computeIrp(int radix) {
@@ -259,6 +330,30 @@ public class Protocol extends IrpObject implements AggregateLister {
         return normalFormVariation.select(pass).isEmpty();
     }
 
+    /**
+     * Returns the duration of the first Flash in the normal form of the pass given as argument,
+     * provided that the normal form starts with a Flash, and that its duration is a constant.
+     * @param pass
+     * @return Duration in microseconds, or null if not determined.
+     */
+    Double leadingFlash(IrSignal.Pass pass) {
+        List<IrStreamItem> items = normalBareIrStream(pass).getIrStreamItems();
+        if (items.isEmpty() || !(items.get(0) instanceof Flash))
+            return null;
+        Flash flash = (Flash) items.get(0);
+        return flash.constant(initialDefinitions) ? flash.microSeconds(generalSpec, initialDefinitions) : null;
+    }
+
+    /**
+     * Returns true if the normal form of the pass given as argument consists of exactly one item,
+     * i.e. its first item is also its last.
+     * @param pass
+     * @return
+     */
+    boolean singleItem(IrSignal.Pass pass) {
+        return normalBareIrStream(pass).getIrStreamItems().size() == 1;
+    }
+
     private Protocol mkProtocol(BareIrStream bareIrStream) {
         IrStream irStream = new IrStream(bareIrStream, RepeatMarker.newRepeatMarker('*'));
         BitspecIrstream normalBitspecIrstream = new BitspecIrstream(bitspecIrstream.getBitSpec(), irStream);
@@ -281,33 +376,102 @@ public class Protocol extends IrpObject implements AggregateLister {
      * @throws DomainViolationException
      */
     public IrSignal toIrSignal(NameEngine nameEngine) throws DomainViolationException, NameUnassignedException, IrpInvalidArgumentException, InvalidNameException {
-        initializeDefinitions();
         parameterSpecs.check(nameEngine);
-        fetchMemoryVariables(nameEngine);
-        nameEngine.add(definitions);
-
-        IrSequence intro = toIrSequence(nameEngine, Pass.intro);
-        IrSequence repeat = toIrSequence(nameEngine, Pass.repeat);
-        IrSequence ending = toIrSequence(nameEngine, Pass.ending);
-        saveMemoryVariables(nameEngine);
+        IrSequence intro;
+        IrSequence repeat;
+        IrSequence ending;
+        // Memory variables are read and written by the rendering; serialize renderings using them.
+        synchronized (memoryVariables) {
+            fetchMemoryVariables(nameEngine);
+            nameEngine.add(definitions);
+
+            intro = toIrSequence(nameEngine, Pass.intro);
+            repeat = toIrSequence(nameEngine, Pass.repeat);
+            ending = toIrSequence(nameEngine, Pass.ending);
+            saveMemoryVariables(nameEngine);
+        }
         return new IrSignal(intro, repeat, ending, getFrequencyWithDefault(), getDutyCycle());
     }
 
+    /**
+     * Renders the protocol into the Emitter given, pass by pass, like {@link #toIrSignal(NameEngine)}.
+     * The working NameEngine is reused between calls: the parameters are copied into it,
+     * and memory variables not among the parameters are fetched, even if it already contains them.
+     * @param parameters Parameters to be rendered, not altered.
+     * @param nameEngine Working NameEngine, altered.
+     * @param emitter
+     * @param lengths Output: the number of durations of intro, repeat, and ending.
+     */
+    void render(NameEngine parameters, NameEngine nameEngine, RenderProgram.Emitter emitter, int[] lengths) throws DomainViolationException, NameUnassignedException, IrpInvalidArgumentException, InvalidNameException {
+        nameEngine.add(parameters);
+        parameterSpecs.check(nameEngine);
+        synchronized (memoryVariables) {
+            for (Map.Entry<String, Expression> kvp : memoryVariables)
+                if (!parameters.containsKey(kvp.getKey()))
+                    nameEngine.assign(kvp.getKey(), kvp.getValue());
+            nameEngine.add(definitions);
+
+            lengths[0] = render(nameEngine, Pass.intro, emitter);
+            lengths[1] = render(nameEngine, Pass.repeat, emitter);
+            lengths[2] = render(nameEngine, Pass.ending, emitter);
+            saveMemoryVariables(nameEngine);
+        }
+    }
+
+    private int render(NameEngine nameEngine, Pass pass, RenderProgram.Emitter emitter) throws NameUnassignedException, IrpInvalidArgumentException {
+        RenderProgram renderProgram = getRenderProgram(pass);
+        emitter.begin();
+        if (renderProgram.isCompiled())
+            renderProgram.render(nameEngine, emitter);
+        else
+            emitter.add(toIrSequence(nameEngine, pass));
+        return emitter.end();
+    }
+
     public IrSignal toIrSignal(Map<String, Long> params) throws DomainViolationException, NameUnassignedException, IrpInvalidArgumentException, InvalidNameException {
         NameEngine nameEngine = new NameEngine(params);
         return toIrSignal(nameEngine);
     }
 
+    /**
+     * Renders the protocol, using the RenderCache argument.
+     * Memory variables are both input and output of the rendering;
+     * their values before the rendering (unless given as parameters) are part of the key,
+     * and their values after the rendering are restored on a cache hit.
+     */
+    IrSignal toIrSignal(Map<String, Long> params, RenderCache renderCache) throws DomainViolationException, NameUnassignedException, IrpInvalidArgumentException, InvalidNameException {
+        synchronized (memoryVariables) {
+            RenderCache.Key key = new RenderCache.Key(this, params, memoryVariableValues(params));
+            RenderCache.Value value = renderCache.get(key);
+            if (value != null) {
+                for (Map.Entry<String, Long> kvp : value.getMemoryVariables().entrySet())
+                    memoryVariables.define(kvp.getKey(), kvp.getValue());
+                return value.getIrSignal();
+            }
+
+            IrSignal irSignal = toIrSignal(params);
+            renderCache.put(key, new RenderCache.Value(irSignal, memoryVariableValues(Collections.emptyMap())));
+            return irSignal;
+        }
+    }
+
+    // Current values of the memory variables not present in params.
+    private Map<String, Long> memoryVariableValues(Map<String, Long> params) throws NameUnassignedException {
+        if (memoryVariables.isEmpty())
+            return Collections.emptyMap();
+
+        Map<String, Long> result = new HashMap<>(memoryVariables.size());
+        for (Map.Entry<String, Expression> kvp : memoryVariables)
+            if (!params.containsKey(kvp.getKey()))
+                result.put(kvp.getKey(), kvp.getValue().toLong());
+        return result;
+    }
+
     private void fetchMemoryVariables(NameEngine nameEngine) {
         for (Map.Entry<String, Expression> kvp : memoryVariables) {
             String name = kvp.getKey();
-            if (!nameEngine.containsKey(name)) {
-                try {
-                    nameEngine.define(name, kvp.getValue());
-                } catch (InvalidNameException ex) {
-                    throw new ThisCannotHappenException(ex);
-                }
-            }
+            if (!nameEngine.containsKey(name))
+                nameEngine.assign(name, kvp.getValue());
         }
     }
 
@@ -315,8 +479,8 @@ public class Protocol extends IrpObject implements AggregateLister {
         for (Map.Entry<String, Expression> kvp : memoryVariables) {
             String name = kvp.getKey();
             try {
-                memoryVariables.define(name, nameEngine.get(name));
-            } catch (NameUnassignedException | InvalidNameException ex) {
+                memoryVariables.assign(name, nameEngine.get(name));
+            } catch (NameUnassignedException ex) {
                 throw new ThisCannotHappenException(ex);
             }
         }
@@ -346,11 +510,18 @@ public class Protocol extends IrpObject implements AggregateLister {
      * @throws org.harctoolbox.irp.DomainViolationException
      */
     private IrSequence toIrSequence(NameEngine nameEngine, Pass pass) throws NameUnassignedException, IrpInvalidArgumentException {
-        RenderData renderData = new RenderData(generalSpec, nameEngine);
-        BitspecIrstream stream = extractBitspecIrstream(pass);
-        stream.render(renderData, new ArrayList<>(0));
-        IrSequence irSequence = renderData.toIrSequence();
-        logger.log(Level.FINE, "{0} {1}", new Object[]{pass, irSequence});
+        RenderProgram renderProgram = getRenderProgram(pass);
+        IrSequence irSequence;
+        if (renderProgram.isCompiled())
+            irSequence = renderProgram.render(nameEngine);
+        else {
+            RenderData renderData = new RenderData(generalSpec, nameEngine);
+            BitspecIrstream stream = extractBitspecIrstream(pass);
+            stream.render(renderData, new ArrayList<>(0));
+            irSequence = renderData.toIrSequence();
+        }
+        if (logger.isLoggable(Level.FINE))
+            logger.log(Level.FINE, "{0} {1}", new Object[]{pass, irSequence});
         return irSequence;
     }
 
@@ -390,31 +561,35 @@ public class Protocol extends IrpObject implements AggregateLister {
     }
 
     long getMemoryVariable(String name) throws NameUnassignedException {
-        return memoryVariables.get(name).toLong();
+        synchronized (memoryVariables) {
+            return memoryVariables.get(name).toLong();
+        }
     }
 
     boolean hasMemoryVariable(String name) {
-        return memoryVariables.containsKey(name);
+        synchronized (memoryVariables) {
+            return memoryVariables.containsKey(name);
+        }
     }
 
     public boolean isPWM2() {
-        return bitspecIrstream.isPWM2();
+        return getDescriptor().isPWM2();
     }
 
     public boolean isPWM4() {
-        return bitspecIrstream.isPWM4();
+        return getDescriptor().isPWM4();
     }
 
     boolean isPWM16() {
-        return bitspecIrstream.isPWM16();
+        return getDescriptor().isPWM16();
     }
 
     public boolean isBiphase() {
-        return bitspecIrstream.isBiphase(generalSpec, initialDefinitions);
+        return getDescriptor().isBiphase();
     }
 
     public boolean isTrivial(boolean inverted) {
-        return bitspecIrstream.isTrivial(generalSpec, initialDefinitions, inverted);
+        return getDescriptor().isTrivial(inverted);
     }
 
     public boolean isTrivial() {
@@ -422,19 +597,15 @@ public class Protocol extends IrpObject implements AggregateLister {
     }
 
     public boolean interleavingOk() {
-       return interleavingFlashOk() && interleavingGapOk();
+       return getDescriptor().isInterleavingOk();
     }
 
     public boolean interleavingFlashOk() {
-        if (interleavingFlash == null)
-            interleavingFlash = bitspecIrstream.interleavingFlashOk();
-        return interleavingFlash;
+        return getDescriptor().isInterleavingFlashOk();
     }
 
     public boolean interleavingGapOk() {
-        if (interleavingGap == null)
-            interleavingGap = bitspecIrstream.interleavingGapOk();
-        return interleavingGap;
+        return getDescriptor().isInterleavingGapOk();
     }
 
     /**
@@ -442,7 +613,7 @@ public class Protocol extends IrpObject implements AggregateLister {
      * @return
      */
     public boolean isSonyType() {
-        return bitspecIrstream.isSonyType(generalSpec, new NameEngine(initialDefinitions));
+        return getDescriptor().isSonyType();
     }
 
     public boolean isRPlus() {
@@ -450,7 +621,7 @@ public class Protocol extends IrpObject implements AggregateLister {
     }
 
     public boolean startsWithFlash() {
-        return bitspecIrstream.startsWithFlash();
+        return getDescriptor().startsWithFlash();
     }
 
     public boolean hasVariation() {
@@ -458,7 +629,7 @@ public class Protocol extends IrpObject implements AggregateLister {
     }
 
     public boolean hasExtent() {
-        return bitspecIrstream.hasExtent();
+        return getDescriptor().hasExtent();
     }
 
     public BitspecIrstream getBitspecIrstream() {
@@ -575,25 +746,35 @@ public class Protocol extends IrpObject implements AggregateLister {
         return recognize(irSignal, params);
     }
 
+    /**
+     * Tries to match the IrSignal in the argument, if match, return the matching parameters. If no match, throws exception.
+     * All state of the recognition is kept in local objects, so this function can be called
+     * from several threads simultaneously.
+     * @param irSignal
+     * @param parameters
+     * @return Directory of identified parameters. Never null.
+     * @throws SignalRecognitionException if the IrSignal did not match the present protocol.
+     * @throws org.harctoolbox.irp.Protocol.ProtocolNotDecodableException
+     */
     public Map<String, Long> recognize(IrSignal irSignal, Decoder.DecoderParameters parameters) throws SignalRecognitionException, ProtocolNotDecodableException {
         checkFrequency(irSignal.getFrequencyWithDefault(), parameters);
-        initializeDefinitions();
-        ParameterCollector parameterCollector = new ParameterCollector(definitions.size() + parameterSpecs.size(), parameterSpecs.bitmasks());
+        NameEngine nameEngine = NameEngine.copyOnWrite(initialDefinitions);
+        ParameterCollector parameterCollector = new ParameterCollector(getSymbolTable(), true);
 
-        boolean matched = recognizeIntro(irSignal, parameters, parameterCollector);
+        boolean matched = recognizeIntro(irSignal, parameters, parameterCollector, nameEngine);
         if (! matched)
-            recognizeIntroAsRepeat(irSignal, parameters, parameterCollector);
+            recognizeIntroAsRepeat(irSignal, parameters, parameterCollector, nameEngine);
         else
-            recognizeRepeat(irSignal, parameters, parameterCollector);
+            recognizeRepeat(irSignal, parameters, parameterCollector, nameEngine);
 
-        recognizeEnding(irSignal, parameters, parameterCollector);
+        recognizeEnding(irSignal, parameters, parameterCollector, nameEngine);
         Map<String, Long> params = parameterCollector.collectedNames();
         parameterSpecs.removeNotInParameterSpec(params);
         return params;
     }
 
-    private boolean recognizeIntro(IrSignal irSignal, Decoder.DecoderParameters parameters, ParameterCollector parameterCollector) throws SignalRecognitionException {
-        int pos = decode(parameterCollector, irSignal.getIntroSequence(), IrSignal.Pass.intro, parameters);
+    private boolean recognizeIntro(IrSignal irSignal, Decoder.DecoderParameters parameters, ParameterCollector parameterCollector, NameEngine nameEngine) throws SignalRecognitionException {
+        int pos = decode(parameterCollector, nameEngine, irSignal.getIntroSequence(), IrSignal.Pass.intro, parameters);
         boolean matchFailed = (pos == 0) && irSignal.getIntroLength() > 0;
         if (matchFailed && parameters.isStrict())
                throw new SignalRecognitionException("Intro sequence was not matched");
@@ -601,21 +782,21 @@ public class Protocol extends IrpObject implements AggregateLister {
         return ! matchFailed;
     }
 
-    private void recognizeIntroAsRepeat(IrSignal irSignal, Decoder.DecoderParameters parameters, ParameterCollector parameterCollector) throws SignalRecognitionException {
-        int pos = decode(parameterCollector, irSignal.getIntroSequence(), IrSignal.Pass.repeat, parameters);
+    private void recognizeIntroAsRepeat(IrSignal irSignal, Decoder.DecoderParameters parameters, ParameterCollector parameterCollector, NameEngine nameEngine) throws SignalRecognitionException {
+        int pos = decode(parameterCollector, nameEngine, irSignal.getIntroSequence(), IrSignal.Pass.repeat, parameters);
         if (pos < irSignal.getIntroLength())
             throw new SignalRecognitionException("Intro sequence was not matched, also not as repeat");
     }
 
-    private void recognizeRepeat(IrSignal irSignal, Decoder.DecoderParameters parameters, ParameterCollector parameterCollector) throws SignalRecognitionException {
-        int pos = decode(parameterCollector, irSignal.getRepeatSequence(), IrSignal.Pass.repeat, parameters);
+    private void recognizeRepeat(IrSignal irSignal, Decoder.DecoderParameters parameters, ParameterCollector parameterCollector, NameEngine nameEngine) throws SignalRecognitionException {
+        int pos = decode(parameterCollector, nameEngine, irSignal.getRepeatSequence(), IrSignal.Pass.repeat, parameters);
         if (pos < irSignal.getRepeatLength())
             throw new SignalRecognitionException("Repeat sequence was not fully matched");
     }
 
-    private void recognizeEnding(IrSignal irSignal, Decoder.DecoderParameters parameters, ParameterCollector parameterCollector) throws SignalRecognitionException {
+    private void recognizeEnding(IrSignal irSignal, Decoder.DecoderParameters parameters, ParameterCollector parameterCollector, NameEngine nameEngine) throws SignalRecognitionException {
         try {
-            int pos = decode(parameterCollector, irSignal.getEndingSequence(), IrSignal.Pass.ending, parameters);
+            int pos = decode(parameterCollector, nameEngine, irSignal.getEndingSequence(), IrSignal.Pass.ending, parameters);
             if (pos < irSignal.getEndingLength())
                 throw new SignalRecognitionException("Ending sequence was not fully matched");
         } catch (SignalRecognitionException ex) {
@@ -643,20 +824,21 @@ public class Protocol extends IrpObject implements AggregateLister {
             throws SignalRecognitionException {
 
         checkFrequency(irSequence.getFrequencyWithDefault(), params);
-        initializeDefinitions();
-        ParameterCollector names = new ParameterCollector();
-        int pos = decode(names, irSequence, beginPos, IrSignal.Pass.intro, params);
+        NameEngine nameEngine = NameEngine.copyOnWrite(initialDefinitions);
+        ParameterCollector names = new ParameterCollector(getSymbolTable(), false);
+        int pos = decode(names, nameEngine, irSequence, beginPos, IrSignal.Pass.intro, params);
         int noRepeatsMatched = 0;
         int oldPos;
         while (true) {
             oldPos = pos;
             try {
-                pos = decode(names, irSequence, oldPos, IrSignal.Pass.repeat, params);
+                pos = decode(names, nameEngine, irSequence, oldPos, IrSignal.Pass.repeat, params);
                 if (pos == oldPos)
                     break;
                 noRepeatsMatched++;
             } catch (SignalRecognitionException ex) {
-                logger.log(Level.FINE, "Protocol did not parse: {0}", ex.getMessage());
+                if (logger.isLoggable(Level.FINE))
+                    logger.log(Level.FINE, "Protocol did not parse: {0}", ex.getMessage());
                 break;
             }
         }
@@ -672,7 +854,7 @@ public class Protocol extends IrpObject implements AggregateLister {
             throw new SignalRecognitionException("Neither intro- nor repeat sequence was matched");
 
         try {
-            pos = decode(names, irSequence, pos, IrSignal.Pass.ending, params);
+            pos = decode(names, nameEngine, irSequence, pos, IrSignal.Pass.ending, params);
             if (params.isStrict() && pos < irSequence.getLength() - 1)
                 throw new SignalRecognitionException("Sequence was not fully matched");
         } catch (SignalRecognitionException ex) {
@@ -687,30 +869,158 @@ public class Protocol extends IrpObject implements AggregateLister {
         return new Decoder.Decode(null, parameters, beginPos, pos - 1, noRepeatsMatched);
     }
 
+    /**
+     * Starts a recognition that is continued frame by frame, as the data arrives; see {@link StreamingDecoder}.
+     * @param params
+     * @param rejectNoRepeats
+     * @return
+     */
+    Recognition newRecognition(Decoder.DecoderParameters params, boolean rejectNoRepeats) {
+        return new Recognition(params, rejectNoRepeats);
+    }
+
+    /**
+     * State of a recognition in progress, matching the intro, the repeats, and the ending, one frame at a time.
+     * The semantic is that of {@link #recognize(ModulatedIrSequence, int, boolean, Decoder.DecoderParameters)},
+     * except that every frame has to be matched completely.
+     */
+    final class Recognition {
+
+        private final Decoder.DecoderParameters params;
+        private final boolean rejectNoRepeats;
+        private final NameEngine nameEngine;
+        private final ParameterCollector names;
+        private int length;
+        private int noRepeatsMatched;
+
+        private Recognition(Decoder.DecoderParameters params, boolean rejectNoRepeats) {
+            this.params = params;
+            this.rejectNoRepeats = rejectNoRepeats;
+            nameEngine = NameEngine.copyOnWrite(initialDefinitions);
+            names = new ParameterCollector(getSymbolTable(), false);
+            length = 0;
+            noRepeatsMatched = 0;
+        }
+
+        /**
+         * Matches the intro, followed by as many repeats as possible.
+         * Contrary to recognize, rejectNoRepeats is not checked, since the repeats may still come; see {@link #isAccepted()}.
+         * @param irSequence
+         * @throws SignalRecognitionException
+         */
+        void start(ModulatedIrSequence irSequence) throws SignalRecognitionException {
+            checkFrequency(irSequence.getFrequencyWithDefault(), params);
+            int pos = decode(names, nameEngine, irSequence, 0, IrSignal.Pass.intro, params);
+            pos = repeats(irSequence, pos);
+            if (pos == 0)
+                throw new SignalRecognitionException("Neither intro- nor repeat sequence was matched");
+            consumed(irSequence, pos);
+        }
+
+        /**
+         * Matches one or more repeats.
+         * @param irSequence
+         * @return true if the sequence was completely matched by repeats.
+         */
+        boolean repeat(ModulatedIrSequence irSequence) {
+            int oldNoRepeatsMatched = noRepeatsMatched;
+            int pos = repeats(irSequence, 0);
+            try {
+                consumed(irSequence, pos);
+                return true;
+            } catch (SignalRecognitionException ex) {
+                noRepeatsMatched = oldNoRepeatsMatched;
+                return false;
+            }
+        }
+
+        /**
+         * Matches the ending.
+         * @param irSequence
+         * @throws SignalRecognitionException
+         */
+        void ending(ModulatedIrSequence irSequence) throws SignalRecognitionException {
+            int pos = decode(names, nameEngine, irSequence, 0, IrSignal.Pass.ending, params);
+            if (pos == 0)
+                throw new SignalRecognitionException("Ending sequence not matched");
+            consumed(irSequence, pos);
+        }
+
+        /**
+         * @return false if the rejectNoRepeats condition is not (yet) fulfilled.
+         */
+        boolean isAccepted() {
+            return !rejectNoRepeats || noRepeatsMatched > 1 || (noRepeatsMatched == 1 && !isEmpty(Pass.intro));
+        }
+
+        boolean hasEnding() {
+            return !isEmpty(Pass.ending);
+        }
+
+        private int repeats(ModulatedIrSequence irSequence, int beginPos) {
+            int pos = beginPos;
+            while (true) {
+                int oldPos = pos;
+                try {
+                    pos = decode(names, nameEngine, irSequence, oldPos, IrSignal.Pass.repeat, params);
+                    if (pos == oldPos)
+                        break;
+                    noRepeatsMatched++;
+                } catch (SignalRecognitionException ex) {
+                    if (logger.isLoggable(Level.FINE))
+                        logger.log(Level.FINE, "Protocol did not parse: {0}", ex.getMessage());
+                    break;
+                }
+            }
+            return pos;
+        }
+
+        // Just as in recognize, the final duration need not be consumed.
+        private void consumed(ModulatedIrSequence irSequence, int pos) throws SignalRecognitionException {
+            if (pos < irSequence.getLength() - 1)
+                throw new SignalRecognitionException("Sequence was not fully matched");
+            length += irSequence.getLength();
+        }
+
+        /**
+         * @return Decode of the data matched so far, with positions relative to the start of the signal.
+         */
+        Decoder.Decode getDecode() {
+            Map<String, Long> parameters = names.collectedNames();
+            parameterSpecs.removeNotInParameterSpec(parameters);
+            return new Decoder.Decode(null, parameters, 0, length - 1, noRepeatsMatched);
+        }
+    }
+
     protected void checkFrequency(Double frequency, Decoder.DecoderParameters params) throws SignalRecognitionException {
-        logger.log(Level.FINER, "Expected frequency {0}, actual {1}, tolerance {2}", new Object[]{(int) getFrequencyWithDefault(), frequency.intValue(), params.getFrequencyTolerance().intValue()});
-        boolean success = params.getFrequencyTolerance() < 0
-                || IrCoreUtils.approximatelyEquals(getFrequencyWithDefault(), frequency, params.getFrequencyTolerance(), 0.0);
+        if (logger.isLoggable(Level.FINER))
+            logger.log(Level.FINER, "Expected frequency {0}, actual {1}, tolerance {2}", new Object[]{(int) getFrequencyWithDefault(), frequency.intValue(), params.getFrequencyTolerance().intValue()});
+        boolean success = frequencyMatches(frequency, params);
         logger.log(Level.FINER, "Frequency was checked, {0}OK.", success ? "" : "NOT ");
         if (!success)
             throw new SignalRecognitionException("Frequency does not match");
     }
 
-    private int decode(ParameterCollector names, IrSequence irSequence, IrSignal.Pass pass, Decoder.DecoderParameters params)
+    protected boolean frequencyMatches(double frequency, Decoder.DecoderParameters params) {
+        return params.getFrequencyTolerance() < 0
+                || IrCoreUtils.approximatelyEquals(getFrequencyWithDefault(), frequency, params.getFrequencyTolerance(), 0.0);
+    }
+
+    private int decode(ParameterCollector names, NameEngine nameEngine, IrSequence irSequence, IrSignal.Pass pass, Decoder.DecoderParameters params)
             throws SignalRecognitionException {
-        return decode(names, irSequence, 0, pass, params);
+        return decode(names, nameEngine, irSequence, 0, pass, params);
     }
 
-    private int decode(ParameterCollector names, IrSequence irSequence, int beginPos, IrSignal.Pass pass, Decoder.DecoderParameters params)
+    private int decode(ParameterCollector names, NameEngine nameEngine, IrSequence irSequence, int beginPos, IrSignal.Pass pass, Decoder.DecoderParameters params)
             throws SignalRecognitionException {
-        RecognizeData recognizeData = new RecognizeData(generalSpec, definitions, parameterSpecs, irSequence, beginPos, interleavingOk(), names, params, pass);
-        Protocol reducedProtocol = normalForm(pass);
+        RecognizeData recognizeData = new RecognizeData(generalSpec, nameEngine, parameterSpecs, irSequence, beginPos, interleavingOk(), names, params, pass);
+        Protocol reducedProtocol = getDescriptor().getNormalForm(pass);
         //traverse(recognizeData, pass);
         reducedProtocol.decode(recognizeData);
         try {
             names.fixParameterSpecs(parameterSpecs);
             recognizeData.checkConsistency();
-            checkDomain(names);
+            names.checkDomain(parameterSpecs);
         } catch (DomainViolationException | NameUnassignedException ex) {
             throw new SignalRecognitionException(ex);
         }
@@ -725,9 +1035,13 @@ public class Protocol extends IrpObject implements AggregateLister {
     // Penalize silly protocols
     @Override
     public int weight() {
+        return getDescriptor().getWeight();
+    }
+
+    int computeWeight(boolean trivial) {
         int w = generalSpec.weight() + bitspecIrstream.weight()
                 + initialDefinitions.weight() + parameterSpecs.weight();
-        int penalty = isTrivial() ? SILLYNESSPENALTY : 1;
+        int penalty = trivial ? SILLYNESSPENALTY : 1;
         return penalty * w;
     }
 
@@ -821,14 +1135,6 @@ public class Protocol extends IrpObject implements AggregateLister {
     }
 
 
-    private void checkDomain(ParameterCollector names) throws DomainViolationException {
-        for (String kvp : names.getNames()) {
-            ParameterSpec parameterSpec = parameterSpecs.getParameterSpec(kvp);
-            if (parameterSpec != null)
-                parameterSpec.checkDomain(names.getValue(kvp));
-        }
-    }
-
     @Override
     public Map<String, Object> propertiesMap(GeneralSpec generalSpec, NameEngine nameEngine) {
         Map<String, Object> map = new HashMap<>(3);
@@ -873,11 +1179,11 @@ public class Protocol extends IrpObject implements AggregateLister {
     }
 
     public TreeSet<Double> allDurationsInMicros() {
-        return bitspecIrstream.allDurationsInMicros(generalSpec, definitions);
+        return new TreeSet<>(getDescriptor().getDurations());
     }
 
     public double minDurationDiff() {
-        return IrCoreUtils.minDiff(allDurationsInMicros());
+        return getDescriptor().getMinDurationDiff();
     }
 
     public boolean hasParameter(String name) {
@@ -0,0 +1,180 @@
+/*
+Copyright (C) 2019 Bengt Martensson.
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation; either version 3 of the License, or (at
+your option) any later version.
+
+This program is distributed in the hope that it will be useful, but
+WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+General Public License for more details.
+
+You should have received a copy of the GNU General Public License along with
+this program. If not, see http://www.gnu.org/licenses/.
+*/
+
+package org.harctoolbox.irp;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.function.Supplier;
+import org.harctoolbox.ircore.IrCoreUtils;
+import org.harctoolbox.ircore.IrSignal.Pass;
+
+/**
+ * Immutable summary of the derived properties of a Protocol, shared
+ * between the Protocol and its copies, i.e., between all NamedProtocols obtained from
+ * the same parsed protocol of an IrpDatabase. It contains the normal form Protocols of the
+ * passes and the SymbolTable, as used by the decoder, and the properties used for sorting, classifying and listing.
+ *
+ * The normal forms and the SymbolTable are computed in the constructor.
+ * The other properties are computed separately, on first use, like the Protocol used to do:
+ * computing some of them fails for some protocols, e.g. the durations, when they depend on a parameter,
+ * which must not affect the others. A failure is not remembered, so it is thrown on every invocation.
+ * Since the parsed protocol is immutable, it does not matter if concurrent threads compute a property more than once.
+ */
+final class ProtocolDescriptor {
+
+    private final EnumMap<Pass, Protocol> normalForms;
+    private final SymbolTable symbolTable;
+    private final Lazy<Integer> weight;
+    private final Lazy<Boolean> interleavingFlashOk;
+    private final Lazy<Boolean> interleavingGapOk;
+    private final Lazy<SortedSet<Double>> durations;
+    private final Lazy<Double> minDurationDiff;
+    private final Lazy<Boolean> pwm2;
+    private final Lazy<Boolean> pwm4;
+    private final Lazy<Boolean> pwm16;
+    private final Lazy<Boolean> biphase;
+    private final Lazy<Boolean> trivial;
+    private final Lazy<Boolean> invertedTrivial;
+    private final Lazy<Boolean> sonyType;
+    private final Lazy<Boolean> startsWithFlash;
+    private final Lazy<Boolean> hasExtent;
+
+    ProtocolDescriptor(Protocol protocol, BitspecIrstream bitspecIrstream, GeneralSpec generalSpec, NameEngine initialDefinitions, NameEngine definitions,
+            ParameterSpecs parameterSpecs) {
+        normalForms = new EnumMap<>(Pass.class);
+        for (Pass pass : new Pass[]{ Pass.intro, Pass.repeat, Pass.ending })
+            normalForms.put(pass, protocol.normalForm(pass));
+        List<String> names = new ArrayList<>(initialDefinitions.size() + 4);
+        initialDefinitions.forEach((kvp) -> names.add(kvp.getKey()));
+        names.addAll(bitspecIrstream.assignmentVariables());
+        symbolTable = new SymbolTable(parameterSpecs, names);
+        // Computing the weight may log warnings, which plain decoding should not.
+        weight = new Lazy<>(() -> protocol.computeWeight(isTrivial(false) || isTrivial(true)));
+        interleavingFlashOk = new Lazy<>(bitspecIrstream::interleavingFlashOk);
+        interleavingGapOk = new Lazy<>(bitspecIrstream::interleavingGapOk);
+        // Evaluating the bitspec may execute its assignments, so work on copies of the definitions.
+        durations = new Lazy<>(() -> Collections.unmodifiableSortedSet(bitspecIrstream.allDurationsInMicros(generalSpec, new NameEngine(definitions))));
+        minDurationDiff = new Lazy<>(() -> IrCoreUtils.minDiff(new TreeSet<>(getDurations())));
+        pwm2 = new Lazy<>(bitspecIrstream::isPWM2);
+        pwm4 = new Lazy<>(bitspecIrstream::isPWM4);
+        pwm16 = new Lazy<>(bitspecIrstream::isPWM16);
+        biphase = new Lazy<>(() -> bitspecIrstream.isBiphase(generalSpec, new NameEngine(initialDefinitions)));
+        trivial = new Lazy<>(() -> bitspecIrstream.isTrivial(generalSpec, new NameEngine(initialDefinitions), false));
+        invertedTrivial = new Lazy<>(() -> bitspecIrstream.isTrivial(generalSpec, new NameEngine(initialDefinitions), true));
+        sonyType = new Lazy<>(() -> bitspecIrstream.isSonyType(generalSpec, new NameEngine(initialDefinitions)));
+        startsWithFlash = new Lazy<>(bitspecIrstream::startsWithFlash);
+        hasExtent = new Lazy<>(bitspecIrstream::hasExtent);
+    }
+
+    /**
+     * Returns the shared normal form Protocol of the pass.
+     * It is only to be used for decoding, and must not be rendered, since its memory variables are shared.
+     * @param pass
+     * @return
+     */
+    Protocol getNormalForm(Pass pass) {
+        return normalForms.get(pass);
+    }
+
+    SymbolTable getSymbolTable() {
+        return symbolTable;
+    }
+
+    int getWeight() {
+        return weight.get();
+    }
+
+    boolean isInterleavingFlashOk() {
+        return interleavingFlashOk.get();
+    }
+
+    boolean isInterleavingGapOk() {
+        return interleavingGapOk.get();
+    }
+
+    boolean isInterleavingOk() {
+        return isInterleavingFlashOk() && isInterleavingGapOk();
+    }
+
+    /**
+     * @return Unmodifiable set of all durations of the protocol, in micro seconds.
+     */
+    SortedSet<Double> getDurations() {
+        return durations.get();
+    }
+
+    double getMinDurationDiff() {
+        return minDurationDiff.get();
+    }
+
+    boolean isPWM2() {
+        return pwm2.get();
+    }
+
+    boolean isPWM4() {
+        return pwm4.get();
+    }
+
+    boolean isPWM16() {
+        return pwm16.get();
+    }
+
+    boolean isBiphase() {
+        return biphase.get();
+    }
+
+    boolean isTrivial(boolean inverted) {
+        return inverted ? invertedTrivial.get() : trivial.get();
+    }
+
+    boolean isSonyType() {
+        return sonyType.get();
+    }
+
+    boolean startsWithFlash() {
+        return startsWithFlash.get();
+    }
+
+    boolean hasExtent() {
+        return hasExtent.get();
+    }
+
+    private static final class Lazy<T> {
+
+        private final Supplier<T> supplier;
+        private volatile T value;
+
+        Lazy(Supplier<T> supplier) {
+            this.supplier = supplier;
+            value = null;
+        }
+
+        T get() {
+            T result = value;
+            if (result == null) {
+                result = supplier.get();
+                value = result;
+            }
+            return result;
+        }
+    }
+}
@@ -0,0 +1,142 @@
+/*
+Copyright (C) 2019 Bengt Martensson.
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation; either version 3 of the License, or (at
+your option) any later version.
+
+This program is distributed in the hope that it will be useful, but
+WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+General Public License for more details.
+
+You should have received a copy of the GNU General Public License along with
+this program. If not, see http://www.gnu.org/licenses/.
+*/
+
+package org.harctoolbox.irp;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.harctoolbox.ircore.IrCoreUtils;
+import org.harctoolbox.ircore.IrSequence;
+import org.harctoolbox.ircore.IrSignal;
+import org.harctoolbox.ircore.ModulatedIrSequence;
+
+/**
+ * This class implements a cheap pre-filter for the {@link Decoder}.
+ * For every protocol, some features (frequency, leading flash of intro and repeat) are computed once,
+ * allowing protocols that cannot possibly match a signal to be sorted out
+ * without invoking the (expensive) recognizer.
+ * It is conservative: a protocol is only rejected if the recognizer would certainly reject it.
+ */
+final class ProtocolPrefilter {
+
+    private static final Logger logger = Logger.getLogger(ProtocolPrefilter.class.getName());
+
+    private final List<Entry> entries;
+
+    ProtocolPrefilter(Collection<NamedProtocol> protocols) {
+        entries = new ArrayList<>(protocols.size());
+        protocols.forEach((namedProtocol) -> {
+            entries.add(new Entry(namedProtocol));
+        });
+    }
+
+    /**
+     * Returns the protocols possibly matching the IrSignal, in the original order.
+     * @param irSignal
+     * @param params
+     * @return
+     */
+    List<NamedProtocol> candidates(IrSignal irSignal, Decoder.DecoderParameters params) {
+        double frequency = irSignal.getFrequencyWithDefault();
+        List<NamedProtocol> result = new ArrayList<>(entries.size());
+        entries.stream().filter((entry) -> (entry.isCandidate(irSignal, frequency, params))).forEachOrdered((entry) -> {
+            result.add(entry.namedProtocol);
+        });
+        logger.log(Level.FINER, "{0} of {1} protocols are candidates", new Object[]{result.size(), entries.size()});
+        return result;
+    }
+
+    /**
+     * Returns the protocols possibly matching the ModulatedIrSequence, starting at position, in the original order.
+     * @param irSequence
+     * @param position
+     * @param params
+     * @return
+     */
+    List<NamedProtocol> candidates(ModulatedIrSequence irSequence, int position, Decoder.DecoderParameters params) {
+        double frequency = irSequence.getFrequencyWithDefault();
+        List<NamedProtocol> result = new ArrayList<>(entries.size());
+        entries.stream().filter((entry) -> (entry.isCandidate(irSequence, position, frequency, params))).forEachOrdered((entry) -> {
+            result.add(entry.namedProtocol);
+        });
+        logger.log(Level.FINER, "{0} of {1} protocols are candidates", new Object[]{result.size(), entries.size()});
+        return result;
+    }
+
+    int size() {
+        return entries.size();
+    }
+
+    private static final class Entry {
+
+        private final NamedProtocol namedProtocol;
+        private final boolean introEmpty;
+        private final Double introFlash;
+        private final Double repeatFlash;
+        private final boolean introSingleItem;
+        private final boolean repeatSingleItem;
+        private final boolean allowChopping;
+
+        Entry(NamedProtocol namedProtocol) {
+            this.namedProtocol = namedProtocol;
+            introEmpty = namedProtocol.isEmpty(IrSignal.Pass.intro);
+            introFlash = namedProtocol.leadingFlash(IrSignal.Pass.intro);
+            repeatFlash = namedProtocol.leadingFlash(IrSignal.Pass.repeat);
+            introSingleItem = namedProtocol.singleItem(IrSignal.Pass.intro);
+            repeatSingleItem = namedProtocol.singleItem(IrSignal.Pass.repeat);
+            allowChopping = !namedProtocol.interleavingOk();
+        }
+
+        boolean isCandidate(IrSignal irSignal, double frequency, Decoder.DecoderParameters params) {
+            Decoder.DecoderParameters adjusted = namedProtocol.adjustParameters(params);
+            if (!namedProtocol.frequencyMatches(frequency, adjusted))
+                return false;
+
+            // The first thing the recognizer does is to match the protocol's intro (or, if empty, its repeat)
+            // to the signal's intro. If the signal's intro is empty, and so is the protocol's,
+            // the protocol's repeat is matched to the signal's repeat.
+            if (irSignal.getIntroLength() > 0)
+                return leadingFlashOk(irSignal.getIntroSequence(), 0, introEmpty, adjusted);
+            else if (introEmpty && irSignal.getRepeatLength() > 0)
+                return leadingFlashOk(irSignal.getRepeatSequence(), 0, true, adjusted);
+            else
+                return true;
+        }
+
+        boolean isCandidate(ModulatedIrSequence irSequence, int position, double frequency, Decoder.DecoderParameters params) {
+            Decoder.DecoderParameters adjusted = namedProtocol.adjustParameters(params);
+            if (!namedProtocol.frequencyMatches(frequency, adjusted))
+                return false;
+
+            return position >= irSequence.getLength() || leadingFlashOk(irSequence, position, introEmpty, adjusted);
+        }
+
+        private boolean leadingFlashOk(IrSequence irSequence, int position, boolean useRepeat, Decoder.DecoderParameters params) {
+            Double wanted = useRepeat ? repeatFlash : introFlash;
+            // If the leading flash is also the last item, it may be accepted as leadout.
+            if (wanted == null || (useRepeat ? repeatSingleItem : introSingleItem))
+                return true;
+
+            double actual = Math.abs(irSequence.get(position));
+            return IrCoreUtils.approximatelyEquals(actual, wanted, params.getAbsoluteTolerance(), params.getRelativeTolerance())
+                    || (actual > wanted && allowChopping);
+        }
+    }
+}
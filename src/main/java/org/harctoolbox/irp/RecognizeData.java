@@ -19,6 +19,7 @@ package org.harctoolbox.irp;
 
 import java.util.logging.Level;
 import java.util.logging.LogRecord;
+import java.util.logging.Logger;
 import org.harctoolbox.ircore.IrSequence;
 import org.harctoolbox.ircore.IrSignal;
 
@@ -37,6 +38,15 @@ public final class RecognizeData extends Traverser implements Cloneable {
     private final double minimumLeadout;
     private int level;
     private final IrSignal.Pass pass;
+    private DecodeTrace.Attempt traceAttempt;
+
+    // State saved by mark(), for backtracking without copying; see mark().
+    // The journal records the changes of names and parameters since the outermost mark.
+    // Frames and journal entries are reused, so backtracking does not allocate, once the arrays have grown large enough.
+    private Frame[] frames = null;
+    private int marks = 0;
+    private JournalEntry[] journal = null;
+    private int journalSize = 0;
 
     public RecognizeData(GeneralSpec generalSpec, NameEngine definitions, ParameterSpecs parameterSpecs, IrSequence irSequence, int position,
             boolean interleaving, ParameterCollector parameterCollector, double absoluteTolerance, double relativeTolerance,
@@ -49,12 +59,13 @@ public final class RecognizeData extends Traverser implements Cloneable {
         this.parameterCollector = parameterCollector;
         this.extentStart = position;
         this.interleaving = interleaving;
-        this.needsChecking = new ParameterCollector(parameterSpecs);
+        this.needsChecking = new ParameterCollector(parameterCollector.getSymbolTable(), false);
         this.absoluteTolerance = absoluteTolerance;
         this.relativeTolerance = relativeTolerance;
         this.minimumLeadout = minimumLeadout;
         this.pass = pass;
         this.level = 0;
+        this.traceAttempt = null;
     }
 
     public RecognizeData(GeneralSpec generalSpec, NameEngine definitions, ParameterSpecs parameterSpecs,
@@ -62,6 +73,7 @@ public final class RecognizeData extends Traverser implements Cloneable {
             ParameterCollector names, Decoder.DecoderParameters params, IrSignal.Pass pass) {
         this(generalSpec, definitions, parameterSpecs, irSequence, beginPos, interleavingOk, names,
                 params.getAbsoluteTolerance(), params.getRelativeTolerance(), params.getMinimumLeadout(), pass);
+        this.traceAttempt = params.getTraceAttempt();
     }
 
     // Just for testing, do not use for anything else
@@ -89,9 +101,97 @@ public final class RecognizeData extends Traverser implements Cloneable {
         }
         result.setParameterCollector(getParameterCollector().clone());
         result.nameEngine = new NameEngine(this.nameEngine);
+        result.frames = null;
+        result.marks = 0;
+        result.journal = null;
+        result.journalSize = 0;
         return result;
     }
 
+    /**
+     * Marks the current state, for a subsequent {@link #rollback(int)} or {@link #commit(int)}.
+     * Marks nest; every mark must be terminated by exactly one of these, in last-in, first-out order.
+     * In contrast to {@link #clone()}, this does not copy anything.
+     * @return mark, to be passed to rollback or commit.
+     */
+    int mark() {
+        if (frames == null) {
+            frames = new Frame[4];
+            journal = new JournalEntry[8];
+        } else if (marks == frames.length) {
+            Frame[] old = frames;
+            frames = new Frame[2 * old.length];
+            System.arraycopy(old, 0, frames, 0, old.length);
+        }
+        if (frames[marks] == null)
+            frames[marks] = new Frame();
+        frames[marks].save(this);
+        return marks++;
+    }
+
+    /**
+     * Restores the state as it was when the mark was set.
+     * @param mark
+     */
+    void rollback(int mark) {
+        Frame frame = release(mark);
+        undo(frame.journalSize, true);
+        position = frame.position;
+        hasConsumed = frame.hasConsumed;
+        frame.restore(this);
+    }
+
+    /**
+     * Accepts the consumed durations and the assignments made since the mark was set.
+     * Parameters collected and other changes are discarded,
+     * just like a clone, on which the position and the NameEngine was copied back.
+     * @param mark
+     */
+    void commit(int mark) {
+        Frame frame = release(mark);
+        undo(frame.journalSize, false);
+        frame.restore(this);
+    }
+
+    private Frame release(int mark) {
+        if (mark != marks - 1)
+            throw new IllegalStateException("Marks not properly nested");
+        marks--;
+        return frames[mark];
+    }
+
+    // Undoes the changes journalled since start, the changes of names only if names is true.
+    // The entries of the changes not undone are kept, in their order.
+    private void undo(int start, boolean names) {
+        int kept = start;
+        for (int i = journalSize - 1; i >= start; i--) {
+            JournalEntry entry = journal[i];
+            if (names || entry.isParameter())
+                entry.undo(this);
+        }
+        if (!names) {
+            for (int i = start; i < journalSize; i++) {
+                JournalEntry entry = journal[i];
+                if (!entry.isParameter()) {
+                    journal[i] = journal[kept];
+                    journal[kept++] = entry;
+                }
+            }
+        }
+        journalSize = marks == 0 ? 0 : kept;
+    }
+
+    private JournalEntry newJournalEntry() {
+        if (journalSize == journal.length) {
+            JournalEntry[] old = journal;
+            journal = new JournalEntry[2 * old.length];
+            System.arraycopy(old, 0, journal, 0, old.length);
+        }
+        if (journal[journalSize] == null)
+            journal[journalSize] = new JournalEntry();
+        return journal[journalSize++];
+    }
+
     /**
      * @return the position
      */
@@ -121,29 +221,38 @@ public final class RecognizeData extends Traverser implements Cloneable {
     }
 
     void add(String name, BitwiseParameter parameter) throws ParameterInconsistencyException {
-        Expression expression = getNameEngine().getPossiblyNull(name);
+        add(parameterCollector.newSlot(name), getNameEngine().getPossiblyNull(name), parameter);
+    }
+
+    void add(Name name, BitwiseParameter parameter) throws ParameterInconsistencyException {
+        SymbolTable symbolTable = parameterCollector.getSymbolTable();
+        int slot = name.slot(symbolTable);
+        if (slot < 0)
+            add(name.toString(), parameter);
+        else
+            add(slot, symbolTable.isDefinable(slot) ? getNameEngine().getPossiblyNull(name.toString()) : null, parameter);
+    }
+
+    private void add(int slot, Expression expression, BitwiseParameter parameter) throws ParameterInconsistencyException {
+        if (marks > 0)
+            newJournalEntry().set(slot, parameterCollector.get(slot));
         if (expression == null) {
-            parameterCollector.add(name, parameter);
+            parameterCollector.add(slot, parameter);
         } else {
             BitwiseParameter expected = expression.toBitwiseParameter(this);
             boolean consistent = expected.isConsistent(parameter);
             if (!consistent)
-                throw new ParameterInconsistencyException(name, expected, parameter);
-            parameterCollector.add(name, parameter);
+                throw new ParameterInconsistencyException(parameterCollector.name(slot), expected, parameter);
+            parameterCollector.add(slot, parameter);
 
             // It has an expression, but is not presently checkable.
             // mark for later checking.
-            Long bitmask = parameterCollector.getBitmask(name);
+            Long bitmask = parameterCollector.bitmask(slot);
             if (bitmask == null || !parameter.isFinished(bitmask))
-                needsChecking.add(name, parameter);
+                needsChecking.add(parameterCollector.name(slot), parameter);
         }
     }
 
-
-    void add(Name name, BitwiseParameter value) throws ParameterInconsistencyException {
-        add(name.toString(), value);
-    }
-
     void add(String name, long value) throws ParameterInconsistencyException {
         add(name, new BitwiseParameter(value));
     }
@@ -212,7 +321,7 @@ public final class RecognizeData extends Traverser implements Cloneable {
 
     void checkConsistency() throws NameUnassignedException, ParameterInconsistencyException {
         needsChecking.checkConsistency(this);
-        needsChecking = new ParameterCollector();
+        needsChecking = new ParameterCollector(parameterCollector.getSymbolTable(), false);
     }
 
     /**
@@ -273,12 +382,41 @@ public final class RecognizeData extends Traverser implements Cloneable {
         return pass;
     }
 
-    LogRecord logRecordEnter(IrStreamItem item) {
-        return logRecord(item, true);
+    /**
+     * Logs, and possibly traces, the entering of an IrStreamItem in the recognition.
+     * Nothing is computed unless the log level is enabled, or a trace is active.
+     * @param logger Logger of the item
+     * @param item
+     */
+    void logEnter(Logger logger, IrStreamItem item) {
+        if (traceAttempt != null)
+            traceAttempt.enter(level, item, position);
+        if (logger.isLoggable(getLogLevel()))
+            logger.log(logRecord(item, true));
     }
 
-    LogRecord logRecordExit(IrStreamItem item) {
-        return logRecord(item, false);
+    /**
+     * As {@link #logEnter(Logger, IrStreamItem)}, but also logs the IrSequence.
+     * @param logger
+     * @param item
+     */
+    void logEnterWithIrStream(Logger logger, IrStreamItem item) {
+        if (traceAttempt != null)
+            traceAttempt.enter(level, item, position);
+        if (logger.isLoggable(getLogLevel()))
+            logger.log(logRecordEnterWithIrStream(item));
+    }
+
+    /**
+     * Logs, and possibly traces, the successful leaving of an IrStreamItem, for Numericals with its value.
+     * @param logger
+     * @param item
+     */
+    void logExit(Logger logger, IrStreamItem item) {
+        if (traceAttempt != null)
+            traceAttempt.exit(level, item, position, item instanceof Numerical ? ((Numerical) item).toBitwiseParameter(this) : null);
+        if (logger.isLoggable(getLogLevel()))
+            logger.log(logRecord(item, false));
     }
 
     private LogRecord logRecord(IrStreamItem item, boolean enter) {
@@ -296,7 +434,7 @@ public final class RecognizeData extends Traverser implements Cloneable {
         return logRecord;
     }
 
-    public LogRecord logRecordEnterWithIrStream(IrStreamItem item) {
+    private LogRecord logRecordEnterWithIrStream(IrStreamItem item) {
         LogRecord logRecord= new LogRecord(getLogLevel(), "{0} {1}Level {2}: \"{3}\", IrSequence: {4}");
         logRecord.setParameters(new Object[]{this.getPass().toString(), ">", level, item.toString(), this.irSequence});
 
@@ -304,6 +442,8 @@ public final class RecognizeData extends Traverser implements Cloneable {
     }
 
     public void assignment(String nameString, long val) throws InvalidNameException {
+        if (marks > 0)
+            newJournalEntry().set(nameString, nameEngine.getPossiblyNull(nameString));
         nameEngine.define(nameString, val);
     }
 
@@ -311,4 +451,82 @@ public final class RecognizeData extends Traverser implements Cloneable {
         Expression expression = nameEngine.getPossiblyNull(name);
         return expression != null ? expression.toBitwiseParameter(this) : parameterCollector.get(name);
     }
+
+    BitwiseParameter toBitwiseParameter(Name name) {
+        SymbolTable symbolTable = parameterCollector.getSymbolTable();
+        int slot = name.slot(symbolTable);
+        return slot < 0 || symbolTable.isDefinable(slot) ? toBitwiseParameter(name.toString()) : parameterCollector.get(slot);
+    }
+
+    private static final class Frame {
+
+        private int journalSize;
+        private int extraSlots;
+        private int position;
+        private double hasConsumed;
+        private int extentStart;
+        private BitwiseParameter danglingBitFieldData;
+
+        void save(RecognizeData recognizeData) {
+            journalSize = recognizeData.journalSize;
+            extraSlots = recognizeData.parameterCollector.getExtraSlots();
+            position = recognizeData.position;
+            hasConsumed = recognizeData.hasConsumed;
+            extentStart = recognizeData.extentStart;
+            danglingBitFieldData = recognizeData.danglingBitFieldData;
+        }
+
+        // Restores what is not restored by commit.
+        // Since the parameters are restored, the slots allocated for new names since save are empty, and are released.
+        void restore(RecognizeData recognizeData) {
+            recognizeData.parameterCollector.releaseExtraSlots(extraSlots);
+            recognizeData.extentStart = extentStart;
+            recognizeData.danglingBitFieldData = danglingBitFieldData;
+            danglingBitFieldData = null;
+        }
+    }
+
+    // Mutable, in order to be reused.
+    private static final class JournalEntry {
+
+        private String name;
+        private int slot;
+        private boolean isParameter;
+        private Expression expression;
+        private BitwiseParameter parameter;
+        private long value;
+        private long bitmask;
+
+        void set(String name, Expression old) {
+            this.name = name;
+            this.slot = -1;
+            this.isParameter = false;
+            this.expression = old;
+            this.parameter = null;
+            this.value = 0L;
+            this.bitmask = 0L;
+        }
+
+        // BitwiseParameters are aggregated in place, so the value and the bitmask must be saved.
+        void set(int slot, BitwiseParameter old) {
+            this.name = null;
+            this.slot = slot;
+            this.isParameter = true;
+            this.expression = null;
+            this.parameter = old;
+            this.value = old != null ? old.getValue() : 0L;
+            this.bitmask = old != null ? old.getBitmask() : 0L;
+        }
+
+        boolean isParameter() {
+            return isParameter;
+        }
+
+        void undo(RecognizeData recognizeData) {
+            if (isParameter())
+                recognizeData.parameterCollector.restore(slot, parameter, value, bitmask);
+            else
+                recognizeData.nameEngine.restore(name, expression);
+        }
+    }
 }
@@ -0,0 +1,198 @@
+/*
+Copyright (C) 2019 Bengt Martensson.
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation; either version 3 of the License, or (at
+your option) any later version.
+
+This program is distributed in the hope that it will be useful, but
+WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+General Public License for more details.
+
+You should have received a copy of the GNU General Public License along with
+this program. If not, see http://www.gnu.org/licenses/.
+*/
+
+package org.harctoolbox.irp;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import org.harctoolbox.ircore.IrSignal;
+
+/**
+ * Bounded cache of rendered IrSignals, evicting the least recently used entry when full.
+ * It is keyed on the protocol and the parameters, as well as on the values of the protocol's
+ * memory variables (like the toggle T) before the rendering.
+ * The values of the memory variables after the rendering are also stored, and restored into the protocol
+ * on a cache hit, so rendering through the cache has exactly the same effect as rendering without it.
+ * The IrSignals returned are shared, and must not be modified by the caller.
+ *
+ * Thread safe.
+ */
+public final class RenderCache {
+
+    public static final int DEFAULT_CAPACITY = 1000;
+
+    private final int capacity;
+    private final LinkedHashMap<Key, Value> map;
+    private final AtomicLong hits;
+    private final AtomicLong misses;
+
+    /**
+     * @param capacity Maximal number of IrSignals stored; must be positive.
+     */
+    @SuppressWarnings("serial")
+    public RenderCache(int capacity) {
+        if (capacity <= 0)
+            throw new IllegalArgumentException("Capacity must be positive");
+        this.capacity = capacity;
+        this.map = new LinkedHashMap<Key, Value>(Math.min(capacity, 1000), 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Value> eldest) {
+                return size() > RenderCache.this.capacity;
+            }
+        };
+        hits = new AtomicLong(0L);
+        misses = new AtomicLong(0L);
+    }
+
+    public RenderCache() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Renders the protocol with the parameters given, using the cache.
+     * Same as {@link Protocol#toIrSignal(java.util.Map)}, except for the caching.
+     * @param protocol
+     * @param parameters
+     * @return IrSignal, possibly from the cache. Must not be modified.
+     * @throws DomainViolationException
+     * @throws NameUnassignedException
+     * @throws IrpInvalidArgumentException
+     * @throws InvalidNameException
+     */
+    public IrSignal render(Protocol protocol, Map<String, Long> parameters) throws DomainViolationException, NameUnassignedException, IrpInvalidArgumentException, InvalidNameException {
+        return protocol.toIrSignal(parameters, this);
+    }
+
+    Value get(Key key) {
+        Value value;
+        synchronized (map) {
+            value = map.get(key);
+        }
+        (value != null ? hits : misses).incrementAndGet();
+        return value;
+    }
+
+    void put(Key key, Value value) {
+        synchronized (map) {
+            map.put(key, value);
+        }
+    }
+
+    public void clear() {
+        synchronized (map) {
+            map.clear();
+        }
+    }
+
+    public int size() {
+        synchronized (map) {
+            return map.size();
+        }
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    @Override
+    public String toString() {
+        return "RenderCache: size = " + size() + "/" + capacity + ", hits = " + hits.get() + ", misses = " + misses.get();
+    }
+
+    /**
+     * Key of the cache. Protocols are compared by identity, since every Protocol object has its own memory variables.
+     * Alternatively, a protocol can be identified by its IRP string, when its memory variables are known to be in their initial state.
+     */
+    static final class Key {
+
+        private final Protocol protocol;
+        private final String irp;
+        private final Map<String, Long> parameters;
+        private final Map<String, Long> memoryVariables;
+        private final int hashCode;
+
+        Key(Protocol protocol, Map<String, Long> parameters, Map<String, Long> memoryVariables) {
+            this(protocol, null, parameters, memoryVariables);
+        }
+
+        Key(String irp, Map<String, Long> parameters) {
+            this(null, irp, parameters, Collections.emptyMap());
+        }
+
+        private Key(Protocol protocol, String irp, Map<String, Long> parameters, Map<String, Long> memoryVariables) {
+            this.protocol = protocol;
+            this.irp = irp;
+            this.parameters = new HashMap<>(parameters);
+            this.memoryVariables = memoryVariables;
+            int hash = 7;
+            hash = 31 * hash + (protocol != null ? System.identityHashCode(protocol) : irp.hashCode());
+            hash = 31 * hash + this.parameters.hashCode();
+            hash = 31 * hash + memoryVariables.hashCode();
+            hashCode = hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Key))
+                return false;
+
+            Key other = (Key) obj;
+            return protocol == other.protocol
+                    && (irp == null ? other.irp == null : irp.equals(other.irp))
+                    && parameters.equals(other.parameters)
+                    && memoryVariables.equals(other.memoryVariables);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+    }
+
+    static final class Value {
+
+        private final IrSignal irSignal;
+        private final Map<String, Long> memoryVariables;
+
+        Value(IrSignal irSignal, Map<String, Long> memoryVariables) {
+            this.irSignal = irSignal;
+            this.memoryVariables = memoryVariables;
+        }
+
+        IrSignal getIrSignal() {
+            return irSignal;
+        }
+
+        /**
+         * @return values of the memory variables after the rendering.
+         */
+        Map<String, Long> getMemoryVariables() {
+            return memoryVariables;
+        }
+    }
+}
@@ -0,0 +1,410 @@
+/*
+Copyright (C) 2019 Bengt Martensson.
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation; either version 3 of the License, or (at
+your option) any later version.
+
+This program is distributed in the hope that it will be useful, but
+WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+General Public License for more details.
+
+You should have received a copy of the GNU General Public License along with
+this program. If not, see http://www.gnu.org/licenses/.
+*/
+
+package org.harctoolbox.irp;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.harctoolbox.ircore.IrCoreUtils;
+import org.harctoolbox.ircore.IrSequence;
+import org.harctoolbox.ircore.OddSequenceLengthException;
+import org.harctoolbox.ircore.ThisCannotHappenException;
+
+/**
+ * The normal form of a pass of a protocol, compiled for rendering, in the context of its BitSpec and GeneralSpec.
+ * The BareIrStream is lowered to a straight-line program of durations, bitfields and assignments,
+ * and the bitcodes to a table of durations, computed once.
+ * Rendering is then a single loop over the program, emitting the bits of the bitfields directly as durations,
+ * with exactly the same semantic as the general renderer, i.e.,
+ * {@link BitspecIrstream#render} followed by {@link EvaluatedIrStream#toIrSequence}.
+ * Expressions (bitfield data, assignments, non-constant durations) are still evaluated by the NameEngine.
+ *
+ * This is possible when the stream consists of flashes, gaps, extents, finite bitfields of constant width, assignments,
+ * and (recursively) such streams with their own bitspecs, only,
+ * the bitcodes consist of flashes and gaps of constant duration only,
+ * and every run of consecutive bitfields fills an integral number of chunks,
+ * which is the case for the vast majority of the protocols.
+ * Instances are immutable, and therefore thread safe.
+ */
+final class RenderProgram {
+
+    private static final Logger logger = Logger.getLogger(RenderProgram.class.getName());
+
+    private static final int DURATION = 0;
+    private static final int EXTENT = 1;
+    private static final int BITFIELD = 2;
+    private static final int ASSIGNMENT = 3;
+    private static final int NESTED = 4;
+
+    private static final RenderProgram NOT_COMPILED = new RenderProgram(null, null, null, null, null, null, 0, 0, 0);
+
+    /**
+     * Compiles the BareIrStream argument, with the BitSpec and GeneralSpec given.
+     * @param bareIrStream normal form of a pass
+     * @param bitSpec
+     * @param generalSpec
+     * @return RenderProgram, never null. Use {@link #isCompiled()} to find out if it is usable.
+     */
+    static RenderProgram newRenderProgram(BareIrStream bareIrStream, BitSpec bitSpec, GeneralSpec generalSpec) {
+        try {
+            return compile(bareIrStream, bitSpec, generalSpec);
+        } catch (NameUnassignedException | IrpInvalidArgumentException | RuntimeException ex) {
+            logger.log(Level.FINE, "{0} not compiled: {1}", new Object[]{bareIrStream, ex});
+            return NOT_COMPILED;
+        }
+    }
+
+    private static RenderProgram compile(BareIrStream bareIrStream, BitSpec bitSpec, GeneralSpec generalSpec) throws NameUnassignedException, IrpInvalidArgumentException {
+        List<IrStreamItem> items = new ArrayList<>(bareIrStream.getIrStreamItems().size());
+        flatten(bareIrStream, items);
+        int[] opcodes = new int[items.size()];
+        Object[] operands = new Object[items.size()];
+        double[] values = new double[items.size()];
+        boolean hasBitFields = false;
+        long totalBits = 0L;
+        long runLength = 0L;
+        int chunkSize = bitSpec.getChunkSize();
+        int minLength = 0;
+        int maxLength = 0;
+        for (int i = 0; i < items.size(); i++) {
+            IrStreamItem item = items.get(i);
+            if (item instanceof FiniteBitField) {
+                long width = ((FiniteBitField) item).getWidth(NameEngine.EMPTY);
+                if (width < 0 || width >= BitField.MAXWIDTH)
+                    return NOT_COMPILED;
+                opcodes[i] = BITFIELD;
+                operands[i] = item;
+                values[i] = width;
+                runLength += width;
+                totalBits += width;
+                hasBitFields = true;
+                continue;
+            }
+
+            if (item instanceof Assignment) {
+                opcodes[i] = ASSIGNMENT;
+                operands[i] = item;
+                continue;
+            }
+
+            // Everything else terminates the run of bitfields, which must therefore be reducible.
+            if (chunkSize > 0 && runLength % chunkSize != 0)
+                return NOT_COMPILED;
+            runLength = 0L;
+
+            if (item instanceof BitspecIrstream) {
+                BitspecIrstream bitspecIrstream = (BitspecIrstream) item;
+                RenderProgram program = compile(bitspecIrstream.getIrStream().getBareIrStream(), bitspecIrstream.getBitSpec(), generalSpec);
+                // An empty result would not terminate the run of bitfields.
+                if (!program.isCompiled() || program.minLength == 0)
+                    return NOT_COMPILED;
+                opcodes[i] = NESTED;
+                operands[i] = program;
+                minLength += program.minLength;
+                maxLength += program.maxLength;
+                continue;
+            }
+
+            if (!(item instanceof Duration))
+                return NOT_COMPILED;
+            Duration duration = (Duration) item;
+            boolean constant = duration.constant(NameEngine.EMPTY);
+            if (item instanceof Extent) {
+                opcodes[i] = EXTENT;
+                values[i] = constant ? duration.evaluate(generalSpec, NameEngine.EMPTY) : 0d;
+            } else {
+                opcodes[i] = DURATION;
+                values[i] = constant ? duration.evaluateWithSign(generalSpec, NameEngine.EMPTY, 0) : 0d;
+            }
+            operands[i] = constant ? null : duration;
+            minLength++;
+            maxLength++;
+        }
+
+        double[][] bitCodes = null;
+        if (hasBitFields) {
+            if (chunkSize <= 0 || bitSpec.size() != 1 << chunkSize || runLength % chunkSize != 0)
+                return NOT_COMPILED;
+            bitCodes = new double[bitSpec.size()][];
+            int minCodeLength = Integer.MAX_VALUE;
+            int maxCodeLength = 0;
+            for (int code = 0; code < bitCodes.length; code++) {
+                bitCodes[code] = compileBitCode(bitSpec.get(code), generalSpec);
+                if (bitCodes[code] == null)
+                    return NOT_COMPILED;
+                minCodeLength = Math.min(minCodeLength, bitCodes[code].length);
+                maxCodeLength = Math.max(maxCodeLength, bitCodes[code].length);
+            }
+            minLength += (int) (totalBits / chunkSize) * minCodeLength;
+            maxLength += (int) (totalBits / chunkSize) * maxCodeLength;
+        }
+
+        return new RenderProgram(generalSpec, opcodes, operands, values, bitCodes,
+                generalSpec.getBitDirection(), chunkSize, minLength, maxLength);
+    }
+
+    // IrStream.render renders its BareIrStream exactly once.
+    private static void flatten(BareIrStream bareIrStream, List<IrStreamItem> items) {
+        for (IrStreamItem item : bareIrStream.getIrStreamItems()) {
+            if (item instanceof IrStream)
+                flatten(((IrStream) item).getBareIrStream(), items);
+            else if (item instanceof BareIrStream)
+                flatten((BareIrStream) item, items);
+            else
+                items.add(item);
+        }
+    }
+
+    private static double[] compileBitCode(BareIrStream bitCode, GeneralSpec generalSpec) throws NameUnassignedException, IrpInvalidArgumentException {
+        List<IrStreamItem> items = bitCode.getIrStreamItems();
+        double[] durations = new double[items.size()];
+        for (int j = 0; j < items.size(); j++) {
+            IrStreamItem item = items.get(j);
+            if (!((item instanceof Flash) || (item instanceof Gap)))
+                return null;
+            Duration duration = (Duration) item;
+            if (!duration.constant(NameEngine.EMPTY))
+                return null;
+            durations[j] = duration.evaluateWithSign(generalSpec, NameEngine.EMPTY, 0);
+        }
+        return durations;
+    }
+
+    private final GeneralSpec generalSpec;
+    private final int[] opcodes;
+    private final Object[] operands;
+    private final double[] values;
+    private final double[][] bitCodes;
+    private final BitDirection bitDirection;
+    private final int chunkSize;
+    private final int minLength;
+    private final int maxLength;
+
+    private RenderProgram(GeneralSpec generalSpec, int[] opcodes, Object[] operands, double[] values, double[][] bitCodes,
+            BitDirection bitDirection, int chunkSize, int minLength, int maxLength) {
+        this.generalSpec = generalSpec;
+        this.opcodes = opcodes;
+        this.operands = operands;
+        this.values = values;
+        this.bitCodes = bitCodes;
+        this.bitDirection = bitDirection;
+        this.chunkSize = chunkSize;
+        this.minLength = minLength;
+        this.maxLength = maxLength;
+    }
+
+    boolean isCompiled() {
+        return opcodes != null;
+    }
+
+    /**
+     * Upper bound of the number of durations emitted by {@link #render(NameEngine, Emitter)}.
+     * @return
+     */
+    int getMaxLength() {
+        return maxLength;
+    }
+
+    /**
+     * Renders the pass.
+     * @param nameEngine NameEngine, containing parameters and definitions; will be altered by the assignments.
+     * @return
+     * @throws NameUnassignedException
+     * @throws IrpInvalidArgumentException
+     */
+    IrSequence render(NameEngine nameEngine) throws NameUnassignedException, IrpInvalidArgumentException {
+        DoubleEmitter emitter = new DoubleEmitter(maxLength);
+        emitter.begin();
+        render(nameEngine, emitter);
+        return emitter.toIrSequence(emitter.end());
+    }
+
+    /**
+     * Renders the pass into the Emitter given, which has to be prepared by {@link Emitter#begin()}.
+     * @param nameEngine NameEngine, containing parameters and definitions; will be altered by the assignments.
+     * @param emitter
+     * @throws NameUnassignedException
+     * @throws IrpInvalidArgumentException
+     */
+    void render(NameEngine nameEngine, Emitter emitter) throws NameUnassignedException, IrpInvalidArgumentException {
+        for (int i = 0; i < opcodes.length; i++) {
+            switch (opcodes[i]) {
+                case DURATION:
+                    emitter.add(operands[i] == null ? values[i] : evaluateWithSign((Duration) operands[i], nameEngine));
+                    break;
+                case EXTENT:
+                    emitter.addExtent(operands[i] == null ? values[i] : evaluateWithSign((Duration) operands[i], nameEngine));
+                    break;
+                case BITFIELD:
+                    emitBitField((FiniteBitField) operands[i], (int) values[i], nameEngine, emitter);
+                    break;
+                case ASSIGNMENT:
+                    ((Assignment) operands[i]).execute(nameEngine);
+                    break;
+                case NESTED:
+                    ((RenderProgram) operands[i]).render(nameEngine, emitter);
+                    break;
+                default:
+                    throw new ThisCannotHappenException();
+            }
+        }
+    }
+
+    private double evaluateWithSign(Duration duration, NameEngine nameEngine) throws NameUnassignedException {
+        try {
+            return duration instanceof Extent ? duration.evaluate(generalSpec, nameEngine) : duration.evaluateWithSign(generalSpec, nameEngine, 0);
+        } catch (IrpInvalidArgumentException ex) {
+            throw new ThisCannotHappenException(ex);
+        }
+    }
+
+    // Same as BitStream.evaluate, but emitting the chunks as they are completed,
+    // which is equivalent since the runs of bitfields have been checked to fill entire chunks.
+    private void emitBitField(FiniteBitField bitField, int width, NameEngine nameEngine, Emitter emitter) throws NameUnassignedException {
+        long value = bitField.toLong(nameEngine);
+        long data = bitDirection == BitDirection.msb ? value : IrCoreUtils.reverse(value, width);
+        for (int bit = width - 1; bit >= 0; bit--) {
+            emitter.chunk = (emitter.chunk << 1) | (int) ((data >> bit) & 1L);
+            if (++emitter.chunkLength == chunkSize) {
+                int index = bitDirection == BitDirection.msb ? emitter.chunk : IrCoreUtils.reverse(emitter.chunk, chunkSize);
+                for (double duration : bitCodes[index])
+                    emitter.add(duration);
+                emitter.chunk = 0;
+                emitter.chunkLength = 0;
+            }
+        }
+    }
+
+    /**
+     * Receives the durations of the rendering of a pass, with the same semantic as EvaluatedIrStream.toIrSequence,
+     * merging durations of the same sign as IrSequence.toInterleavingList.
+     * Subclasses store the resulting durations. An instance can be reused for any number of passes.
+     */
+    abstract static class Emitter {
+
+        private double elapsed;
+        private double pending; // merged duration not yet written, 0 if none.
+        private int length;
+        private int chunk;
+        private int chunkLength;
+
+        /**
+         * Prepares for the rendering of a pass.
+         */
+        void begin() {
+            elapsed = 0.0;
+            pending = 0.0;
+            length = 0;
+            chunk = 0;
+            chunkLength = 0;
+        }
+
+        /**
+         * Stores the next duration.
+         * @param duration duration in micro seconds, positive for flashes, negative for gaps.
+         */
+        abstract void write(double duration);
+
+        void add(double time) {
+            if (Math.abs(time) < 0.0001) {
+                logger.warning("Zero duration ignored");
+                return;
+            }
+            elapsed += Math.abs(time);
+            interleave(time);
+        }
+
+        void addExtent(double extent) throws IrpInvalidArgumentException {
+            double time = extent - elapsed;
+            if (time < 0)
+                throw new IrpInvalidArgumentException("Argument of extent smaller than actual duration.");
+            if (Math.abs(time) < 0.0001) {
+                logger.warning("Zero duration ignored");
+                return;
+            }
+            elapsed = 0.0;
+            interleave(-time);
+        }
+
+        /**
+         * Stores an already rendered pass, as an alternative to rendering it into this.
+         * @param irSequence
+         */
+        void add(IrSequence irSequence) {
+            for (int i = 0; i < irSequence.getLength(); i++)
+                write(i % 2 == 0 ? irSequence.get(i) : -irSequence.get(i));
+            length += irSequence.getLength();
+        }
+
+        private void interleave(double value) {
+            if (length == 0 && pending == 0.0 && value <= 0) // Nuke leading gaps
+                return;
+
+            if (pending != 0.0 && (value < 0) == (pending < 0))
+                pending += value;
+            else {
+                if (pending != 0.0) {
+                    write(pending);
+                    length++;
+                }
+                pending = value;
+            }
+        }
+
+        /**
+         * Finishes the pass.
+         * @return Number of durations written for the pass.
+         */
+        int end() {
+            if (pending != 0.0) {
+                write(pending);
+                length++;
+                pending = 0.0;
+            }
+            if (length % 2 != 0)
+                throw new ThisCannotHappenException();
+            return length;
+        }
+    }
+
+    private static final class DoubleEmitter extends Emitter {
+
+        private final double[] data;
+        private int position;
+
+        DoubleEmitter(int capacity) {
+            data = new double[capacity];
+            position = 0;
+        }
+
+        @Override
+        void write(double duration) {
+            data[position++] = duration;
+        }
+
+        IrSequence toIrSequence(int length) {
+            try {
+                return new IrSequence(length == data.length ? data : Arrays.copyOf(data, length));
+            } catch (OddSequenceLengthException ex) {
+                throw new ThisCannotHappenException();
+            }
+        }
+    }
+}
@@ -17,17 +17,49 @@ this program. If not, see http://www.gnu.org/licenses/.
 
 package org.harctoolbox.irp;
 
+import java.util.function.Supplier;
+
+/**
+ * Thrown when a signal does not match a protocol.
+ * Since this is the normal outcome of most recognition attempts, and the exception
+ * is used for control flow, it does not carry a stack trace.
+ * Its message can be given as a Supplier, so that it is only computed if actually used,
+ * for example for logging.
+ */
 public class SignalRecognitionException extends IrpException {
 
+    private final Supplier<String> messageSupplier;
+    private String message;
+
     public SignalRecognitionException(String string) {
-        super(string);
+        super(string, null, false, false);
+        messageSupplier = null;
     }
 
     public SignalRecognitionException() {
-        super();
+        this((String) null);
     }
 
     SignalRecognitionException(Throwable ex) {
-        super(ex);
+        super(ex == null ? null : ex.toString(), ex, false, false);
+        messageSupplier = null;
+    }
+
+    /**
+     * Constructs an exception with a lazily computed message.
+     * @param messageSupplier
+     */
+    SignalRecognitionException(Supplier<String> messageSupplier) {
+        super(null, null, false, false);
+        this.messageSupplier = messageSupplier;
+    }
+
+    @Override
+    public String getMessage() {
+        if (messageSupplier == null)
+            return super.getMessage();
+        if (message == null)
+            message = messageSupplier.get();
+        return message;
     }
 }
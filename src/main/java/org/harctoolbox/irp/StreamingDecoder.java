@@ -0,0 +1,312 @@
+/*
+Copyright (C) 2019 Bengt Martensson.
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation; either version 3 of the License, or (at
+your option) any later version.
+
+This program is distributed in the hope that it will be useful, but
+WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+General Public License for more details.
+
+You should have received a copy of the GNU General Public License along with
+this program. If not, see http://www.gnu.org/licenses/.
+*/
+
+package org.harctoolbox.irp;
+
+import java.nio.DoubleBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.harctoolbox.ircore.IrSequence;
+import org.harctoolbox.ircore.IrSignal;
+import org.harctoolbox.ircore.ModulatedIrSequence;
+import org.harctoolbox.ircore.OddSequenceLengthException;
+import org.harctoolbox.ircore.ThisCannotHappenException;
+
+/**
+ * Decoder for a continuous stream of durations, like the output of a demodulating receiver.
+ * The stream is split into frames, each ending with a gap of at least minimumLeadout.
+ * As soon as a frame is complete, the protocols recognized so far are continued, and decodes are delivered
+ * to a {@link DecodeListener}: with {@link IrSignal.Pass#intro} at the start of a signal,
+ * then with {@link IrSignal.Pass#repeat} for every repeat, with the repeat count updated,
+ * and finally with {@link IrSignal.Pass#ending}, if the protocol has an ending and it was matched.
+ * Protocols rejecting signals without repeats are delivered first when their first repeat has been matched.
+ * For every frame, the decodes are reduced according to the prefer-overs, just as for a batch decode.
+ * A pass may consist of several frames, at most {@link #MAX_FRAMES}.
+ *
+ * Since a gap longer than minimumLeadout is accepted as lead-out, the caller can call {@link #silence()}
+ * as soon as that much silence has been observed, instead of waiting for the next flash.
+ *
+ * The durations of a frame are stored in a buffer of bounded capacity; a frame exceeding it is discarded.
+ *
+ * Not thread safe.
+ */
+public final class StreamingDecoder {
+
+    private final static Logger logger = Logger.getLogger(StreamingDecoder.class.getName());
+
+    public static final int DEFAULT_CAPACITY = 1024;
+    public static final int MAX_FRAMES = 4;
+
+    /**
+     * Receiver of the decodes.
+     */
+    @FunctionalInterface
+    public interface DecodeListener {
+        void decoded(Decoder.Decode decode, IrSignal.Pass pass);
+    }
+
+    private final Decoder decoder;
+    private final Double frequency;
+    private final Decoder.DecoderParameters params;
+    private final DecodeListener listener;
+    private final double minimumLeadout;
+    private final double[] frame;
+    private final List<double[]> frames;
+    private List<Active> actives;
+    private int length;
+    private boolean expectFlash;
+    private boolean discarding;
+
+    /**
+     * @param decoder Decoder, providing the protocols.
+     * @param frequency Modulation frequency of the stream; null for the default.
+     * @param params
+     * @param listener Receiver of the decodes.
+     * @param capacity Maximal number of durations in a frame.
+     */
+    public StreamingDecoder(Decoder decoder, Double frequency, Decoder.DecoderParameters params, DecodeListener listener, int capacity) {
+        if (capacity <= 0)
+            throw new IllegalArgumentException("Capacity must be positive");
+        this.decoder = decoder;
+        this.frequency = frequency;
+        this.params = params;
+        this.listener = listener;
+        this.minimumLeadout = params.getMinimumLeadout();
+        this.frame = new double[capacity];
+        this.frames = new ArrayList<>(MAX_FRAMES);
+        reset();
+    }
+
+    public StreamingDecoder(Decoder decoder, Double frequency, Decoder.DecoderParameters params, DecodeListener listener) {
+        this(decoder, frequency, params, listener, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Forgets all data and the signals in progress.
+     */
+    public void reset() {
+        frames.clear();
+        actives = new ArrayList<>(0);
+        length = 0;
+        expectFlash = true;
+        discarding = false;
+    }
+
+    /**
+     * Feeds one duration, alternately flashes and gaps, starting with a flash.
+     * @param duration duration in micro seconds
+     */
+    public void accept(double duration) {
+        boolean leadout = !expectFlash && duration >= minimumLeadout;
+        expectFlash = !expectFlash;
+        if (discarding) {
+            discarding = !leadout;
+            return;
+        }
+
+        if (length == frame.length) {
+            logger.log(Level.WARNING, "Frame exceeds capacity of {0} durations, discarded", frame.length);
+            length = 0;
+            discarding = !leadout;
+            return;
+        }
+
+        frame[length++] = duration;
+        if (leadout) {
+            double[] data = new double[length];
+            System.arraycopy(frame, 0, data, 0, length);
+            length = 0;
+            frameComplete(data);
+        }
+    }
+
+    /**
+     * Feeds a chunk of durations, which may end in the middle of a frame.
+     * @param durations
+     * @param offset
+     * @param length
+     */
+    public void accept(double[] durations, int offset, int length) {
+        for (int i = offset; i < offset + length; i++)
+            accept(durations[i]);
+    }
+
+    public void accept(double[] durations) {
+        accept(durations, 0, durations.length);
+    }
+
+    public void accept(DoubleBuffer buffer) {
+        while (buffer.hasRemaining())
+            accept(buffer.get());
+    }
+
+    public void accept(IrSequence irSequence) {
+        for (int i = 0; i < irSequence.getLength(); i++)
+            accept(irSequence.get(i));
+    }
+
+    /**
+     * Signals that at least minimumLeadout has passed since the last flash.
+     * The gap in progress is terminated, so the next duration fed is to be a flash.
+     * If no gap is in progress, nothing happens.
+     */
+    public void silence() {
+        if (!expectFlash)
+            accept(minimumLeadout);
+    }
+
+    /**
+     * @return true if a signal is in progress, i.e., its repeats or ending may still follow.
+     */
+    public boolean isActive() {
+        return !actives.isEmpty();
+    }
+
+    private void frameComplete(double[] data) {
+        frames.add(data);
+        if (!actives.isEmpty() && continueSignal(sequence(0))) {
+            frames.clear();
+            return;
+        }
+
+        if (startSignal()) {
+            frames.clear();
+            return;
+        }
+
+        if (!actives.isEmpty() && frames.size() < MAX_FRAMES)
+            return; // possibly a part of a pass
+
+        actives.clear();
+        if (frames.size() == MAX_FRAMES)
+            frames.remove(0);
+    }
+
+    private boolean continueSignal(ModulatedIrSequence irSequence) {
+        List<Active> survivors = new ArrayList<>(actives.size());
+        actives.stream().filter((active) -> (active.recognition.repeat(irSequence))).forEachOrdered((active) -> {
+            survivors.add(active);
+        });
+        if (!survivors.isEmpty()) {
+            actives = survivors;
+            emit(actives, IrSignal.Pass.repeat);
+            return true;
+        }
+
+        List<Active> ended = new ArrayList<>(actives.size());
+        for (Active active : actives) {
+            if (!active.recognition.hasEnding())
+                continue;
+            try {
+                active.recognition.ending(irSequence);
+                ended.add(active);
+            } catch (SignalRecognitionException ex) {
+                logger.log(Level.FINER, "Protocol {0}: ending not matched", active.namedProtocol.getName());
+            }
+        }
+        if (ended.isEmpty())
+            return false;
+
+        emit(ended, IrSignal.Pass.ending);
+        actives.clear();
+        return true;
+    }
+
+    // Try the frames collected, ending with the newest, as a new signal; the longest first.
+    private boolean startSignal() {
+        for (int start = 0; start < frames.size(); start++) {
+            ModulatedIrSequence irSequence = sequence(start);
+            List<Active> started = new ArrayList<>(4);
+            for (NamedProtocol namedProtocol : decoder.getPrefilter().candidates(irSequence, 0, params)) {
+                try {
+                    Protocol.Recognition recognition = namedProtocol.newRecognition(params);
+                    recognition.start(irSequence);
+                    started.add(new Active(namedProtocol, recognition));
+                } catch (SignalRecognitionException ex) {
+                    if (logger.isLoggable(Level.FINER))
+                        logger.log(Level.FINER, "Protocol {0} did not decode: {1}", new Object[]{namedProtocol.getName(), ex.getMessage()});
+                } catch (Protocol.ProtocolNotDecodableException ex) {
+                }
+            }
+            if (started.isEmpty())
+                continue;
+
+            actives = started;
+            emit(actives, IrSignal.Pass.intro);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Delivers the decodes of the accepted recognitions, reduced according to prefer-over.
+     * The reduction is made anew for every frame, since the set of accepted recognitions changes.
+     */
+    private void emit(List<Active> list, IrSignal.Pass pass) {
+        List<Decoder.Decode> decodes = new ArrayList<>(list.size());
+        list.stream().filter((active) -> (active.recognition.isAccepted())).forEachOrdered((active) -> {
+            decodes.add(active.getDecode());
+        });
+        if (decodes.isEmpty())
+            return;
+
+        Decoder.SimpleDecodesSet simpleDecodesSet = new Decoder.SimpleDecodesSet(decodes);
+        decoder.reduce(simpleDecodesSet, params);
+        simpleDecodesSet.forEach((decode) -> {
+            listener.decoded(decode, pass);
+        });
+    }
+
+    private ModulatedIrSequence sequence(int start) {
+        int size = 0;
+        for (int i = start; i < frames.size(); i++)
+            size += frames.get(i).length;
+        double[] data = new double[size];
+        int pos = 0;
+        for (int i = start; i < frames.size(); i++) {
+            double[] f = frames.get(i);
+            System.arraycopy(f, 0, data, pos, f.length);
+            pos += f.length;
+        }
+        try {
+            return new ModulatedIrSequence(data, frequency, null);
+        } catch (OddSequenceLengthException ex) {
+            // frames end with a gap
+            throw new ThisCannotHappenException(ex);
+        }
+    }
+
+    private final class Active {
+
+        private final NamedProtocol namedProtocol;
+        private final Protocol.Recognition recognition;
+
+        Active(NamedProtocol namedProtocol, Protocol.Recognition recognition) {
+            this.namedProtocol = namedProtocol;
+            this.recognition = recognition;
+        }
+
+        Decoder.Decode getDecode() {
+            Decoder.Decode decode = new Decoder.Decode(namedProtocol, recognition.getDecode());
+            if (params.isRemoveDefaultedParameters())
+                decode.removeDefaulteds();
+            return decode;
+        }
+    }
+}
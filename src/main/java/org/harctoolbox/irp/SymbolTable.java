@@ -0,0 +1,141 @@
+/*
+Copyright (C) 2019 Bengt Martensson.
+
+This program is free software: you can redistribute it and/or modify
+it under the terms of the GNU General Public License as published by
+the Free Software Foundation; either version 3 of the License, or (at
+your option) any later version.
+
+This program is distributed in the hope that it will be useful, but
+WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+General Public License for more details.
+
+You should have received a copy of the GNU General Public License along with
+this program. If not, see http://www.gnu.org/licenses/.
+*/
+
+package org.harctoolbox.irp;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Dense numbering of the names of a protocol, i.e., its parameters (in the order of the ParameterSpecs),
+ * followed by the names of its definitions and the variables assigned to in its IrStream.
+ * The numbers (slots) are used by the ParameterCollector, allowing it to keep its parameters in an array instead of a map.
+ * For the parameters, the ParameterSpec and its bitmask is also available by slot.
+ * The slots of the names occurring in the protocol are looked up only once, and cached in the {@link Name}s,
+ * see {@link Name#slot(SymbolTable)}.
+ *
+ * Immutable, and computed once per protocol, see {@link Protocol#getSymbolTable()}.
+ */
+final class SymbolTable {
+
+    static final SymbolTable EMPTY = new SymbolTable(new ParameterSpecs(), Collections.emptyList());
+
+    private final Map<String, Integer> slots;
+    private final String[] names;
+    private final ParameterSpec[] parameterSpecs;
+    private final long[] bitmasks;
+    private final boolean[] definable;
+
+    SymbolTable(ParameterSpecs parameterSpecs, Iterable<String> otherNames) {
+        List<String> list = new ArrayList<>(parameterSpecs.size() + 4);
+        slots = new HashMap<>(2 * parameterSpecs.size() + 8);
+        this.parameterSpecs = new ParameterSpec[parameterSpecs.size()];
+        bitmasks = new long[parameterSpecs.size()];
+        for (ParameterSpec parameterSpec : parameterSpecs) {
+            String name = parameterSpec.getName();
+            int slot = list.size();
+            slots.put(name, slot);
+            list.add(name);
+            this.parameterSpecs[slot] = parameterSpec;
+            bitmasks[slot] = parameterSpec.bitmask();
+        }
+        List<Integer> definedParameters = new ArrayList<>(0);
+        for (String name : otherNames) {
+            Integer slot = slots.get(name);
+            if (slot == null) {
+                slots.put(name, list.size());
+                list.add(name);
+            } else if (slot < bitmasks.length)
+                definedParameters.add(slot);
+        }
+        names = list.toArray(new String[list.size()]);
+        definable = new boolean[names.length];
+        Arrays.fill(definable, bitmasks.length, names.length, true);
+        definedParameters.forEach((slot) -> definable[slot] = true);
+    }
+
+    /**
+     * Symbol table of names only, with the bitmasks given.
+     * @param bitmasks Bitmasks of the parameters, by name.
+     */
+    SymbolTable(Map<String, Long> bitmasks) {
+        int size = bitmasks.size();
+        slots = new HashMap<>(2 * size + 1);
+        names = new String[size];
+        parameterSpecs = new ParameterSpec[size];
+        this.bitmasks = new long[size];
+        definable = new boolean[size];
+        Arrays.fill(definable, true);
+        int slot = 0;
+        for (Map.Entry<String, Long> kvp : bitmasks.entrySet()) {
+            slots.put(kvp.getKey(), slot);
+            names[slot] = kvp.getKey();
+            this.bitmasks[slot] = kvp.getValue();
+            slot++;
+        }
+    }
+
+    /**
+     * @param name
+     * @return slot of the name, or -1 if not present.
+     */
+    int slot(String name) {
+        Integer slot = slots.get(name);
+        return slot != null ? slot : -1;
+    }
+
+    int size() {
+        return names.length;
+    }
+
+    String getName(int slot) {
+        return names[slot];
+    }
+
+    /**
+     * @param slot
+     * @return true if the slot has a bitmask, i.e., is a parameter.
+     */
+    boolean hasBitmask(int slot) {
+        return slot < bitmasks.length;
+    }
+
+    /**
+     * @param slot
+     * @return false if the name is known not to be defined in the NameEngine of a recognition,
+     * i.e., is a parameter that is neither a definition nor assigned to.
+     */
+    boolean isDefinable(int slot) {
+        return definable[slot];
+    }
+
+    long getBitmask(int slot) {
+        return bitmasks[slot];
+    }
+
+    /**
+     * @param slot
+     * @return the ParameterSpec of the slot, or null if the slot is not a parameter with a ParameterSpec.
+     */
+    ParameterSpec getParameterSpec(int slot) {
+        return slot < parameterSpecs.length ? parameterSpecs[slot] : null;
+    }
+}
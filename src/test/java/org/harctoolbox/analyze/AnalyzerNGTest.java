@@ -1,5 +1,7 @@
 package org.harctoolbox.analyze;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import org.harctoolbox.ircore.InvalidArgumentException;
 import org.harctoolbox.ircore.IrSequence;
@@ -58,4 +60,31 @@ public class AnalyzerNGTest {
         List<Protocol> list = analyzer.searchBestProtocol(analyzerParams);
         assertEquals(list.size(), 0);
     }
-}
\ No newline at end of file
+
+    private static List<String> toIrpStrings(List<Protocol> protocols) {
+        List<String> result = new ArrayList<>(protocols.size());
+        protocols.forEach((protocol) -> {
+            result.add(protocol.toIrpString(16));
+        });
+        return result;
+    }
+
+    /**
+     * Test of searchBestProtocol and searchAllProtocols methods, of class Analyzer, in parallel mode.
+     * @throws java.lang.Exception
+     */
+    @Test
+    public void testSearchProtocolsParallel() throws Exception {
+        System.out.println("searchProtocolsParallel");
+        Analyzer analyzer = new Analyzer(Arrays.asList(new IrSequence(INTRODATA), new IrSequence(REPEATDATA), new IrSequence(ALLDATA)), 38400d, false, null, null);
+        Analyzer.AnalyzerParams params = new Analyzer.AnalyzerParams();
+        List<Protocol> expResult = analyzer.searchBestProtocol(params);
+        List<List<Protocol>> expAll = analyzer.searchAllProtocols(params, null, false);
+        params.setParallel(true);
+        assertEquals(toIrpStrings(analyzer.searchBestProtocol(params)), toIrpStrings(expResult));
+        List<List<Protocol>> all = analyzer.searchAllProtocols(params, null, false);
+        assertEquals(all.size(), expAll.size());
+        for (int i = 0; i < all.size(); i++)
+            assertEquals(toIrpStrings(all.get(i)), toIrpStrings(expAll.get(i)));
+    }
+}
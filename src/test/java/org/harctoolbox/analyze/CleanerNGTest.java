@@ -1,5 +1,6 @@
 package org.harctoolbox.analyze;
 
+import java.util.Arrays;
 import org.harctoolbox.ircore.InvalidArgumentException;
 import org.harctoolbox.ircore.IrSequence;
 import org.harctoolbox.ircore.IrSignal;
@@ -7,6 +8,7 @@ import org.harctoolbox.ircore.ModulatedIrSequence;
 import org.harctoolbox.ircore.Pronto;
 import org.testng.Assert;
 import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
 import static org.testng.Assert.fail;
 import org.testng.annotations.AfterClass;
 import org.testng.annotations.AfterMethod;
@@ -115,6 +117,50 @@ public class CleanerNGTest {
         Assert.assertTrue(result.approximatelyEquals(irSequence));
     }
 
+    /**
+     * Test of getIndex and the histogram methods, of class Cleaner.
+     * @throws org.harctoolbox.ircore.InvalidArgumentException
+     */
+    @Test
+    public void testGetIndex() throws InvalidArgumentException {
+        System.out.println("getIndex");
+        Cleaner instance = new Cleaner(new IrSequence(new int[]{1000, 500, 1010, 1500, 990, 500, 1000, 20000}));
+        assertEquals(instance.toTimingsString(), "BA BC BA BD");
+        assertEquals(instance.getIndex(990), Integer.valueOf(1));
+        assertEquals(instance.getIndex(1000), Integer.valueOf(1));
+        assertEquals(instance.getIndex(20000), Integer.valueOf(3));
+        assertNull(instance.getIndex(1234));
+        assertEquals(instance.getFlashes(), Arrays.asList(1000));
+        assertEquals(instance.getGaps(), Arrays.asList(500, 1500, 20000));
+        assertEquals(instance.getNumberFlashes(1000), 4);
+        assertEquals(instance.getNumberGaps(500), 2);
+        assertEquals(instance.getGapsSortedAfterFrequency(0), 500);
+        assertEquals(instance.getNumberOfGaps(), 3);
+        assertEquals(instance.getCleanedHistogram().get(1000), Integer.valueOf(4));
+    }
+
+    /**
+     * Test of add method, of class Cleaner.
+     * @throws org.harctoolbox.ircore.InvalidArgumentException
+     */
+    @Test
+    public void testAdd() throws InvalidArgumentException {
+        System.out.println("add");
+        int[] first = new int[]{1000, 500, 1010, 1500, 990, 500, 1000, 20000};
+        int[] second = new int[]{1030, 530, 1020, 1520, 1000, 21000};
+        Cleaner instance = new Cleaner(first, new int[]{first.length}, false, null, null);
+        assertEquals(instance.add(second).cardinality(), 1);
+        int[] data = Arrays.copyOf(first, first.length + second.length);
+        System.arraycopy(second, 0, data, first.length, second.length);
+        Cleaner expResult = new Cleaner(data, new int[]{first.length, data.length}, false, null, null);
+        assertEquals(instance.toTimingsString(), expResult.toTimingsString());
+        assertEquals(instance.getCleanedHistogram(), expResult.getCleanedHistogram());
+        assertEquals(instance.toDurations(0), expResult.toDurations(0));
+        assertEquals(instance.toDurations(1), expResult.toDurations(1));
+        assertEquals(instance.getNumberPairs(1010, 500), 3);
+        assertEquals(instance.getNumberPairs(500, 1010), 0);
+    }
+
     /**
      * Test of mkName method, of class Cleaner.
      */
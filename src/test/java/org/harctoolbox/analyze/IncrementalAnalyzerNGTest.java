@@ -0,0 +1,90 @@
+package org.harctoolbox.analyze;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import org.harctoolbox.ircore.IrSequence;
+import org.harctoolbox.irp.BitDirection;
+import org.harctoolbox.irp.IrpDatabase;
+import org.harctoolbox.irp.Protocol;
+import static org.testng.Assert.*;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class IncrementalAnalyzerNGTest {
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+    }
+
+    @AfterClass
+    public static void tearDownClass() throws Exception {
+    }
+
+    private final IrpDatabase irpDatabase;
+
+    public IncrementalAnalyzerNGTest() throws Exception {
+        irpDatabase = new IrpDatabase((String) null);
+    }
+
+    @BeforeMethod
+    public void setUpMethod() throws Exception {
+    }
+
+    @AfterMethod
+    public void tearDownMethod() throws Exception {
+    }
+
+    private List<IrSequence> captures(String protocolName, int number) throws Exception {
+        Random random = new Random(number);
+        List<IrSequence> result = new ArrayList<>(number);
+        for (int i = 0; i < number; i++) {
+            Map<String, Long> parameters = new HashMap<>(2);
+            parameters.put("D", 12L);
+            parameters.put("F", (long) i);
+            int[] data = irpDatabase.render(protocolName, parameters).toModulatedIrSequence(2).toInts();
+            for (int j = 0; j < data.length; j++)
+                data[j] += random.nextInt(41) - 20;
+            result.add(new IrSequence(data));
+        }
+        return result;
+    }
+
+    private static List<String> toIrpStrings(List<Protocol> protocols) {
+        List<String> result = new ArrayList<>(protocols.size());
+        protocols.forEach((protocol) -> {
+            result.add(protocol.toIrpString(16));
+        });
+        return result;
+    }
+
+    /**
+     * Test of add method, of class IncrementalAnalyzer.
+     * @throws java.lang.Exception
+     */
+    @Test
+    public void testAdd() throws Exception {
+        System.out.println("add");
+        List<IrSequence> irSequences = captures("NEC1", 10);
+        irSequences.addAll(captures("RC5", 5));
+        Analyzer.AnalyzerParams params = new Analyzer.AnalyzerParams(38400d, null, BitDirection.lsb, false, null, false);
+        IncrementalAnalyzer instance = new IncrementalAnalyzer(38400d, true, params);
+        for (int n = 1; n <= irSequences.size(); n++) {
+            Protocol result = instance.add(irSequences.get(n - 1));
+            Analyzer analyzer = new Analyzer(irSequences.subList(0, n), 38400d, true, null, null);
+            List<List<Protocol>> expResult = analyzer.searchAllProtocols(params, null, false);
+            assertEquals(result.toIrpString(16), Analyzer.selectBestProtocol(expResult.get(n - 1)).toIrpString(16));
+            List<List<Protocol>> all = instance.getAllProtocols();
+            assertEquals(all.size(), n);
+            for (int i = 0; i < n; i++)
+                assertEquals(toIrpStrings(all.get(i)), toIrpStrings(expResult.get(i)));
+        }
+        assertEquals(instance.update(), new BitSet());
+    }
+}
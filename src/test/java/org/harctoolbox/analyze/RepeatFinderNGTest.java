@@ -142,4 +142,25 @@ public class RepeatFinderNGTest {
             assert(false);
         }
     }
+
+    /**
+     * Test of findRepeat method, of class RepeatFinder, with a long capture.
+     */
+    @Test
+    public void testFindRepeat_LongCapture() {
+        System.out.println("findRepeatLongCapture");
+        try {
+            IrSignal irSignal = Pronto.parse("0000 006C 0022 0002 015B 00AD 0016 0016 0016 0016 0016 0041 0016 0041 0016 0016 0016 0016 0016 0016 0016 0016 0016 0016 0016 0041 0016 0016 0016 0016 0016 0016 0016 0041 0016 0016 0016 0016 0016 0016 0016 0016 0016 0016 0016 0041 0016 0041 0016 0041 0016 0016 0016 0016 0016 0041 0016 0041 0016 0041 0016 0016 0016 0016 0016 0016 0016 0041 0016 0041 0016 06A4 015B 0057 0016 0E6C");
+            // About 11 seconds of holding the button
+            ModulatedIrSequence irSequence = irSignal.toModulatedIrSequence(100);
+            RepeatFinder repeatFinder = new RepeatFinder(irSequence);
+            RepeatFinder.RepeatFinderData repeatFinderData = repeatFinder.getRepeatFinderData();
+            assertEquals(68, repeatFinderData.getBeginLength());
+            assertEquals(4, repeatFinderData.getRepeatLength());
+            assertEquals(99, repeatFinderData.getNumberRepeats());
+            assertEquals(0, repeatFinderData.getEndingLength());
+        } catch (InvalidArgumentException | Pronto.NonProntoFormatException ex) {
+            assert(false);
+        }
+    }
 }
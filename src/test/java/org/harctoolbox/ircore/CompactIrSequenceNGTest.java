@@ -0,0 +1,54 @@
+package org.harctoolbox.ircore;
+
+import static org.testng.Assert.*;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class CompactIrSequenceNGTest {
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+    }
+
+    @AfterClass
+    public static void tearDownClass() throws Exception {
+    }
+
+    public CompactIrSequenceNGTest() {
+    }
+
+    @BeforeMethod
+    public void setUpMethod() throws Exception {
+    }
+
+    @AfterMethod
+    public void tearDownMethod() throws Exception {
+    }
+
+    /**
+     * Test of newCompactIrSequence method, of class CompactIrSequence.
+     * @throws java.lang.Exception
+     */
+    @Test
+    public void testNewCompactIrSequence() throws Exception {
+        System.out.println("newCompactIrSequence");
+        ModulatedIrSequence irSequence = new ModulatedIrSequence(new double[]{9024, 4512, 564.5, 39756}, 38400d, 0.33);
+
+        CompactIrSequence ints = CompactIrSequence.newCompactIrSequence(irSequence, false);
+        assertFalse(ints.isFloats());
+        assertEquals(ints.getLength(), 4);
+        assertEquals(ints.get(2), 565.0);
+        ModulatedIrSequence result = ints.toModulatedIrSequence();
+        assertEquals((double) result.getFrequency(), 38400d);
+        assertEquals((double) result.getDutyCycle(), 0.33);
+        assertTrue(result.approximatelyEquals(irSequence));
+
+        CompactIrSequence floats = CompactIrSequence.newCompactIrSequence(irSequence.subSequence(2, 2), true);
+        assertTrue(floats.isFloats());
+        assertEquals(floats.toDoubles(), new double[]{564.5, 39756});
+        assertNull(floats.getFrequency());
+    }
+}
@@ -0,0 +1,65 @@
+package org.harctoolbox.ircore;
+
+import java.nio.DoubleBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import static org.testng.Assert.assertEquals;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class DemodulatorNGTest {
+
+    private static final double[] DATA = new double[]{4,6,4,6,4,6,4,6,4,6,4,6,4,6,4,6,4,6,4,106,4,6,4,6,4,6,4,6,4,6,4,6,4,6,4,6,4,6,4,6,4,101,4,6,4,6,4,6,4,6,4,6,4,6,4,6,4,6,4,6,2,100};
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+    }
+
+    @AfterClass
+    public static void tearDownClass() throws Exception {
+    }
+
+    public DemodulatorNGTest() {
+    }
+
+    @BeforeMethod
+    public void setUpMethod() throws Exception {
+    }
+
+    @AfterMethod
+    public void tearDownMethod() throws Exception {
+    }
+
+    /**
+     * Test of accept method, of class Demodulator, with chunks of odd length.
+     */
+    @Test
+    public void testAccept() {
+        System.out.println("accept");
+        List<Double> result = new ArrayList<>(6);
+        Demodulator instance = new Demodulator(20.0, (flash, gap) -> {
+            result.add(flash);
+            result.add(gap);
+        });
+        instance.accept(DATA, 0, 19);
+        assertEquals(result.size(), 0);
+        instance.accept(DATA, 19, 1);
+        assertEquals(result.size(), 2);
+        assertEquals(instance.getFrequency(), 100000.0, 0.001);
+        instance.accept(DoubleBuffer.wrap(DATA, 20, 23));
+        instance.accept(DATA, 43, DATA.length - 43);
+        List<Double> expResult = new ArrayList<>(6);
+        for (double d : new double[]{94, 106, 104, 101, 92, 100})
+            expResult.add(d);
+        assertEquals(result, expResult);
+        assertEquals(instance.getFrequency(), 100000.0, 0.001);
+        assertEquals(instance.getDutyCycle(), 0.4, 0.001);
+
+        instance.reset();
+        assertEquals(instance.getNumberPulses(), 0);
+        assertEquals(instance.getFrequency(), Double.NaN);
+    }
+}
@@ -3,6 +3,10 @@ package org.harctoolbox.ircore;
 import java.math.BigInteger;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
 import org.testng.Assert;
 import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertFalse;
@@ -665,4 +669,29 @@ public class IrCoreUtilsNGTest {
         result = IrCoreUtils.addExtensionIfNotPresent(filename, extension);
         assertEquals(result, expResult);
     }
+
+    /**
+     * Test of mapOrdered method, of class IrCoreUtils.
+     */
+    @Test
+    public void testMapOrdered() {
+        System.out.println("mapOrdered");
+        List<Integer> expResult = new ArrayList<>(1000);
+        for (int i = 0; i < 1000; i++)
+            expResult.add(i * i);
+        AtomicInteger maxInFlight = new AtomicInteger(0);
+        AtomicInteger produced = new AtomicInteger(0);
+        AtomicInteger consumed = new AtomicInteger(0);
+        Stream<Integer> input = IntStream.range(0, 1000).boxed().peek((i) -> {
+            maxInFlight.accumulateAndGet(produced.incrementAndGet() - consumed.get(), Math::max);
+        });
+        List<Integer> result;
+        try (Stream<Integer> stream = IrCoreUtils.mapOrdered(input, (Integer i) -> i * i, 4)) {
+            result = stream.peek((i) -> consumed.incrementAndGet()).collect(Collectors.toList());
+        }
+        assertEquals(result, expResult);
+        assertTrue(maxInFlight.get() <= 2 * 4 + 1);
+        result = IrCoreUtils.mapOrdered(IntStream.range(0, 1000).boxed(), (Integer i) -> i * i, 1).collect(Collectors.toList());
+        assertEquals(result, expResult);
+    }
 }
@@ -1,5 +1,6 @@
 package org.harctoolbox.ircore;
 
+import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import static org.testng.Assert.*;
@@ -135,6 +136,41 @@ public class IrSequenceNGTest {
         assertEquals(result, expResult);
     }
 
+    /**
+     * Test of subSequence method, of class IrSequence.
+     * @throws java.lang.Exception
+     */
+    @Test
+    public void testSubSequence() throws Exception {
+        System.out.println("subSequence");
+        IrSequence instance = new IrSequence(new int[]{100, 200, 0, 400, 500, 600, 700, 800});
+        IrSequence view = instance.subSequence(2, 4);
+        assertEquals(view.getLength(), 4);
+        assertEquals(view.get(0), 0.0);
+        assertEquals(view.get(3), 600.0);
+        assertEquals(view.getTotalDuration(), 1500.0);
+        assertEquals(view.toString(true), "[+0,-400,+500,-600]");
+        assertEquals(view.subSequence(2, 2).toDoubles(), new double[]{500, 600});
+        assertTrue(view.truncate(2).approximatelyEquals(new IrSequence(new int[]{0, 400})));
+        assertEquals(view.append(view).toInts(), new int[]{0, 400, 500, 600, 0, 400, 500, 600});
+        try {
+            view.get(4);
+            fail();
+        } catch (IndexOutOfBoundsException ex) {
+        }
+
+        // Changes are not visible through the original
+        assertTrue(view.replaceZeros(50.0));
+        assertEquals(view.get(0), 50.0);
+        assertEquals(instance.get(2), 0.0);
+        assertEquals((double) view.append(1000.0).getLastGap(), 1600.0);
+        assertEquals(instance.get(5), 600.0);
+
+        List<IrSequence> parts = instance.chop(500.0);
+        assertEquals(parts.size(), 2);
+        assertEquals(parts.get(1).toInts(), new int[]{700, 800});
+    }
+
     /**
      * Test of getDuration method, of class IrSequence.
      */
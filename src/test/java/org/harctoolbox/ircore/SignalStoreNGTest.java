@@ -0,0 +1,80 @@
+package org.harctoolbox.ircore;
+
+import java.io.File;
+import java.nio.DoubleBuffer;
+import static org.testng.Assert.*;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class SignalStoreNGTest {
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+    }
+
+    @AfterClass
+    public static void tearDownClass() throws Exception {
+    }
+
+    public SignalStoreNGTest() {
+    }
+
+    @BeforeMethod
+    public void setUpMethod() throws Exception {
+    }
+
+    @AfterMethod
+    public void tearDownMethod() throws Exception {
+    }
+
+    /**
+     * Test of writing and reading back, of class SignalStore.
+     * @throws java.lang.Exception
+     */
+    @Test
+    public void testWriteRead() throws Exception {
+        System.out.println("writeRead");
+        IrSignal nec1 = new IrSignal("+9024 -4512 +564 -39756", "+9024 -2256 +564 -96156", null, 38400d, null);
+        ModulatedIrSequence sequence = new ModulatedIrSequence(new double[]{889.5, 889, 1778, 90886}, 36000d, 0.4);
+        File file = File.createTempFile("signalstore", ".irss");
+        file.deleteOnExit();
+        try (SignalStore.Writer writer = new SignalStore.Writer(file)) {
+            writer.add(nec1, "nec1", "NEC1: {D=12,F=34}");
+            writer.add(sequence, "räksmörgås", null);
+            writer.add(nec1);
+            assertEquals(writer.size(), 3);
+        }
+
+        try (SignalStore store = new SignalStore(file)) {
+            assertEquals(store.size(), 3);
+            SignalStore.Record record = store.get(1);
+            assertEquals(record.getName(), "räksmörgås");
+            assertNull(record.getDecode());
+            assertEquals((double) record.getDutyCycle(), 0.4);
+            assertEquals(record.getLength(IrSignal.Pass.repeat), 0);
+            assertTrue(record.toModulatedIrSequence().approximatelyEquals(sequence));
+
+            record = store.get(0);
+            assertEquals(record.getName(), "nec1");
+            assertEquals(record.getDecode(), "NEC1: {D=12,F=34}");
+            assertEquals((double) record.getFrequency(), 38400d);
+            assertNull(record.getDutyCycle());
+            DoubleBuffer repeat = record.getDurations(IrSignal.Pass.repeat);
+            assertEquals(repeat.remaining(), 4);
+            assertEquals(repeat.get(1), 2256.0);
+            assertTrue(repeat.isReadOnly());
+            assertTrue(record.toIrSignal().approximatelyEquals(nec1));
+
+            int n = 0;
+            for (SignalStore.Record r : store) {
+                assertEquals(r.getLength(), n == 1 ? 4 : 8);
+                n++;
+            }
+            assertEquals(n, 3);
+            assertNull(store.stream().skip(2).findFirst().get().getName());
+        }
+    }
+}
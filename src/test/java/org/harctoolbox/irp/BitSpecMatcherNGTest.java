@@ -0,0 +1,92 @@
+package org.harctoolbox.irp;
+
+import org.harctoolbox.ircore.IrSequence;
+import org.harctoolbox.ircore.IrSignal;
+import static org.testng.Assert.*;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class BitSpecMatcherNGTest {
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+    }
+
+    @AfterClass
+    public static void tearDownClass() throws Exception {
+    }
+
+    public BitSpecMatcherNGTest() {
+    }
+
+    @BeforeMethod
+    public void setUpMethod() throws Exception {
+    }
+
+    @AfterMethod
+    public void tearDownMethod() throws Exception {
+    }
+
+    private static RecognizeData newRecognizeData(GeneralSpec generalSpec, double[] data, boolean interleaving) throws Exception {
+        return new RecognizeData(generalSpec, new NameEngine(), new ParameterSpecs(), new IrSequence(data), 0, interleaving,
+                new ParameterCollector(), 100, 0.3, 20000, IrSignal.Pass.intro);
+    }
+
+    /**
+     * Test of match method, of class BitSpecMatcher.
+     * @throws java.lang.Exception
+     */
+    @Test
+    public void testMatch() throws Exception {
+        System.out.println("match");
+        GeneralSpec generalSpec = new GeneralSpec("{38.4k,564}");
+        BitSpec bitSpec = new BitSpec("<1,-1|1,-3>");
+        BitSpecMatcher matcher = bitSpec.getMatcher(generalSpec);
+        assertNotNull(matcher);
+        assertSame(bitSpec.getMatcher(generalSpec), matcher);
+
+        RecognizeData recognizeData = newRecognizeData(generalSpec, new double[]{560, 1700, 570, 560, 560, 1000}, true);
+        assertEquals(matcher.match(recognizeData), 1);
+        assertEquals(recognizeData.getPosition(), 2);
+        assertEquals(matcher.match(recognizeData), 0);
+        assertEquals(recognizeData.getPosition(), 4);
+        assertEquals(matcher.match(recognizeData), -1);
+        assertEquals(recognizeData.getPosition(), 4);
+        assertEquals(recognizeData.getHasConsumed(), 0.0);
+    }
+
+    /**
+     * Test of match method, of class BitSpecMatcher, with chopping of durations.
+     * @throws java.lang.Exception
+     */
+    @Test
+    public void testMatchChopping() throws Exception {
+        System.out.println("matchChopping");
+        GeneralSpec generalSpec = new GeneralSpec("{36k,msb,889}");
+        BitSpec bitSpec = new BitSpec("<1,-1|-1,1>");
+        BitSpecMatcher matcher = bitSpec.getMatcher(generalSpec);
+        RecognizeData recognizeData = newRecognizeData(generalSpec, new double[]{889, 1778, 1778, 889}, false);
+        assertEquals(matcher.match(recognizeData), 0);
+        assertEquals(recognizeData.getPosition(), 1);
+        assertEquals(recognizeData.getHasConsumed(), 889.0, 0.001);
+        assertEquals(matcher.match(recognizeData), 1);
+        assertEquals(recognizeData.getPosition(), 2);
+        assertEquals(recognizeData.getHasConsumed(), 889.0, 0.001);
+    }
+
+    /**
+     * Test that BitSpecs with non-constant durations are not compiled.
+     * @throws java.lang.Exception
+     */
+    @Test
+    public void testNotCompiled() throws Exception {
+        System.out.println("notCompiled");
+        GeneralSpec generalSpec = new GeneralSpec("{38.4k,564}");
+        assertNull(new BitSpec("<a,-1|1,-3>").getMatcher(generalSpec));
+        assertNull(new BitSpec("<1,-1|1,-3,A:1>").getMatcher(generalSpec));
+        assertNotNull(new BitSpec("<1,-1|1,-3>").getMatcher(generalSpec));
+    }
+}
@@ -0,0 +1,170 @@
+package org.harctoolbox.irp;
+
+import java.nio.BufferOverflowException;
+import java.nio.IntBuffer;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import org.harctoolbox.ircore.IrSignal;
+import static org.testng.Assert.*;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class BufferRendererNGTest {
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+    }
+
+    @AfterClass
+    public static void tearDownClass() throws Exception {
+    }
+
+    private static void assertSameSignal(BufferRenderer renderer, int[] buffer, int offset, IrSignal irSignal) {
+        int intro = renderer.getIntroLength();
+        int repeat = renderer.getRepeatLength();
+        int ending = renderer.getEndingLength();
+        assertEquals(Arrays.copyOfRange(buffer, offset, offset + intro), irSignal.getIntroInts());
+        assertEquals(Arrays.copyOfRange(buffer, offset + intro, offset + intro + repeat), irSignal.getRepeatInts());
+        assertEquals(Arrays.copyOfRange(buffer, offset + intro + repeat, offset + intro + repeat + ending), irSignal.getEndingInts());
+    }
+
+    private final IrpDatabase irpDatabase;
+
+    public BufferRendererNGTest() throws Exception {
+        irpDatabase = new IrpDatabase((String) null);
+    }
+
+    @BeforeMethod
+    public void setUpMethod() throws Exception {
+    }
+
+    @AfterMethod
+    public void tearDownMethod() throws Exception {
+    }
+
+    /**
+     * Test of render method, of class BufferRenderer.
+     * @throws java.lang.Exception
+     */
+    @Test
+    public void testRender() throws Exception {
+        System.out.println("render");
+        Protocol nec1 = irpDatabase.getProtocol("NEC1");
+        BufferRenderer instance = new BufferRenderer(nec1);
+        instance.setParameter("D", 12);
+        instance.setParameter("F", 34);
+        int[] buffer = new int[200];
+        int result = instance.render(buffer, 10);
+        assertEquals(result, 72);
+        assertEquals(instance.getIntroLength(), 68);
+        assertEquals(instance.getRepeatLength(), 4);
+        assertEquals(instance.getEndingLength(), 0);
+        assertEquals(instance.getLength(), result);
+        assertEquals(buffer[9], 0);
+        assertSameSignal(instance, buffer, 10, nec1.toIrSignal(new NameEngine("{D=12,F=34}")));
+
+        instance.setParameter("S", 56);
+        instance.setParameter("F", 78);
+        instance.render(buffer, 0);
+        assertSameSignal(instance, buffer, 0, nec1.toIrSignal(new NameEngine("{D=12,S=56,F=78}")));
+
+        instance.unsetParameter("S");
+        instance.render(buffer, 0);
+        assertSameSignal(instance, buffer, 0, nec1.toIrSignal(new NameEngine("{D=12,F=78}")));
+    }
+
+    /**
+     * Test of render method, of class BufferRenderer, with memory variables.
+     * @throws java.lang.Exception
+     */
+    @Test
+    public void testRenderMemoryVariables() throws Exception {
+        System.out.println("renderMemoryVariables");
+        String irp = irpDatabase.getIrp("RC6");
+        Protocol reference = new Protocol(irp);
+        BufferRenderer instance = new BufferRenderer(new Protocol(irp));
+        Map<String, Long> parameters = new HashMap<>(2);
+        parameters.put("D", 0L);
+        parameters.put("F", 1L);
+        instance.setParameters(parameters);
+        int[] buffer = new int[100];
+        for (int i = 0; i < 4; i++) {
+            instance.render(buffer, 0);
+            assertSameSignal(instance, buffer, 0, reference.toIrSignal(parameters));
+        }
+        instance.setParameter("T", 0L);
+        parameters.put("T", 0L);
+        instance.render(buffer, 0);
+        assertSameSignal(instance, buffer, 0, reference.toIrSignal(parameters));
+    }
+
+    /**
+     * Test of render method, of class BufferRenderer, for a protocol that is not compiled.
+     * @throws java.lang.Exception
+     */
+    @Test
+    public void testRenderNotCompiled() throws Exception {
+        System.out.println("renderNotCompiled");
+        Protocol protocol = irpDatabase.getProtocol("B&O");
+        BufferRenderer instance = new BufferRenderer(protocol);
+        assertEquals(instance.getMaxLength(), -1);
+        instance.setParameter("D", 394);
+        instance.setParameter("F", 82);
+        int[] buffer = new int[100];
+        instance.render(buffer, 0);
+        assertSameSignal(instance, buffer, 0, protocol.toIrSignal(new NameEngine("{D=394,F=82}")));
+    }
+
+    /**
+     * Test of render method, of class BufferRenderer, with an IntBuffer.
+     * @throws java.lang.Exception
+     */
+    @Test
+    public void testRenderIntBuffer() throws Exception {
+        System.out.println("renderIntBuffer");
+        Protocol protocol = irpDatabase.getProtocol("Sony12");
+        BufferRenderer instance = new BufferRenderer(protocol);
+        instance.setParameter("D", 1);
+        instance.setParameter("F", 21);
+        assertTrue(instance.getMaxLength() >= 26);
+        IntBuffer buffer = IntBuffer.allocate(100);
+        buffer.position(3);
+        int result = instance.render(buffer);
+        assertEquals(result, 26);
+        assertEquals(buffer.position(), 29);
+        assertSameSignal(instance, buffer.array(), 3, protocol.toIrSignal(new NameEngine("{D=1,F=21}")));
+
+        buffer.position(80);
+        try {
+            instance.render(buffer);
+            fail();
+        } catch (BufferOverflowException ex) {
+        }
+        assertEquals(buffer.position(), 80);
+
+        try {
+            instance.render(new int[30], 10);
+            fail();
+        } catch (BufferOverflowException ex) {
+        }
+    }
+
+    /**
+     * Test of setParameter method, of class BufferRenderer.
+     * @throws java.lang.Exception
+     */
+    @Test
+    public void testSetParameter() throws Exception {
+        System.out.println("setParameter");
+        BufferRenderer instance = new BufferRenderer(irpDatabase.getProtocol("NEC1"));
+        try {
+            instance.setParameter("1D", 12);
+            fail();
+        } catch (InvalidNameException ex) {
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package org.harctoolbox.irp;
+
+import org.harctoolbox.ircore.IrSignal;
+import static org.testng.Assert.*;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class DecodeCacheNGTest {
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+    }
+
+    @AfterClass
+    public static void tearDownClass() throws Exception {
+    }
+
+    private final IrpDatabase irpDatabase;
+    private final IrSignal nec1;
+    private final IrSignal nec1Jittered;
+    private final IrSignal rc5;
+
+    public DecodeCacheNGTest() throws Exception {
+        irpDatabase = new IrpDatabase((String) null);
+        nec1 = new IrSignal("+9024 -4512 +564 -564 +564 -564 +564 -1692 +564 -1692 +564 -564 +564 -564 +564 -564 +564 -564 +564 -1692 +564 -1692 +564 -564 +564 -564 +564 -1692 +564 -1692 +564 -1692 +564 -1692 +564 -564 +564 -1692 +564 -564 +564 -564 +564 -564 +564 -1692 +564 -564 +564 -564 +564 -1692 +564 -564 +564 -1692 +564 -1692 +564 -1692 +564 -564 +564 -1692 +564 -1692 +564 -39756",
+                "+9024 -2256 +564 -96156", null, 38400d, null);
+        nec1Jittered = new IrSignal("+9000 -4530 +560 -570 +570 -560 +560 -1700 +570 -1680 +560 -570 +560 -560 +570 -570 +560 -560 +570 -1690 +560 -1700 +570 -560 +560 -570 +570 -1690 +560 -1700 +570 -1690 +560 -1690 +570 -560 +560 -1700 +570 -570 +560 -560 +570 -560 +560 -1690 +570 -570 +560 -560 +570 -1700 +560 -560 +570 -1690 +560 -1700 +570 -1680 +560 -570 +570 -1690 +560 -1700 +570 -39700",
+                "+9010 -2260 +570 -96100", null, 38400d, null);
+        rc5 = new IrSignal("+889 -889 +1778 -889 +889 -1778 +889 -889 +1778 -889 +889 -1778 +1778 -889 +889 -889 +889 -1778 +1778 -90886", null, null, 36000d, null);
+    }
+
+    @BeforeMethod
+    public void setUpMethod() throws Exception {
+    }
+
+    @AfterMethod
+    public void tearDownMethod() throws Exception {
+    }
+
+    /**
+     * Test of the DecodeCache in Decoder.decodeIrSignal.
+     * @throws java.lang.Exception
+     */
+    @Test
+    public void testDecodeIrSignal() throws Exception {
+        System.out.println("decodeIrSignal");
+        Decoder decoder = new Decoder(irpDatabase);
+        Decoder.DecoderParameters params = new Decoder.DecoderParameters();
+        Decoder.SimpleDecodesSet expected = decoder.decodeIrSignal(nec1, params);
+        DecodeCache instance = new DecodeCache(2);
+        decoder.setDecodeCache(instance);
+        Decoder.SimpleDecodesSet result = decoder.decodeIrSignal(nec1, params);
+        assertEquals(result.first(), expected.first());
+        assertSame(decoder.decodeIrSignal(nec1Jittered, params), result);
+        assertEquals(instance.getHits(), 1L);
+        assertEquals(instance.getMisses(), 1L);
+        assertEquals(instance.getHitRate(), 0.5);
+
+        // other parameters, other decoder
+        Decoder.DecoderParameters allDecodes = new Decoder.DecoderParameters();
+        allDecodes.setAllDecodes(true);
+        assertNotSame(decoder.decodeIrSignal(nec1, allDecodes), result);
+        Decoder other = new Decoder(irpDatabase);
+        other.setDecodeCache(instance);
+        assertNotSame(other.decodeIrSignal(nec1, params), result);
+        assertEquals(instance.getEvictions(), 1L);
+        assertEquals(instance.getMisses(), 3L);
+
+        decoder.decodeIrSignal(rc5, params);
+        assertEquals(decoder.decodeIrSignal(rc5, params).first().getName(), "RC5");
+        assertEquals(instance.getHits(), 2L);
+        instance.clear();
+        assertEquals(instance.size(), 0);
+    }
+
+    /**
+     * Test of the DecodeCache in Decoder.decode.
+     * @throws java.lang.Exception
+     */
+    @Test
+    public void testDecode() throws Exception {
+        System.out.println("decode");
+        Decoder decoder = new Decoder(irpDatabase);
+        Decoder.DecoderParameters params = new Decoder.DecoderParameters();
+        DecodeCache instance = new DecodeCache();
+        decoder.setDecodeCache(instance);
+        Decoder.DecodeTree result = decoder.decode(nec1.toModulatedIrSequence(), params);
+        assertSame(decoder.decode(nec1Jittered.toModulatedIrSequence(), params), result);
+        // An IrSignal with the same durations has a different key
+        decoder.decodeIrSignal(new IrSignal(nec1.toModulatedIrSequence()), params);
+        assertEquals(instance.size(), 2);
+        assertEquals(instance.getHits(), 1L);
+    }
+}
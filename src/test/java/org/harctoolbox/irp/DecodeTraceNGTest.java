@@ -0,0 +1,86 @@
+package org.harctoolbox.irp;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import org.harctoolbox.ircore.IrSignal;
+import static org.testng.Assert.*;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class DecodeTraceNGTest {
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+    }
+
+    @AfterClass
+    public static void tearDownClass() throws Exception {
+    }
+
+    private final Decoder decoder;
+    private final IrSignal rc5;
+
+    public DecodeTraceNGTest() throws Exception {
+        decoder = new Decoder("RC5", "RC5x");
+        rc5 = new IrSignal("+889 -889 +1778 -889 +889 -1778 +889 -889 +1778 -889 +889 -1778 +1778 -889 +889 -889 +889 -1778 +1778 -90886", null, null, 36000d, null);
+    }
+
+    @BeforeMethod
+    public void setUpMethod() throws Exception {
+    }
+
+    @AfterMethod
+    public void tearDownMethod() throws Exception {
+    }
+
+    /**
+     * Test of tracing decodeIrSignal.
+     * @throws java.lang.Exception
+     */
+    @Test
+    public void testDecodeIrSignal() throws Exception {
+        System.out.println("decodeIrSignal");
+        Decoder.DecoderParameters params = new Decoder.DecoderParameters();
+        DecodeTrace instance = new DecodeTrace();
+        params.setTrace(instance);
+        Decoder.SimpleDecodesSet decodes = decoder.decodeIrSignal(rc5, params);
+        assertEquals(decodes.first().getName(), "RC5");
+        assertEquals(instance.getNumberAttempts(), 2);
+        assertEquals(instance.getSuccessfulProtocols().size(), 1);
+        assertEquals(instance.getSuccessfulProtocols().get(0), "RC5");
+        assertTrue(instance.getNumberEvents() > 0);
+
+        ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+        try (PrintStream printStream = new PrintStream(byteArrayOutputStream, false, "UTF-8")) {
+            instance.dump(printStream);
+        }
+        String dump = byteArrayOutputStream.toString("UTF-8");
+        assertTrue(dump.contains("RC5: recognized"));
+        assertTrue(dump.contains("RC5x: failed: "));
+        assertTrue(dump.contains("<Level 2: \"D:5\" @11, result: 12&11111"));
+
+        instance.clear();
+        assertEquals(instance.getNumberAttempts(), 0);
+        params.setTrace(null);
+        decoder.decodeIrSignal(rc5, params);
+        assertEquals(instance.getNumberAttempts(), 0);
+    }
+
+    /**
+     * Test of the bound on the number of events.
+     * @throws java.lang.Exception
+     */
+    @Test
+    public void testMaxEvents() throws Exception {
+        System.out.println("maxEvents");
+        Decoder.DecoderParameters params = new Decoder.DecoderParameters();
+        DecodeTrace instance = new DecodeTrace(5);
+        params.setTrace(instance);
+        decoder.decode(rc5.toModulatedIrSequence(), params);
+        assertEquals(instance.getNumberEvents(), 5);
+        assertTrue(instance.getDropped() > 0);
+    }
+}
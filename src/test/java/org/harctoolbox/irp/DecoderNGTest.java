@@ -1,7 +1,10 @@
 package org.harctoolbox.irp;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Random;
+import java.util.stream.Collectors;
 import org.harctoolbox.ircore.InvalidArgumentException;
 import org.harctoolbox.ircore.IrSequence;
 import org.harctoolbox.ircore.IrSignal;
@@ -130,6 +133,30 @@ public class DecoderNGTest {
         assertEquals(result.size(), 2);
     }
 
+    @Test(enabled = true)
+    public void testDecodeParallel() throws Exception {
+        System.out.println("decodeParallel");
+        Decoder.DecoderParameters params = new Decoder.DecoderParameters();
+        params.setRecursive(true);
+        Decoder.DecoderParameters parallelParams = new Decoder.DecoderParameters();
+        parallelParams.setRecursive(true);
+        parallelParams.setParallel(true);
+        Random random = new Random(4711);
+        List<IrSignal> signals = new ArrayList<>(decoder.getParsedProtocols().size());
+        for (NamedProtocol protocol : decoder.getParsedProtocols())
+            signals.add(protocol.toIrSignal(new NameEngine(protocol.randomParameters(random))));
+
+        List<String> expected = new ArrayList<>(signals.size());
+        for (IrSignal irSignal : signals)
+            expected.add(decoder.decodeIrSignal(irSignal, params).sortedValues().toString() + decoder.decode(irSignal.toModulatedIrSequence(), params).toString());
+
+        // Share one Decoder between several threads, each decoding in parallel.
+        List<String> actual = signals.parallelStream().map((irSignal) -> {
+            return decoder.decodeIrSignal(irSignal, parallelParams).sortedValues().toString() + decoder.decode(irSignal.toModulatedIrSequence(), parallelParams).toString();
+        }).collect(Collectors.toList());
+        assertEquals(actual, expected);
+    }
+
     @Test(enabled = true)
     public void testDecodeGICable() {
         System.out.println("decodeGICable");
@@ -282,6 +309,32 @@ public class DecoderNGTest {
         assertEquals(result.size(), 1);
     }
 
+    /**
+     * Test of decode method, of class Decoder, with a beam width.
+     * @throws java.lang.Exception
+     */
+    @Test
+    public void testDecodeBeam() throws Exception {
+        System.out.println("decodeBeam");
+        ModulatedIrSequence irSequence = new ModulatedIrSequence(IrSequence.concatenate(nec1Intro, nec1Repeat, nec1Repeat, rc5Seq, nec1Intro, rc5Seq), 37000d);
+        Decoder.DecoderParameters params = new Decoder.DecoderParameters(false, true, true, true, null, null, null, null, false, false);
+        Decoder.DecodeTree all = decoder.decode(irSequence, params);
+        assertEquals(all.size(), 6);
+
+        params.setBeamWidth(2);
+        Decoder.DecodeTree result = decoder.decode(irSequence, params);
+        assertEquals(result.size(), 2);
+        // Along a path, the beam keeps at most 2 of the alternatives of the exhaustive decode
+        for (Decoder.DecodeTree tree = result, reference = all; !tree.isEmpty(); ) {
+            assertTrue(tree.size() <= 2);
+            for (Decoder.TrunkDecodeTree alternative : tree)
+                assertEquals(alternative.getTrunk(), reference.getAlternative(alternative.getName()).getTrunk());
+            reference = reference.getAlternative(tree.first().getName()).getRest();
+            tree = tree.first().getRest();
+        }
+        assertEquals(result.getAlternative("NEC1").getRest().getAlternative("RC5").getTrunk().getEndPos(), 97);
+    }
+
     /**
      * Test of decode method, of class Decoder.
      * @throws java.lang.Exception
@@ -1,7 +1,10 @@
 package org.harctoolbox.irp;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
+import java.util.Collections;
 import java.util.List;
 import java.util.Set;
 import org.harctoolbox.ircore.DumbHtmlRenderer;
@@ -340,4 +343,57 @@ public class IrpDatabaseNGTest {
 
         assertFalse(irpDatabase.isKnown("covfefe"));
     }
+
+    /**
+     * Test of the cache of parsed protocols in getNamedProtocol, and its invalidation.
+     * @throws java.lang.Exception
+     */
+    @Test
+    public void testGetNamedProtocolCached() throws Exception {
+        System.out.println("testGetNamedProtocolCached");
+        IrpDatabase irpDatabase = new IrpDatabase((String) null);
+        NamedProtocol first = irpDatabase.getNamedProtocol("rc5");
+        NamedProtocol second = irpDatabase.getNamedProtocol("RC5");
+        assertNotSame(second, first);
+        assertSame(second.getParseTree(), first.getParseTree());
+
+        // Every copy has its own toggle
+        first.toIrSignal(new NameEngine("{D=0,F=1}"));
+        assertEquals(first.getMemoryVariable("T"), 1L);
+        assertEquals(second.getMemoryVariable("T"), 0L);
+        assertEquals(irpDatabase.getNamedProtocol("rc5").getMemoryVariable("T"), 0L);
+
+        irpDatabase.addProtocol("rc5", "{36k,msb,889}<1,-1|-1,1>(1,~F:1:6,T:1,D:5,F:6,^114m)[D:0..31,F:0..127,T:0..1=0]");
+        assertFalse(irpDatabase.getNamedProtocol("rc5").hasMemoryVariable("T"));
+        irpDatabase.setProperties("rc5", "decodable", Collections.singletonList("false"));
+        assertFalse(irpDatabase.getNamedProtocol("rc5").isDecodeable());
+        irpDatabase.remove("rc5");
+        try {
+            irpDatabase.getNamedProtocol("rc5");
+            fail();
+        } catch (UnknownProtocolException ex) {
+        }
+    }
+
+    /**
+     * Test of writeSnapshot and readSnapshot methods, of class IrpDatabase.
+     * @throws java.lang.Exception
+     */
+    @Test
+    public void testSnapshot() throws Exception {
+        System.out.println("testSnapshot");
+        IrpDatabase irpDatabase = new IrpDatabase(CONFIGFILE);
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        irpDatabase.writeSnapshot(outputStream, 4711L);
+        byte[] snapshot = outputStream.toByteArray();
+
+        assertNull(IrpDatabase.readSnapshot(new ByteArrayInputStream(snapshot), 42L));
+        IrpDatabase result = IrpDatabase.readSnapshot(new ByteArrayInputStream(snapshot), 4711L);
+        assertEquals(result.getVersion(), irpDatabase.getVersion());
+        assertEquals(result.getNames(), irpDatabase.getNames());
+        assertEquals(result.getIrp("nec1"), irpDatabase.getIrp("nec1"));
+        assertEquals(result.expandAlias("GI Cable"), irpDatabase.expandAlias("GI Cable"));
+        assertEquals(DumbHtmlRenderer.render(result.getHtmlDocumentation("rc5")),
+                DumbHtmlRenderer.render(irpDatabase.getHtmlDocumentation("rc5")));
+    }
 }
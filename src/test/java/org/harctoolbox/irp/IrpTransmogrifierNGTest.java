@@ -3,6 +3,7 @@ package org.harctoolbox.irp;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.Files;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
@@ -425,6 +426,19 @@ public class IrpTransmogrifierNGTest {
         assertEquals(status.getMessage(), expResult);
     }
 
+    @Test
+    public void testDecodeStreamInvalidArgument() throws IOException {
+        System.out.println("decodeStreamInvalidArgument");
+        File file = File.createTempFile("decode", ".txt");
+        file.deleteOnExit();
+        Files.write(file.toPath(), Arrays.asList("+9024 -4512 +564 -39756", "+9024 -0 +564 -39756"));
+        String expResult = "Data contains duration of length 0";
+        ProgramExitStatus status = new IrpTransmogrifier().run(("decode -c -f 38000 --input " + file.getCanonicalPath()).split(" "));
+        assertEquals(status.getMessage(), expResult);
+        status = new IrpTransmogrifier().run(("decode -c -f 38000 --stream --threads 2 --input " + file.getCanonicalPath()).split(" "));
+        assertEquals(status.getMessage(), expResult);
+    }
+
     @Test
     public void testRenderI() {
         System.out.println("renderI");
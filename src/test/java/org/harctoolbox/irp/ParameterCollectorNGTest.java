@@ -3,6 +3,8 @@ package org.harctoolbox.irp;
 import org.harctoolbox.ircore.IrCoreUtils;
 import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
 import static org.testng.Assert.fail;
 import org.testng.annotations.AfterClass;
 import org.testng.annotations.AfterMethod;
@@ -144,4 +146,43 @@ public class ParameterCollectorNGTest {
         }
         assertEquals(instance.getValue(name), value);
     }
+
+    /**
+     * Test of the ParameterCollector using the SymbolTable of a Protocol.
+     * @throws java.lang.Exception
+     */
+    @Test
+    public void testSymbolTable() throws Exception {
+        System.out.println("symbolTable");
+        Protocol protocol = new Protocol("{38.4k,564}<1,-1|1,-3>(16,-8,D:8,S:8,F:8,~F:8,1,^108m,S=0)[D:0..255,S:0..255=255-D,F:0..255]");
+        SymbolTable symbolTable = protocol.getSymbolTable();
+        assertEquals(symbolTable.slot("D"), 0);
+        assertEquals(symbolTable.slot("F"), 2);
+        assertEquals(symbolTable.slot("X"), -1);
+        assertFalse(symbolTable.isDefinable(symbolTable.slot("D")));
+        assertTrue(symbolTable.isDefinable(symbolTable.slot("S")));
+        Name name = new Name("F");
+        assertEquals(name.slot(symbolTable), 2);
+        assertEquals(name.slot(SymbolTable.EMPTY), -1);
+        ParameterCollector instance = new ParameterCollector(symbolTable, true);
+        instance.add("F", 5L, 7L);
+        instance.add("X", 3L);
+        instance.add("D", 1L, 1L);
+        assertEquals(instance.getBitmask("F"), Long.valueOf(255L));
+        assertNull(instance.getBitmask("X"));
+        assertFalse(instance.isFinished("F"));
+        assertEquals(instance.toString(), "{F=5&111;X=3&1111111111111111111111111111111111111111111111111111111111111111;D=1&1}");
+        assertEquals(new ParameterCollector(symbolTable, false).getBitmask("F"), null);
+
+        ParameterCollector copy = instance.clone();
+        instance.restore(instance.newSlot("X"), null, 0L, 0L);
+        assertFalse(instance.contains("X"));
+        assertTrue(copy.contains("X"));
+        assertEquals(instance.toString(), "{F=5&111;D=1&1}");
+        BitwiseParameter f = instance.get("F");
+        instance.add("F", 8L, 8L);
+        instance.restore(symbolTable.slot("F"), f, 5L, 7L);
+        assertEquals(instance.get("F"), new BitwiseParameter(5L, 7L));
+        assertEquals(copy.collectedNames().size(), 3);
+    }
 }
@@ -0,0 +1,98 @@
+package org.harctoolbox.irp;
+
+import java.util.TreeSet;
+import org.harctoolbox.ircore.IrSignal;
+import static org.testng.Assert.*;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class ProtocolDescriptorNGTest {
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+    }
+
+    @AfterClass
+    public static void tearDownClass() throws Exception {
+    }
+
+    private final IrpDatabase irpDatabase;
+
+    public ProtocolDescriptorNGTest() throws Exception {
+        irpDatabase = new IrpDatabase((String) null);
+    }
+
+    @BeforeMethod
+    public void setUpMethod() throws Exception {
+    }
+
+    @AfterMethod
+    public void tearDownMethod() throws Exception {
+    }
+
+    /**
+     * Test of getDescriptor method, of class Protocol.
+     * @throws java.lang.Exception
+     */
+    @Test
+    public void testGetDescriptor() throws Exception {
+        System.out.println("getDescriptor");
+        NamedProtocol nec1 = irpDatabase.getNamedProtocol("NEC1");
+        NamedProtocol other = irpDatabase.getNamedProtocol("NEC1");
+        ProtocolDescriptor instance = nec1.getDescriptor();
+        assertSame(other.getDescriptor(), instance);
+        assertSame(instance.getNormalForm(IrSignal.Pass.repeat), instance.getNormalForm(IrSignal.Pass.repeat));
+
+        Protocol fresh = new Protocol(nec1.getIrp());
+        assertEquals(nec1.weight(), fresh.weight());
+        assertEquals(instance.getDurations(), new TreeSet<>(fresh.getBitspecIrstream().allDurationsInMicros(fresh.getGeneralSpec(), fresh.getDefinitions())));
+        assertEquals(nec1.minDurationDiff(), 564d, 0.5);
+        assertTrue(instance.isPWM2());
+        assertTrue(instance.isInterleavingOk());
+        assertFalse(instance.isBiphase());
+        assertEquals(instance.getNormalForm(IrSignal.Pass.intro).toIrpString(10), nec1.normalForm(IrSignal.Pass.intro).toIrpString(10));
+    }
+
+    /**
+     * Test that computing the descriptor does not disturb decoding of a protocol
+     * with assignments in the bitspec.
+     * @throws java.lang.Exception
+     */
+    @Test
+    public void testAssignmentsInBitspec() throws Exception {
+        System.out.println("assignmentsInBitspec");
+        NamedProtocol bo = irpDatabase.getNamedProtocol("B&O");
+        IrSignal irSignal = bo.render(new NameEngine("{D=394,F=82}"));
+        assertFalse(bo.allDurationsInMicros().isEmpty());
+        Decoder decoder = new Decoder(irpDatabase);
+        Decoder.SimpleDecodesSet result = decoder.decodeIrSignal(irSignal, new Decoder.DecoderParameters());
+        assertEquals(result.first().getName(), "B&O");
+        assertEquals(result.first().toString(), "B&O: {D=394,F=82}");
+    }
+
+    /**
+     * Test of the descriptor of a protocol with durations depending on a parameter,
+     * which cannot be computed without the parameters.
+     * @throws java.lang.Exception
+     */
+    @Test
+    public void testParameterDependentDurations() throws Exception {
+        System.out.println("parameterDependentDurations");
+        Protocol protocol = new Protocol("{38k,1}<x,-x|x,-y>(16,-8,F:8,-100){y=3*x}[F:0..255,x:1..100]");
+        assertEquals(protocol.weight(), 12);
+        assertTrue(protocol.isPWM2());
+        assertFalse(protocol.isBiphase());
+        assertFalse(protocol.isTrivial());
+        assertNotNull(protocol.getSymbolTable());
+        protocol.interleavingOk();
+        IrSignal irSignal = irpDatabase.getNamedProtocol("NEC1").render(new NameEngine("{D=12,F=34}"));
+        try {
+            protocol.recognize(irSignal);
+            fail();
+        } catch (SignalRecognitionException ex) {
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package org.harctoolbox.irp;
+
+import java.util.List;
+import java.util.Random;
+import org.harctoolbox.ircore.IrSignal;
+import org.harctoolbox.ircore.Pronto;
+import static org.testng.Assert.*;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class ProtocolPrefilterNGTest {
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+    }
+
+    @AfterClass
+    public static void tearDownClass() throws Exception {
+    }
+
+    private final IrpDatabase irpDatabase;
+    private final Decoder decoder;
+    private final ProtocolPrefilter prefilter;
+
+    public ProtocolPrefilterNGTest() throws Exception {
+        irpDatabase = new IrpDatabase((String) null);
+        decoder = new Decoder(irpDatabase);
+        prefilter = new ProtocolPrefilter(decoder.getParsedProtocols());
+    }
+
+    @BeforeMethod
+    public void setUpMethod() throws Exception {
+    }
+
+    @AfterMethod
+    public void tearDownMethod() throws Exception {
+    }
+
+    private static boolean contains(List<NamedProtocol> list, String name) {
+        return list.stream().anyMatch((namedProtocol) -> (namedProtocol.getName().equalsIgnoreCase(name)));
+    }
+
+    /**
+     * Test of candidates method, of class ProtocolPrefilter.
+     * @throws java.lang.Exception
+     */
+    @Test
+    public void testCandidatesNec1() throws Exception {
+        System.out.println("candidatesNec1");
+        IrSignal nec1 = Pronto.parse("0000 006C 0022 0002 015B 00AD 0016 0016 0016 0016 0016 0041 0016 0041 0016 0016 0016 0016 0016 0016 0016 0016 0016 0041 0016 0041 0016 0016 0016 0016 0016 0041 0016 0041 0016 0041 0016 0041 0016 0016 0016 0016 0016 0016 0016 0041 0016 0041 0016 0041 0016 0016 0016 0016 0016 0041 0016 0041 0016 0041 0016 0016 0016 0016 0016 0016 0016 0041 0016 0041 0016 05F7 015B 0057 0016 0E6C");
+        List<NamedProtocol> result = prefilter.candidates(nec1, new Decoder.DecoderParameters());
+        assertTrue(contains(result, "NEC1"));
+        assertFalse(contains(result, "RC5")); // wrong frequency
+        assertFalse(contains(result, "Panasonic")); // wrong leading flash
+        assertTrue(result.size() < prefilter.size());
+    }
+
+    /**
+     * Test that a rendered signal is always a candidate for its own protocol.
+     * @throws java.lang.Exception
+     */
+    @Test
+    public void testCandidatesOwnProtocol() throws Exception {
+        System.out.println("candidatesOwnProtocol");
+        Random random = new Random(4711);
+        for (NamedProtocol namedProtocol : decoder.getParsedProtocols()) {
+            IrSignal irSignal;
+            try {
+                irSignal = namedProtocol.render(new NameEngine(namedProtocol.randomParameters(random)));
+            } catch (Protocol.ProtocolNotRenderableException ex) {
+                continue;
+            }
+            List<NamedProtocol> result = prefilter.candidates(irSignal, new Decoder.DecoderParameters());
+            assertTrue(result.stream().anyMatch((candidate) -> (candidate == namedProtocol)), namedProtocol.getName());
+            result = prefilter.candidates(irSignal.toModulatedIrSequence(), 0, new Decoder.DecoderParameters());
+            assertTrue(result.stream().anyMatch((candidate) -> (candidate == namedProtocol)), namedProtocol.getName());
+        }
+    }
+}
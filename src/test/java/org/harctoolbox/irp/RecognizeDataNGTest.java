@@ -0,0 +1,103 @@
+package org.harctoolbox.irp;
+
+import org.harctoolbox.ircore.IrSequence;
+import org.harctoolbox.ircore.IrSignal;
+import static org.testng.Assert.*;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class RecognizeDataNGTest {
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+    }
+
+    @AfterClass
+    public static void tearDownClass() throws Exception {
+    }
+
+    private static RecognizeData newRecognizeData() throws Exception {
+        RecognizeData recognizeData = new RecognizeData(new GeneralSpec(), new NameEngine(), new ParameterSpecs(),
+                new IrSequence(new double[]{100, 200, 300, 400}), 0, false, new ParameterCollector(), 100, 0.3, 20000, IrSignal.Pass.intro);
+        recognizeData.add("D", new BitwiseParameter(3L, 3L));
+        recognizeData.assignment("T", 0);
+        return recognizeData;
+    }
+
+    public RecognizeDataNGTest() {
+    }
+
+    @BeforeMethod
+    public void setUpMethod() throws Exception {
+    }
+
+    @AfterMethod
+    public void tearDownMethod() throws Exception {
+    }
+
+    /**
+     * Test of rollback method, of class RecognizeData.
+     * @throws java.lang.Exception
+     */
+    @Test
+    public void testRollback() throws Exception {
+        System.out.println("rollback");
+        RecognizeData recognizeData = newRecognizeData();
+        int outer = recognizeData.mark();
+        recognizeData.consume();
+        recognizeData.consume(50.0);
+        recognizeData.add("D", new BitwiseParameter(4L, 4L));
+        recognizeData.add("F", 17L);
+        recognizeData.assignment("T", 1);
+        recognizeData.assignment("U", 1);
+
+        int inner = recognizeData.mark();
+        recognizeData.consume();
+        recognizeData.assignment("T", 2);
+        recognizeData.rollback(inner);
+        assertEquals(recognizeData.getPosition(), 1);
+        assertEquals(recognizeData.getHasConsumed(), 50.0);
+        assertEquals(recognizeData.getNameEngine().toLong("T"), 1L);
+
+        recognizeData.rollback(outer);
+        assertEquals(recognizeData.getPosition(), 0);
+        assertEquals(recognizeData.getHasConsumed(), 0.0);
+        assertEquals(recognizeData.getParameterCollector().get("D"), new BitwiseParameter(3L, 3L));
+        assertNull(recognizeData.getParameterCollector().get("F"));
+        assertEquals(recognizeData.getNameEngine().toLong("T"), 0L);
+        assertFalse(recognizeData.getNameEngine().containsKey("U"));
+        // The slot allocated for F is released
+        assertEquals(recognizeData.getParameterCollector().getExtraSlots(), 1);
+    }
+
+    /**
+     * Test of commit method, of class RecognizeData.
+     * @throws java.lang.Exception
+     */
+    @Test
+    public void testCommit() throws Exception {
+        System.out.println("commit");
+        RecognizeData recognizeData = newRecognizeData();
+        int mark = recognizeData.mark();
+        recognizeData.consume();
+        recognizeData.add("F", 17L);
+        recognizeData.assignment("T", 1);
+        recognizeData.commit(mark);
+        assertEquals(recognizeData.getPosition(), 1);
+        assertEquals(recognizeData.getNameEngine().toLong("T"), 1L);
+        // Just as with clone(), collected parameters are not kept
+        assertNull(recognizeData.getParameterCollector().get("F"));
+        assertEquals(recognizeData.getParameterCollector().getExtraSlots(), 1);
+
+        // The journal entries are reused
+        mark = recognizeData.mark();
+        recognizeData.add("F", 18L);
+        recognizeData.assignment("T", 2);
+        recognizeData.rollback(mark);
+        assertNull(recognizeData.getParameterCollector().get("F"));
+        assertEquals(recognizeData.getNameEngine().toLong("T"), 1L);
+    }
+}
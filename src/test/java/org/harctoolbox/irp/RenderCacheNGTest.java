@@ -0,0 +1,110 @@
+package org.harctoolbox.irp;
+
+import java.util.HashMap;
+import java.util.Map;
+import org.harctoolbox.ircore.IrSignal;
+import static org.testng.Assert.*;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class RenderCacheNGTest {
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+    }
+
+    @AfterClass
+    public static void tearDownClass() throws Exception {
+    }
+
+    private final IrpDatabase irpDatabase;
+
+    public RenderCacheNGTest() throws Exception {
+        irpDatabase = new IrpDatabase((String) null);
+    }
+
+    @BeforeMethod
+    public void setUpMethod() throws Exception {
+    }
+
+    @AfterMethod
+    public void tearDownMethod() throws Exception {
+    }
+
+    private static Map<String, Long> mkParams(long d, long f) {
+        Map<String, Long> params = new HashMap<>(2);
+        params.put("D", d);
+        params.put("F", f);
+        return params;
+    }
+
+    /**
+     * Test of render method, of class RenderCache.
+     * @throws java.lang.Exception
+     */
+    @Test
+    public void testRender() throws Exception {
+        System.out.println("render");
+        RenderCache instance = new RenderCache(2);
+        NamedProtocol nec1 = irpDatabase.getNamedProtocol("NEC1");
+        IrSignal expected = irpDatabase.getNamedProtocol("NEC1").toIrSignal(mkParams(12, 34));
+        IrSignal result = instance.render(nec1, mkParams(12, 34));
+        assertTrue(result.approximatelyEquals(expected));
+        assertSame(instance.render(nec1, mkParams(12, 34)), result);
+        assertEquals(instance.getHits(), 1L);
+        assertEquals(instance.getMisses(), 1L);
+
+        instance.render(nec1, mkParams(12, 35));
+        instance.render(nec1, mkParams(12, 36));
+        assertEquals(instance.size(), 2);
+        // evicted
+        assertNotSame(instance.render(nec1, mkParams(12, 34)), result);
+        assertEquals(instance.getHits(), 1L);
+        assertEquals(instance.getMisses(), 4L);
+    }
+
+    /**
+     * Test that the toggle of RC5 is handled correctly.
+     * @throws java.lang.Exception
+     */
+    @Test
+    public void testRenderToggle() throws Exception {
+        System.out.println("renderToggle");
+        RenderCache instance = new RenderCache();
+        NamedProtocol cached = irpDatabase.getNamedProtocol("RC5");
+        NamedProtocol reference = irpDatabase.getNamedProtocol("RC5");
+        assertFalse(reference.toIrSignal(mkParams(0, 1)).approximatelyEquals(reference.toIrSignal(mkParams(0, 1))));
+        for (int i = 0; i < 4; i++) {
+            IrSignal expected = reference.toIrSignal(mkParams(0, 1));
+            assertTrue(cached.render(mkParams(0, 1), instance).approximatelyEquals(expected));
+        }
+        assertEquals(instance.getMisses(), 2L);
+        assertEquals(instance.getHits(), 2L);
+
+        // An explicitly given toggle takes precedence over the memory variable
+        Map<String, Long> params = mkParams(0, 1);
+        params.put("T", 1L);
+        assertTrue(cached.render(params, instance).approximatelyEquals(reference.toIrSignal(params)));
+        assertTrue(cached.render(mkParams(0, 1), instance).approximatelyEquals(reference.toIrSignal(mkParams(0, 1))));
+    }
+
+    /**
+     * Test of the RenderCache in IrpDatabase.render.
+     * @throws java.lang.Exception
+     */
+    @Test
+    public void testIrpDatabaseRender() throws Exception {
+        System.out.println("irpDatabaseRender");
+        IrpDatabase database = new IrpDatabase((String) null);
+        RenderCache instance = new RenderCache();
+        database.setRenderCache(instance);
+        IrSignal expected = irpDatabase.render("rc5", mkParams(0, 1));
+        assertTrue(database.render("rc5", mkParams(0, 1)).approximatelyEquals(expected));
+        assertTrue(database.render("RC5", mkParams(0, 1)).approximatelyEquals(expected));
+        assertEquals(instance.getHits(), 1L);
+        assertEquals(instance.getMisses(), 1L);
+    }
+}
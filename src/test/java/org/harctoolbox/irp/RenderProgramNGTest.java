@@ -0,0 +1,120 @@
+package org.harctoolbox.irp;
+
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.Random;
+import org.harctoolbox.ircore.IrSequence;
+import org.harctoolbox.ircore.IrSignal.Pass;
+import static org.testng.Assert.*;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class RenderProgramNGTest {
+
+    private static final String[] PROTOCOLS = {
+        "NEC1", "NEC1-f16", "RC5", "RC5x", "RC6", "RC6-6-20", "RC6-M-32", "Sony12", "Sony20", "Denon", "JVC",
+        "Kaseikyo", "Panasonic", "Mitsubishi", "Amino", "Blaupunkt", "Dish_Network", "Fujitsu", "XMP", "Nokia32"
+    };
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+    }
+
+    @AfterClass
+    public static void tearDownClass() throws Exception {
+    }
+
+    private final IrpDatabase irpDatabase;
+
+    public RenderProgramNGTest() throws Exception {
+        irpDatabase = new IrpDatabase((String) null);
+    }
+
+    @BeforeMethod
+    public void setUpMethod() throws Exception {
+    }
+
+    @AfterMethod
+    public void tearDownMethod() throws Exception {
+    }
+
+    // The general renderer, as used for protocols that cannot be compiled.
+    private static IrSequence interpret(Protocol protocol, NameEngine nameEngine, Pass pass) throws Exception {
+        RenderData renderData = new RenderData(protocol.getGeneralSpec(), nameEngine);
+        BitspecIrstream stream = new BitspecIrstream(protocol.getBitspecIrstream().getBitSpec(), new IrStream(protocol.normalBareIrStream(pass)));
+        stream.render(renderData, new ArrayList<>(0));
+        return renderData.toIrSequence();
+    }
+
+    private static void assertSameRendering(Protocol protocol, Map<String, Long> parameters) throws Exception {
+        NameEngine nameEngine = new NameEngine(parameters);
+        nameEngine.add(protocol.getDefinitions());
+        NameEngine reference = new NameEngine(nameEngine);
+        for (Pass pass : new Pass[]{ Pass.intro, Pass.repeat, Pass.ending }) {
+            RenderProgram renderProgram = protocol.getRenderProgram(pass);
+            assertTrue(renderProgram.isCompiled());
+            IrSequence expected = interpret(protocol, reference, pass);
+            IrSequence actual = renderProgram.render(nameEngine);
+            assertEquals(actual.toString(true), expected.toString(true), protocol.getIrp() + " " + parameters + " " + pass);
+        }
+        assertEquals(nameEngine.toString(), reference.toString());
+    }
+
+    /**
+     * Test of render method, of class RenderProgram.
+     * @throws java.lang.Exception
+     */
+    @Test
+    public void testRender() throws Exception {
+        System.out.println("render");
+        Random random = new Random(4711);
+        for (String protocolName : PROTOCOLS) {
+            NamedProtocol protocol = irpDatabase.getNamedProtocol(protocolName);
+            for (int i = 0; i < 20; i++)
+                assertSameRendering(protocol, protocol.randomParameters(random));
+        }
+    }
+
+    /**
+     * Test of render method, of class RenderProgram, with lsb chunks, extents, non-constant durations and zero durations.
+     * @throws java.lang.Exception
+     */
+    @Test
+    public void testRenderSpecial() throws Exception {
+        System.out.println("renderSpecial");
+        String[] irps = {
+            "{38k,100}<1,-1|1,-2|1,-3|1,-4|1,-5|1,-6|1,-7|1,-8>(10,-5,D:3,F:6,S:3,1,^20m)*[D:0..7,F:0..63,S:0..7]",
+            "{38k,100,msb}<1,-1|1,-2|1,-3|1,-4>(10,-5,D:8,F:6,S:2,1,^50m)*[D:0..255,F:0..63,S:0..3]",
+            "{38k,100}<1,-1|1,-3>(T,-5,D:8,X=D+1,X:8,~F:4:2,1,-10m)*{T=16}[D:0..255,F:0..255]",
+            "{38k,100,msb}<1,-1|1,-3>(10p,-5,D:8,F:8:4,1,-2m,1,-D)*[D:1..255,F:0..255]",
+            "{38k,100}<-1,1|1,-1>(1,0,-1,D:8,0,-0,1,^2m)*[D:0..255]"
+        };
+        Random random = new Random(42);
+        for (String irp : irps) {
+            Protocol protocol = new Protocol(irp);
+            for (int i = 0; i < 20; i++)
+                assertSameRendering(protocol, protocol.randomParameters(random));
+        }
+    }
+
+    /**
+     * Test of isCompiled method, of class RenderProgram.
+     * @throws java.lang.Exception
+     */
+    @Test
+    public void testIsCompiled() throws Exception {
+        System.out.println("isCompiled");
+        Protocol nec1 = irpDatabase.getNamedProtocol("NEC1");
+        assertTrue(nec1.getRenderProgram(Pass.intro).isCompiled());
+        assertSame(irpDatabase.getNamedProtocol("NEC1").getRenderProgram(Pass.repeat), nec1.getRenderProgram(Pass.repeat));
+        // Variable width
+        assertFalse(new Protocol("{38.4k,msb,564}<1,-1|1,-3>(16,-8,data:length,1,-1) [data:0..UINT32_MAX,length:1..64]").getRenderProgram(Pass.intro).isCompiled());
+        // Bitcodes with assignments
+        assertFalse(irpDatabase.getNamedProtocol("B&O").getRenderProgram(Pass.intro).isCompiled());
+        // Incomplete chunks
+        assertFalse(new Protocol("{38k,100}<1,-1|1,-2|1,-3|1,-4>(10,-5,D:3,1,-20m)[D:0..7]").getRenderProgram(Pass.intro).isCompiled());
+    }
+}
@@ -0,0 +1,87 @@
+package org.harctoolbox.irp;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.harctoolbox.ircore.IrSignal;
+import org.harctoolbox.ircore.ModulatedIrSequence;
+import static org.testng.Assert.*;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class StreamingDecoderNGTest {
+
+    @BeforeClass
+    public static void setUpClass() throws Exception {
+    }
+
+    @AfterClass
+    public static void tearDownClass() throws Exception {
+    }
+
+    private final IrpDatabase irpDatabase;
+    private final Decoder decoder;
+
+    public StreamingDecoderNGTest() throws Exception {
+        irpDatabase = new IrpDatabase((String) null);
+        decoder = new Decoder(irpDatabase);
+    }
+
+    @BeforeMethod
+    public void setUpMethod() throws Exception {
+    }
+
+    @AfterMethod
+    public void tearDownMethod() throws Exception {
+    }
+
+    /**
+     * Test of accept method, of class StreamingDecoder.
+     * @throws java.lang.Exception
+     */
+    @Test
+    public void testAccept() throws Exception {
+        System.out.println("accept");
+        Map<String, Long> params = new HashMap<>(2);
+        params.put("D", 12L);
+        params.put("F", 34L);
+        IrSignal irSignal = irpDatabase.getNamedProtocol("NEC1").toIrSignal(params);
+        ModulatedIrSequence irSequence = irSignal.toModulatedIrSequence(4);
+        Decoder.DecoderParameters decoderParameters = new Decoder.DecoderParameters();
+        Decoder.Decode expected = decoder.decodeIrSignal(irSignal, decoderParameters).first();
+
+        List<Decoder.Decode> decodes = new ArrayList<>(4);
+        List<IrSignal.Pass> passes = new ArrayList<>(4);
+        StreamingDecoder instance = new StreamingDecoder(decoder, irSignal.getFrequency(), decoderParameters, (Decoder.Decode decode, IrSignal.Pass pass) -> {
+            decodes.add(decode);
+            passes.add(pass);
+        });
+        for (int i = 0; i < irSequence.getLength(); i++) {
+            instance.accept(irSequence.get(i));
+            // nothing delivered until the lead-out is seen
+            assertEquals(decodes.size(), i < irSignal.getIntroLength() - 1 ? 0 : (i - irSignal.getIntroLength() + 1) / irSignal.getRepeatLength() + 1);
+        }
+
+        // NEC1 requires a repeat, so the intro is reported as NEC
+        assertEquals(decodes.get(0).getName(), "NEC");
+        assertEquals(passes.get(0), IrSignal.Pass.intro);
+        for (int i = 1; i < 4; i++) {
+            assertEquals(decodes.get(i).getName(), "NEC1");
+            assertEquals(decodes.get(i).getMap(), expected.getMap());
+            assertEquals(decodes.get(i).getNumberOfRepetitions(), i);
+            assertEquals(passes.get(i), IrSignal.Pass.repeat);
+        }
+        assertTrue(instance.isActive());
+
+        // A new signal, after garbage
+        instance.accept(new double[]{100, 50000});
+        instance.accept(irSignal.getIntroSequence());
+        assertEquals(decodes.size(), 5);
+        assertEquals(passes.get(4), IrSignal.Pass.intro);
+        assertEquals(decodes.get(4).getNumberOfRepetitions(), 0);
+    }
+}